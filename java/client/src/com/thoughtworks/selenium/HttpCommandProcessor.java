@@ -18,9 +18,23 @@
 package com.thoughtworks.selenium;
 
 import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
-
+import com.google.common.io.CharStreams;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.params.HttpClientParams;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.util.EntityUtils;
 import org.openqa.selenium.net.Urls;
+import org.openqa.selenium.remote.internal.HttpClientFactory;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
@@ -28,6 +42,7 @@ import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.lang.reflect.Method;
 import java.net.ConnectException;
 import java.net.HttpURLConnection;
 import java.net.URL;
@@ -35,14 +50,33 @@ import java.text.NumberFormat;
 import java.text.ParseException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 /**
- * Sends commands and retrieves results via HTTP.
+ * Sends commands and retrieves results via HTTP. The connections to the server are pooled and kept
+ * alive between commands.
  * 
  * @author Ben Griffiths, Jez Humble
  */
 public class HttpCommandProcessor implements CommandProcessor {
 
+  private static final int MAX_REDIRECTS = 10;
+  private static final ContentType FORM_URLENCODED =
+      ContentType.create("application/x-www-form-urlencoded", Charsets.UTF_8);
+
+  // the server drops the connections idle for a minute, those idle for half of it aren't reused.
+  private static final int MAX_IDLE_SECONDS = 30;
+  // the hooks of the subclasses which send the commands over their own connections.
+  private static final Set<String> CONNECTION_HOOKS = ImmutableSet.of("getHttpUrlConnection",
+      "getOutputStreamWriter", "getInputStreamReader", "getResponseCode", "closeResources");
+
+  // shared by all the processors, so that the connections to a server are kept alive.
+  private static HttpClientFactory httpClientFactory;
+
+  private final boolean sentOverOwnConnections = overridesConnectionHooks();
+
   private String pathToServlet;
   private String browserStartCommand;
   private String browserURL;
@@ -126,72 +160,128 @@ public class HttpCommandProcessor implements CommandProcessor {
     }
   }
 
-  private String stringContentsOfInputStream(Reader rdr) throws IOException {
-    StringBuffer sb = new StringBuffer();
-    int c;
-    try {
-      while ((c = rdr.read()) != -1) {
-        sb.append((char) c);
+  // for testing
+  protected HttpClient getHttpClient() {
+    synchronized (HttpCommandProcessor.class) {
+      if (httpClientFactory == null) {
+        httpClientFactory = new HttpClientFactory();
       }
-      return sb.toString();
-    } finally {
-      rdr.close();
     }
+    HttpClient client = httpClientFactory.getHttpClient();
+    client.getConnectionManager().closeIdleConnections(MAX_IDLE_SECONDS, SECONDS);
+    return client;
   }
 
-  // for testing
+  /**
+   * @deprecated the commands are sent over the pooled connections of {@link #getHttpClient()}.
+   *             They are only sent over a new connection each when a subclass overrides this.
+   */
+  @Deprecated
   protected HttpURLConnection getHttpUrlConnection(URL urlForServlet) throws IOException {
     return (HttpURLConnection) urlForServlet.openConnection();
   }
 
-  // for testing
+  /**
+   * @deprecated see {@link #getHttpUrlConnection(URL)}.
+   */
+  @Deprecated
   protected Writer getOutputStreamWriter(HttpURLConnection conn) throws IOException {
     return new BufferedWriter(new OutputStreamWriter(conn.getOutputStream(), Charsets.UTF_8));
   }
 
-  // for testing
+  /**
+   * @deprecated see {@link #getHttpUrlConnection(URL)}.
+   */
+  @Deprecated
   protected Reader getInputStreamReader(HttpURLConnection conn) throws IOException {
     return new InputStreamReader(conn.getInputStream(), "UTF-8");
   }
 
-  // for testing
+  /**
+   * @deprecated see {@link #getHttpUrlConnection(URL)}.
+   */
+  @Deprecated
   protected int getResponseCode(HttpURLConnection conn) throws IOException {
     return conn.getResponseCode();
   }
 
   protected String getCommandResponseAsString(String command) throws IOException {
-    String responseString = null;
-    int responsecode = HttpURLConnection.HTTP_MOVED_PERM;
-    HttpURLConnection uc = null;
-    Writer wr = null;
-    Reader rdr = null;
-    while (responsecode == HttpURLConnection.HTTP_MOVED_PERM) {
-      URL result = new URL(pathToServlet);
-      String body = buildCommandBody(command);
+    if (sentOverOwnConnections) {
+      return getCommandResponseOverNewConnection(command);
+    }
+
+    String body = buildCommandBody(command);
+    for (int redirects = 0; redirects <= MAX_REDIRECTS; redirects++) {
+      HttpPost post = new HttpPost(pathToServlet);
+      HttpClientParams.setRedirecting(post.getParams(), false);
+      // checking a pooled connection costs a read timing out for each command. The connections
+      // the server may have dropped are closed instead, and the client only sends the command
+      // again if it couldn't send it the first time, since commands aren't idempotent.
+      HttpConnectionParams.setStaleCheckingEnabled(post.getParams(), false);
+      post.setEntity(new StringEntity(body, FORM_URLENCODED));
+
+      // the connection goes back to the pool once the entity is consumed.
+      HttpResponse response = getHttpClient().execute(post);
+      HttpEntity entity = response.getEntity();
+      try {
+        int responseCode = response.getStatusLine().getStatusCode();
+        if (responseCode == HttpStatus.SC_MOVED_PERMANENTLY) {
+          Header location = response.getFirstHeader("Location");
+          if (location == null) {
+            throw new IOException("Redirected without a location from " + pathToServlet);
+          }
+          pathToServlet = location.getValue();
+        } else if (responseCode != HttpStatus.SC_OK) {
+          throwAssertionFailureExceptionOrError(response.getStatusLine().getReasonPhrase());
+        } else {
+          // decoded as it's read, the server always answers in UTF-8.
+          return entity == null ? "" : CharStreams.toString(
+              new InputStreamReader(entity.getContent(), Charsets.UTF_8));
+        }
+      } finally {
+        EntityUtils.consumeQuietly(entity);
+      }
+    }
+    throw new IOException("Too many redirects from " + pathToServlet);
+  }
+
+  /**
+   * Sends the command over a new connection, through the deprecated hooks a subclass overrides.
+   */
+  private String getCommandResponseOverNewConnection(String command) throws IOException {
+    String body = buildCommandBody(command);
+    for (int redirects = 0; redirects <= MAX_REDIRECTS; redirects++) {
+      HttpURLConnection uc = null;
+      Writer wr = null;
+      Reader rdr = null;
       try {
-        uc = getHttpUrlConnection(result);
+        uc = getHttpUrlConnection(new URL(pathToServlet));
         uc.setRequestProperty("Content-Type", "application/x-www-form-urlencoded; charset=utf-8");
         uc.setInstanceFollowRedirects(false);
         uc.setDoOutput(true);
         wr = getOutputStreamWriter(uc);
         wr.write(body);
         wr.flush();
-        responsecode = getResponseCode(uc);
+        int responsecode = getResponseCode(uc);
         if (responsecode == HttpURLConnection.HTTP_MOVED_PERM) {
-          pathToServlet = uc.getRequestProperty("Location");
+          pathToServlet = uc.getHeaderField("Location");
         } else if (responsecode != HttpURLConnection.HTTP_OK) {
           throwAssertionFailureExceptionOrError(uc.getResponseMessage());
         } else {
           rdr = getInputStreamReader(uc);
-          responseString = stringContentsOfInputStream(rdr);
+          return CharStreams.toString(rdr);
         }
       } finally {
         closeResources(uc, wr, rdr);
       }
     }
-    return responseString;
+    throw new IOException("Too many redirects from " + pathToServlet);
   }
 
+  /**
+   * @deprecated see {@link #getHttpUrlConnection(URL)}.
+   */
+  @Deprecated
   protected void closeResources(HttpURLConnection conn, Writer wr, Reader rdr) {
     try {
       if (null != wr) {
@@ -214,6 +304,17 @@ public class HttpCommandProcessor implements CommandProcessor {
     }
   }
 
+  private boolean overridesConnectionHooks() {
+    for (Class<?> c = getClass(); c != HttpCommandProcessor.class; c = c.getSuperclass()) {
+      for (Method method : c.getDeclaredMethods()) {
+        if (CONNECTION_HOOKS.contains(method.getName())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
   private String buildCommandBody(String command) {
     StringBuffer sb = new StringBuffer();
     sb.append(command);
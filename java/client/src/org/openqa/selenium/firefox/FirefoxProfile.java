@@ -18,6 +18,7 @@ package org.openqa.selenium.firefox;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.io.Closeables;
 import com.google.common.io.Resources;
 
@@ -38,8 +39,11 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
 import java.net.URL;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import static org.openqa.selenium.firefox.FirefoxDriver.ACCEPT_UNTRUSTED_CERTIFICATES;
 import static org.openqa.selenium.firefox.FirefoxDriver.ASSUME_UNTRUSTED_ISSUER;
@@ -54,11 +58,16 @@ public class FirefoxProfile {
   private Preferences additionalPrefs;
 
   private Map<String, Extension> extensions = Maps.newHashMap();
+  // where the extensions come from, for the ones which are known to come from a file or the
+  // classpath: what it takes to know whether a profile template can be reused.
+  private Map<String, Object> extensionSources = Maps.newHashMap();
   private boolean enableNativeEvents;
   private boolean loadNoFocusLib;
   private boolean acceptUntrustedCerts;
   private boolean untrustedCertIssuer;
   private File model;
+  private boolean modelIsShared;
+  private boolean modelIsReleased;
   private static final String ENABLE_NATIVE_EVENTS_PREF = "webdriver_enable_native_events";
   private static final String ACCEPT_UNTRUSTED_CERTS_PREF = "webdriver_accept_untrusted_certs";
   private static final String ASSUME_UNTRUSTED_ISSUER_PREF = "webdriver_assume_untrusted_issuer";
@@ -162,9 +171,10 @@ public class FirefoxProfile {
       return;
     }
 
-    ClasspathExtension extension = new ClasspathExtension(FirefoxProfile.class,
-        "/" + FirefoxProfile.class.getPackage().getName().replace(".", "/") + "/webdriver.xpi");
-    addExtension("webdriver", extension);
+    String loadFrom =
+        "/" + FirefoxProfile.class.getPackage().getName().replace(".", "/") + "/webdriver.xpi";
+    addExtension("webdriver", new ClasspathExtension(FirefoxProfile.class, loadFrom));
+    extensionSources.put("webdriver", getClasspathSource(FirefoxProfile.class, loadFrom));
   }
 
   public void addExtension(Class<?> loadResourcesUsing, String loadFrom) throws IOException {
@@ -176,6 +186,8 @@ public class FirefoxProfile {
     }
 
     addExtension(loadFrom, new ClasspathExtension(loadResourcesUsing, loadFrom));
+    extensionSources.put(deriveExtensionName(loadFrom),
+                         getClasspathSource(loadResourcesUsing, loadFrom));
   }
 
   /**
@@ -186,11 +198,23 @@ public class FirefoxProfile {
    */
   public void addExtension(File extensionToInstall) throws IOException {
     addExtension(extensionToInstall.getName(), new FileExtension(extensionToInstall));
+    extensionSources.put(deriveExtensionName(extensionToInstall.getName()),
+                         extensionToInstall.getAbsoluteFile());
   }
 
   protected void addExtension(String key, Extension extension) {
     String name = deriveExtensionName(key);
     extensions.put(name, extension);
+    extensionSources.remove(name);
+  }
+
+  private URL getClasspathSource(Class<?> loadResourcesUsing, String loadFrom) {
+    try {
+      return Resources.getResource(loadResourcesUsing, loadFrom);
+    } catch (IllegalArgumentException e) {
+      // Not there, the extension will fail to install anyway.
+      return null;
+    }
   }
 
   private String deriveExtensionName(String originalName) {
@@ -284,6 +308,23 @@ public class FirefoxProfile {
   }
 
   public void updateUserPrefs(File userPrefs) {
+    Preferences prefs = buildUserPrefs(userPrefs);
+    if (userPrefs.exists() && !userPrefs.delete()) {
+      throw new WebDriverException("Cannot delete existing user preferences");
+    }
+
+    FileWriter writer = null;
+    try {
+      writer = new FileWriter(userPrefs);
+      prefs.writeTo(writer);
+    } catch (IOException e) {
+      throw new WebDriverException(e);
+    } finally {
+      Closeables.closeQuietly(writer);
+    }
+  }
+
+  private Preferences buildUserPrefs(File userPrefs) {
     Preferences prefs = new Preferences(onlyOverrideThisIfYouKnowWhatYouAreDoing());
 
     // Allow users to override these settings
@@ -294,9 +335,6 @@ public class FirefoxProfile {
 
     if (userPrefs.exists()) {
       prefs = new Preferences(onlyOverrideThisIfYouKnowWhatYouAreDoing(), userPrefs);
-      if (!userPrefs.delete()) {
-        throw new WebDriverException("Cannot delete existing user preferences");
-      }
     }
 
     additionalPrefs.addTo(prefs);
@@ -319,15 +357,7 @@ public class FirefoxProfile {
       prefs.setPreference("browser.startup.page", 1);
     }
 
-    FileWriter writer = null;
-    try {
-      writer = new FileWriter(userPrefs);
-      prefs.writeTo(writer);
-    } catch (IOException e) {
-      throw new WebDriverException(e);
-    } finally {
-      Closeables.closeQuietly(writer);
-    }
+    return prefs;
   }
 
   protected void deleteLockFiles(File profileDir) {
@@ -405,22 +435,61 @@ public class FirefoxProfile {
     TemporaryFilesystem.getDefaultTmpFS().deleteTempDir(profileDir);
   }
 
+  /**
+   * Zips the profile. The zip is only built once for all the profiles with the same model,
+   * extensions and preferences.
+   *
+   * @return the profile, zipped and encoded in base64.
+   */
   public String toJson() throws IOException {
-    File generatedProfile = layoutOnDisk();
+    String templateKey = getTemplateKey();
+    if (templateKey == null) {
+      return new Zip().zip(layoutOnDisk());
+    }
 
-    return new Zip().zip(generatedProfile);
+    StringWriter prefs = new StringWriter();
+    File template = ProfileTemplates.acquireTemplate(templateKey, templateBuilder());
+    try {
+      buildUserPrefs(new File(template, "user.js")).writeTo(prefs);
+    } finally {
+      ProfileTemplates.release(template);
+    }
+    String key = ProfileTemplates.hash(templateKey, prefs.toString());
+    return ProfileTemplates.getZipped(key, new Callable<String>() {
+      public String call() throws IOException {
+        File generatedProfile = layoutOnDisk();
+        try {
+          return new Zip().zip(generatedProfile);
+        } finally {
+          clean(generatedProfile);
+        }
+      }
+    });
   }
 
+  /**
+   * Builds a profile out of the result of {@link #toJson()}. A profile which was received already
+   * is only unzipped once.
+   */
   public static FirefoxProfile fromJson(String json) throws IOException {
-    File dir = TemporaryFilesystem.getDefaultTmpFS().createTempDir("webdriver", "duplicated");
-
-    new Zip().unzip(json, dir);
-
-    return new FirefoxProfile(dir);
+    File model = ProfileTemplates.acquireUnzipped(json);
+    try {
+      FirefoxProfile profile = new FirefoxProfile(model);
+      profile.modelIsShared = true;
+      return profile;
+    } catch (RuntimeException e) {
+      ProfileTemplates.release(model);
+      throw e;
+    }
   }
 
   protected void cleanTemporaryModel() {
-    clean(model);
+    if (!modelIsShared) {
+      clean(model);
+    } else if (!modelIsReleased) {
+      modelIsReleased = true;
+      ProfileTemplates.release(model);
+    }
   }
 
   /**
@@ -439,8 +508,18 @@ public class FirefoxProfile {
           .createTempDir("anonymous", "webdriver-profile");
       File userPrefs = new File(profileDir, "user.js");
 
-      copyModel(model, profileDir);
-      installExtensions(profileDir);
+      String templateKey = getTemplateKey();
+      if (templateKey == null) {
+        copyModel(model, profileDir);
+        installExtensions(profileDir);
+      } else {
+        File template = ProfileTemplates.acquireTemplate(templateKey, templateBuilder());
+        try {
+          FileHandler.copy(template, profileDir);
+        } finally {
+          ProfileTemplates.release(template);
+        }
+      }
       deleteLockFiles(profileDir);
       deleteExtensionsCacheIfItExists(profileDir);
       updateUserPrefs(userPrefs);
@@ -450,6 +529,64 @@ public class FirefoxProfile {
     }
   }
 
+  /**
+   * @return the builder of the template of the profile: the model and the extensions, laid out on
+   *         disk once for all the profiles made of the same ones.
+   */
+  private Callable<File> templateBuilder() {
+    return new Callable<File>() {
+      public File call() throws IOException {
+        File templateDir = TemporaryFilesystem.getDefaultTmpFS()
+            .createTempDir("template", "webdriver-profile");
+        copyModel(model, templateDir);
+        installExtensions(templateDir);
+        deleteLockFiles(templateDir);
+        deleteExtensionsCacheIfItExists(templateDir);
+        return templateDir;
+      }
+    };
+  }
+
+  /**
+   * @return a hash of the model and of where the extensions come from, or null if the profile
+   *         can't be built from a template: one of its extensions comes from an unknown place, or
+   *         the profile is laid out by a subclass in its own way.
+   */
+  private String getTemplateKey() {
+    if (!extensionSources.keySet().equals(extensions.keySet()) || isLaidOutBySubclass()) {
+      return null;
+    }
+    StringBuilder key = new StringBuilder();
+    if (model != null && model.exists()) {
+      key.append(ProfileTemplates.fingerprint(model));
+    }
+    for (String name : Sets.newTreeSet(extensionSources.keySet())) {
+      Object source = extensionSources.get(name);
+      if (source == null) {
+        return null;
+      }
+      key.append('\n').append(name).append('=');
+      if (source instanceof File) {
+        key.append(((File) source).getPath()).append(':')
+            .append(ProfileTemplates.fingerprint((File) source));
+      } else {
+        key.append(source);
+      }
+    }
+    return ProfileTemplates.hash(key.toString());
+  }
+
+  private boolean isLaidOutBySubclass() {
+    for (Class<?> c = getClass(); c != FirefoxProfile.class; c = c.getSuperclass()) {
+      for (Method method : c.getDeclaredMethods()) {
+        if ("copyModel".equals(method.getName()) || "installExtensions".equals(method.getName())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
   protected void copyModel(File sourceDir, File profileDir) throws IOException {
     if (sourceDir == null || !sourceDir.exists()) {
       return;
@@ -0,0 +1,205 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.openqa.selenium.firefox;
+
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.io.TemporaryFilesystem;
+import org.openqa.selenium.io.Zip;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The profiles already built in this JVM, keyed by a hash of what they were built from, so that
+ * building the same profile again is a copy of a directory instead of a copy of the model and an
+ * extraction of every extension.
+ * <p/>
+ * Three kinds of profiles are kept: the templates laid out on disk (model and extensions, without
+ * the user preferences), the zipped profiles sent to a remote end, and the profiles received from
+ * a remote end, unzipped. Only a few of each are kept, as most runs use the same one or two
+ * profiles over and over.
+ * <p/>
+ * A directory is only deleted once it has been dropped from its cache and released by all of the
+ * callers it was handed to.
+ */
+class ProfileTemplates {
+
+  private static final int MAX_DIRECTORIES = 8;
+  private static final int MAX_ZIPPED = 4;
+
+  // the directories handed out and not released yet, counted once per user.
+  private static final Multiset<File> inUse = HashMultiset.create();
+  // the directories dropped from their cache while still in use.
+  private static final Set<File> evicted = new HashSet<File>();
+
+  private static final RemovalListener<String, File> DELETE_DIRECTORY =
+      new RemovalListener<String, File>() {
+        public void onRemoval(RemovalNotification<String, File> notification) {
+          File dir = notification.getValue();
+          synchronized (inUse) {
+            if (inUse.contains(dir)) {
+              evicted.add(dir);
+              return;
+            }
+          }
+          TemporaryFilesystem.getDefaultTmpFS().deleteTempDir(dir);
+        }
+      };
+
+  private static final Cache<String, File> templates = CacheBuilder.newBuilder()
+      .maximumSize(MAX_DIRECTORIES)
+      .removalListener(DELETE_DIRECTORY)
+      .build();
+  private static final Cache<String, File> unzipped = CacheBuilder.newBuilder()
+      .maximumSize(MAX_DIRECTORIES)
+      .removalListener(DELETE_DIRECTORY)
+      .build();
+  private static final Cache<String, String> zipped = CacheBuilder.newBuilder()
+      .maximumSize(MAX_ZIPPED)
+      .build();
+
+  private ProfileTemplates() {
+    // Utility class
+  }
+
+  /**
+   * @param key     the hash of what the template is built from.
+   * @param builder lays out the template in a new temporary directory, if it isn't known yet.
+   * @return the template. It must not be modified, and must be released once copied.
+   */
+  static File acquireTemplate(String key, Callable<File> builder) throws IOException {
+    return acquire(templates, key, builder);
+  }
+
+  /**
+   * @param key     the hash of what the profile is built from, user preferences included.
+   * @param builder zips the profile, if it isn't known yet.
+   * @return the zipped profile.
+   */
+  static String getZipped(String key, Callable<String> builder) throws IOException {
+    return get(zipped, key, builder);
+  }
+
+  /**
+   * @param json a zipped profile, as sent by {@link FirefoxProfile#toJson()}.
+   * @return the directory where it was unzipped. It must not be modified, and must be released
+   *         once the profile built from it is done with.
+   */
+  static File acquireUnzipped(final String json) throws IOException {
+    String key = Hashing.sha1().hashString(json, Charsets.UTF_8).toString();
+    return acquire(unzipped, key, new Callable<File>() {
+      public File call() throws IOException {
+        File dir = TemporaryFilesystem.getDefaultTmpFS().createTempDir("webdriver", "duplicated");
+        new Zip().unzip(json, dir);
+        return dir;
+      }
+    });
+  }
+
+  /**
+   * Gives back a directory handed out by {@link #acquireTemplate} or {@link #acquireUnzipped}. It
+   * is deleted if it has been dropped from its cache and nobody else uses it.
+   */
+  static void release(File dir) {
+    synchronized (inUse) {
+      inUse.remove(dir);
+      if (inUse.contains(dir) || !evicted.remove(dir)) {
+        return;
+      }
+    }
+    TemporaryFilesystem.getDefaultTmpFS().deleteTempDir(dir);
+  }
+
+  /**
+   * @return a hash of the names, sizes and modification dates of all the files of the directory,
+   *         which changes whenever one of them is changed.
+   */
+  static String fingerprint(File file) {
+    Hasher hasher = Hashing.sha1().newHasher();
+    fingerprint(file, "", hasher);
+    return hasher.hash().toString();
+  }
+
+  static String hash(String... values) {
+    Hasher hasher = Hashing.sha1().newHasher();
+    for (String value : values) {
+      hasher.putString(value, Charsets.UTF_8).putByte((byte) 0);
+    }
+    return hasher.hash().toString();
+  }
+
+  private static void fingerprint(File file, String path, Hasher hasher) {
+    hasher.putString(path, Charsets.UTF_8)
+        .putLong(file.length())
+        .putLong(file.lastModified());
+    String[] children = file.list();
+    if (children == null) {
+      return;
+    }
+    Arrays.sort(children);
+    for (String child : children) {
+      fingerprint(new File(file, child), path + "/" + child, hasher);
+    }
+  }
+
+  private static File acquire(Cache<String, File> cache, String key, Callable<File> builder)
+      throws IOException {
+    while (true) {
+      File dir = get(cache, key, builder);
+      synchronized (inUse) {
+        // dropped between the lookup and now: its deletion may be under way, look it up again
+        if (dir.equals(cache.asMap().get(key))) {
+          inUse.add(dir);
+          return dir;
+        }
+      }
+    }
+  }
+
+  private static <T> T get(Cache<String, T> cache, String key, Callable<T> builder)
+      throws IOException {
+    try {
+      return cache.get(key, builder);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new WebDriverException(e.getCause());
+    } catch (UncheckedExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new WebDriverException(e.getCause());
+    }
+  }
+}
@@ -56,6 +56,7 @@ import org.openqa.selenium.remote.CapabilityType;
 import org.openqa.selenium.remote.DesiredCapabilities;
 
 import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.Cache;
 import com.gargoylesoftware.htmlunit.CookieManager;
 import com.gargoylesoftware.htmlunit.ElementNotFoundException;
 import com.gargoylesoftware.htmlunit.Page;
@@ -98,6 +99,8 @@ import java.net.URL;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -127,7 +130,16 @@ public class HtmlUnitDriver implements WebDriver, JavascriptExecutor,
       "The xpath expression '%s' selected an object of type '%s' instead of a WebElement";
 
   public HtmlUnitDriver(BrowserVersion version) {
-    webClient = createWebClient(version);
+    this(version, null);
+  }
+
+  /**
+   * @param version Which browser to emulate
+   * @param cache   The cache of the responses, scripts and style sheets, shared with other
+   *                drivers, or null for one of its own.
+   */
+  HtmlUnitDriver(BrowserVersion version, Cache cache) {
+    webClient = createWebClient(version, cache);
     currentWindow = webClient.getCurrentWindow();
 
     webClient.addWebWindowListener(new WebWindowListener() {
@@ -255,8 +267,11 @@ public class HtmlUnitDriver implements WebDriver, JavascriptExecutor,
     return BrowserVersion.FIREFOX_10;
   }
 
-  private WebClient createWebClient(BrowserVersion version) {
+  private WebClient createWebClient(BrowserVersion version, Cache cache) {
     WebClient client = newWebClient(version);
+    if (cache != null) {
+      client.setCache(cache);
+    }
     WebClientOptions options = client.getOptions();
     options.setHomePage(WebClient.URL_ABOUT_BLANK.toString());
     options.setThrowExceptionOnFailingStatusCode(false);
@@ -703,7 +718,43 @@ public class HtmlUnitDriver implements WebDriver, JavascriptExecutor,
   }
 
   public List<WebElement> findElementsById(String id) {
-    return findElementsByXPath("//*[@id='" + id + "']");
+    if (!(lastPage() instanceof HtmlPage)) {
+      return new ArrayList<WebElement>();
+    }
+
+    return convertRawHtmlElementsToWebElements(getElementsById((HtmlPage) lastPage(), id));
+  }
+
+  /**
+   * Looks the id up in the index the page keeps of the ids and names of its elements, rather than
+   * going through every element of the page.
+   */
+  static List<HtmlElement> getElementsById(HtmlPage page, String id) {
+    List<HtmlElement> elements = new ArrayList<HtmlElement>();
+    for (DomElement element : page.getElementsByIdAndOrName(id)) {
+      if (element instanceof HtmlElement && id.equals(element.getAttribute("id"))) {
+        elements.add((HtmlElement) element);
+      }
+    }
+    return inDocumentOrder(elements);
+  }
+
+  /**
+   * The index of a page lists the elements in the order they were added to it, which differs from
+   * the order of the document once scripts have moved them around.
+   */
+  static <T extends DomNode> List<T> inDocumentOrder(List<T> nodes) {
+    if (nodes.size() > 1) {
+      Collections.sort(nodes, new Comparator<DomNode>() {
+        public int compare(DomNode a, DomNode b) {
+          if (a == b) {
+            return 0;
+          }
+          return (a.compareDocumentPosition(b) & Node.DOCUMENT_POSITION_FOLLOWING) != 0 ? -1 : 1;
+        }
+      });
+    }
+    return nodes;
   }
 
   public WebElement findElementByCssSelector(String using) {
@@ -758,7 +809,8 @@ public class HtmlUnitDriver implements WebDriver, JavascriptExecutor,
       return new ArrayList<WebElement>();
     }
 
-    List<DomElement> allElements = ((HtmlPage) lastPage()).getElementsByName(using);
+    List<DomElement> allElements = inDocumentOrder(
+        new ArrayList<DomElement>(((HtmlPage) lastPage()).getElementsByName(using)));
     return convertRawHtmlElementsToWebElements(allElements);
   }
 
@@ -0,0 +1,310 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.openqa.selenium.htmlunit;
+
+import com.google.common.base.Function;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+import com.gargoylesoftware.htmlunit.Cache;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A fixed number of {@link HtmlUnitDriver}s for each of a few browser versions, created up front
+ * and handed out in turn, so that many short checks can run in parallel in the same JVM.
+ * <p/>
+ * The drivers of a browser version share one {@link Cache}, so a script or a style sheet fetched
+ * by one of them is parsed once for all of them. Between two uses a driver is brought back to a
+ * blank page, without cookies or other windows.
+ * <p/>
+ * Example:
+ * <pre>
+ * HtmlUnitDriverPool pool = new HtmlUnitDriverPool(4, true,
+ *     BrowserVersion.FIREFOX_10, BrowserVersion.INTERNET_EXPLORER_8);
+ * try {
+ *   Map&lt;BrowserVersion, String&gt; titles =
+ *       pool.fanOut(new Function&lt;WebDriver, String&gt;() {
+ *         public String apply(WebDriver driver) {
+ *           driver.get("http://localhost/");
+ *           return driver.getTitle();
+ *         }
+ *       });
+ * } finally {
+ *   pool.quit();
+ * }
+ * </pre>
+ */
+public class HtmlUnitDriverPool {
+
+  private static final Logger log = Logger.getLogger(HtmlUnitDriverPool.class.getName());
+
+  // as many entries as a few sites' worth of scripts and style sheets, HtmlUnit keeps 25.
+  private static final int CACHE_SIZE = 500;
+
+  private final boolean enableJavascript;
+  private final Map<BrowserVersion, Cache> caches = Maps.newLinkedHashMap();
+  private final Map<BrowserVersion, BlockingQueue<HtmlUnitDriver>> idleDrivers =
+      Maps.newLinkedHashMap();
+  private final Map<HtmlUnitDriver, BrowserVersion> versions = Maps.newConcurrentMap();
+  private final ExecutorService executor;
+  private volatile boolean quit;
+
+  /**
+   * @param driversPerVersion How many drivers to create for each browser version
+   * @param enableJavascript  Whether the drivers run the scripts of the pages
+   * @param browserVersions   The browsers to emulate, the default one if none is given
+   */
+  public HtmlUnitDriverPool(int driversPerVersion, boolean enableJavascript,
+      BrowserVersion... browserVersions) {
+    if (driversPerVersion < 1) {
+      throw new IllegalArgumentException("At least one driver per version is needed");
+    }
+    this.enableJavascript = enableJavascript;
+    if (browserVersions.length == 0) {
+      browserVersions = new BrowserVersion[] {BrowserVersion.getDefault()};
+    }
+
+    for (BrowserVersion version : browserVersions) {
+      if (caches.containsKey(version)) {
+        continue;
+      }
+      Cache cache = new Cache();
+      cache.setMaxSize(CACHE_SIZE);
+      caches.put(version, cache);
+
+      BlockingQueue<HtmlUnitDriver> drivers = new LinkedBlockingQueue<HtmlUnitDriver>();
+      for (int i = 0; i < driversPerVersion; i++) {
+        drivers.add(newDriver(version));
+      }
+      idleDrivers.put(version, drivers);
+    }
+
+    executor = Executors.newFixedThreadPool(driversPerVersion * caches.size(),
+        new ThreadFactoryBuilder().setNameFormat("HtmlUnitDriverPool %d").setDaemon(true).build());
+  }
+
+  /**
+   * @return The browser versions the drivers of this pool emulate.
+   */
+  public List<BrowserVersion> getBrowserVersions() {
+    return ImmutableList.copyOf(caches.keySet());
+  }
+
+  /**
+   * Takes a driver out of the pool, waiting for one to be released if they are all in use. It must
+   * be given back with {@link #release(HtmlUnitDriver)} rather than quit.
+   *
+   * @param version The browser the driver emulates
+   * @return A driver on a blank page.
+   * @throws InterruptedException If interrupted while waiting for a driver.
+   */
+  public HtmlUnitDriver take(BrowserVersion version) throws InterruptedException {
+    BlockingQueue<HtmlUnitDriver> drivers = idleDrivers.get(version);
+    if (drivers == null) {
+      throw new IllegalArgumentException("No driver emulates " + version);
+    }
+    checkNotQuit();
+    return drivers.take();
+  }
+
+  /**
+   * Gives back a driver taken from this pool, after bringing it back to a blank page. A driver
+   * which can't be reset is replaced by a new one.
+   *
+   * @param driver The driver to give back
+   */
+  public void release(HtmlUnitDriver driver) {
+    BrowserVersion version = versions.get(driver);
+    if (version == null) {
+      throw new IllegalArgumentException("The driver doesn't belong to this pool");
+    }
+    if (quit) {
+      versions.remove(driver);
+      driver.quit();
+      return;
+    }
+    try {
+      reset(driver);
+    } catch (RuntimeException e) {
+      log.log(Level.WARNING, "Replacing a driver which could not be reset", e);
+      versions.remove(driver);
+      quitQuietly(driver);
+      driver = newDriver(version);
+    }
+    idleDrivers.get(version).add(driver);
+  }
+
+  /**
+   * Runs the check once in each browser version, in parallel.
+   *
+   * @param check The check to run
+   * @return The result of the check for each browser version, in the order they were given.
+   * @throws WebDriverException If the check failed in one of the browsers, once all have finished.
+   * @throws InterruptedException If interrupted while waiting for the results.
+   */
+  public <T> Map<BrowserVersion, T> fanOut(Function<? super WebDriver, T> check)
+      throws InterruptedException {
+    Map<BrowserVersion, Future<T>> futures = Maps.newLinkedHashMap();
+    for (BrowserVersion version : caches.keySet()) {
+      futures.put(version, submit(version, check));
+    }
+
+    Map<BrowserVersion, T> results = Maps.newLinkedHashMap();
+    for (Map.Entry<BrowserVersion, Future<T>> entry : futures.entrySet()) {
+      results.put(entry.getKey(), getResult(entry.getValue(), futures.values()));
+    }
+    return results;
+  }
+
+  /**
+   * Runs each of the checks once in the given browser version, as many at a time as there are
+   * drivers for that version.
+   *
+   * @param version The browser to run the checks in
+   * @param checks  The checks to run
+   * @return The result of each check, in the order of the checks.
+   * @throws WebDriverException If one of the checks failed, once all have finished.
+   * @throws InterruptedException If interrupted while waiting for the results.
+   */
+  public <T> List<T> invokeAll(BrowserVersion version,
+      List<? extends Function<? super WebDriver, T>> checks) throws InterruptedException {
+    List<Future<T>> futures = Lists.newArrayListWithCapacity(checks.size());
+    for (Function<? super WebDriver, T> check : checks) {
+      futures.add(submit(version, check));
+    }
+
+    List<T> results = Lists.newArrayListWithCapacity(checks.size());
+    for (Future<T> future : futures) {
+      results.add(getResult(future, futures));
+    }
+    return results;
+  }
+
+  /**
+   * Quits all the drivers of the pool. The drivers taken out are quit as they are released.
+   */
+  public void quit() {
+    quit = true;
+    executor.shutdownNow();
+    for (BlockingQueue<HtmlUnitDriver> drivers : idleDrivers.values()) {
+      HtmlUnitDriver driver;
+      while ((driver = drivers.poll()) != null) {
+        versions.remove(driver);
+        quitQuietly(driver);
+      }
+    }
+    for (Cache cache : caches.values()) {
+      cache.clear();
+    }
+  }
+
+  private <T> Future<T> submit(final BrowserVersion version,
+      final Function<? super WebDriver, T> check) {
+    checkNotQuit();
+    if (!caches.containsKey(version)) {
+      throw new IllegalArgumentException("No driver emulates " + version);
+    }
+    return executor.submit(new Callable<T>() {
+      public T call() throws Exception {
+        HtmlUnitDriver driver = take(version);
+        try {
+          return check.apply(driver);
+        } finally {
+          release(driver);
+        }
+      }
+    });
+  }
+
+  private <T> T getResult(Future<T> future, Iterable<? extends Future<?>> all)
+      throws InterruptedException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      for (Future<?> other : all) {
+        other.cancel(true);
+      }
+      throw e;
+    } catch (ExecutionException e) {
+      // the other checks are left to finish, their drivers must come back to the pool.
+      for (Future<?> other : all) {
+        try {
+          other.get();
+        } catch (ExecutionException ignored) {
+          // Only the first failure is reported
+        }
+      }
+      Throwables.propagateIfPossible(e.getCause());
+      throw new WebDriverException(e.getCause());
+    }
+  }
+
+  private HtmlUnitDriver newDriver(BrowserVersion version) {
+    HtmlUnitDriver driver = new HtmlUnitDriver(version, caches.get(version));
+    driver.setJavascriptEnabled(enableJavascript);
+    versions.put(driver, version);
+    return driver;
+  }
+
+  private void reset(HtmlUnitDriver driver) {
+    String kept = driver.getWindowHandle();
+    for (String handle : driver.getWindowHandles()) {
+      if (!handle.equals(kept)) {
+        driver.switchTo().window(handle);
+        driver.close();
+      }
+    }
+    driver.switchTo().window(kept);
+    driver.manage().deleteAllCookies();
+    driver.manage().timeouts().implicitlyWait(0, TimeUnit.MILLISECONDS);
+    driver.manage().timeouts().setScriptTimeout(0, TimeUnit.MILLISECONDS);
+    driver.get("about:blank");
+  }
+
+  private void quitQuietly(HtmlUnitDriver driver) {
+    try {
+      driver.quit();
+    } catch (RuntimeException e) {
+      log.log(Level.FINE, "Failed to quit a driver", e);
+    }
+  }
+
+  private void checkNotQuit() {
+    if (quit) {
+      throw new IllegalStateException("The pool has been quit");
+    }
+  }
+}
@@ -34,6 +34,7 @@ import org.openqa.selenium.interactions.internal.Coordinates;
 import org.openqa.selenium.internal.FindsByCssSelector;
 import org.openqa.selenium.internal.FindsById;
 import org.openqa.selenium.internal.FindsByLinkText;
+import org.openqa.selenium.internal.FindsByName;
 import org.openqa.selenium.internal.FindsByTagName;
 import org.openqa.selenium.internal.FindsByXPath;
 import org.openqa.selenium.internal.Locatable;
@@ -43,6 +44,7 @@ import org.openqa.selenium.internal.WrapsElement;
 import com.gargoylesoftware.htmlunit.Page;
 import com.gargoylesoftware.htmlunit.ScriptResult;
 import com.gargoylesoftware.htmlunit.SgmlPage;
+import com.gargoylesoftware.htmlunit.html.DomElement;
 import com.gargoylesoftware.htmlunit.html.DomNode;
 import com.gargoylesoftware.htmlunit.html.DomText;
 import com.gargoylesoftware.htmlunit.html.HtmlButton;
@@ -74,7 +76,7 @@ import java.util.concurrent.Callable;
 
 
 public class HtmlUnitWebElement implements WrapsDriver,
-    FindsById, FindsByLinkText, FindsByXPath, FindsByTagName,
+    FindsById, FindsByLinkText, FindsByXPath, FindsByTagName, FindsByName,
     FindsByCssSelector, Locatable, WebElement {
 
   protected final HtmlUnitDriver parent;
@@ -634,13 +636,55 @@ public class HtmlUnitWebElement implements WrapsDriver,
   public WebElement findElementById(String id) {
     assertElementNotStale();
 
-    return findElementByXPath(".//*[@id = '" + id + "']");
+    List<WebElement> elements = findElementsById(id);
+    if (elements.isEmpty()) {
+      throw new NoSuchElementException("Unable to find an element with id " + id);
+    }
+    return elements.get(0);
   }
 
   public List<WebElement> findElementsById(String id) {
     assertElementNotStale();
 
-    return findElementsByXPath(".//*[@id = '" + id + "']");
+    if (!(element.getPage() instanceof HtmlPage)) {
+      return findElementsByXPath(".//*[@id = '" + id + "']");
+    }
+    return findDescendants(HtmlUnitDriver.getElementsById((HtmlPage) element.getPage(), id));
+  }
+
+  public WebElement findElementByName(String name) {
+    assertElementNotStale();
+
+    List<WebElement> elements = findElementsByName(name);
+    if (elements.isEmpty()) {
+      throw new NoSuchElementException("Unable to find an element with name " + name);
+    }
+    return elements.get(0);
+  }
+
+  public List<WebElement> findElementsByName(String name) {
+    assertElementNotStale();
+
+    if (!(element.getPage() instanceof HtmlPage)) {
+      return findElementsByXPath(".//*[@name = '" + name + "']");
+    }
+    List<DomElement> named = HtmlUnitDriver.inDocumentOrder(
+        new ArrayList<DomElement>(((HtmlPage) element.getPage()).getElementsByName(name)));
+    return findDescendants(named);
+  }
+
+  /**
+   * Keeps the elements, found through the indexes of the page, which are below this one.
+   */
+  private List<WebElement> findDescendants(List<? extends DomElement> candidates) {
+    List<WebElement> toReturn = new ArrayList<WebElement>();
+    for (DomElement candidate : candidates) {
+      if (candidate instanceof HtmlElement && candidate != element
+          && element.isAncestorOf(candidate)) {
+        toReturn.add(getParent().newHtmlUnitWebElement((HtmlElement) candidate));
+      }
+    }
+    return toReturn;
   }
 
   public List<WebElement> findElementsByCssSelector(String using) {
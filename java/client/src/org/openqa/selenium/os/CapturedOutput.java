@@ -0,0 +1,103 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.os;
+
+import java.io.OutputStream;
+
+/**
+ * Keeps the last bytes written to it, up to a maximum size. The buffer only grows as far as it has
+ * to, so that a process writing little doesn't cost the maximum.
+ */
+class CapturedOutput extends OutputStream {
+
+  private static final int INITIAL_SIZE = 4096;
+
+  private final int maxSize;
+  private byte[] buffer;
+  // where the next byte goes, and whether the buffer has wrapped around.
+  private int end = 0;
+  private boolean wrapped = false;
+
+  CapturedOutput(int maxSize) {
+    if (maxSize <= 0) {
+      throw new IllegalArgumentException("The maximum size must be positive: " + maxSize);
+    }
+    this.maxSize = maxSize;
+    this.buffer = new byte[Math.min(INITIAL_SIZE, maxSize)];
+  }
+
+  @Override
+  public synchronized void write(int b) {
+    ensureRoom(1);
+    if (end == buffer.length) {
+      end = 0;
+      wrapped = true;
+    }
+    buffer[end++] = (byte) b;
+  }
+
+  @Override
+  public synchronized void write(byte[] b, int off, int len) {
+    if (len >= maxSize) {
+      // only the end of it is kept anyway.
+      off += len - maxSize;
+      len = maxSize;
+    }
+    ensureRoom(len);
+    while (len > 0) {
+      if (end == buffer.length) {
+        end = 0;
+        wrapped = true;
+      }
+      int chunk = Math.min(len, buffer.length - end);
+      System.arraycopy(b, off, buffer, end, chunk);
+      end += chunk;
+      off += chunk;
+      len -= chunk;
+    }
+  }
+
+  synchronized byte[] toByteArray() {
+    if (!wrapped) {
+      byte[] res = new byte[end];
+      System.arraycopy(buffer, 0, res, 0, end);
+      return res;
+    }
+    byte[] res = new byte[buffer.length];
+    System.arraycopy(buffer, end, res, 0, buffer.length - end);
+    System.arraycopy(buffer, 0, res, buffer.length - end, end);
+    return res;
+  }
+
+  @Override
+  public String toString() {
+    return new String(toByteArray());
+  }
+
+  private void ensureRoom(int len) {
+    if (wrapped || end + len <= buffer.length || buffer.length == maxSize) {
+      return;
+    }
+    int size = buffer.length;
+    while (size < end + len && size < maxSize) {
+      size = (int) Math.min((long) size * 2, maxSize);
+    }
+    byte[] grown = new byte[size];
+    System.arraycopy(buffer, 0, grown, 0, end);
+    buffer = grown;
+  }
+}
@@ -130,10 +130,36 @@ public class CommandLine {
     return process.getExitCode();
   }
 
+  /**
+   * @return the output of the command, or only the end of it if it wrote more than the maximum
+   *         output size.
+   * @see #setMaxOutputSize(int)
+   */
   public String getStdOut() {
     return process.getStdOut();
   }
 
+  /**
+   * Sets how many bytes of output are kept for {@link #getStdOut()}, the last ones, so that a
+   * verbose command running for long doesn't hold all it ever wrote. The default is one megabyte.
+   * Must be called before the command is executed.
+   *
+   * @param maxOutputSize the maximum number of bytes kept.
+   */
+  public void setMaxOutputSize(int maxOutputSize) {
+    process.setMaxOutputSize(maxOutputSize);
+  }
+
+  /**
+   * Adds a listener told about each line of output of the command, as soon as it is written. Must
+   * be called before the command is executed.
+   *
+   * @param listener the listener to add.
+   */
+  public void addOutputListener(OutputListener listener) {
+    process.addOutputListener(listener);
+  }
+
   /**
    * Destroy the current command.
    *
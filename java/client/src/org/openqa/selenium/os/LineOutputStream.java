@@ -0,0 +1,73 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.os;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Splits the output of a process in lines, and hands them to the {@link OutputListener}s.
+ */
+class LineOutputStream extends OutputStream {
+
+  // a process never writing a line break mustn't make the line grow forever.
+  private static final int MAX_LINE_LENGTH = 8192;
+
+  private final List<OutputListener> listeners;
+  private final boolean isStdErr;
+  private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+  LineOutputStream(List<OutputListener> listeners, boolean isStdErr) {
+    this.listeners = listeners;
+    this.isStdErr = isStdErr;
+  }
+
+  @Override
+  public synchronized void write(int b) {
+    if (b == '\n') {
+      endLine();
+      return;
+    }
+    line.write(b);
+    if (line.size() >= MAX_LINE_LENGTH) {
+      endLine();
+    }
+  }
+
+  /**
+   * Hands the last line to the listeners, if it didn't end with a line break.
+   */
+  synchronized void finish() {
+    if (line.size() > 0) {
+      endLine();
+    }
+  }
+
+  private void endLine() {
+    byte[] bytes = line.toByteArray();
+    int length = bytes.length;
+    if (length > 0 && bytes[length - 1] == '\r') {
+      length--;
+    }
+    String text = new String(bytes, 0, length);
+    line.reset();
+    for (OutputListener listener : listeners) {
+      listener.onLine(text, isStdErr);
+    }
+  }
+}
@@ -28,6 +28,10 @@ interface OsProcess {
 
   void copyOutputTo(OutputStream out);
 
+  void addOutputListener(OutputListener listener);
+
+  void setMaxOutputSize(int maxOutputSize);
+
   void setInput(String allInput);
 
   void setWorkingDirectory(File workingDirectory);
@@ -0,0 +1,30 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.os;
+
+/**
+ * Told about the output of a {@link CommandLine}, line by line, while it runs.
+ */
+public interface OutputListener {
+
+  /**
+   * @param line     a line of output, without its line terminator. Very long lines are split.
+   * @param isStdErr whether the line was written to the standard error rather than the standard
+   *                 output.
+   */
+  void onLine(String line, boolean isStdErr);
+}
@@ -0,0 +1,117 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.os;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes to a file which is rotated once it reaches a maximum size: the file is renamed with a
+ * ".1" suffix, the previous ".1" becomes ".2" and so on, and the oldest one is deleted. The files
+ * never hold more than {@code maxFileSize * (backups + 1)} bytes in all. To be used with
+ * {@link CommandLine#copyOutputTo(OutputStream)}, for processes running long enough to write
+ * more than one would like to keep.
+ */
+public class RotatingFileOutputStream extends OutputStream {
+
+  private final File file;
+  private final long maxFileSize;
+  private final int backups;
+  private OutputStream out;
+  private long size;
+
+  /**
+   * @param file        the file to write to. It is truncated if it exists.
+   * @param maxFileSize the size at which the file is rotated.
+   * @param backups     how many rotated files to keep.
+   */
+  public RotatingFileOutputStream(File file, long maxFileSize, int backups) throws IOException {
+    if (maxFileSize <= 0) {
+      throw new IllegalArgumentException("The maximum file size must be positive: " + maxFileSize);
+    }
+    if (backups < 0) {
+      throw new IllegalArgumentException("The number of backups can't be negative: " + backups);
+    }
+    this.file = file;
+    this.maxFileSize = maxFileSize;
+    this.backups = backups;
+    this.out = new FileOutputStream(file);
+  }
+
+  @Override
+  public synchronized void write(int b) throws IOException {
+    if (size >= maxFileSize) {
+      rotate();
+    }
+    out.write(b);
+    size++;
+  }
+
+  @Override
+  public synchronized void write(byte[] b, int off, int len) throws IOException {
+    while (len > 0) {
+      if (size >= maxFileSize) {
+        rotate();
+      }
+      int chunk = (int) Math.min(len, maxFileSize - size);
+      out.write(b, off, chunk);
+      size += chunk;
+      off += chunk;
+      len -= chunk;
+    }
+  }
+
+  @Override
+  public synchronized void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    out.close();
+  }
+
+  private void rotate() throws IOException {
+    out.close();
+    if (backups == 0) {
+      out = new FileOutputStream(file);
+      size = 0;
+      return;
+    }
+    File oldest = backup(backups);
+    if (oldest.exists() && !oldest.delete()) {
+      throw new IOException("Unable to delete " + oldest);
+    }
+    for (int i = backups - 1; i >= 1; i--) {
+      File backup = backup(i);
+      if (backup.exists() && !backup.renameTo(backup(i + 1))) {
+        throw new IOException("Unable to rename " + backup);
+      }
+    }
+    if (!file.renameTo(backup(1))) {
+      throw new IOException("Unable to rename " + file);
+    }
+    out = new FileOutputStream(file);
+    size = 0;
+  }
+
+  private File backup(int index) {
+    return new File(file.getPath() + "." + index);
+  }
+}
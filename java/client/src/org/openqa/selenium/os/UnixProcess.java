@@ -26,28 +26,48 @@ import com.google.common.collect.Maps;
 
 import org.apache.commons.exec.DefaultExecuteResultHandler;
 import org.apache.commons.exec.DefaultExecutor;
+import org.apache.commons.exec.ExecuteException;
 import org.apache.commons.exec.ExecuteWatchdog;
 import org.apache.commons.exec.Executor;
 import org.apache.commons.exec.PumpStreamHandler;
 import org.openqa.selenium.WebDriverException;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 class UnixProcess implements OsProcess {
   private static final Logger log = Logger.getLogger(UnixProcess.class.getName());
 
-  private final ByteArrayOutputStream inputOut = new ByteArrayOutputStream();
+  static final int DEFAULT_MAX_OUTPUT_SIZE = 1024 * 1024;
+
+  private volatile CapturedOutput inputOut = new CapturedOutput(DEFAULT_MAX_OUTPUT_SIZE);
   private volatile String allInput;
-  private final DefaultExecuteResultHandler handler = new DefaultExecuteResultHandler();
+  private final List<OutputListener> listeners = new CopyOnWriteArrayList<OutputListener>();
+  private volatile LineOutputStream stdOutLines;
+  private volatile LineOutputStream stdErrLines;
+  private final DefaultExecuteResultHandler handler = new DefaultExecuteResultHandler() {
+    // the output has been pumped entirely by the time the result is known.
+    @Override
+    public void onProcessComplete(int exitValue) {
+      finishLines();
+      super.onProcessComplete(exitValue);
+    }
+
+    @Override
+    public void onProcessFailed(ExecuteException e) {
+      finishLines();
+      super.onProcessFailed(e);
+    }
+  };
   private final Executor executor = new DefaultExecutor();
 
   private volatile OutputStream drainTo;
@@ -92,20 +112,31 @@ class UnixProcess implements OsProcess {
 
   public void executeAsync() {
     try {
-      final OutputStream outputStream = getOutputStream();
+      if (!listeners.isEmpty()) {
+        stdOutLines = new LineOutputStream(listeners, false);
+        stdErrLines = new LineOutputStream(listeners, true);
+      }
       executeWatchdog.reset();
       executor.setWatchdog(executeWatchdog);
       executor.setStreamHandler(new PumpStreamHandler(
-          outputStream, outputStream, getInputStream()));
+          getOutputStream(stdOutLines), getOutputStream(stdErrLines), getInputStream()));
       executor.execute(cl, getMergedEnv(), handler);
     } catch (IOException e) {
       throw new WebDriverException(e);
     }
   }
 
-  private OutputStream getOutputStream() {
-    return drainTo == null ? inputOut
+  private OutputStream getOutputStream(LineOutputStream lines) {
+    OutputStream outputStream = drainTo == null ? inputOut
         : new MultioutputStream(inputOut, drainTo);
+    return lines == null ? outputStream : new MultioutputStream(outputStream, lines);
+  }
+
+  private void finishLines() {
+    if (stdOutLines != null) {
+      stdOutLines.finish();
+      stdErrLines.finish();
+    }
   }
 
   public int destroy() {
@@ -151,7 +182,15 @@ class UnixProcess implements OsProcess {
       throw new IllegalStateException(
           "Cannot get output before executing command line: " + cl);
     }
-    return new String(inputOut.toByteArray());
+    return inputOut.toString();
+  }
+
+  public void setMaxOutputSize(int maxOutputSize) {
+    inputOut = new CapturedOutput(maxOutputSize);
+  }
+
+  public void addOutputListener(OutputListener listener) {
+    listeners.add(listener);
   }
 
   public void setInput(String allInput) {
@@ -241,6 +280,14 @@ class UnixProcess implements OsProcess {
       }
     }
 
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      mandatory.write(b, off, len);
+      if (optional != null) {
+        optional.write(b, off, len);
+      }
+    }
+
     @Override
     public void flush() throws IOException {
       mandatory.flush();
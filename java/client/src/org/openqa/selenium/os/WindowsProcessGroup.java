@@ -77,6 +77,14 @@ public class WindowsProcessGroup implements OsProcess {
     throw new UnsupportedOperationException("copyOutputTo");
   }
 
+  public void addOutputListener(OutputListener listener) {
+    throw new UnsupportedOperationException("addOutputListener");
+  }
+
+  public void setMaxOutputSize(int maxOutputSize) {
+    throw new UnsupportedOperationException("setMaxOutputSize");
+  }
+
   public void setInput(String allInput) {
     throw new UnsupportedOperationException("setInput");
   }
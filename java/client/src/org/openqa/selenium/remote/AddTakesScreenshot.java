@@ -17,22 +17,41 @@ limitations under the License.
 package org.openqa.selenium.remote;
 
 import org.openqa.selenium.OutputType;
-import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriverException;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Method;
 
 // Deliberately package level visibility
 class AddTakesScreenshot implements AugmenterProvider {
 
   public Class<?> getDescribedInterface() {
-    return TakesScreenshot.class;
+    return TakesScreenshotToStream.class;
   }
 
   public InterfaceImplementation getImplementation(Object ignored) {
-    // The only method on TakesScreenshot is the one to take a screenshot
     return new InterfaceImplementation() {
       public Object invoke(ExecuteMethod executeMethod, Object self, Method method, Object... args) {
+        if ("writeScreenshotTo".equals(method.getName())) {
+          writeScreenshot(executeMethod, (OutputStream) args[0]);
+          return null;
+        }
+
         OutputType<?> outputType = ((OutputType<?>) args[0]);
+        // the bytes and the file don't need the base64 text, they can be decoded as they come.
+        if (outputType == OutputType.FILE) {
+          return saveScreenshot(executeMethod);
+        } else if (outputType == OutputType.BYTES) {
+          ByteArrayOutputStream png = new ByteArrayOutputStream();
+          writeScreenshot(executeMethod, png);
+          return png.toByteArray();
+        }
+
         Object result = executeMethod.execute(DriverCommand.SCREENSHOT, null);
         if (result instanceof String) {
           String base64EncodedPng = (String) result;
@@ -47,4 +66,50 @@ class AddTakesScreenshot implements AugmenterProvider {
       }
     };
   }
+
+  private void writeScreenshot(ExecuteMethod executeMethod, OutputStream out) {
+    if (executeMethod instanceof RemoteExecuteMethod) {
+      ((RemoteExecuteMethod) executeMethod).execute(DriverCommand.SCREENSHOT, null, out);
+      return;
+    }
+
+    Object result = executeMethod.execute(DriverCommand.SCREENSHOT, null);
+    if (!(result instanceof String) && !(result instanceof byte[])) {
+      throw new RuntimeException("Unexpected result for " + DriverCommand.SCREENSHOT +
+          " command: " + (result == null ? "null" : result.getClass().getName() + " instance"));
+    }
+    String base64EncodedPng =
+        result instanceof String ? (String) result : new String((byte[]) result);
+    try {
+      out.write(OutputType.BYTES.convertFromBase64Png(base64EncodedPng));
+    } catch (IOException e) {
+      throw new WebDriverException(e);
+    }
+  }
+
+  // same as OutputType.FILE, without the png ever being in memory.
+  private File saveScreenshot(ExecuteMethod executeMethod) {
+    File tmpFile = null;
+    OutputStream stream = null;
+    try {
+      tmpFile = File.createTempFile("screenshot", ".png");
+      tmpFile.deleteOnExit();
+      stream = new BufferedOutputStream(new FileOutputStream(tmpFile));
+      writeScreenshot(executeMethod, stream);
+      stream.close();
+      stream = null;
+      return tmpFile;
+    } catch (IOException e) {
+      throw new WebDriverException(e);
+    } finally {
+      if (stream != null) {
+        try {
+          stream.close();
+        } catch (IOException e) {
+          // Nothing sane to do
+        }
+        tmpFile.delete();
+      }
+    }
+  }
 }
@@ -26,9 +26,14 @@ import static org.openqa.selenium.remote.CapabilityType.SUPPORTS_WEB_STORAGE;
 import static org.openqa.selenium.remote.CapabilityType.TAKES_SCREENSHOT;
 
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
@@ -39,6 +44,7 @@ import org.openqa.selenium.remote.html5.AddLocationContext;
 import org.openqa.selenium.remote.html5.AddWebStorage;
 
 import net.sf.cglib.proxy.Enhancer;
+import net.sf.cglib.proxy.Factory;
 import net.sf.cglib.proxy.MethodInterceptor;
 import net.sf.cglib.proxy.MethodProxy;
 
@@ -46,10 +52,16 @@ import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Enhance the interfaces implemented by an instance of the
@@ -59,6 +71,32 @@ import java.util.Set;
  * Note: this class is still experimental. Use at your own risk.
  */
 public class Augmenter {
+  private static final int MAX_ENHANCED_CLASSES = 64;
+  private static final Comparator<Class<?>> BY_NAME = new Comparator<Class<?>>() {
+    public int compare(Class<?> a, Class<?> b) {
+      return a.getName().compareTo(b.getName());
+    }
+  };
+
+  // the generated classes dispatch to a MethodInterceptor, so the prototypes need one too.
+  private static final MethodInterceptor PASS_THROUGH = new MethodInterceptor() {
+    public Object intercept(Object self, Method method, Object[] args, MethodProxy methodProxy)
+        throws Throwable {
+      return methodProxy.invokeSuper(self, args);
+    }
+  };
+
+  /**
+   * An instance of each class generated so far, keyed by its superclass and its sorted
+   * interfaces, from which the instances augmented with the same capabilities are created. There
+   * are only a few sets of capabilities in use at any time, so this is bounded rather than weak.
+   */
+  private static final Cache<List<Class<?>>, Factory> enhancedClasses = CacheBuilder.newBuilder()
+      .maximumSize(MAX_ENHANCED_CLASSES)
+      .build();
+  private static final ConcurrentMap<Class<?>, Method[]> describedMethods =
+      new MapMaker().weakKeys().makeMap();
+
   private final Map<String, AugmenterProvider> driverAugmentors = Maps.newHashMap();
   private final Map<String, AugmenterProvider> elementAugmentors = Maps.newHashMap();
 
@@ -225,21 +263,51 @@ public class Augmenter {
         superClass = superClass.getSuperclass();
       }
 
-      Enhancer enhancer = new Enhancer();
-      enhancer.setCallback(handler);
-      enhancer.setSuperclass(superClass);
-
       Set<Class<?>> interfaces = Sets.newHashSet();
       interfaces.addAll(ImmutableList.copyOf(from.getClass().getInterfaces()));
       interfaces.addAll(handler.getInterfaces());
-      enhancer.setInterfaces(interfaces.toArray(new Class<?>[interfaces.size()]));
 
-      return (X) enhancer.create();
+      return (X) getEnhancedClass(superClass, interfaces).newInstance(handler);
     }
 
     return from;
   }
 
+  private static Factory getEnhancedClass(final Class<?> superClass, Set<Class<?>> interfaces) {
+    final Class<?>[] sortedInterfaces = interfaces.toArray(new Class<?>[interfaces.size()]);
+    Arrays.sort(sortedInterfaces, BY_NAME);
+    List<Class<?>> key = Lists.newArrayList();
+    key.add(superClass);
+    key.addAll(Arrays.asList(sortedInterfaces));
+
+    try {
+      return enhancedClasses.get(key, new Callable<Factory>() {
+        public Factory call() {
+          Enhancer enhancer = new Enhancer();
+          enhancer.setCallback(PASS_THROUGH);
+          enhancer.setSuperclass(superClass);
+          enhancer.setInterfaces(sortedInterfaces);
+          return (Factory) enhancer.create();
+        }
+      });
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } catch (UncheckedExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  private static Method[] getDescribedMethods(Class<?> describedInterface) {
+    Method[] methods = describedMethods.get(describedInterface);
+    if (methods == null) {
+      // the methods the interface inherits are described as well.
+      methods = describedInterface.isInterface()
+                ? describedInterface.getMethods() : describedInterface.getDeclaredMethods();
+      describedMethods.putIfAbsent(describedInterface, methods);
+    }
+    return methods;
+  }
+
   private class CompoundHandler implements MethodInterceptor {
 
     private Map<Method, InterfaceImplementation> handlers =
@@ -258,7 +326,7 @@ public class Augmenter {
       if (fromInterface.isInterface()) {
         interfaces.add(fromInterface);
       }
-      for (Method method : fromInterface.getDeclaredMethods()) {
+      for (Method method : getDescribedMethods(fromInterface)) {
         handlers.put(method, handledBy);
       }
     }
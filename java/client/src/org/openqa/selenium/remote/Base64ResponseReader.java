@@ -0,0 +1,211 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.openqa.selenium.remote;
+
+import org.json.JSONObject;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.internal.Base64DecodingOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+
+/**
+ * Reads a JSON response whose value is a base64 string, such as a screenshot. The value is decoded
+ * into a stream while it's read, and never held in memory: only the other members of the response
+ * are kept, and converted as usual once the whole response has been read. A value which isn't a
+ * string, like the one of a failed command, is kept as well.
+ */
+class Base64ResponseReader {
+
+  private static final String VALUE = "value";
+
+  private final char[] buffer = new char[8192];
+  private int position = 0;
+  private int limit = 0;
+  private Reader in;
+
+  /**
+   * @param in  the JSON response.
+   * @param out where the decoded value is written. It isn't closed.
+   * @return the response, with a null value if it was written to the stream, or null if there
+   *         was no response at all.
+   */
+  Response read(Reader in, OutputStream out) throws IOException {
+    this.in = in;
+    int c = nextNonWhitespace();
+    if (c == -1) {
+      return null;
+    }
+    expect('{', c);
+
+    StringBuilder members = new StringBuilder("{");
+    c = nextNonWhitespace();
+    while (c != '}') {
+      expect('"', c);
+      String name = readString();
+      expect(':', nextNonWhitespace());
+      c = nextNonWhitespace();
+      if (VALUE.equals(name) && c == '"') {
+        Base64DecodingOutputStream decoder = new Base64DecodingOutputStream(out);
+        copyString(decoder);
+        decoder.finish();
+      } else {
+        if (members.length() > 1) {
+          members.append(',');
+        }
+        members.append(JSONObject.quote(name)).append(':');
+        copyValue(c, members);
+      }
+      c = nextNonWhitespace();
+      if (c == ',') {
+        c = nextNonWhitespace();
+      } else if (c != '}') {
+        throw unexpected(c);
+      }
+    }
+    members.append('}');
+
+    return new JsonToBeanConverter().convert(Response.class, members.toString());
+  }
+
+  private String readString() throws IOException {
+    StringBuilder res = new StringBuilder();
+    for (int c = nextStringChar(); c != -1; c = nextStringChar()) {
+      res.append((char) c);
+    }
+    return res.toString();
+  }
+
+  private void copyString(OutputStream out) throws IOException {
+    for (int c = nextStringChar(); c != -1; c = nextStringChar()) {
+      // nothing above 127 is part of the base64 alphabet.
+      if (c < 128) {
+        out.write(c);
+      }
+    }
+  }
+
+  /**
+   * @return the next char of the string being read, unescaped, or -1 at the closing quote.
+   */
+  private int nextStringChar() throws IOException {
+    int c = next();
+    switch (c) {
+      case -1:
+        throw new WebDriverException("Unterminated string in the response");
+      case '"':
+        return -1;
+      case '\\':
+        c = next();
+        switch (c) {
+          case 'b':
+            return '\b';
+          case 't':
+            return '\t';
+          case 'n':
+            return '\n';
+          case 'f':
+            return '\f';
+          case 'r':
+            return '\r';
+          case 'u':
+            char[] hex = new char[4];
+            for (int i = 0; i < hex.length; i++) {
+              hex[i] = (char) next();
+            }
+            try {
+              return Integer.parseInt(new String(hex), 16);
+            } catch (NumberFormatException e) {
+              throw new WebDriverException("Illegal escape in the response: \\u" + new String(hex));
+            }
+          case -1:
+            throw new WebDriverException("Unterminated string in the response");
+          default:
+            return c;
+        }
+      default:
+        return c;
+    }
+  }
+
+  // copies a value as it is, up to the end of the member.
+  private void copyValue(int c, StringBuilder to) throws IOException {
+    int depth = 0;
+    boolean inString = false;
+    while (true) {
+      if (c == -1) {
+        throw new WebDriverException("Unterminated value in the response");
+      }
+      if (inString) {
+        if (c == '\\') {
+          to.append((char) c);
+          c = next();
+        } else if (c == '"') {
+          inString = false;
+        }
+      } else if (c == '"') {
+        inString = true;
+      } else if (c == '{' || c == '[') {
+        depth++;
+      } else if (c == '}' || c == ']' || c == ',') {
+        if (depth == 0) {
+          position--;
+          return;
+        }
+        if (c != ',') {
+          depth--;
+        }
+      }
+      to.append((char) c);
+      c = next();
+    }
+  }
+
+  private void expect(char expected, int c) {
+    if (c != expected) {
+      throw unexpected(c);
+    }
+  }
+
+  private WebDriverException unexpected(int c) {
+    if (c == -1) {
+      return new WebDriverException("Unexpected end of the response");
+    }
+    return new WebDriverException("Unexpected character in the response: " + (char) c);
+  }
+
+  private int nextNonWhitespace() throws IOException {
+    int c = next();
+    while (c != -1 && Character.isWhitespace(c)) {
+      c = next();
+    }
+    return c;
+  }
+
+  private int next() throws IOException {
+    if (position == limit) {
+      limit = in.read(buffer);
+      position = 0;
+      if (limit <= 0) {
+        limit = 0;
+        return -1;
+      }
+    }
+    return buffer[position++];
+  }
+}
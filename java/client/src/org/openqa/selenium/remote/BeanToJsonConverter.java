@@ -16,6 +16,11 @@ limitations under the License.
 
 package org.openqa.selenium.remote;
 
+import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -47,6 +52,17 @@ public class BeanToJsonConverter {
 
   private static final int MAX_DEPTH = 5;
 
+  // looking up a missing method throws, which is slow: remember which classes don't have one.
+  // A method refers to its class, so the values are soft for the class to be unloaded.
+  private static final LoadingCache<Class<?>, Optional<Method>> toJsonMethods =
+      CacheBuilder.newBuilder().weakKeys().softValues().build(
+          new CacheLoader<Class<?>, Optional<Method>>() {
+            @Override
+            public Optional<Method> load(Class<?> clazz) {
+              return Optional.fromNullable(findToJsonMethod(clazz));
+            }
+          });
+
   /**
    * Convert an object that may or may not be a JSONArray or JSONObject into its JSON string
    * representation, handling the case where it is neither in a graceful way.
@@ -59,19 +75,88 @@ public class BeanToJsonConverter {
       return null;
     }
 
+    StringBuilder json = new StringBuilder();
+    convert(object, json);
+    return json.toString();
+  }
+
+  /**
+   * Writes the same as {@link #convert(Object)} returns, as it is converted. Large payloads, like
+   * screenshots, are not copied into intermediate JSON objects and strings.
+   *
+   * @param object which needs conversion
+   * @param out    where the JSON string representation of object is written. Nothing is written
+   *               if object is null.
+   */
+  public void convert(Object object, Appendable out) {
+    if (object == null) {
+      return;
+    }
+
     try {
-      Object converted = convertObject(object, MAX_DEPTH);
+      String text = convertToText(object);
+      if (text != null) {
+        out.append(text);
+        return;
+      }
+
+      if (!write(object, MAX_DEPTH, new JsonOutput(out))) {
+        out.append(String.valueOf(object));
+      }
+    } catch (Exception e) {
+      throw new WebDriverException("Unable to convert: " + object, e);
+    }
+  }
+
+  /**
+   * The objects that are returned as plain text rather than as JSON when they are not part of
+   * another object: strings aren't quoted, for instance.
+   *
+   * @return the text, or null if the object is converted to JSON.
+   */
+  private String convertToText(Object object) {
+    if (object instanceof Boolean
+        || object instanceof CharSequence
+        || object instanceof Number
+        || object.getClass().isEnum()
+        || object instanceof Enum) {
+      return object.toString();
+    }
+
+    if (object instanceof LoggingPreferences
+        || object instanceof SessionLogs
+        || object instanceof LogEntries
+        || object instanceof Map
+        || object instanceof JSONObject
+        || object instanceof Collection
+        || object.getClass().isArray()
+        || object instanceof SessionId
+        || object instanceof Capabilities
+        || object instanceof DoNotUseProxyPac) {
+      return null;
+    }
+
+    if (object instanceof Date) {
+      return String.valueOf(TimeUnit.MILLISECONDS.toSeconds(((Date) object).getTime()));
+    }
+
+    if (object instanceof File) {
+      return ((File) object).getAbsolutePath();
+    }
+
+    Method toJson = getToJsonMethod(object);
+    if (toJson != null) {
+      Object converted = invokeToJson(toJson, object);
       if (converted instanceof JSONObject
           || converted instanceof JSONArray
           || converted instanceof String
           || converted instanceof Number) {
         return converted.toString();
       }
-
       return String.valueOf(object);
-    } catch (Exception e) {
-      throw new WebDriverException("Unable to convert: " + object, e);
     }
+
+    return null;
   }
 
   /**
@@ -122,113 +207,182 @@ public class BeanToJsonConverter {
   }
 
   @SuppressWarnings("unchecked")
-  private Object convertObject(Object toConvert, int maxDepth) throws Exception {
+  private boolean write(Object toConvert, int maxDepth, JsonOutput out) throws Exception {
     if (toConvert == null) {
-      return JSONObject.NULL;
+      out.nullValue();
+      return true;
+    }
+
+    if (toConvert instanceof Boolean) {
+      out.value(((Boolean) toConvert).booleanValue());
+      return true;
     }
 
-    if (toConvert instanceof Boolean ||
-        toConvert instanceof CharSequence ||
-        toConvert instanceof Number) {
-      return toConvert;
+    if (toConvert instanceof CharSequence) {
+      out.value((CharSequence) toConvert);
+      return true;
+    }
+
+    if (toConvert instanceof Number) {
+      out.value((Number) toConvert);
+      return true;
     }
 
     if (toConvert.getClass().isEnum() || toConvert instanceof Enum) {
-      return toConvert.toString();
+      out.value(toConvert.toString());
+      return true;
     }
 
     if (toConvert instanceof LoggingPreferences) {
       LoggingPreferences prefs = (LoggingPreferences) toConvert;
-      JSONObject converted = new JSONObject();
+      out.beginObject();
       for (String logType : prefs.getEnabledLogTypes()) {
-        converted.put(logType, prefs.getLevel(logType));
+        out.name(logType).value(String.valueOf(prefs.getLevel(logType)));
       }
-      return converted;
+      out.endObject();
+      return true;
     }
-    
+
     if (toConvert instanceof SessionLogs) {
-      return convertObject(((SessionLogs)toConvert).getAll(), maxDepth - 1);
+      return write(((SessionLogs) toConvert).getAll(), maxDepth - 1, out);
     }
 
     if (toConvert instanceof LogEntries) {
-      return convertObject(((LogEntries)toConvert).getAll(), maxDepth - 1);
+      return write(((LogEntries) toConvert).getAll(), maxDepth - 1, out);
     }
 
     if (toConvert instanceof Map) {
-      JSONObject converted = new JSONObject();
+      out.beginObject();
       for (Object objectEntry : ((Map) toConvert).entrySet()) {
         Map.Entry<String, Object> entry = (Map.Entry) objectEntry;
-        converted.put(entry.getKey(), convertObject(entry.getValue(), maxDepth - 1));
+        writeMember(entry.getKey(), entry.getValue(), maxDepth - 1, out);
       }
-      return converted;
+      out.endObject();
+      return true;
     }
 
     if (toConvert instanceof JSONObject) {
-      return toConvert;
+      out.rawValue(toConvert.toString());
+      return true;
     }
 
     if (toConvert instanceof Collection) {
-      JSONArray array = new JSONArray();
+      out.beginArray();
       for (Object o : (Collection) toConvert) {
-        array.put(convertObject(o, maxDepth - 1));
+        writeElement(o, maxDepth - 1, out);
       }
-      return array;
+      out.endArray();
+      return true;
     }
 
     if (toConvert.getClass().isArray()) {
-      JSONArray converted = new JSONArray();
+      out.beginArray();
       int length = Array.getLength(toConvert);
       for (int i = 0; i < length; i++) {
-        converted.put(convertObject(Array.get(toConvert, i), maxDepth - 1));
+        writeElement(Array.get(toConvert, i), maxDepth - 1, out);
       }
-      return converted;
+      out.endArray();
+      return true;
     }
 
     if (toConvert instanceof SessionId) {
-      JSONObject converted = new JSONObject();
-      converted.put("value", toConvert.toString());
-      return converted;
+      out.beginObject().name("value").value(toConvert.toString()).endObject();
+      return true;
     }
 
     if (toConvert instanceof Capabilities) {
-      return convertObject(((Capabilities) toConvert).asMap(), maxDepth - 1);
+      return write(((Capabilities) toConvert).asMap(), maxDepth - 1, out);
     }
 
     if (toConvert instanceof DoNotUseProxyPac) {
-      return convertObject(((DoNotUseProxyPac) toConvert).asMap(), maxDepth - 1);
+      return write(((DoNotUseProxyPac) toConvert).asMap(), maxDepth - 1, out);
     }
 
     if (toConvert instanceof Date) {
-      return TimeUnit.MILLISECONDS.toSeconds(((Date) toConvert).getTime());
+      out.value(TimeUnit.MILLISECONDS.toSeconds(((Date) toConvert).getTime()));
+      return true;
     }
 
     if (toConvert instanceof File) {
-      return ((File) toConvert).getAbsolutePath();
+      out.value(((File) toConvert).getAbsolutePath());
+      return true;
     }
 
     Method toJson = getToJsonMethod(toConvert);
     if (toJson != null) {
-      try {
-        return toJson.invoke(toConvert);
-      } catch (IllegalArgumentException e) {
-        throw new WebDriverException(e);
-      } catch (IllegalAccessException e) {
-        throw new WebDriverException(e);
-      } catch (InvocationTargetException e) {
-        throw new WebDriverException(e);
-      }
+      return writeJsonValue(invokeToJson(toJson, toConvert), out);
     }
 
     try {
-      return mapObject(toConvert, maxDepth - 1, toConvert instanceof Cookie);
+      return mapObject(toConvert, maxDepth - 1, toConvert instanceof Cookie, out);
     } catch (Exception e) {
       throw new WebDriverException(e);
     }
   }
 
+  // a null value removes the key from a JSONObject.
+  private void writeMember(String name, Object value, int maxDepth, JsonOutput out)
+      throws Exception {
+    out.name(name);
+    if (!write(value, maxDepth, out)) {
+      out.clearName();
+    }
+  }
+
+  // but is null in a JSONArray.
+  private void writeElement(Object value, int maxDepth, JsonOutput out) throws Exception {
+    if (!write(value, maxDepth, out)) {
+      out.nullValue();
+    }
+  }
+
+  /**
+   * Writes the value returned by a toJson method the way org.json writes the values it is given.
+   */
+  @SuppressWarnings("unchecked")
+  private boolean writeJsonValue(Object value, JsonOutput out) throws Exception {
+    if (value == null) {
+      return false;
+    }
+    if (value == JSONObject.NULL) {
+      out.nullValue();
+    } else if (value instanceof Number) {
+      out.value((Number) value);
+    } else if (value instanceof Boolean) {
+      out.value(((Boolean) value).booleanValue());
+    } else if (value instanceof JSONObject || value instanceof JSONArray) {
+      out.rawValue(value.toString());
+    } else if (value instanceof Map) {
+      out.rawValue(new JSONObject((Map) value).toString());
+    } else if (value instanceof Collection) {
+      out.rawValue(new JSONArray((Collection) value).toString());
+    } else if (value.getClass().isArray()) {
+      out.rawValue(new JSONArray(value).toString());
+    } else {
+      out.value(value.toString());
+    }
+    return true;
+  }
+
+  private Object invokeToJson(Method toJson, Object toConvert) {
+    try {
+      return toJson.invoke(toConvert);
+    } catch (IllegalArgumentException e) {
+      throw new WebDriverException(e);
+    } catch (IllegalAccessException e) {
+      throw new WebDriverException(e);
+    } catch (InvocationTargetException e) {
+      throw new WebDriverException(e);
+    }
+  }
+
   private Method getToJsonMethod(Object toConvert) {
+    return toJsonMethods.getUnchecked(toConvert.getClass()).orNull();
+  }
+
+  private static Method findToJsonMethod(Class<?> clazz) {
     try {
-      return toConvert.getClass().getMethod("toJson");
+      return clazz.getMethod("toJson");
     } catch (SecurityException e) {
       // fall through
     } catch (NoSuchMethodException e) {
@@ -238,17 +392,18 @@ public class BeanToJsonConverter {
     return null;
   }
 
-  private Object mapObject(Object toConvert, int maxDepth, boolean skipNulls) throws Exception {
+  private boolean mapObject(Object toConvert, int maxDepth, boolean skipNulls, JsonOutput out)
+      throws Exception {
     if (maxDepth == 0) {
-      return null;
+      return false;
     }
 
     // Raw object via reflection? Nope, not needed
-    JSONObject mapped = new JSONObject();
+    out.beginObject();
     for (SimplePropertyDescriptor pd : SimplePropertyDescriptor
         .getPropertyDescriptors(toConvert.getClass())) {
       if ("class".equals(pd.getName())) {
-        mapped.put("class", toConvert.getClass().getName());
+        out.name("class").value(toConvert.getClass().getName());
         continue;
       }
 
@@ -264,13 +419,13 @@ public class BeanToJsonConverter {
       readMethod.setAccessible(true);
 
       Object result = readMethod.invoke(toConvert);
-      result = convertObject(result, maxDepth - 1);
-      if (!skipNulls || result != JSONObject.NULL) {
-        mapped.put(pd.getName(), result);
+      if (!skipNulls || result != null) {
+        writeMember(pd.getName(), result, maxDepth - 1, out);
       }
     }
+    out.endObject();
 
-    return mapped;
+    return true;
   }
 
 }
@@ -0,0 +1,124 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.remote;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import org.openqa.selenium.Beta;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.internal.WrapsElement;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Commands of a {@link RemoteWebDriver} executed together, in a single round trip to the remote
+ * end, such as the texts and attributes a page object reads at once.
+ * <p/>
+ * The commands are executed in order, and the first one which fails stops the batch: its error is
+ * thrown and the commands after it aren't executed. Commands which start or end the session can't
+ * be batched.
+ * <p/>
+ * Example:
+ * <pre>
+ * List&lt;Object&gt; values = driver.newBatch()
+ *     .getText(heading)
+ *     .getAttribute(link, "href")
+ *     .add(DriverCommand.GET_TITLE)
+ *     .execute();
+ * </pre>
+ */
+@Beta
+public class CommandBatch {
+
+  private final RemoteWebDriver driver;
+  private final List<Command> commands = Lists.newArrayList();
+
+  CommandBatch(RemoteWebDriver driver) {
+    this.driver = driver;
+  }
+
+  /**
+   * @param driverCommand one of the {@link DriverCommand}s.
+   * @param parameters    the parameters of the command.
+   * @return this batch.
+   */
+  public CommandBatch add(String driverCommand, Map<String, ?> parameters) {
+    if (DriverCommand.NEW_SESSION.equals(driverCommand) || DriverCommand.QUIT.equals(driverCommand)
+        || DriverCommand.BATCH.equals(driverCommand)) {
+      throw new IllegalArgumentException("Can't be executed in a batch: " + driverCommand);
+    }
+    commands.add(new Command(driver.getSessionId(), driverCommand, parameters));
+    return this;
+  }
+
+  /**
+   * @param driverCommand one of the {@link DriverCommand}s, which takes no parameter.
+   * @return this batch.
+   */
+  public CommandBatch add(String driverCommand) {
+    return add(driverCommand, ImmutableMap.<String, Object>of());
+  }
+
+  /**
+   * Adds a command whose value is the visible text of the element.
+   */
+  public CommandBatch getText(WebElement element) {
+    return add(DriverCommand.GET_ELEMENT_TEXT, ImmutableMap.of("id", getId(element)));
+  }
+
+  /**
+   * Adds a command whose value is an attribute of the element.
+   */
+  public CommandBatch getAttribute(WebElement element, String name) {
+    return add(DriverCommand.GET_ELEMENT_ATTRIBUTE,
+               ImmutableMap.of("id", getId(element), "name", name));
+  }
+
+  /**
+   * @return the number of commands added so far.
+   */
+  public int size() {
+    return commands.size();
+  }
+
+  /**
+   * Executes the commands added so far, which are then removed from this batch.
+   *
+   * @return the value of each command, in order. Elements are returned as {@link WebElement}s.
+   */
+  public List<Object> execute() {
+    if (commands.isEmpty()) {
+      return ImmutableList.of();
+    }
+    List<Command> toExecute = ImmutableList.copyOf(commands);
+    commands.clear();
+    return driver.executeBatch(toExecute);
+  }
+
+  private String getId(WebElement element) {
+    while (element instanceof WrapsElement) {
+      element = ((WrapsElement) element).getWrappedElement();
+    }
+    if (!(element instanceof RemoteWebElement)) {
+      throw new IllegalArgumentException("Not an element of a remote driver: " + element);
+    }
+    return ((RemoteWebElement) element).getId();
+  }
+}
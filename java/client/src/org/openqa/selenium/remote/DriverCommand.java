@@ -68,6 +68,9 @@ public interface DriverCommand {
   String EXECUTE_SCRIPT = "executeScript";
   String EXECUTE_ASYNC_SCRIPT = "executeAsyncScript";
 
+  // Runs several commands of the session in one request.
+  String BATCH = "batch";
+
   String SET_BROWSER_VISIBLE = "setBrowserVisible";
   String IS_BROWSER_VISIBLE = "isBrowserVisible";
 
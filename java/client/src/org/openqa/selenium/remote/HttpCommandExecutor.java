@@ -16,8 +16,16 @@ limitations under the License.
 
 package org.openqa.selenium.remote;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
@@ -33,8 +41,8 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.params.HttpClientParams;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.CoreConnectionPNames;
@@ -52,15 +60,31 @@ import org.openqa.selenium.logging.profiler.HttpProfilerLogEntry;
 import org.openqa.selenium.net.Urls;
 import org.openqa.selenium.remote.internal.HttpClientFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.BindException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import static org.apache.http.protocol.ExecutionContext.HTTP_TARGET_HOST;
 import static org.openqa.selenium.remote.DriverCommand.*;
@@ -69,10 +93,29 @@ public class HttpCommandExecutor implements CommandExecutor, NeedsLocalLogs {
 
   private static final int MAX_REDIRECTS = 10;
 
+  /**
+   * The commands without a value, which are sent in the background when pipelining is on.
+   */
+  private static final Set<String> PIPELINED_COMMANDS = ImmutableSet.of(
+      CLICK_ELEMENT, SEND_KEYS_TO_ELEMENT, SEND_KEYS_TO_ACTIVE_ELEMENT, CLEAR_ELEMENT,
+      MOUSE_DOWN, MOUSE_UP, MOVE_TO, CLICK, DOUBLE_CLICK);
+
   private final HttpHost targetHost;
   private final URL remoteServer;
   private final Map<String, CommandInfo> nameToUrl;
   private final HttpClient client;
+  private final BeanToJsonConverter beanToJson = new BeanToJsonConverter();
+
+  // the commands queued to be sent in the background, and the responses not read yet.
+  private final BlockingQueue<QueuedCommand> queuedCommands =
+      new LinkedBlockingQueue<QueuedCommand>();
+  private final Queue<Future<Response>> inFlight = new ConcurrentLinkedQueue<Future<Response>>();
+  private final Object pipelineLock = new Object();
+  private ExecutorService pipeline;  // guarded by pipelineLock
+  private volatile boolean pipelining;
+  // set when a command sent in the background failed, the next ones aren't sent.
+  private volatile boolean pipelineFailed;
+  private volatile boolean executesBatches = true;
 
   private static HttpClientFactory httpClientFactory;
 
@@ -156,6 +199,7 @@ public class HttpCommandExecutor implements CommandExecutor, NeedsLocalLogs {
         .put(REFRESH, post("/session/:sessionId/refresh"))
         .put(EXECUTE_SCRIPT, post("/session/:sessionId/execute"))
         .put(EXECUTE_ASYNC_SCRIPT, post("/session/:sessionId/execute_async"))
+        .put(BATCH, post("/session/:sessionId/batch"))
         .put(GET_CURRENT_URL, get("/session/:sessionId/url"))
         .put(GET_TITLE, get("/session/:sessionId/title"))
         .put(GET_PAGE_SOURCE, get("/session/:sessionId/source"))
@@ -278,7 +322,229 @@ public class HttpCommandExecutor implements CommandExecutor, NeedsLocalLogs {
     return remoteServer;
   }
 
+  /**
+   * Sends the commands which have no value, such as clicks and key presses, in the background
+   * rather than waiting for their response: {@link #execute(Command)} returns a successful
+   * response without a value as soon as they are queued. They are sent in order over the
+   * connection kept alive by the client, those queued while the previous ones were sent together
+   * in a single batch when the remote end supports it.
+   * <p/>
+   * The first of them which fails is reported by the next command executed synchronously, or by
+   * {@link #flush()}, and those queued after it aren't sent. The command reporting it isn't sent
+   * either, unless it quits the session, which ends anyway.
+   *
+   * @param pipelining whether to send the commands without a value in the background.
+   */
+  public void setPipelining(boolean pipelining) {
+    this.pipelining = pipelining;
+  }
+
+  public boolean isPipelining() {
+    return pipelining;
+  }
+
   public Response execute(Command command) throws IOException {
+    if (pipelining && PIPELINED_COMMANDS.contains(command.getName())
+        && command.getSessionId() != null) {
+      executeAsync(command);
+      return new Response(command.getSessionId());
+    }
+    return execute(command, null);
+  }
+
+  /**
+   * Queues a command to be sent in the background, after those already queued. Its failure is
+   * reported by the returned future, and also by the next command executed synchronously or by
+   * {@link #flush()}, unless the future was read first.
+   *
+   * @param command the command to execute.
+   * @return the response of the command. Null if it wasn't sent, because a command queued before
+   *         it failed.
+   */
+  public Future<Response> executeAsync(Command command) {
+    QueuedCommand queued = new QueuedCommand(command);
+    synchronized (pipelineLock) {
+      if (pipeline == null) {
+        pipeline = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("Pipelined commands to " + remoteServer + " %d")
+            .setDaemon(true)
+            .build());
+      }
+      queuedCommands.add(queued);
+      inFlight.add(queued.response);
+      pipeline.execute(new Runnable() {
+        public void run() {
+          sendQueuedCommands();
+        }
+      });
+    }
+    return queued.response;
+  }
+
+  /**
+   * Sends all the commands queued so far. Consecutive commands of a session are sent as a single
+   * batch when the remote end executes batches, so that commands queued while the previous ones
+   * were sent cost one round trip rather than one each.
+   */
+  private void sendQueuedCommands() {
+    List<QueuedCommand> toSend = Lists.newArrayList();
+    queuedCommands.drainTo(toSend);
+    try {
+      sendInOrder(toSend);
+    } finally {
+      // those left unanswered by an error, which nobody may wait for forever.
+      for (QueuedCommand queued : toSend) {
+        if (queued.response.setException(new WebDriverException(
+            "The command couldn't be sent in the background: " + queued.command))) {
+          pipelineFailed = true;
+        }
+      }
+    }
+  }
+
+  private void sendInOrder(List<QueuedCommand> toSend) {
+    int next = 0;
+    while (next < toSend.size() && !pipelineFailed) {
+      SessionId sessionId = toSend.get(next).command.getSessionId();
+      int end = next + 1;
+      // a command without a session is never batched, it fails on its own
+      while (sessionId != null && end < toSend.size()
+          && sessionId.equals(toSend.get(end).command.getSessionId())) {
+        end++;
+      }
+
+      try {
+        List<Response> responses;
+        if (end - next > 1 && executesBatches) {
+          List<Command> commands = Lists.newArrayListWithCapacity(end - next);
+          for (QueuedCommand queued : toSend.subList(next, end)) {
+            commands.add(queued.command);
+          }
+          try {
+            responses = sendBatch(sessionId, commands);
+          } catch (UnsupportedCommandException e) {
+            executesBatches = false;
+            continue;
+          }
+        } else {
+          responses = ImmutableList.of(send(toSend.get(next).command, null));
+        }
+        if (responses.isEmpty()) {
+          throw new WebDriverException("No response to the commands sent in the background");
+        }
+
+        for (Response response : responses) {
+          if (response.getStatus() != ErrorCodes.SUCCESS) {
+            pipelineFailed = true;
+          }
+          toSend.get(next++).response.set(response);
+        }
+      } catch (IOException e) {
+        pipelineFailed = true;
+        toSend.get(next++).response.setException(e);
+      } catch (RuntimeException e) {
+        pipelineFailed = true;
+        toSend.get(next++).response.setException(e);
+      }
+    }
+
+    // not sent, a command before them failed.
+    for (; next < toSend.size(); next++) {
+      toSend.get(next).response.set(null);
+    }
+  }
+
+  /**
+   * Waits for the commands sent in the background.
+   *
+   * @return the response of the first of them which failed, null if none did.
+   * @throws IOException if one of them couldn't be sent.
+   */
+  public Response flush() throws IOException {
+    Response failed = null;
+    Throwable thrown = null;
+    for (Future<Response> future = inFlight.poll(); future != null; future = inFlight.poll()) {
+      try {
+        Response response = Uninterruptibles.getUninterruptibly(future);
+        if (failed == null && thrown == null && response != null
+            && response.getStatus() != ErrorCodes.SUCCESS) {
+          failed = response;
+        }
+      } catch (ExecutionException e) {
+        if (failed == null && thrown == null) {
+          thrown = e.getCause();
+        }
+      }
+    }
+    pipelineFailed = false;
+
+    if (thrown != null) {
+      Throwables.propagateIfPossible(thrown, IOException.class);
+      throw new WebDriverException(thrown);
+    }
+    return failed;
+  }
+
+  /**
+   * Executes a command answered with a base64 encoded value, such as a screenshot. The value is
+   * decoded into the given stream as it's read from the connection, rather than kept in the
+   * response, so that it's never held in memory as a whole.
+   *
+   * @param command      the command to execute.
+   * @param decodedValue where the decoded value is written. It isn't closed.
+   * @return the response. Its value is null if it was written to the stream, and is kept as usual
+   *         otherwise, for instance when the command failed or the remote end sent raw bytes.
+   */
+  public Response execute(Command command, OutputStream decodedValue) throws IOException {
+    if (QUIT.equals(command.getName())) {
+      return quit(command);
+    }
+    Response failed = flush();
+    if (failed != null) {
+      // reported in place of this command, which isn't sent.
+      return failed;
+    }
+    return send(command, decodedValue);
+  }
+
+  /**
+   * Ends the session even if a command sent in the background failed, so that the browser isn't
+   * left running. The failure is still reported, in place of the response to the quit command.
+   */
+  private Response quit(Command command) throws IOException {
+    Response failed = null;
+    Exception thrown = null;
+    try {
+      failed = flush();
+    } catch (IOException e) {
+      thrown = e;
+    } catch (RuntimeException e) {
+      thrown = e;
+    }
+
+    Response response;
+    try {
+      response = send(command, null);
+    } finally {
+      stopPipeline();
+    }
+
+    if (thrown != null) {
+      Throwables.propagateIfPossible(thrown, IOException.class);
+    }
+    return failed != null ? failed : response;
+  }
+
+  private void stopPipeline() {
+    synchronized (pipelineLock) {
+      if (pipeline != null) {
+        pipeline.shutdown();
+        pipeline = null;
+      }
+    }
+  }
+
+  private Response send(Command command, OutputStream decodedValue) throws IOException {
     HttpContext context = new BasicHttpContext();
 
     if (command.getSessionId() == null) {
@@ -296,8 +562,12 @@ public class HttpCommandExecutor implements CommandExecutor, NeedsLocalLogs {
       setAcceptHeader(httpMethod);
 
       if (httpMethod instanceof HttpPost) {
-        String payload = new BeanToJsonConverter().convert(command.getParameters());
-        ((HttpPost) httpMethod).setEntity(new StringEntity(payload, "utf-8"));
+        // written straight as bytes, the parameters can hold a whole profile or file.
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(payload, Charsets.UTF_8);
+        beanToJson.convert(command.getParameters(), writer);
+        writer.close();
+        ((HttpPost) httpMethod).setEntity(new ByteArrayEntity(payload.toByteArray()));
         httpMethod.addHeader("Content-Type", "application/json; charset=utf-8");
       }
 
@@ -312,6 +582,10 @@ public class HttpCommandExecutor implements CommandExecutor, NeedsLocalLogs {
 
       response = followRedirects(client, context, response, /* redirect count */0);
 
+      if (decodedValue != null && isJson(response) && response.getEntity() != null) {
+        return readBase64Response(response.getEntity(), decodedValue);
+      }
+
       final EntityWithEncoding entityWithEncoding = new EntityWithEncoding(response.getEntity());
 
       return createResponse(response, context, entityWithEncoding);
@@ -325,6 +599,74 @@ public class HttpCommandExecutor implements CommandExecutor, NeedsLocalLogs {
     }
   }
 
+  /**
+   * Executes the commands of a session in a single request, in order. The remote end stops at the
+   * first command which fails, so there are fewer responses than commands when one did.
+   *
+   * @param sessionId the session the commands belong to.
+   * @param commands  the commands to execute. They may not start or end the session.
+   * @return the response of each command which was executed, in order, or the response to the
+   *         batch itself if it was refused. If a command sent in the background failed, its
+   *         response is returned in place of the batch, which isn't sent, as the commands of the
+   *         batch may depend on it.
+   * @throws UnsupportedCommandException if the remote end doesn't execute batches.
+   */
+  public List<Response> executeBatch(SessionId sessionId, List<Command> commands)
+      throws IOException {
+    Response failed = flush();
+    if (failed != null) {
+      return ImmutableList.of(failed);
+    }
+    return sendBatch(sessionId, commands);
+  }
+
+  private List<Response> sendBatch(SessionId sessionId, List<Command> commands)
+      throws IOException {
+    String sessionPath = "/session/" + sessionId;
+    List<Map<String, Object>> batch = Lists.newArrayListWithCapacity(commands.size());
+    for (Command command : commands) {
+      CommandInfo info = nameToUrl.get(command.getName());
+      if (info == null || !info.url.startsWith("/session/:sessionId")
+          || NEW_SESSION.equals(command.getName()) || QUIT.equals(command.getName())
+          || BATCH.equals(command.getName())) {
+        throw new IllegalArgumentException("Can't be executed in a batch: " + command.getName());
+      }
+      if (!sessionId.equals(command.getSessionId())) {
+        throw new IllegalArgumentException(
+            "Not a command of session " + sessionId + ": " + command);
+      }
+
+      Map<String, Object> toSend = Maps.newHashMap();
+      toSend.put("method", info.verb.name());
+      toSend.put("path", info.getPath(command).substring(sessionPath.length()));
+      if (info.verb == HttpVerb.POST) {
+        toSend.put("parameters", command.getParameters());
+      }
+      batch.add(toSend);
+    }
+
+    Response response = send(new Command(sessionId, BATCH,
+        ImmutableMap.of("commands", batch)), null);
+    if (response.getStatus() == ErrorCodes.UNKNOWN_COMMAND) {
+      throw new UnsupportedCommandException("The remote end doesn't execute batches");
+    }
+    if (response.getStatus() != ErrorCodes.SUCCESS || !(response.getValue() instanceof List)) {
+      // the batch as a whole was refused.
+      return ImmutableList.of(response);
+    }
+
+    List<Response> responses = Lists.newArrayList();
+    for (Object raw : (List<?>) response.getValue()) {
+      Map<?, ?> map = (Map<?, ?>) raw;
+      Response commandResponse = new Response();
+      commandResponse.setSessionId((String) map.get("sessionId"));
+      commandResponse.setStatus(((Number) map.get("status")).intValue());
+      commandResponse.setValue(map.get("value"));
+      responses.add(commandResponse);
+    }
+    return responses;
+  }
+
   private HttpResponse fallBackExecute(HttpContext context, HttpUriRequest httpMethod)
       throws IOException {
     try {
@@ -401,6 +743,23 @@ public class HttpCommandExecutor implements CommandExecutor, NeedsLocalLogs {
     return uri;
   }
 
+  private boolean isJson(HttpResponse response) {
+    Header header = response.getFirstHeader("Content-Type");
+    return header != null && header.getValue().startsWith("application/json");
+  }
+
+  private Response readBase64Response(HttpEntity entity, OutputStream decodedValue)
+      throws IOException {
+    try {
+      Charset charset = ContentType.getOrDefault(entity).getCharset();
+      Reader reader = new InputStreamReader(entity.getContent(),
+                                            charset != null ? charset : Charsets.UTF_8);
+      return new Base64ResponseReader().read(reader, decodedValue);
+    } finally {
+      EntityUtils.consume(entity);
+    }
+  }
+
   private boolean isRedirect(HttpResponse response) {
     int code = response.getStatusLine().getStatusCode();
 
@@ -533,6 +892,15 @@ public class HttpCommandExecutor implements CommandExecutor, NeedsLocalLogs {
     return new CommandInfo(url, HttpVerb.DELETE);
   }
 
+  private static class QueuedCommand {
+    private final Command command;
+    private final SettableFuture<Response> response = SettableFuture.create();
+
+    QueuedCommand(Command command) {
+      this.command = command;
+    }
+  }
+
   private static class CommandInfo {
 
     private final String url;
@@ -544,9 +912,15 @@ public class HttpCommandExecutor implements CommandExecutor, NeedsLocalLogs {
     }
 
     public HttpUriRequest getMethod(URL base, Command command) {
+      return verb.createMethod(base.toExternalForm().replaceAll("/$", "") + getPath(command));
+    }
+
+    /**
+     * @return the path of the command, relative to the address of the remote server.
+     */
+    public String getPath(Command command) {
       StringBuilder urlBuilder = new StringBuilder();
 
-      urlBuilder.append(base.toExternalForm().replaceAll("/$", ""));
       for (String part : url.split("/")) {
         if (part.length() == 0) {
           continue;
@@ -563,7 +937,7 @@ public class HttpCommandExecutor implements CommandExecutor, NeedsLocalLogs {
         }
       }
 
-      return verb.createMethod(urlBuilder.toString());
+      return urlBuilder.toString();
     }
 
     private String get(String propertyName, Command command) {
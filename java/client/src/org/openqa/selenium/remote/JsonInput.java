@@ -0,0 +1,303 @@
+/*
+Copyright 2012 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.remote;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * Reads JSON values token by token from a {@link Reader}, so that a payload doesn't have to be
+ * turned into a String first. The values are the ones org.json gives: {@link JSONObject},
+ * {@link JSONArray}, strings, booleans, numbers typed as org.json types them, and
+ * {@link JSONObject#NULL}. Strings are copied from the read buffer in chunks rather than char by
+ * char.
+ * <p/>
+ * Only the JSON of the wire protocol is read: the comments and the other separators org.json
+ * tolerates are not.
+ */
+class JsonInput {
+
+  private final Reader in;
+  private final char[] buffer = new char[8192];
+  private int position = 0;
+  private int limit = 0;
+
+  JsonInput(Reader in) {
+    this.in = in;
+  }
+
+  JsonInput(String text) {
+    this(new StringReader(text));
+  }
+
+  /**
+   * @return true if there is nothing but whitespace left to read.
+   */
+  boolean isEmpty() throws JSONException {
+    int c = nextNonWhitespace();
+    if (c == -1) {
+      return true;
+    }
+    position--;
+    return false;
+  }
+
+  /**
+   * @return the next value. Anything after it is left unread.
+   */
+  Object nextValue() throws JSONException {
+    int c = nextNonWhitespace();
+    switch (c) {
+      case '"':
+      case '\'':
+        return readString((char) c);
+      case '{':
+        return readObject();
+      case '[':
+        return readArray();
+      case -1:
+        throw syntaxError("Missing value", c);
+      default:
+        position--;
+        return readLiteral();
+    }
+  }
+
+  JSONObject nextObject() throws JSONException {
+    expect('{', nextNonWhitespace(), "A JSONObject text must begin with '{'");
+    return readObject();
+  }
+
+  JSONArray nextArray() throws JSONException {
+    expect('[', nextNonWhitespace(), "A JSONArray text must start with '['");
+    return readArray();
+  }
+
+  private JSONObject readObject() throws JSONException {
+    JSONObject object = new JSONObject();
+    int c = nextNonWhitespace();
+    if (c == '}') {
+      return object;
+    }
+    while (true) {
+      if (c != '"' && c != '\'') {
+        throw syntaxError("Expected a quoted key", c);
+      }
+      String key = readString((char) c);
+      expect(':', nextNonWhitespace(), "Expected a ':' after a key");
+      object.put(key, nextValue());
+
+      c = nextNonWhitespace();
+      if (c == '}') {
+        return object;
+      }
+      expect(',', c, "Expected a ',' or '}'");
+      c = nextNonWhitespace();
+    }
+  }
+
+  private JSONArray readArray() throws JSONException {
+    JSONArray array = new JSONArray();
+    int c = nextNonWhitespace();
+    if (c == ']') {
+      return array;
+    }
+    if (c == -1) {
+      throw syntaxError("Expected a ',' or ']'", c);
+    }
+    position--;
+    while (true) {
+      array.put(nextValue());
+
+      c = nextNonWhitespace();
+      if (c == ']') {
+        return array;
+      }
+      expect(',', c, "Expected a ',' or ']'");
+    }
+  }
+
+  private String readString(char quote) throws JSONException {
+    StringBuilder res = new StringBuilder();
+    while (true) {
+      if (position == limit && !fill()) {
+        throw syntaxError("Unterminated string", -1);
+      }
+      int start = position;
+      while (position < limit) {
+        char c = buffer[position];
+        if (c == quote || c == '\\' || c == '\n' || c == '\r' || c == 0) {
+          break;
+        }
+        position++;
+      }
+      res.append(buffer, start, position - start);
+      if (position == limit) {
+        continue;
+      }
+
+      char c = buffer[position++];
+      if (c == quote) {
+        return res.toString();
+      }
+      if (c != '\\') {
+        throw syntaxError("Unterminated string", c);
+      }
+      int escaped = next();
+      switch (escaped) {
+        case 'b':
+          res.append('\b');
+          break;
+        case 't':
+          res.append('\t');
+          break;
+        case 'n':
+          res.append('\n');
+          break;
+        case 'f':
+          res.append('\f');
+          break;
+        case 'r':
+          res.append('\r');
+          break;
+        case 'u':
+          res.append((char) readHex(4));
+          break;
+        case 'x':
+          res.append((char) readHex(2));
+          break;
+        case -1:
+          throw syntaxError("Unterminated string", -1);
+        default:
+          res.append((char) escaped);
+      }
+    }
+  }
+
+  private int readHex(int digits) throws JSONException {
+    int value = 0;
+    for (int i = 0; i < digits; i++) {
+      int c = next();
+      int digit = c == -1 ? -1 : Character.digit((char) c, 16);
+      if (digit == -1) {
+        throw syntaxError("Illegal escape", c);
+      }
+      value = value * 16 + digit;
+    }
+    return value;
+  }
+
+  /**
+   * Reads true, false, null or a number, and types them the way org.json does.
+   */
+  private Object readLiteral() throws JSONException {
+    StringBuilder text = new StringBuilder();
+    for (int c = next(); c != -1; c = next()) {
+      if (c < ' ' || ",:]}/\\\"[{;=#".indexOf(c) >= 0) {
+        position--;
+        break;
+      }
+      text.append((char) c);
+    }
+    String s = text.toString().trim();
+    if (s.length() == 0) {
+      throw syntaxError("Missing value", -1);
+    }
+    if (s.equalsIgnoreCase("true")) {
+      return Boolean.TRUE;
+    }
+    if (s.equalsIgnoreCase("false")) {
+      return Boolean.FALSE;
+    }
+    if (s.equalsIgnoreCase("null")) {
+      return JSONObject.NULL;
+    }
+
+    char b = s.charAt(0);
+    if ((b >= '0' && b <= '9') || b == '.' || b == '-' || b == '+') {
+      if (b == '0') {
+        try {
+          if (s.length() > 2 && (s.charAt(1) == 'x' || s.charAt(1) == 'X')) {
+            return Integer.parseInt(s.substring(2), 16);
+          }
+          return Integer.parseInt(s, 8);
+        } catch (NumberFormatException e) {
+          // not octal nor hexadecimal
+        }
+      }
+      try {
+        return Integer.valueOf(s);
+      } catch (NumberFormatException e) {
+        try {
+          return Long.valueOf(s);
+        } catch (NumberFormatException f) {
+          try {
+            return Double.valueOf(s);
+          } catch (NumberFormatException g) {
+            return s;
+          }
+        }
+      }
+    }
+    return s;
+  }
+
+  private void expect(char expected, int c, String message) throws JSONException {
+    if (c != expected) {
+      throw syntaxError(message, c);
+    }
+  }
+
+  private JSONException syntaxError(String message, int c) {
+    return new JSONException(
+        message + (c == -1 ? " at the end of the text" : " at '" + (char) c + "'"));
+  }
+
+  private int nextNonWhitespace() throws JSONException {
+    int c = next();
+    while (c != -1 && c <= ' ') {
+      c = next();
+    }
+    return c;
+  }
+
+  private int next() throws JSONException {
+    if (position == limit && !fill()) {
+      return -1;
+    }
+    return buffer[position++];
+  }
+
+  private boolean fill() throws JSONException {
+    try {
+      int read = in.read(buffer);
+      if (read <= 0) {
+        return false;
+      }
+      position = 0;
+      limit = read;
+      return true;
+    } catch (IOException e) {
+      throw new JSONException(e);
+    }
+  }
+}
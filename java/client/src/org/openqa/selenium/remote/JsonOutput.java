@@ -0,0 +1,211 @@
+/*
+Copyright 2012 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.remote;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Writes JSON tokens straight to an {@link Appendable}, without building a tree first. Strings and
+ * numbers are written the way org.json writes them, so the output is the same as
+ * {@link JSONObject#toString()} would give, but for the order of the keys.
+ * <p/>
+ * The name of an object member is only written with its value, so that a member can be dropped
+ * after its name is known, like org.json does for the null values.
+ */
+class JsonOutput {
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final Appendable out;
+  // one flag per open object or array: whether it has a member already.
+  private boolean[] hasMembers = new boolean[8];
+  private int depth = 0;
+  private String deferredName;
+
+  JsonOutput(Appendable out) {
+    this.out = out;
+  }
+
+  JsonOutput beginObject() throws IOException {
+    beforeValue();
+    out.append('{');
+    push();
+    return this;
+  }
+
+  JsonOutput endObject() throws IOException {
+    depth--;
+    out.append('}');
+    return this;
+  }
+
+  JsonOutput beginArray() throws IOException {
+    beforeValue();
+    out.append('[');
+    push();
+    return this;
+  }
+
+  JsonOutput endArray() throws IOException {
+    depth--;
+    out.append(']');
+    return this;
+  }
+
+  /**
+   * The name of the next member of the current object. It is written with the value, and
+   * forgotten if {@link #clearName()} is called instead.
+   */
+  JsonOutput name(String name) {
+    if (name == null) {
+      throw new NullPointerException("Null key.");
+    }
+    deferredName = name;
+    return this;
+  }
+
+  JsonOutput clearName() {
+    deferredName = null;
+    return this;
+  }
+
+  JsonOutput value(CharSequence value) throws IOException {
+    beforeValue();
+    quote(value);
+    return this;
+  }
+
+  JsonOutput value(Number value) throws IOException, JSONException {
+    String number = JSONObject.numberToString(value);
+    beforeValue();
+    out.append(number);
+    return this;
+  }
+
+  JsonOutput value(boolean value) throws IOException {
+    beforeValue();
+    out.append(value ? "true" : "false");
+    return this;
+  }
+
+  JsonOutput nullValue() throws IOException {
+    beforeValue();
+    out.append("null");
+    return this;
+  }
+
+  /**
+   * @param json a value already in JSON.
+   */
+  JsonOutput rawValue(String json) throws IOException {
+    beforeValue();
+    out.append(json);
+    return this;
+  }
+
+  private void push() {
+    if (depth == hasMembers.length) {
+      hasMembers = Arrays.copyOf(hasMembers, depth * 2);
+    }
+    hasMembers[depth++] = false;
+  }
+
+  private void beforeValue() throws IOException {
+    if (depth == 0) {
+      return;
+    }
+    if (hasMembers[depth - 1]) {
+      out.append(',');
+    }
+    hasMembers[depth - 1] = true;
+    if (deferredName != null) {
+      quote(deferredName);
+      out.append(':');
+      deferredName = null;
+    }
+  }
+
+  // same escaping as JSONObject.quote, without copying the string.
+  private void quote(CharSequence s) throws IOException {
+    out.append('"');
+    int length = s.length();
+    int start = 0;
+    char previous = 0;
+    for (int i = 0; i < length; i++) {
+      char c = s.charAt(i);
+      String escaped = null;
+      switch (c) {
+        case '\\':
+        case '"':
+          escaped = c == '"' ? "\\\"" : "\\\\";
+          break;
+        case '/':
+          if (previous == '<') {
+            escaped = "\\/";
+          }
+          break;
+        case '\b':
+          escaped = "\\b";
+          break;
+        case '\t':
+          escaped = "\\t";
+          break;
+        case '\n':
+          escaped = "\\n";
+          break;
+        case '\f':
+          escaped = "\\f";
+          break;
+        case '\r':
+          escaped = "\\r";
+          break;
+        default:
+          if (c < 0x20 || (c >= 0x80 && c < 0xa0) || (c >= 0x2000 && c < 0x2100)) {
+            append(s, start, i);
+            out.append("\\u")
+                .append(HEX[(c >> 12) & 0xf])
+                .append(HEX[(c >> 8) & 0xf])
+                .append(HEX[(c >> 4) & 0xf])
+                .append(HEX[c & 0xf]);
+            start = i + 1;
+          }
+      }
+      if (escaped != null) {
+        append(s, start, i);
+        out.append(escaped);
+        start = i + 1;
+      }
+      previous = c;
+    }
+    append(s, start, length);
+    out.append('"');
+  }
+
+  private void append(CharSequence s, int start, int end) throws IOException {
+    if (out instanceof Writer && s instanceof String) {
+      // Writer.append copies the sub sequence first.
+      ((Writer) out).write((String) s, start, end - start);
+    } else {
+      out.append(s, start, end);
+    }
+  }
+}
@@ -24,6 +24,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.Reader;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URI;
@@ -45,6 +46,27 @@ public class JsonToBeanConverter {
     }
   }
 
+  /**
+   * Reads the JSON as it converts it, so that a payload, like the body of a request, doesn't have
+   * to be read into a String first.
+   *
+   * @param clazz the type the JSON is converted to.
+   * @param json  the JSON text, read up to the end of the first value.
+   * @return the converted value, or null if there is no JSON text.
+   */
+  public <T> T convert(Class<T> clazz, Reader json) throws JsonException {
+    try {
+      JsonInput input = new JsonInput(json);
+      if (input.isEmpty()) {
+        return null;
+      }
+      // already parsed: a string value isn't parsed again.
+      return convert(clazz, input.nextValue(), 1);
+    } catch (JSONException e) {
+      throw new JsonException(e);
+    }
+  }
+
   @SuppressWarnings("unchecked")
   private <T> T convert(Class<T> clazz, Object text, int depth) throws JSONException {
     if (text == null) {
@@ -80,7 +102,7 @@ public class JsonToBeanConverter {
     }
 
     if (Command.class.equals(clazz)) {
-      JSONObject rawCommand = new JSONObject((String) text);
+      JSONObject rawCommand = toJsonObject(text);
 
       SessionId sessionId = null;
       if (rawCommand.has("sessionId")) {
@@ -98,13 +120,13 @@ public class JsonToBeanConverter {
     }
 
     if (SessionId.class.equals(clazz)) {
-      JSONObject object = new JSONObject((String) text);
+      JSONObject object = toJsonObject(text);
       String value = object.getString("value");
       return (T) new SessionId(value);
     }
 
     if (Capabilities.class.equals(clazz)) {
-      JSONObject object = new JSONObject((String) text);
+      JSONObject object = toJsonObject(text);
       DesiredCapabilities caps = new DesiredCapabilities();
       Iterator allKeys = object.keys();
       while (allKeys.hasNext()) {
@@ -115,7 +137,7 @@ public class JsonToBeanConverter {
     }
 
     if (DoNotUseProxyPac.class.equals(clazz)) {
-      JSONObject object = new JSONObject((String) text);
+      JSONObject object = toJsonObject(text);
       DoNotUseProxyPac pac = new DoNotUseProxyPac();
 
       if (object.has("directUrls")) {
@@ -197,9 +219,9 @@ public class JsonToBeanConverter {
     if (depth == 0) {
       if (text instanceof String) {
         if (((String) text).startsWith("[")) {
-          text = new JSONArray((String) text);
+          text = new JsonInput((String) text).nextArray();
         } else {
-          text = new JSONObject(String.valueOf(text));
+          text = new JsonInput((String) text).nextObject();
         }
       }
     }
@@ -227,6 +249,13 @@ public class JsonToBeanConverter {
     }
   }
 
+  private JSONObject toJsonObject(Object text) throws JSONException {
+    if (text instanceof JSONObject) {
+      return (JSONObject) text;
+    }
+    return new JsonInput((String) text).nextObject();
+  }
+
   @SuppressWarnings("unchecked")
   private Enum convertEnum(Class clazz, Object text) {
     if (clazz.isEnum()) {
@@ -16,6 +16,9 @@ limitations under the License.
 
 package org.openqa.selenium.remote;
 
+import com.google.common.collect.ImmutableMap;
+
+import java.io.OutputStream;
 import java.util.Map;
 
 public class RemoteExecuteMethod implements ExecuteMethod {
@@ -36,4 +39,17 @@ public class RemoteExecuteMethod implements ExecuteMethod {
 
     return response.getValue();
   }
+
+  /**
+   * Execute a command answered with a base64 encoded value, such as a screenshot, and write the
+   * decoded value to the given stream, without holding it in memory when the driver allows it.
+   *
+   * @param commandName  The remote command to execute
+   * @param parameters   The parameters to execute that command with
+   * @param decodedValue Where the decoded value is written. It isn't closed.
+   */
+  public void execute(String commandName, Map<String, ?> parameters, OutputStream decodedValue) {
+    driver.execute(commandName, parameters == null ? ImmutableMap.<String, Object>of() : parameters,
+                   decodedValue);
+  }
 }
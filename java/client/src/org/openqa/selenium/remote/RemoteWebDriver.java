@@ -16,6 +16,7 @@ limitations under the License.
 
 package org.openqa.selenium.remote;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
@@ -54,10 +55,13 @@ import org.openqa.selenium.logging.LoggingPreferences;
 import org.openqa.selenium.logging.NeedsLocalLogs;
 import org.openqa.selenium.logging.LocalLogs;
 import org.openqa.selenium.logging.Logs;
+import org.openqa.selenium.remote.internal.Base64DecodingOutputStream;
 import org.openqa.selenium.remote.internal.JsonToWebElementConverter;
 import org.openqa.selenium.remote.internal.WebElementToJsonConverter;
 import org.openqa.selenium.security.Credentials;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URL;
 import java.util.Date;
 import java.util.HashSet;
@@ -76,6 +80,12 @@ public class RemoteWebDriver implements WebDriver, JavascriptExecutor,
 
   // TODO(dawagner): This static logger should be unified with the per-instance localLogs
   private static final Logger logger = Logger.getLogger(RemoteWebDriver.class.getName());
+
+  static {
+    // once per class: the same handler added again would publish every record once more.
+    logger.addHandler(LoggingHandler.getInstance());
+  }
+
   private Level level = Level.FINE;
 
   private final ErrorHandler errorHandler = new ErrorHandler();
@@ -83,6 +93,8 @@ public class RemoteWebDriver implements WebDriver, JavascriptExecutor,
   private CommandExecutor executor;
   private Capabilities capabilities;
   private SessionId sessionId;
+  // until a batch is refused by the remote end.
+  private volatile boolean executesBatches = true;
   private FileDetector fileDetector = new UselessFileDetector();
   private ExecuteMethod executeMethod;
 
@@ -130,8 +142,6 @@ public class RemoteWebDriver implements WebDriver, JavascriptExecutor,
   }
 
   private void init(Capabilities desiredCapabilities, Capabilities requiredCapabilities) {
-    logger.addHandler(LoggingHandler.getInstance());
-
     converter = new JsonToWebElementConverter(this);
     executeMethod = new RemoteExecuteMethod(this);
     keyboard = new RemoteKeyboard(executeMethod);
@@ -493,6 +503,21 @@ public class RemoteWebDriver implements WebDriver, JavascriptExecutor,
   }
 
   protected Response execute(String driverCommand, Map<String, ?> parameters) {
+    return execute(driverCommand, parameters, null);
+  }
+
+  /**
+   * Executes a command answered with a base64 encoded value, such as a screenshot, and writes the
+   * decoded value to the given stream. With an {@link HttpCommandExecutor}, the value is decoded
+   * while it's read from the connection, and never held in memory as a whole.
+   *
+   * @param driverCommand the command to execute.
+   * @param parameters    the parameters of the command.
+   * @param decodedValue  where the decoded value is written. It isn't closed.
+   * @return the response, with a null value.
+   */
+  protected Response execute(String driverCommand, Map<String, ?> parameters,
+                             OutputStream decodedValue) {
     Command command = new Command(sessionId, driverCommand, parameters);
     Response response;
 
@@ -503,7 +528,11 @@ public class RemoteWebDriver implements WebDriver, JavascriptExecutor,
     try {
 
       log(sessionId, command.getName(), command, When.BEFORE);
-      response = executor.execute(command);
+      if (decodedValue != null && executor instanceof HttpCommandExecutor) {
+        response = ((HttpCommandExecutor) executor).execute(command, decodedValue);
+      } else {
+        response = executor.execute(command);
+      }
       log(sessionId, command.getName(), command, When.AFTER);
 
       if (response == null) {
@@ -529,8 +558,19 @@ public class RemoteWebDriver implements WebDriver, JavascriptExecutor,
       Thread.currentThread().setName(currentName);
     }
 
+    throwIfResponseFailed(response, System.currentTimeMillis() - start);
+
+    if (decodedValue != null && response.getValue() != null) {
+      // the executor couldn't stream the value.
+      decodeValue(response.getValue(), decodedValue);
+      response.setValue(null);
+    }
+    return response;
+  }
+
+  private void throwIfResponseFailed(Response response, long duration) {
     try {
-      errorHandler.throwIfResponseFailed(response, System.currentTimeMillis() - start);
+      errorHandler.throwIfResponseFailed(response, duration);
     } catch (WebDriverException ex) {
       ex.addInfo(WebDriverException.DRIVER_INFO, this.getClass().getName());
       if (getSessionId() != null) {
@@ -541,13 +581,94 @@ public class RemoteWebDriver implements WebDriver, JavascriptExecutor,
       }
       Throwables.propagate(ex);
     }
-    return response;
+  }
+
+  private void decodeValue(Object value, OutputStream out) {
+    byte[] base64 = value instanceof byte[]
+                    ? (byte[]) value : value.toString().getBytes(Charsets.US_ASCII);
+    try {
+      Base64DecodingOutputStream decoder = new Base64DecodingOutputStream(out);
+      decoder.write(base64);
+      decoder.finish();
+    } catch (IOException e) {
+      throw new WebDriverException(e);
+    }
   }
 
   protected Response execute(String command) {
     return execute(command, ImmutableMap.<String, Object>of());
   }
 
+  /**
+   * Starts a batch of commands, which are sent together in a single request when the remote end
+   * supports it.
+   *
+   * @return a new, empty batch.
+   */
+  @Beta
+  public CommandBatch newBatch() {
+    return new CommandBatch(this);
+  }
+
+  /**
+   * Executes the commands of this session in order, stopping at the first one which fails. With an
+   * {@link HttpCommandExecutor}, they are all sent in a single request, unless the remote end
+   * doesn't support it.
+   *
+   * @param commands the commands to execute.
+   * @return the value of each command, converted as for a single command.
+   */
+  protected List<Object> executeBatch(List<Command> commands) {
+    List<Response> responses;
+
+    long start = System.currentTimeMillis();
+    String currentName = Thread.currentThread().getName();
+    Thread.currentThread().setName("Forwarding a batch of " + commands.size() +
+                                   " commands on session " + sessionId + " to remote");
+    try {
+      log(sessionId, DriverCommand.BATCH, commands, When.BEFORE);
+      responses = null;
+      if (executesBatches && executor instanceof HttpCommandExecutor) {
+        try {
+          responses = ((HttpCommandExecutor) executor).executeBatch(sessionId, commands);
+        } catch (UnsupportedCommandException e) {
+          logger.log(level, "The remote end doesn't execute batches, sending commands one by one");
+          executesBatches = false;
+        }
+      }
+      if (responses == null) {
+        responses = Lists.newArrayListWithCapacity(commands.size());
+        for (Command command : commands) {
+          Response response = executor.execute(command);
+          if (response == null) {
+            response = new Response(sessionId);
+          }
+          responses.add(response);
+          if (response.getStatus() != ErrorCodes.SUCCESS) {
+            break;
+          }
+        }
+      }
+      log(sessionId, DriverCommand.BATCH, commands, When.AFTER);
+    } catch (SessionNotFoundException e) {
+      throw e;
+    } catch (Exception e) {
+      log(sessionId, DriverCommand.BATCH, commands, When.EXCEPTION);
+      throw new UnreachableBrowserException(
+          "Error communicating with the remote browser. It may have died.", e);
+    } finally {
+      Thread.currentThread().setName(currentName);
+    }
+
+    List<Object> values = Lists.newArrayListWithCapacity(responses.size());
+    for (Response response : responses) {
+      response.setValue(converter.apply(response.getValue()));
+      throwIfResponseFailed(response, System.currentTimeMillis() - start);
+      values.add(response.getValue());
+    }
+    return values;
+  }
+
   protected ExecuteMethod getExecuteMethod() {
     return executeMethod;
   }
@@ -16,10 +16,25 @@ limitations under the License.
 
 package org.openqa.selenium.remote;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
 import java.lang.reflect.Method;
 import java.util.HashMap;
 
 public class SimplePropertyDescriptor {
+  // the descriptors only depend on the class, and are looked up for every bean converted. Their
+  // methods refer to the class, so the values are soft for the class to be unloaded.
+  private static final LoadingCache<Class<?>, SimplePropertyDescriptor[]> cache =
+      CacheBuilder.newBuilder().weakKeys().softValues().build(
+          new CacheLoader<Class<?>, SimplePropertyDescriptor[]>() {
+            @Override
+            public SimplePropertyDescriptor[] load(Class<?> clazz) {
+              return findPropertyDescriptors(clazz);
+            }
+          });
+
   private String name;
   private Method readMethod;
   private Method writeMethod;
@@ -46,6 +61,10 @@ public class SimplePropertyDescriptor {
   }
 
   public static SimplePropertyDescriptor[] getPropertyDescriptors(Class<? extends Object> clazz) {
+    return cache.getUnchecked(clazz).clone();
+  }
+
+  private static SimplePropertyDescriptor[] findPropertyDescriptors(Class<?> clazz) {
     HashMap<String, SimplePropertyDescriptor> properties =
         new HashMap<String, SimplePropertyDescriptor>();
     for (Method m : clazz.getMethods()) {
@@ -0,0 +1,39 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.remote;
+
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriverException;
+
+import java.io.OutputStream;
+
+/**
+ * A {@link TakesScreenshot} which can write the screenshot to a stream while it's read from the
+ * remote end, instead of holding the whole screenshot in memory. This is what a driver
+ * {@link Augmenter augmented} with the {@link CapabilityType#TAKES_SCREENSHOT} capability
+ * implements.
+ */
+public interface TakesScreenshotToStream extends TakesScreenshot {
+  /**
+   * Capture the screenshot, as described by {@link #getScreenshotAs}, and write it as a png to the
+   * given stream.
+   *
+   * @param out where the png is written. It isn't closed.
+   * @throws WebDriverException on failure.
+   */
+  void writeScreenshotTo(OutputStream out) throws WebDriverException;
+}
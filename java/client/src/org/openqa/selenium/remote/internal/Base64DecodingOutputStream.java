@@ -0,0 +1,126 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.openqa.selenium.remote.internal;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Decodes the base64 text written to it, and writes the decoded bytes to the wrapped stream, so
+ * that neither the text nor the bytes have to be held in memory. Like
+ * {@link org.openqa.selenium.internal.Base64Encoder#decode(String)}, anything which isn't part of
+ * the base64 alphabet, such as line breaks and padding, is skipped.
+ * <p/>
+ * The last bytes are only written by {@link #finish()} or {@link #close()}.
+ */
+public class Base64DecodingOutputStream extends FilterOutputStream {
+
+  private static final String ALPHABET =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+  private static final int[] VALUES = new int[128];
+
+  static {
+    Arrays.fill(VALUES, -1);
+    for (int i = 0; i < ALPHABET.length(); i++) {
+      VALUES[ALPHABET.charAt(i)] = i;
+    }
+  }
+
+  private final byte[] buffer = new byte[8192];
+  private int buffered = 0;
+  // the 6 bits values of the current group of 4 chars.
+  private int bits = 0;
+  private int chars = 0;
+
+  public Base64DecodingOutputStream(OutputStream out) {
+    super(out);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    int c = b & 0xff;
+    int value = c < VALUES.length ? VALUES[c] : -1;
+    if (value < 0) {
+      return;
+    }
+    bits = (bits << 6) | value;
+    if (++chars == 4) {
+      if (buffered > buffer.length - 3) {
+        flushBuffer();
+      }
+      buffer[buffered++] = (byte) (bits >> 16);
+      buffer[buffered++] = (byte) (bits >> 8);
+      buffer[buffered++] = (byte) bits;
+      bits = 0;
+      chars = 0;
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    for (int i = off; i < off + len; i++) {
+      write(b[i]);
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    flushBuffer();
+    out.flush();
+  }
+
+  /**
+   * Writes the bytes of an incomplete last group of chars, if any, and flushes the wrapped stream,
+   * without closing it.
+   */
+  public void finish() throws IOException {
+    if (chars == 2) {
+      emit((byte) (bits >> 4));
+    } else if (chars == 3) {
+      emit((byte) (bits >> 10));
+      emit((byte) (bits >> 2));
+    }
+    bits = 0;
+    chars = 0;
+    flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      finish();
+    } finally {
+      out.close();
+    }
+  }
+
+  private void emit(byte decoded) throws IOException {
+    if (buffered == buffer.length) {
+      flushBuffer();
+    }
+    buffer[buffered++] = decoded;
+  }
+
+  private void flushBuffer() throws IOException {
+    if (buffered > 0) {
+      out.write(buffer, 0, buffered);
+      buffered = 0;
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package org.openqa.selenium.remote.internal;
 
+import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.ProtocolException;
@@ -7,22 +8,26 @@ import org.apache.http.client.HttpClient;
 import org.apache.http.client.RedirectStrategy;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.conn.params.ConnConnectionPNames;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.routing.HttpRoutePlanner;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
 import org.apache.http.impl.conn.ProxySelectorRoutePlanner;
 import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.protocol.HttpContext;
 
 import java.net.ProxySelector;
-import java.util.concurrent.TimeUnit;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
 
@@ -45,7 +50,10 @@ public class HttpClientFactory {
 
   private final DefaultHttpClient httpClient;
   private final int TIMEOUT_THREE_HOURS = (int) SECONDS.toMillis( 60 * 60 * 3);
-  private final ClientConnectionManager gridClientConnectionManager = getClientConnectionManager();
+  // keep-alive used for the grid connections when the node doesn't say how long it keeps them.
+  private final long GRID_KEEP_ALIVE_MS = SECONDS.toMillis(30);
+  private final PoolingClientConnectionManager gridClientConnectionManager =
+      getGridClientConnectionManager();
 
   public HttpClientFactory() {
     httpClient = new DefaultHttpClient(getClientConnectionManager());
@@ -64,21 +72,70 @@ public class HttpClientFactory {
     return cm;
   }
 
+  private static PoolingClientConnectionManager getGridClientConnectionManager() {
+    SchemeRegistry registry = new SchemeRegistry();
+    registry.register(new Scheme("http", 80, PlainSocketFactory.getSocketFactory()));
+    registry.register(new Scheme("https", 443, SSLSocketFactory.getSocketFactory()));
+    PoolingClientConnectionManager cm = new PoolingClientConnectionManager(registry);
+    cm.setMaxTotal(2000);
+    cm.setDefaultMaxPerRoute(2000);
+    return cm;
+  }
+
   public HttpClient getHttpClient() {
     return httpClient;
   }
 
+  /**
+   * Creates a client for the grid, meant to be kept and reused for all the requests sent to a
+   * node. All the grid clients share the same connection pool, so the connections to a node are
+   * kept alive between 2 commands.
+   * <p/>
+   * The client doesn't follow redirects, and has no socket timeout. A timeout can be set on each
+   * request with {@link HttpConnectionParams#setSoTimeout(HttpParams, int)} on the request params.
+   *
+   * @return a new client using the grid connection pool.
+   */
+  public HttpClient createGridHttpClient() {
+    return createGridHttpClient(0);
+  }
+
+  /**
+   * @param timeout the socket timeout in ms, 0 or less for none.
+   * @return a new client using the grid connection pool.
+   * @deprecated the client is expensive to create, keep the one returned by
+   *             {@link #createGridHttpClient()} and set the timeout on the requests instead.
+   */
+  @Deprecated
   public HttpClient getGridHttpClient(int timeout) {
+    return createGridHttpClient(timeout);
+  }
+
+  private HttpClient createGridHttpClient(int timeout) {
     DefaultHttpClient gridClient = new DefaultHttpClient(gridClientConnectionManager);
     gridClient.setRedirectStrategy(new MyRedirectHandler());
     gridClient.setParams(getGridHttpParams(timeout));
     gridClient.setRoutePlanner(
         getRoutePlanner(gridClient.getConnectionManager().getSchemeRegistry()));
-    gridClient.getConnectionManager().closeIdleConnections(100, TimeUnit.MILLISECONDS);
-
+    gridClient.setKeepAliveStrategy(new GridKeepAliveStrategy(GRID_KEEP_ALIVE_MS));
     return gridClient;
   }
 
+  /**
+   * @return the number of leased, available and pending connections of the grid pool.
+   */
+  public PoolStats getGridPoolStats() {
+    return gridClientConnectionManager.getTotalStats();
+  }
+
+  /**
+   * @param host a node of the grid.
+   * @return the number of leased, available and pending connections of the grid pool to that node.
+   */
+  public PoolStats getGridPoolStats(HttpHost host) {
+    return gridClientConnectionManager.getStats(new HttpRoute(host));
+  }
+
   public HttpParams getHttpParams() {
     HttpParams params = new BasicHttpParams();
     HttpConnectionParams.setSoReuseaddr(params, true);
@@ -105,6 +162,25 @@ public class HttpClientFactory {
     gridClientConnectionManager.shutdown();
   }
 
+  /**
+   * Keeps the connections as long as the node says, and {@code defaultKeepAlive} ms if it doesn't.
+   * The pool drops the expired connections instead of leasing them.
+   */
+  static class GridKeepAliveStrategy implements ConnectionKeepAliveStrategy {
+
+    private final ConnectionKeepAliveStrategy delegate = new DefaultConnectionKeepAliveStrategy();
+    private final long defaultKeepAlive;
+
+    GridKeepAliveStrategy(long defaultKeepAlive) {
+      this.defaultKeepAlive = defaultKeepAlive;
+    }
+
+    public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+      long duration = delegate.getKeepAliveDuration(response, context);
+      return duration > 0 ? duration : defaultKeepAlive;
+    }
+  }
+
   static class MyRedirectHandler implements RedirectStrategy {
 
     public boolean isRedirected(HttpRequest request, HttpResponse response, HttpContext context)
@@ -18,9 +18,24 @@ limitations under the License.
 
 package com.thoughtworks.selenium;
 
+import com.google.common.base.Charsets;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.util.EntityUtils;
+import org.easymock.Capture;
 import org.easymock.classextension.ConstructorArgs;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
@@ -30,8 +45,15 @@ import java.lang.reflect.Method;
 import java.net.HttpURLConnection;
 import java.net.URL;
 
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.isA;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -63,6 +85,60 @@ public class HttpCommandProcessorUnitTest {
     processor.stop();
   }
 
+  @Test
+  public void testSendsTheCommandAndTheSessionAsAForm() throws IOException {
+    HttpClient client = createMock(HttpClient.class);
+    Capture<HttpUriRequest> request = new Capture<HttpUriRequest>();
+    expect(client.execute(capture(request))).andReturn(response(200, "OK,cheddar"));
+    replay(client);
+
+    HttpCommandProcessor processor = new StubbedHttpCommandProcessor(client);
+    processor.setSessionInProgress("123 456");
+
+    assertEquals("OK,cheddar", processor.getCommandResponseAsString("cmd=getTitle"));
+    verify(client);
+    HttpPost post = (HttpPost) request.getValue();
+    assertEquals("http://localhost:4444/selenium-server/driver/", post.getURI().toString());
+    assertEquals("cmd=getTitle&sessionId=123+456", EntityUtils.toString(post.getEntity()));
+    assertEquals("application/x-www-form-urlencoded; charset=UTF-8",
+        post.getEntity().getContentType().getValue());
+  }
+
+  @Test
+  public void testFollowsTheServerWhenItMovedPermanently() throws IOException {
+    HttpClient client = createMock(HttpClient.class);
+    Capture<HttpUriRequest> request = new Capture<HttpUriRequest>();
+    HttpResponse moved = response(301, "");
+    moved.addHeader("Location", "http://example.com:5555/selenium-server/driver/");
+    expect(client.execute(isA(HttpUriRequest.class))).andReturn(moved);
+    expect(client.execute(capture(request))).andReturn(response(200, "OK"));
+    replay(client);
+
+    HttpCommandProcessor processor = new StubbedHttpCommandProcessor(client);
+
+    assertEquals("OK", processor.getCommandResponseAsString("cmd=open"));
+    verify(client);
+    assertEquals("http://example.com:5555/selenium-server/driver/",
+        request.getValue().getURI().toString());
+  }
+
+  @Test
+  public void testDoesNotSendTheCommandAgainOnceTheServerMayHaveReadIt() throws IOException {
+    HttpClient client = createMock(HttpClient.class);
+    expect(client.execute(isA(HttpUriRequest.class)))
+        .andThrow(new NoHttpResponseException("The target server failed to respond"));
+    replay(client);
+
+    HttpCommandProcessor processor = new StubbedHttpCommandProcessor(client);
+    try {
+      processor.getCommandResponseAsString("cmd=click");
+      fail("Expected the command to fail");
+    } catch (NoHttpResponseException expected) {
+      // The click may have been done
+    }
+    verify(client);
+  }
+
   @Test
   public void testResourcesClosedWhenIoeOnGetConnection() {
     IOEThrowingHttpCommandProcessor cmdProc = new IOEThrowingHttpCommandProcessor(
@@ -107,13 +183,89 @@ public class HttpCommandProcessorUnitTest {
     IOEThrowingHttpCommandProcessor cmdProc = new IOEThrowingHttpCommandProcessor(
         "localhost", 4444, "*chrome", "http://www.google.com");
     try {
-      cmdProc.getCommandResponseAsString("testCommand");
+      assertEquals("normal response", cmdProc.getCommandResponseAsString("testCommand"));
       cmdProc.verifyClosedResources(true, true, true);
     } catch (IOException ioe) {
       fail();
     }
   }
 
+  @Test
+  public void testReleasesTheConnectionWhenTheServerFails() throws IOException {
+    HttpClient client = createMock(HttpClient.class);
+    Content content = new Content("boom");
+    expect(client.execute(isA(HttpUriRequest.class))).andReturn(response(500, content));
+    replay(client);
+
+    HttpCommandProcessor processor = new StubbedHttpCommandProcessor(client);
+    try {
+      processor.getCommandResponseAsString("cmd=open");
+      fail("Expected the command to fail");
+    } catch (SeleniumException e) {
+      assertEquals("Internal Server Error", e.getMessage());
+    }
+    assertTrue(content.closed);
+  }
+
+  @Test
+  public void testReleasesTheConnectionOnceTheResponseIsRead() throws IOException {
+    HttpClient client = createMock(HttpClient.class);
+    Content content = new Content("OK,\u00e9t\u00e9");
+    expect(client.execute(isA(HttpUriRequest.class))).andReturn(response(200, content));
+    replay(client);
+
+    HttpCommandProcessor processor = new StubbedHttpCommandProcessor(client);
+
+    assertEquals("OK,\u00e9t\u00e9", processor.getCommandResponseAsString("cmd=getText"));
+    assertTrue(content.closed);
+  }
+
+  private static HttpResponse response(int status, String body) {
+    return response(status, new Content(body));
+  }
+
+  private static HttpResponse response(int status, Content content) {
+    HttpResponse response = new BasicHttpResponse(new BasicStatusLine(HttpVersion.HTTP_1_1,
+        status, EnglishReasonPhraseCatalog.INSTANCE.getReason(status, null)));
+    BasicHttpEntity entity = new BasicHttpEntity();
+    entity.setContent(content);
+    response.setEntity(entity);
+    return response;
+  }
+
+  /**
+   * The body of a response. The client releases its connection once it's closed.
+   */
+  private static class Content extends ByteArrayInputStream {
+
+    private boolean closed;
+
+    Content(String body) {
+      super(body.getBytes(Charsets.UTF_8));
+    }
+
+    @Override
+    public void close() throws IOException {
+      closed = true;
+      super.close();
+    }
+  }
+
+  private static class StubbedHttpCommandProcessor extends HttpCommandProcessor {
+
+    private final HttpClient client;
+
+    StubbedHttpCommandProcessor(HttpClient client) {
+      super("localhost", 4444, "*chrome", "http://www.google.com");
+      this.client = client;
+    }
+
+    @Override
+    protected HttpClient getHttpClient() {
+      return client;
+    }
+  }
+
   /**
    * Inner class to help mock out the network and pipe connections to verify that they are closed
    * regardless of where IOExceptions occur.
@@ -318,6 +318,25 @@ public class ElementFindingTest extends JUnit4TestBase {
     assertEquals(8, elements.size());
   }
 
+  @JavascriptEnabled
+  @Test
+  public void testShouldFindMultipleElementsByIdInDocumentOrderAfterAScriptMovedThem() {
+    driver.get(pages.nestedPage);
+
+    ((JavascriptExecutor) driver).executeScript(
+        "var moved = document.createElement('p');" +
+        "moved.id = 'test_id';" +
+        "moved.innerHTML = 'first';" +
+        "document.body.insertBefore(moved, document.body.firstChild);");
+
+    List<WebElement> elements = driver.findElements(By.id("test_id"));
+
+    assertEquals(3, elements.size());
+    assertEquals("first", elements.get(0).getText());
+    assertEquals("outside", elements.get(1).getText());
+    assertEquals("inside", elements.get(2).getText());
+  }
+
   @Test
   public void testShouldBeAbleToFindMultipleElementsByClassName() {
     driver.get(pages.xhtmlTestPage);
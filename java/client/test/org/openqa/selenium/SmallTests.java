@@ -29,7 +29,9 @@ import org.openqa.selenium.io.ZipTest;
 import org.openqa.selenium.logging.LoggingTest;
 import org.openqa.selenium.logging.PerformanceLoggingMockTest;
 import org.openqa.selenium.net.NetworkUtilsTest;
+import org.openqa.selenium.os.CapturedOutputTest;
 import org.openqa.selenium.os.CommandLineTest;
+import org.openqa.selenium.os.RotatingFileOutputStreamTest;
 import org.openqa.selenium.os.WindowsUtilsUnitTest;
 import org.openqa.selenium.testing.IgnoreComparitorUnitTest;
 
@@ -38,6 +40,7 @@ import org.openqa.selenium.testing.IgnoreComparitorUnitTest;
     ActionsTest.class,
     Base64EncoderTest.class,
     ByTest.class,
+    CapturedOutputTest.class,
     CommandLineTest.class,
     CookieTest.class,
     CompositeActionTest.class,
@@ -53,6 +56,7 @@ import org.openqa.selenium.testing.IgnoreComparitorUnitTest;
     PlatformTest.class,
     PointTest.class,
     ProxyTest.class,
+    RotatingFileOutputStreamTest.class,
     TemporaryFilesystemTest.class,
     WebDriverExceptionTest.class,
     WindowsUtilsUnitTest.class,
@@ -16,6 +16,9 @@ limitations under the License.
 
 package org.openqa.selenium.firefox;
 
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
 import org.junit.Before;
 import org.junit.Test;
 import org.openqa.selenium.Proxy;
@@ -35,7 +38,9 @@ import java.util.List;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -175,6 +180,70 @@ public class FirefoxProfileTest {
     assertTrue(FileHandler.readAsString(prefs).contains("i.like.cheese"));
   }
 
+  @Test
+  public void shouldNotShareTheDirectoriesOfProfilesLaidOutFromTheSameTemplate() throws IOException {
+    profile.addExtension(InProject.locate(FIREBUG_PATH));
+    File first = profile.layoutOnDisk();
+    File extensionDir = new File(first, "extensions/firebug@software.joehewitt.com");
+    assertTrue(FileHandler.delete(extensionDir));
+
+    File second = profile.layoutOnDisk();
+    assertFalse(first.equals(second));
+    assertTrue(new File(second, "extensions/firebug@software.joehewitt.com").exists());
+  }
+
+  @Test
+  public void shouldSeeTheChangesMadeToTheModelOnceATemplateIsBuilt() throws IOException {
+    File model = TemporaryFilesystem.getDefaultTmpFS().createTempDir("model", "profile");
+    FirefoxProfile profile = new FirefoxProfile(model);
+    profile.layoutOnDisk();
+
+    File bookmarks = new File(model, "bookmarks.html");
+    Files.write("<html></html>", bookmarks, Charsets.UTF_8);
+
+    assertTrue(new File(profile.layoutOnDisk(), "bookmarks.html").exists());
+  }
+
+  @Test
+  public void shouldOnlyZipTheSameProfileOnce() throws IOException {
+    profile.setPreference("i.like.cheese", true);
+    String json = profile.toJson();
+    assertSame(json, profile.toJson());
+
+    profile.setPreference("i.like.cheese", false);
+    String changed = profile.toJson();
+    assertFalse(json.equals(changed));
+    assertEquals(false, parseUserPrefs(FirefoxProfile.fromJson(changed))
+        .getPreference("i.like.cheese"));
+  }
+
+  @Test
+  public void shouldKeepTheModelOfAProfileReceivedTwice() throws IOException {
+    String json = profile.toJson();
+    FirefoxProfile first = FirefoxProfile.fromJson(json);
+    first.layoutOnDisk();
+    first.cleanTemporaryModel();
+
+    FirefoxProfile second = FirefoxProfile.fromJson(json);
+    assertTrue(new File(second.layoutOnDisk(), "user.js").exists());
+  }
+
+  @Test
+  public void shouldKeepTheModelOfAReceivedProfileUntilItIsCleaned() throws IOException {
+    File model = TemporaryFilesystem.getDefaultTmpFS().createTempDir("model", "profile");
+    Files.write("<html></html>", new File(model, "bookmarks.html"), Charsets.UTF_8);
+    FirefoxProfile sent = new FirefoxProfile(model);
+
+    FirefoxProfile first = FirefoxProfile.fromJson(sent.toJson());
+    for (int i = 0; i < 10; i++) {
+      sent.setPreference("i.like.cheese", i);
+      FirefoxProfile.fromJson(sent.toJson()).cleanTemporaryModel();
+    }
+
+    assertTrue(new File(first.layoutOnDisk(), "bookmarks.html").exists());
+    first.cleanTemporaryModel();
+  }
+
   private List<String> readGeneratedProperties(FirefoxProfile profile) throws Exception {
     File generatedProfile = profile.layoutOnDisk();
 
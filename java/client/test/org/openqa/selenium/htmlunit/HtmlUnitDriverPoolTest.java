@@ -0,0 +1,129 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.openqa.selenium.htmlunit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import com.gargoylesoftware.htmlunit.BrowserVersion;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.Pages;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.environment.GlobalTestEnvironment;
+import org.openqa.selenium.environment.InProcessTestEnvironment;
+
+import java.util.List;
+import java.util.Map;
+
+public class HtmlUnitDriverPoolTest {
+
+  private Pages pages;
+  private HtmlUnitDriverPool pool;
+
+  @Before
+  public void createPool() {
+    pages = new Pages(GlobalTestEnvironment.get(InProcessTestEnvironment.class).getAppServer());
+    pool = new HtmlUnitDriverPool(2, true,
+        BrowserVersion.FIREFOX_10, BrowserVersion.INTERNET_EXPLORER_8);
+  }
+
+  @After
+  public void quitPool() {
+    pool.quit();
+  }
+
+  @Test
+  public void runsACheckInEachBrowserVersion() throws InterruptedException {
+    Map<BrowserVersion, String> titles = pool.fanOut(new Function<WebDriver, String>() {
+      public String apply(WebDriver driver) {
+        driver.get(pages.simpleTestPage);
+        return driver.getTitle();
+      }
+    });
+
+    assertEquals(ImmutableList.of(BrowserVersion.FIREFOX_10, BrowserVersion.INTERNET_EXPLORER_8),
+                 ImmutableList.copyOf(titles.keySet()));
+    assertEquals("Hello WebDriver", titles.get(BrowserVersion.FIREFOX_10));
+    assertEquals("Hello WebDriver", titles.get(BrowserVersion.INTERNET_EXPLORER_8));
+  }
+
+  @Test
+  public void handsOutDriversWithoutTheStateOfTheirPreviousUse() throws InterruptedException {
+    List<Function<WebDriver, Integer>> checks = Lists.newArrayList();
+    for (int i = 0; i < 6; i++) {
+      checks.add(new Function<WebDriver, Integer>() {
+        public Integer apply(WebDriver driver) {
+          driver.get(pages.xhtmlTestPage);
+          int cookies = driver.manage().getCookies().size();
+          driver.manage().addCookie(new Cookie("cheese", "cheddar"));
+          return cookies;
+        }
+      });
+    }
+
+    List<Integer> cookies = pool.invokeAll(BrowserVersion.FIREFOX_10, checks);
+
+    assertEquals(ImmutableList.of(0, 0, 0, 0, 0, 0), cookies);
+  }
+
+  @Test
+  public void reportsAFailedCheckAndKeepsItsDriver() throws InterruptedException {
+    try {
+      pool.fanOut(new Function<WebDriver, String>() {
+        public String apply(WebDriver driver) {
+          throw new IllegalStateException("mouldy");
+        }
+      });
+      fail("Expected the check to fail");
+    } catch (IllegalStateException e) {
+      assertEquals("mouldy", e.getMessage());
+    }
+
+    HtmlUnitDriver first = pool.take(BrowserVersion.FIREFOX_10);
+    HtmlUnitDriver second = pool.take(BrowserVersion.FIREFOX_10);
+    assertNotSame(first, second);
+    pool.release(first);
+    pool.release(second);
+  }
+
+  @Test
+  public void driversOfTheSameVersionShareTheirCache() throws InterruptedException {
+    HtmlUnitDriver first = pool.take(BrowserVersion.FIREFOX_10);
+    HtmlUnitDriver second = pool.take(BrowserVersion.FIREFOX_10);
+    HtmlUnitDriver other = pool.take(BrowserVersion.INTERNET_EXPLORER_8);
+    try {
+      assertSame(first.getWebClient().getCache(), second.getWebClient().getCache());
+      assertNotSame(first.getWebClient().getCache(), other.getWebClient().getCache());
+      assertTrue(first.isJavascriptEnabled());
+    } finally {
+      pool.release(first);
+      pool.release(second);
+      pool.release(other);
+    }
+  }
+}
@@ -25,6 +25,7 @@ import static org.junit.runners.Suite.SuiteClasses;
 @RunWith(Suite.class)
 @SuiteClasses({
     HtmlUnitCapabilitiesTest.class,
+    HtmlUnitDriverPoolTest.class,
     InputKeysContainerTest.class,
     ToStringTest.class
 })
@@ -0,0 +1,65 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.os;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class CapturedOutputTest {
+
+  @Test
+  public void shouldKeepAllTheOutputBelowTheMaximumSize() {
+    CapturedOutput output = new CapturedOutput(10);
+    output.write("cheese".getBytes(), 0, 6);
+    output.write('!');
+    assertEquals("cheese!", output.toString());
+  }
+
+  @Test
+  public void shouldOnlyKeepTheLastBytes() {
+    CapturedOutput output = new CapturedOutput(8);
+    output.write("brie and ".getBytes(), 0, 9);
+    output.write('c');
+    output.write("heddar".getBytes(), 0, 6);
+    assertEquals(" cheddar", output.toString());
+  }
+
+  @Test
+  public void shouldOnlyKeepTheEndOfAWriteLargerThanTheMaximumSize() {
+    CapturedOutput output = new CapturedOutput(4);
+    output.write("ab".getBytes(), 0, 2);
+    output.write("cheddar".getBytes(), 1, 6);
+    assertEquals("ddar", output.toString());
+  }
+
+  @Test
+  public void shouldGrowBeyondItsInitialSizeUpToTheMaximum() {
+    CapturedOutput output = new CapturedOutput(10000);
+    byte[] bytes = new byte[6000];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) ('a' + i % 26);
+    }
+    output.write(bytes, 0, bytes.length);
+    output.write(bytes, 0, bytes.length);
+
+    byte[] kept = output.toByteArray();
+    assertEquals(10000, kept.length);
+    assertEquals(bytes[2000], kept[0]);
+    assertEquals(bytes[5999], kept[9999]);
+  }
+}
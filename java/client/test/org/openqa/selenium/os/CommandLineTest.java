@@ -20,11 +20,16 @@ import com.google.common.collect.Maps;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.openqa.selenium.Platform;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assume.assumeFalse;
 
 public class CommandLineTest {
 
@@ -131,5 +136,26 @@ public class CommandLineTest {
     commandLine.destroy();
   }
 
+  @Test
+  public void testShouldOnlyKeepTheEndOfTheOutput() {
+    assumeFalse(Platform.getCurrent().is(Platform.WINDOWS));
+    CommandLine commandLine = new CommandLine("echo", "cheese and peas");
+    commandLine.setMaxOutputSize(5);
+    commandLine.execute();
+    assertEquals("peas\n", commandLine.getStdOut());
+  }
 
+  @Test
+  public void testShouldTellTheListenersAboutEachLine() {
+    assumeFalse(Platform.getCurrent().is(Platform.WINDOWS));
+    final List<String> lines = new CopyOnWriteArrayList<String>();
+    CommandLine commandLine = new CommandLine("printf", "cheese\\npeas\\nham");
+    commandLine.addOutputListener(new OutputListener() {
+      public void onLine(String line, boolean isStdErr) {
+        lines.add(line);
+      }
+    });
+    commandLine.execute();
+    assertEquals(Arrays.asList("cheese", "peas", "ham"), lines);
+  }
 }
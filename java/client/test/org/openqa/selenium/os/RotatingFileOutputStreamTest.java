@@ -0,0 +1,86 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.os;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.io.TemporaryFilesystem;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class RotatingFileOutputStreamTest {
+
+  private TemporaryFilesystem tmpFs;
+  private File log;
+
+  @Before
+  public void setUp() {
+    File baseForTest = new File(System.getProperty("java.io.tmpdir"), "tmpTest");
+    baseForTest.mkdir();
+    tmpFs = TemporaryFilesystem.getTmpFsBasedOn(baseForTest);
+    log = new File(tmpFs.createTempDir("rotating", "log"), "process.log");
+  }
+
+  @After
+  public void tearDown() {
+    tmpFs.deleteTemporaryFiles();
+  }
+
+  @Test
+  public void shouldRotateTheFileWhenItIsFull() throws IOException {
+    RotatingFileOutputStream out = new RotatingFileOutputStream(log, 4, 2);
+    out.write("cheddarbrie".getBytes());
+    out.write('!');
+    out.close();
+
+    assertEquals("rie!", read(log));
+    assertEquals("darb", read(new File(log.getPath() + ".1")));
+    assertEquals("ched", read(new File(log.getPath() + ".2")));
+  }
+
+  @Test
+  public void shouldDropTheOldestFile() throws IOException {
+    RotatingFileOutputStream out = new RotatingFileOutputStream(log, 3, 1);
+    out.write("brieham!".getBytes());
+    out.close();
+
+    assertEquals("m!", read(log));
+    assertEquals("eha", read(new File(log.getPath() + ".1")));
+    assertFalse(new File(log.getPath() + ".2").exists());
+  }
+
+  @Test
+  public void shouldTruncateTheFileWhenThereAreNoBackups() throws IOException {
+    RotatingFileOutputStream out = new RotatingFileOutputStream(log, 4, 0);
+    out.write("cheddar".getBytes());
+    out.close();
+
+    assertEquals("dar", read(log));
+  }
+
+  private String read(File file) throws IOException {
+    return Files.toString(file, Charsets.UTF_8);
+  }
+}
@@ -19,6 +19,7 @@ package org.openqa.selenium.remote;
 import static org.openqa.selenium.remote.CapabilityType.SUPPORTS_BROWSER_CONNECTION;
 import static org.openqa.selenium.remote.DriverCommand.FIND_ELEMENT;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
@@ -34,6 +35,7 @@ import com.google.common.collect.Maps;
 import org.openqa.selenium.By;
 import org.openqa.selenium.Capabilities;
 import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.OutputType;
 import org.openqa.selenium.Rotatable;
 import org.openqa.selenium.ScreenOrientation;
 import org.openqa.selenium.StubDriver;
@@ -41,9 +43,11 @@ import org.openqa.selenium.StubElement;
 import org.openqa.selenium.TakesScreenshot;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
+import org.openqa.selenium.internal.Base64Encoder;
 
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.HashMap;
@@ -95,6 +99,66 @@ public class AugmenterTest {
     assertFalse(returned instanceof TakesScreenshot);
   }
 
+  @Test
+  public void shouldWriteTheScreenshotToAStream() {
+    DesiredCapabilities caps = new DesiredCapabilities();
+    caps.setCapability(CapabilityType.TAKES_SCREENSHOT, true);
+    StubExecutor stubExecutor = new StubExecutor(caps);
+    byte[] png = {(byte) 0x89, 'P', 'N', 'G', 0, 1, 2};
+    stubExecutor.expect(DriverCommand.SCREENSHOT, new HashMap<String, Object>(),
+                        new Base64Encoder().encode(png));
+    WebDriver driver = new RemoteWebDriver(stubExecutor, caps);
+
+    WebDriver returned = new Augmenter().augment(driver);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ((TakesScreenshotToStream) returned).writeScreenshotTo(out);
+
+    assertArrayEquals(png, out.toByteArray());
+    assertArrayEquals(png, ((TakesScreenshot) returned).getScreenshotAs(OutputType.BYTES));
+  }
+
+  @Test
+  public void shouldReuseTheAugmentedClassForTheSameCapabilities() {
+    DesiredCapabilities caps = new DesiredCapabilities();
+    caps.setCapability(CapabilityType.TAKES_SCREENSHOT, true);
+    StubExecutor first = new StubExecutor(caps);
+    byte[] firstPng = {(byte) 0x89, 'P', 'N', 'G', 1};
+    first.expect(DriverCommand.SCREENSHOT, new HashMap<String, Object>(),
+                 new Base64Encoder().encode(firstPng));
+    StubExecutor second = new StubExecutor(caps);
+    byte[] secondPng = {(byte) 0x89, 'P', 'N', 'G', 2};
+    second.expect(DriverCommand.SCREENSHOT, new HashMap<String, Object>(),
+                  new Base64Encoder().encode(secondPng));
+
+    WebDriver firstReturned = new Augmenter().augment(new RemoteWebDriver(first, caps));
+    WebDriver secondReturned = new Augmenter().augment(new RemoteWebDriver(second, caps));
+
+    assertSame(firstReturned.getClass(), secondReturned.getClass());
+    assertArrayEquals(firstPng,
+                      ((TakesScreenshot) firstReturned).getScreenshotAs(OutputType.BYTES));
+    assertArrayEquals(secondPng,
+                      ((TakesScreenshot) secondReturned).getScreenshotAs(OutputType.BYTES));
+  }
+
+  @Test
+  public void shouldGenerateAnotherClassForOtherCapabilities() {
+    DesiredCapabilities screenshots = new DesiredCapabilities();
+    screenshots.setCapability(CapabilityType.TAKES_SCREENSHOT, true);
+    DesiredCapabilities rotatable = new DesiredCapabilities();
+    rotatable.setCapability(CapabilityType.ROTATABLE, true);
+
+    WebDriver first = new Augmenter().augment(
+        new RemoteWebDriver(new StubExecutor(screenshots), screenshots));
+    WebDriver second = new Augmenter().augment(
+        new RemoteWebDriver(new StubExecutor(rotatable), rotatable));
+
+    assertNotSame(first.getClass(), second.getClass());
+    assertTrue(first instanceof TakesScreenshot);
+    assertFalse(first instanceof Rotatable);
+    assertTrue(second instanceof Rotatable);
+    assertFalse(second instanceof TakesScreenshot);
+  }
+
   @Test
   public void shouldDelegateToHandlerIfAdded() {
     DesiredCapabilities caps = new DesiredCapabilities();
@@ -0,0 +1,72 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.openqa.selenium.remote;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.openqa.selenium.internal.Base64Encoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.Map;
+import java.util.Random;
+
+public class Base64ResponseReaderTest {
+
+  @Test
+  public void shouldDecodeTheValueIntoTheStream() throws Exception {
+    byte[] png = new byte[10000];
+    new Random(42).nextBytes(png);
+    String base64 = new Base64Encoder().encode(png);
+    // escaped the way org.json escapes it, with the line breaks and slashes.
+    String json = "{\"sessionId\":\"foo\",\"status\":0,\"value\":" + JSONObject.quote(base64)
+                  + ",\"state\":null,\"class\":\"org.openqa.selenium.remote.Response\"}";
+    assertTrue(json.contains("\\n"));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Response response = new Base64ResponseReader().read(new StringReader(json), out);
+
+    assertArrayEquals(png, out.toByteArray());
+    assertNull(response.getValue());
+    assertEquals("foo", response.getSessionId());
+    assertEquals(0, response.getStatus());
+  }
+
+  @Test
+  public void shouldKeepAValueWhichIsNotAString() throws Exception {
+    String json = "{ \"status\" : 13, \"value\" : {\"message\": \"boom, \\\"it\\\" failed}\","
+                  + " \"stackTrace\": [{\"lineNumber\": 1}]}, \"sessionId\": \"foo\" }";
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Response response = new Base64ResponseReader().read(new StringReader(json), out);
+
+    assertEquals(0, out.size());
+    assertEquals(13, response.getStatus());
+    assertEquals("foo", response.getSessionId());
+    assertEquals("boom, \"it\" failed}", ((Map<?, ?>) response.getValue()).get("message"));
+  }
+
+  @Test
+  public void shouldReturnNullForAnEmptyResponse() throws Exception {
+    assertNull(new Base64ResponseReader().read(new StringReader(""), new ByteArrayOutputStream()));
+  }
+}
@@ -360,6 +360,26 @@ public class BeanToJsonConverterTest {
     assertEquals("{\"id\":null}", payload);
   }
 
+  @Test
+  public void testEscapesStringsTheWayJsonObjectDoes() {
+    String value = "a\"b\\c</d\u0001\n\u0085\u2028e";
+    Map<String, Object> map = ImmutableMap.<String, Object>of("key", value);
+
+    assertEquals("{\"key\":" + JSONObject.quote(value) + "}",
+                 new BeanToJsonConverter().convert(map));
+  }
+
+  @Test
+  public void testCanWriteToAnAppendable() {
+    Map<String, Object> map = ImmutableMap.<String, Object>of(
+        "list", Lists.newArrayList(1, "two", null), "cookie", new Cookie("a", "b"));
+    StringBuilder out = new StringBuilder();
+
+    new BeanToJsonConverter().convert(map, out);
+
+    assertEquals(new BeanToJsonConverter().convert(map), out.toString());
+  }
+
   @Test
   public void testConvertLoggingPreferencesToJson() throws JSONException {
     LoggingPreferences prefs = new LoggingPreferences();
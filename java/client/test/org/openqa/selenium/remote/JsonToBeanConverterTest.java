@@ -16,6 +16,8 @@ limitations under the License.
 
 package org.openqa.selenium.remote;
 
+import com.google.common.collect.ImmutableMap;
+
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -25,6 +27,7 @@ import org.openqa.selenium.Cookie;
 import org.openqa.selenium.Platform;
 import org.openqa.selenium.browserlaunchers.DoNotUseProxyPac;
 
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.Collections;
@@ -337,6 +340,39 @@ public class JsonToBeanConverterTest {
     assertThat(convertedInner.toString(), equalTo(inner.toString()));
   }
 
+  @Test
+  public void testParsesValuesTheWayOrgJsonDoes() throws JSONException {
+    String json = "{\"string\": \"a\\\"b\\\\c\\/d\\u00e9\\n\", \"int\": -12, "
+        + "\"long\": 12345678901, \"double\": 1.5e3, \"octal\": 010, \"true\": true, "
+        + "\"null\": null, \"list\": [1, \"two\", [], {}], \"map\": {\"key\": false}}";
+
+    Map<?, ?> converted = new JsonToBeanConverter().convert(Map.class, json);
+
+    assertEquals(new JsonToBeanConverter().convert(Map.class, new JSONObject(json)), converted);
+    assertEquals("a\"b\\c/d\u00e9\n", converted.get("string"));
+    assertEquals(12345678901L, converted.get("long"));
+  }
+
+  @Test
+  public void testCanConvertFromAReader() {
+    StringBuilder value = new StringBuilder();
+    while (value.length() < 20000) {
+      value.append("line \"").append(value.length()).append("\"\n");
+    }
+    String json = new BeanToJsonConverter().convert(
+        ImmutableMap.of("sessionId", "1234", "status", 0, "value", value.toString()));
+
+    Response response = new JsonToBeanConverter().convert(Response.class, new StringReader(json));
+
+    assertEquals("1234", response.getSessionId());
+    assertEquals(value.toString(), response.getValue());
+  }
+
+  @Test
+  public void testConvertsAnEmptyReaderToNull() {
+    assertNull(new JsonToBeanConverter().convert(Map.class, new StringReader(" \n")));
+  }
+
   public static class SimpleBean {
 
     private String value;
@@ -20,12 +20,15 @@ package org.openqa.selenium.remote;
 
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
+import org.openqa.selenium.remote.internal.Base64DecodingOutputStreamTest;
 import org.openqa.selenium.remote.internal.CircularOutputStreamTest;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
     AugmenterTest.class,
+    Base64ResponseReaderTest.class,
     ErrorHandlerTest.class,
+    Base64DecodingOutputStreamTest.class,
     CircularOutputStreamTest.class
 })
 public class RemoteClientTests {
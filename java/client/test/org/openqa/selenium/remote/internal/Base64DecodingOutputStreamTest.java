@@ -0,0 +1,67 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.openqa.selenium.remote.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import com.google.common.base.Charsets;
+
+import org.junit.Test;
+import org.openqa.selenium.internal.Base64Encoder;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+public class Base64DecodingOutputStreamTest {
+
+  @Test
+  public void testShouldDecodeWhatTheEncoderEncodes() throws Exception {
+    Random random = new Random(42);
+    // all the lengths of the last group, and more than a line of the encoder.
+    for (int length = 0; length < 100; length++) {
+      byte[] data = new byte[length];
+      random.nextBytes(data);
+
+      assertArrayEquals(data, decode(new Base64Encoder().encode(data)));
+    }
+  }
+
+  @Test
+  public void testShouldDecodeMoreThanItsBuffer() throws Exception {
+    byte[] data = new byte[100000];
+    new Random(42).nextBytes(data);
+
+    assertArrayEquals(data, decode(new Base64Encoder().encode(data)));
+  }
+
+  @Test
+  public void testShouldSkipWhatIsNotBase64() throws Exception {
+    assertArrayEquals("hello".getBytes(Charsets.US_ASCII), decode("aG\r\nVs bG8="));
+  }
+
+  private byte[] decode(String base64) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Base64DecodingOutputStream decoder = new Base64DecodingOutputStream(out);
+    // a few bytes at a time, as they would come from the wire.
+    byte[] bytes = base64.getBytes(Charsets.US_ASCII);
+    for (int i = 0; i < bytes.length; i += 7) {
+      decoder.write(bytes, i, Math.min(7, bytes.length - i));
+    }
+    decoder.finish();
+    return out.toByteArray();
+  }
+}
@@ -26,18 +26,27 @@ import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 /**
- * The set of active test sessions.
+ * The set of active test sessions, indexed by their internal and external keys so that finding the
+ * session of a command doesn't depend on the number of sessions.
+ * <p/>
+ * The external key of a session is usually known once it's been added, the session tells the set
+ * when it's given one.
  */
 @ThreadSafe
 class ActiveTestSessions {
 
   private static final Logger log = Logger.getLogger(ActiveTestSessions.class.getName());
 
-  private final Set<TestSession> activeTestSessions = new CopyOnWriteArraySet<TestSession>();
+  private final Set<TestSession> activeTestSessions =
+      Collections.newSetFromMap(new ConcurrentHashMap<TestSession, Boolean>());
+  private final ConcurrentMap<String, TestSession> byInternalKey =
+      new ConcurrentHashMap<String, TestSession>();
+  private final ConcurrentMap<ExternalSessionKey, TestSession> byExternalKey =
+      new ConcurrentHashMap<ExternalSessionKey, TestSession>();
 
   private final
   Queue<ExternalSessionKey>
@@ -53,13 +62,49 @@ class ActiveTestSessions {
     final boolean added = activeTestSessions.add(testSession);
     if (!added) {
       log.severe("Error adding session : " + testSession);
+      return false;
     }
-    return added;
+    byInternalKey.put(testSession.getInternalKey(), testSession);
+    testSession.setActiveTestSessions(this);
+    index(testSession.getExternalKey(), testSession);
+    return true;
   }
 
   public boolean remove(TestSession o, SessionTerminationReason reason) {
     updateReason(o, reason);
-    return activeTestSessions.remove(o);
+    boolean removed = activeTestSessions.remove(o);
+    if (removed) {
+      o.setActiveTestSessions(null);
+      byInternalKey.remove(o.getInternalKey(), o);
+      ExternalSessionKey externalKey = o.getExternalKey();
+      if (externalKey != null) {
+        byExternalKey.remove(externalKey, o);
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Called by an active session when it's given a new external key.
+   */
+  void externalKeyChanged(TestSession session, ExternalSessionKey previous) {
+    if (previous != null) {
+      byExternalKey.remove(previous, session);
+    }
+    if (activeTestSessions.contains(session)) {
+      index(session.getExternalKey(), session);
+    }
+  }
+
+  private void index(ExternalSessionKey externalKey, TestSession session) {
+    if (externalKey == null) {
+      return;
+    }
+    TestSession previous = byExternalKey.put(externalKey, session);
+    if (previous != null && previous != session) {
+      log.warning("Sessions " + previous.getInternalKey() + " and " + session.getInternalKey()
+                  + " have the same external key " + externalKey);
+    }
   }
 
   private void updateReason(TestSession o, SessionTerminationReason reason) {
@@ -84,13 +129,7 @@ class ActiveTestSessions {
     if (internalKey == null) {
       return null;
     }
-
-    for (TestSession session : activeTestSessions) {
-      if (internalKey.equals(session.getInternalKey())) {
-        return session;
-      }
-    }
-    return null;
+    return byInternalKey.get(internalKey);
   }
 
   public TestSession getExistingSession(ExternalSessionKey externalkey) {
@@ -117,12 +156,16 @@ class ActiveTestSessions {
       return null;
     }
 
-    for (TestSession session : activeTestSessions) {
-      if (externalkey.equals(session.getExternalKey())) {
-        return session;
-      }
+    TestSession session = byExternalKey.get(externalkey);
+    if (session == null) {
+      return null;
+    }
+    // indexed while it was removed or given another key.
+    if (!externalkey.equals(session.getExternalKey()) || !activeTestSessions.contains(session)) {
+      byExternalKey.remove(externalkey, session);
+      return null;
     }
-    return null;
+    return session;
   }
 
   public Set<TestSession> unmodifiableSet() {
@@ -17,6 +17,8 @@ limitations under the License.
 
 package org.openqa.grid.internal;
 
+import com.google.common.util.concurrent.MoreExecutors;
+
 import org.apache.http.HttpHost;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
@@ -43,6 +45,11 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.security.InvalidParameterException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -74,7 +81,10 @@ public class BaseRemoteProxy implements RemoteProxy {
   private final String id;
 
   private volatile boolean stop = false;
-  private CleanUpThread cleanUpThread;
+  // created on first use, shared by all the sessions running on the node.
+  private volatile HttpClient gridHttpClient;
+  private CleanUpTask cleanUpTask;
+  private volatile ScheduledFuture<?> cleanUpCycles;
 
 
   public List<TestSlot> getTestSlots() {
@@ -203,13 +213,13 @@ public class BaseRemoteProxy implements RemoteProxy {
   }
 
   public void setupTimeoutListener() {
-    cleanUpThread = null;
+    cleanUpTask = null;
     if (this instanceof TimeoutListener) {
       if (cleanUpCycle > 0 && timeOutMs > 0) {
-        log.fine("starting cleanup thread");
-        cleanUpThread = new CleanUpThread(this);
-        new Thread(cleanUpThread, "RemoteProxy CleanUpThread")
-            .start(); // Thread safety reviewed (hopefully ;)
+        log.fine("scheduling the cleanup cycles");
+        cleanUpTask = new CleanUpTask(this);
+        cleanUpCycles = registry.getProxyScheduler().scheduleWithFixedDelay(
+            cleanUpTask, cleanUpCycle, cleanUpCycle, TimeUnit.MILLISECONDS);
       }
     }
   }
@@ -243,41 +253,40 @@ public class BaseRemoteProxy implements RemoteProxy {
 
   public void teardown() {
     stop = true;
+    ScheduledFuture<?> cycles = cleanUpCycles;
+    if (cycles != null) {
+      cycles.cancel(false);
+    }
   }
 
   /**
-   * Internal use only
+   * Internal use only. The sessions found timed out or orphaned are released before it returns.
    */
   public void forceSlotCleanerRun() {
-    cleanUpThread.cleanUpAllSlots();
+    cleanUpTask.cleanUpAllSlots(MoreExecutors.sameThreadExecutor());
   }
 
-  class CleanUpThread implements Runnable {
+  class CleanUpTask implements Runnable {
 
     private BaseRemoteProxy proxy;
+    // the sessions being released, which the next cycles leave alone.
+    private final Set<TestSession> releasing =
+        Collections.newSetFromMap(new ConcurrentHashMap<TestSession, Boolean>());
 
-    public CleanUpThread(BaseRemoteProxy proxy) {
+    public CleanUpTask(BaseRemoteProxy proxy) {
       this.proxy = proxy;
     }
 
     public void run() {
-
-      log.fine("cleanup thread starting...");
-      while (!proxy.stop) {
-        try {
-          Thread.sleep(cleanUpCycle);
-        } catch (InterruptedException e) {
-          log.severe("clean up thread died. " + e.getMessage());
-        }
-
-        cleanUpAllSlots();
+      if (!proxy.stop) {
+        cleanUpAllSlots(registry.getSessionReleaser());
       }
     }
 
-    void cleanUpAllSlots() {
+    void cleanUpAllSlots(Executor releaser) {
       for (TestSlot slot : testSlots) {
         try {
-          cleanUpSlot(slot);
+          cleanUpSlot(slot, releaser);
         } catch (Throwable t) {
           log.warning("Error executing the timeout when cleaning up slot " + slot
               + t.getMessage());
@@ -285,27 +294,47 @@ public class BaseRemoteProxy implements RemoteProxy {
       }
     }
 
-    private void cleanUpSlot(TestSlot slot) {
+    private void cleanUpSlot(TestSlot slot, Executor releaser) {
       TestSession session = slot.getSession();
-      if (session != null) {
-        long inactivity = session.getInactivityTime();
-        boolean hasTimedOut = inactivity > timeOutMs;
-        if (hasTimedOut) {
-          if (!session.isForwardingRequest()) {
-            log.logp(Level.WARNING, "SessionCleanup", null,
-                "session " + session
-                    + " has TIMED OUT due to client inactivity and will be released.");
-            ((TimeoutListener) proxy).beforeRelease(session);
-            registry.terminate(session, SessionTerminationReason.TIMEOUT);
-          }
-        }
+      if (session == null || releasing.contains(session)) {
+        return;
+      }
 
-        if (session.isOrphaned()) {
-          log.logp(Level.WARNING, "SessionCleanup", null,
-              "session " + session + " has been ORPHANED and will be released");
-          ((TimeoutListener) proxy).beforeRelease(session);
-          registry.terminate(session, SessionTerminationReason.ORPHAN);
-        }
+      long inactivity = session.getInactivityTime();
+      boolean hasTimedOut = inactivity > timeOutMs;
+      if (hasTimedOut && !session.isForwardingRequest()) {
+        log.logp(Level.WARNING, "SessionCleanup", null,
+            "session " + session
+                + " has TIMED OUT due to client inactivity and will be released.");
+        release(session, SessionTerminationReason.TIMEOUT, releaser);
+      } else if (session.isOrphaned()) {
+        log.logp(Level.WARNING, "SessionCleanup", null,
+            "session " + session + " has been ORPHANED and will be released");
+        release(session, SessionTerminationReason.ORPHAN, releaser);
+      }
+    }
+
+    private void release(final TestSession session, final SessionTerminationReason reason,
+        Executor releaser) {
+      if (!releasing.add(session)) {
+        return;
+      }
+      try {
+        releaser.execute(new Runnable() {
+          public void run() {
+            try {
+              ((TimeoutListener) proxy).beforeRelease(session);
+              registry.terminate(session, reason);
+            } catch (Throwable t) {
+              log.warning("Error releasing the session " + session + ": " + t.getMessage());
+            } finally {
+              releasing.remove(session);
+            }
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        // the registry is stopping
+        releasing.remove(session);
       }
     }
   }
@@ -473,6 +502,26 @@ public class BaseRemoteProxy implements RemoteProxy {
     return getRegistry().getHttpClientFactory();
   }
 
+  /**
+   * Retrieves the client used to forward the commands of the test sessions to this node. The
+   * client is created once per node, so that the connections to the node are reused.
+   *
+   * @return The thread-safe HTTP client for this node.
+   */
+  public HttpClient getGridHttpClient() {
+    HttpClient client = gridHttpClient;
+    if (client == null) {
+      synchronized (this) {
+        client = gridHttpClient;
+        if (client == null) {
+          client = getHttpClientFactory().createGridHttpClient();
+          gridHttpClient = client;
+        }
+      }
+    }
+    return client;
+  }
+
   /**
    * @throws GridException If the node if down or doesn't recognize the /wd/hub/status request.
    */
@@ -0,0 +1,319 @@
+/*
+Copyright 2011 Selenium committers
+Copyright 2011 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal;
+
+import com.google.common.base.Objects;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.openqa.grid.internal.utils.CapabilityMatcher;
+import org.openqa.grid.internal.utils.DefaultCapabilityMatcher;
+import org.openqa.selenium.remote.CapabilityType;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Index of the test slots of the grid, keyed by the capabilities the
+ * {@link DefaultCapabilityMatcher} looks at: platform, browserName, version and applicationName.
+ * <p/>
+ * The default matcher ignores everything else, so all the slots sharing those 4 values match the
+ * same requests. The index only has to run the matcher once per distinct slot configuration, and
+ * can then hand out the free slots of the matching configurations without asking every slot of
+ * every proxy.
+ * <p/>
+ * Proxies with slots using any other {@link CapabilityMatcher}, or with their own
+ * {@link RemoteProxy#getNewSession(Map)}, can't be indexed that way. They are kept aside and always
+ * offered to the request.
+ */
+@ThreadSafe
+class CapabilityIndex {
+
+  private static final String APPLICATION_NAME = "applicationName";
+  // requests can come with anything as a version, don't let the cache grow forever.
+  private static final int MAX_CACHED_REQUESTS = 1000;
+
+  private final CapabilityMatcher matcher = new DefaultCapabilityMatcher();
+
+  // all the indexed slots and the free ones, per slot configuration.
+  private final Map<Key, Set<TestSlot>> slots = new ConcurrentHashMap<Key, Set<TestSlot>>();
+  private final Map<Key, Set<TestSlot>> freeSlots = new ConcurrentHashMap<Key, Set<TestSlot>>();
+  private final Map<TestSlot, Key> keys = new ConcurrentHashMap<TestSlot, Key>();
+  private final Set<RemoteProxy> notIndexed = new CopyOnWriteArraySet<RemoteProxy>();
+  // registration order, so that the proxies are asked in the same order as the proxy set lists them.
+  private final Map<RemoteProxy, Long> registrationOrder = new ConcurrentHashMap<RemoteProxy, Long>();
+  private long registered = 0;
+  private final Comparator<RemoteProxy> byRegistrationOrder = new Comparator<RemoteProxy>() {
+    public int compare(RemoteProxy p1, RemoteProxy p2) {
+      return order(p1).compareTo(order(p2));
+    }
+  };
+
+  // slot configurations matching a given request. Cleared when a configuration appears or goes.
+  private final Map<Key, List<Key>> matchingKeys = new ConcurrentHashMap<Key, List<Key>>();
+
+  /**
+   * Adds all the slots of the proxy to the index.
+   *
+   * @param proxy the proxy that was just added to the grid.
+   */
+  public synchronized void add(RemoteProxy proxy) {
+    registrationOrder.put(proxy, registered++);
+    if (!isIndexable(proxy)) {
+      notIndexed.add(proxy);
+      return;
+    }
+    for (TestSlot slot : proxy.getTestSlots()) {
+      Key key = Key.forCapabilities(slot.getCapabilities());
+      Set<TestSlot> all = slots.get(key);
+      if (all == null) {
+        all = newSlotSet();
+        slots.put(key, all);
+        freeSlots.put(key, newSlotSet());
+        matchingKeys.clear();
+      }
+      all.add(slot);
+      keys.put(slot, key);
+      slot.setCapabilityIndex(this);
+      if (slot.getSession() == null) {
+        freeSlots.get(key).add(slot);
+      }
+    }
+  }
+
+  /**
+   * Removes all the slots of the proxy from the index.
+   *
+   * @param proxy the proxy that was just removed from the grid.
+   */
+  public synchronized void remove(RemoteProxy proxy) {
+    registrationOrder.remove(proxy);
+    if (notIndexed.remove(proxy)) {
+      return;
+    }
+    for (TestSlot slot : proxy.getTestSlots()) {
+      slot.setCapabilityIndex(null);
+      Key key = keys.remove(slot);
+      if (key == null) {
+        continue;
+      }
+      Set<TestSlot> all = slots.get(key);
+      all.remove(slot);
+      freeSlots.get(key).remove(slot);
+      if (all.isEmpty()) {
+        slots.remove(key);
+        freeSlots.remove(key);
+        matchingKeys.clear();
+      }
+    }
+  }
+
+  synchronized void slotTaken(TestSlot slot) {
+    Key key = keys.get(slot);
+    if (key != null) {
+      freeSlots.get(key).remove(slot);
+    }
+  }
+
+  synchronized void slotFreed(TestSlot slot) {
+    Key key = keys.get(slot);
+    if (key != null) {
+      freeSlots.get(key).add(slot);
+    }
+  }
+
+  /**
+   * @param requestedCapability the capabilities of the request.
+   * @return true if at least one indexed slot, free or not, can host the request.
+   */
+  public boolean hasCapability(Map<String, Object> requestedCapability) {
+    return !getMatchingKeys(requestedCapability).isEmpty();
+  }
+
+  /**
+   * The proxies that may be able to host the request right now : the ones owning a free indexed
+   * slot matching the request, and the proxies that aren't indexed. The proxies still have the
+   * last word, as they can refuse a session for reasons of their own (max number of sessions
+   * reached, node down ...)
+   *
+   * @param requestedCapability the capabilities of the request.
+   * @return the candidates, in registration order.
+   */
+  public List<RemoteProxy> getCandidates(Map<String, Object> requestedCapability) {
+    Set<RemoteProxy> candidates = new LinkedHashSet<RemoteProxy>(notIndexed);
+    for (Key key : getMatchingKeys(requestedCapability)) {
+      Set<TestSlot> free = freeSlots.get(key);
+      if (free == null) {
+        continue;
+      }
+      for (TestSlot slot : free) {
+        candidates.add(slot.getProxy());
+      }
+    }
+    List<RemoteProxy> res = new ArrayList<RemoteProxy>(candidates);
+    Collections.sort(res, byRegistrationOrder);
+    return res;
+  }
+
+  /**
+   * @param slot                a slot of the grid.
+   * @param requestedCapability the capabilities of a request.
+   * @return true if the slot can host the request.
+   */
+  public boolean canHost(TestSlot slot, Map<String, Object> requestedCapability) {
+    Key key = keys.get(slot);
+    if (key == null) {
+      return slot.matches(requestedCapability);
+    }
+    return getMatchingKeys(requestedCapability).contains(key);
+  }
+
+  /**
+   * @return true if the slots the grid gives to a request only depend on the capabilities the
+   *         index is keyed by.
+   */
+  public boolean isExact() {
+    return notIndexed.isEmpty();
+  }
+
+  /**
+   * @return the proxies this index can't help with.
+   */
+  public Set<RemoteProxy> getNotIndexed() {
+    return notIndexed;
+  }
+
+  private List<Key> getMatchingKeys(Map<String, Object> requestedCapability) {
+    if (requestedCapability == null) {
+      return Collections.emptyList();
+    }
+    Key requested = Key.forCapabilities(requestedCapability);
+    List<Key> res = matchingKeys.get(requested);
+    if (res != null) {
+      return res;
+    }
+    return computeMatchingKeys(requested, requestedCapability);
+  }
+
+  private synchronized List<Key> computeMatchingKeys(Key requested,
+                                                     Map<String, Object> requestedCapability) {
+    if (matchingKeys.size() >= MAX_CACHED_REQUESTS) {
+      matchingKeys.clear();
+    }
+    List<Key> res = new ArrayList<Key>();
+    for (Map.Entry<Key, Set<TestSlot>> entry : slots.entrySet()) {
+      if (matcher.matches(entry.getKey().asCapabilities(), requestedCapability)) {
+        res.add(entry.getKey());
+      }
+    }
+    res = Collections.unmodifiableList(res);
+    matchingKeys.put(requested, res);
+    return res;
+  }
+
+  private Long order(RemoteProxy proxy) {
+    Long order = registrationOrder.get(proxy);
+    return order == null ? Long.MAX_VALUE : order;
+  }
+
+  private boolean isIndexable(RemoteProxy proxy) {
+    // a proxy deciding by itself which requests it accepts has to be asked every time.
+    try {
+      Method getNewSession = proxy.getClass().getMethod("getNewSession", Map.class);
+      if (!getNewSession.getDeclaringClass().getName().startsWith("org.openqa.grid.")) {
+        return false;
+      }
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+    for (TestSlot slot : proxy.getTestSlots()) {
+      if (slot.getCapabilityMatcher().getClass() != DefaultCapabilityMatcher.class) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Set<TestSlot> newSlotSet() {
+    return Collections.newSetFromMap(new ConcurrentHashMap<TestSlot, Boolean>());
+  }
+
+  /**
+   * The values of the capabilities the default matcher considers. The values are kept as they are,
+   * since the matcher compares them with equals when they don't describe a platform.
+   */
+  static class Key {
+
+    private final Object platform;
+    private final Object browserName;
+    private final Object version;
+    private final Object applicationName;
+
+    private Key(Object platform, Object browserName, Object version, Object applicationName) {
+      this.platform = platform;
+      this.browserName = browserName;
+      this.version = version;
+      this.applicationName = applicationName;
+    }
+
+    static Key forCapabilities(Map<String, Object> capabilities) {
+      if (capabilities == null) {
+        return new Key(null, null, null, null);
+      }
+      return new Key(capabilities.get(CapabilityType.PLATFORM),
+                     capabilities.get(CapabilityType.BROWSER_NAME),
+                     capabilities.get(CapabilityType.VERSION),
+                     capabilities.get(APPLICATION_NAME));
+    }
+
+    Map<String, Object> asCapabilities() {
+      Map<String, Object> res = new HashMap<String, Object>();
+      res.put(CapabilityType.PLATFORM, platform);
+      res.put(CapabilityType.BROWSER_NAME, browserName);
+      res.put(CapabilityType.VERSION, version);
+      res.put(APPLICATION_NAME, applicationName);
+      return res;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return Objects.equal(platform, other.platform)
+             && Objects.equal(browserName, other.browserName)
+             && Objects.equal(version, other.version)
+             && Objects.equal(applicationName, other.applicationName);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(platform, browserName, version, applicationName);
+    }
+  }
+}
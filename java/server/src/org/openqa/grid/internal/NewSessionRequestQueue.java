@@ -22,17 +22,30 @@ import com.google.common.base.Predicate;
 import net.jcip.annotations.ThreadSafe;
 
 import org.openqa.grid.internal.listeners.Prioritizer;
+import org.openqa.grid.internal.utils.LatencyStats;
 import org.openqa.grid.web.servlet.handler.RequestHandler;
 import org.openqa.selenium.remote.DesiredCapabilities;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 import java.util.logging.Logger;
 
 /**
  * The queue of all incoming "new session" requests to the grid.
  *
+ * The requests are grouped in buckets, by the capabilities the default capability matcher
+ * considers. All the requests of a bucket can be hosted by the same slots, so when the first
+ * request of a bucket can't be assigned, the following ones don't need to be tried. Each bucket is
+ * kept sorted by priority, then by arrival order, so nothing has to be sorted again when the queue
+ * is processed.
+ *
  * Currently still uses the readerwriterlock/condition model that is used in the
  * Registry and is tightly coupled to the registry
  */
@@ -41,15 +54,47 @@ class NewSessionRequestQueue {
 
   private static final Logger log = Logger.getLogger(NewSessionRequestQueue.class.getName());
 
-  private final List<RequestHandler> newSessionRequests = new ArrayList<RequestHandler>();
+  private final Map<CapabilityIndex.Key, TreeSet<QueuedRequest>> buckets =
+      new LinkedHashMap<CapabilityIndex.Key, TreeSet<QueuedRequest>>();
+  // RequestHandler.equals only looks at the session, which is null for all the waiting requests.
+  private final Map<RequestHandler, QueuedRequest> queued =
+      new IdentityHashMap<RequestHandler, QueuedRequest>();
+  private long sequence = 0;
+
+  // the prioritizer the buckets are currently sorted with.
+  private Prioritizer prioritizer;
+  private final Comparator<QueuedRequest> byPriority = new Comparator<QueuedRequest>() {
+    public int compare(QueuedRequest a, QueuedRequest b) {
+      if (a == b) {
+        return 0;
+      }
+      if (prioritizer != null) {
+        int res = prioritizer.compareTo(a.handler.getRequest().getDesiredCapabilities(),
+                                        b.handler.getRequest().getDesiredCapabilities());
+        if (res != 0) {
+          return res;
+        }
+      }
+      return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+    }
+  };
 
+  private final LatencyStats timeInQueue = new LatencyStats();
+  private final LatencyStats matchLatency = new LatencyStats();
 
   /**
    * Adds a requesthandler to this queue
    * @param request the RequestHandler to add
    */
   public synchronized void add(RequestHandler request) {
-    newSessionRequests.add(request);
+    QueuedRequest entry = new QueuedRequest(request, sequence++);
+    queued.put(request, entry);
+    TreeSet<QueuedRequest> bucket = buckets.get(entry.key);
+    if (bucket == null) {
+      bucket = new TreeSet<QueuedRequest>(byPriority);
+      buckets.put(entry.key, bucket);
+    }
+    bucket.add(entry);
   }
 
   /**
@@ -58,57 +103,141 @@ class NewSessionRequestQueue {
    * @param handlerConsumer The consumer that returns true if it has taken the item from the queue
    * @param prioritizer     The prioritizer to use
    */
-
   public synchronized void processQueue(Predicate<RequestHandler> handlerConsumer,
                                         Prioritizer prioritizer) {
+    processQueue(handlerConsumer, prioritizer, null, false);
+  }
+
+  /**
+   * Processes the entries of this queue the filter accepts, by priority. The requests of the
+   * other buckets are left alone.
+   *
+   * @param handlerConsumer  The consumer that returns true if it has taken the item from the queue
+   * @param prioritizer      The prioritizer to use
+   * @param filter           The capabilities worth offering to the consumer. Null for all of them.
+   * @param bucketsAreExact  true if the consumer accepts or refuses a request only based on the
+   *                         capabilities identifying its bucket. In that case, the bucket isn't
+   *                         tried any further once one of its requests has been refused.
+   */
+  public synchronized void processQueue(Predicate<RequestHandler> handlerConsumer,
+                                        Prioritizer prioritizer,
+                                        Predicate<Map<String, Object>> filter,
+                                        boolean bucketsAreExact) {
+    long start = System.currentTimeMillis();
+    sortWith(prioritizer);
 
-    final List<RequestHandler> copy;
-    if (prioritizer != null) {
-      copy = new ArrayList<RequestHandler>(newSessionRequests);
-      Collections.sort(copy);
-    } else {
-      copy = newSessionRequests;
+    // the next request to try for each bucket, the most important first.
+    TreeSet<QueuedRequest> next = new TreeSet<QueuedRequest>(byPriority);
+    for (TreeSet<QueuedRequest> bucket : buckets.values()) {
+      QueuedRequest first = firstAccepted(bucket, null, filter, bucketsAreExact);
+      if (first != null) {
+        next.add(first);
+      }
     }
 
-    List<RequestHandler> matched = new ArrayList<RequestHandler>();
-    for (RequestHandler request : copy) {
-      if (handlerConsumer.apply(request)) {
-        matched.add(request);
+    boolean matched = false;
+    while (!next.isEmpty()) {
+      QueuedRequest request = next.pollFirst();
+      TreeSet<QueuedRequest> bucket = buckets.get(request.key);
+      QueuedRequest following;
+      if (handlerConsumer.apply(request.handler)) {
+        matched = true;
+        following = bucket.higher(request);
+        remove(request);
+        timeInQueue.add(System.currentTimeMillis() - request.queuedAt);
+      } else if (bucketsAreExact) {
+        continue;
+      } else {
+        following = bucket.higher(request);
+      }
+      if (following != null) {
+        following = firstAccepted(bucket, following, filter, bucketsAreExact);
       }
+      if (following != null) {
+        next.add(following);
+      }
+    }
+    if (matched) {
+      matchLatency.add(System.currentTimeMillis() - start);
     }
-    for (RequestHandler req : matched) {
-      boolean ok = removeNewSessionRequest(req);
-      if (!ok) {
-        log.severe("Bug removing request " + req);
+  }
+
+  /**
+   * @return the first request of the bucket, starting at from, the filter accepts.
+   */
+  private QueuedRequest firstAccepted(TreeSet<QueuedRequest> bucket, QueuedRequest from,
+                                      Predicate<Map<String, Object>> filter, boolean exact) {
+    Iterator<QueuedRequest> iterator =
+        from == null ? bucket.iterator() : bucket.tailSet(from, true).iterator();
+    while (iterator.hasNext()) {
+      QueuedRequest request = iterator.next();
+      if (filter == null || filter.apply(request.handler.getRequest().getDesiredCapabilities())) {
+        return request;
+      }
+      if (exact) {
+        // the others of the bucket would be refused for the same reason.
+        return null;
       }
     }
+    return null;
+  }
+
+  private void sortWith(Prioritizer newPrioritizer) {
+    if (newPrioritizer == prioritizer) {
+      return;
+    }
+    prioritizer = newPrioritizer;
+    for (Map.Entry<CapabilityIndex.Key, TreeSet<QueuedRequest>> entry : buckets.entrySet()) {
+      // not addAll, that would trust the current order since the comparator is the same.
+      TreeSet<QueuedRequest> sorted = new TreeSet<QueuedRequest>(byPriority);
+      for (QueuedRequest request : entry.getValue()) {
+        sorted.add(request);
+      }
+      entry.setValue(sorted);
+    }
+  }
+
+  private boolean remove(QueuedRequest request) {
+    queued.remove(request.handler);
+    TreeSet<QueuedRequest> bucket = buckets.get(request.key);
+    boolean removed = bucket.remove(request);
+    if (bucket.isEmpty()) {
+      buckets.remove(request.key);
+    }
+    if (!removed) {
+      log.severe("Bug removing request " + request.handler);
+    }
+    return removed;
   }
 
   /**
    * clear the entire list of requests
    */
   public synchronized void clearNewSessionRequests() {
-    newSessionRequests.clear();
+    buckets.clear();
+    queued.clear();
   }
 
   /**
    * Remove a specific request
    * @param request The request to remove
-   * @return A boolean result from doing a newSessionRequest.remove(request).
+   * @return true if the request was still waiting in the queue.
    */
   public synchronized boolean removeNewSessionRequest(RequestHandler request) {
-    return newSessionRequests.remove(request);
+    QueuedRequest entry = queued.get(request);
+    return entry != null && remove(entry);
   }
 
   /**
    * Provides the desiredcapabilities of all the items in this queue.
    *
-   * @return An Iteerable of unmodifyable maps.
+   * @return An Iteerable of unmodifyable maps, in arrival order.
    */
   public synchronized Iterable<DesiredCapabilities> getDesiredCapabilities() {
+    List<QueuedRequest> requests = inArrivalOrder();
     List<DesiredCapabilities> result = new ArrayList<DesiredCapabilities>();
-    for (RequestHandler req : newSessionRequests) {
-      result.add(new DesiredCapabilities(req.getRequest().getDesiredCapabilities()));
+    for (QueuedRequest req : requests) {
+      result.add(new DesiredCapabilities(req.handler.getRequest().getDesiredCapabilities()));
     }
     return result;
   }
@@ -118,12 +247,50 @@ class NewSessionRequestQueue {
    * @return the size of the queue
    */
   public synchronized int getNewSessionRequestCount() {
-    return newSessionRequests.size();
+    return queued.size();
+  }
+
+  /**
+   * @return how long the requests that were assigned a slot waited in the queue.
+   */
+  public LatencyStats getTimeInQueue() {
+    return timeInQueue;
+  }
+
+  /**
+   * @return how long it took to process the queue, when at least a request got assigned.
+   */
+  public LatencyStats getMatchLatency() {
+    return matchLatency;
   }
 
   public synchronized void stop(){
-    for (RequestHandler newSessionRequest : newSessionRequests) {
-      newSessionRequest.stop();
+    for (QueuedRequest newSessionRequest : inArrivalOrder()) {
+      newSessionRequest.handler.stop();
+    }
+  }
+
+  private List<QueuedRequest> inArrivalOrder() {
+    List<QueuedRequest> requests = new ArrayList<QueuedRequest>(queued.values());
+    Collections.sort(requests, new Comparator<QueuedRequest>() {
+      public int compare(QueuedRequest a, QueuedRequest b) {
+        return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+      }
+    });
+    return requests;
+  }
+
+  private static class QueuedRequest {
+
+    private final RequestHandler handler;
+    private final long sequence;
+    private final long queuedAt = System.currentTimeMillis();
+    private final CapabilityIndex.Key key;
+
+    QueuedRequest(RequestHandler handler, long sequence) {
+      this.handler = handler;
+      this.sequence = sequence;
+      this.key = CapabilityIndex.Key.forCapabilities(handler.getRequest().getDesiredCapabilities());
     }
   }
 }
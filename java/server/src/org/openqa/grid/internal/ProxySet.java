@@ -40,6 +40,7 @@ import java.util.logging.Logger;
 public class ProxySet implements Iterable<RemoteProxy> {
 
   private final Set<RemoteProxy> proxies = new CopyOnWriteArraySet<RemoteProxy>();
+  private final CapabilityIndex index = new CapabilityIndex();
 
   private static final Logger log = Logger.getLogger(ProxySet.class.getName());
   private volatile boolean throwOnCapabilityNotPresent = true;
@@ -58,7 +59,10 @@ public class ProxySet implements Iterable<RemoteProxy> {
   }
 
   public boolean hasCapability(Map<String, Object> requestedCapability) {
-    for (RemoteProxy proxy : proxies) {
+    if (index.hasCapability(requestedCapability)) {
+      return true;
+    }
+    for (RemoteProxy proxy : index.getNotIndexed()) {
       if (proxy.hasCapability(requestedCapability)) {
         return true;
       }
@@ -78,6 +82,7 @@ public class ProxySet implements Iterable<RemoteProxy> {
     for (RemoteProxy p : proxies) {
       if (p.equals(proxy)) {
         proxies.remove(p);
+        index.remove(p);
         return p;
       }
     }
@@ -85,7 +90,9 @@ public class ProxySet implements Iterable<RemoteProxy> {
   }
 
   public void add(RemoteProxy proxy) {
-    proxies.add(proxy);
+    if (proxies.add(proxy)) {
+      index.add(proxy);
+    }
   }
 
   public boolean contains(RemoteProxy o) {
@@ -119,17 +126,12 @@ public class ProxySet implements Iterable<RemoteProxy> {
     return proxies.isEmpty();
   }
 
-  private List<RemoteProxy> getSorted() {
-    List<RemoteProxy> sorted = new ArrayList<RemoteProxy>(proxies);
-    Collections.sort(sorted);
-    return sorted;
-  }
-
   public TestSession getNewSession(Map<String, Object> desiredCapabilities) {
-    // sort the proxies first, by default by total number of
-    // test running, to avoid putting all the load of the first
-    // proxies.
-    List<RemoteProxy> sorted = getSorted();
+    // only the proxies with a free slot matching the request are worth asking. Sort them, by
+    // default by total number of test running, to avoid putting all the load of the first
+    // proxies. The sort is stable, ties keep the registration order.
+    List<RemoteProxy> sorted = index.getCandidates(desiredCapabilities);
+    Collections.sort(sorted);
 
     for (RemoteProxy proxy : sorted) {
       TestSession session = proxy.getNewSession(desiredCapabilities);
@@ -140,6 +142,21 @@ public class ProxySet implements Iterable<RemoteProxy> {
     return null;
   }
 
+  /**
+   * @return true if the slot can host a request with those capabilities, busy or not.
+   */
+  boolean canHost(TestSlot slot, Map<String, Object> requestedCapability) {
+    return index.canHost(slot, requestedCapability);
+  }
+
+  /**
+   * @return true if the proxies accept or refuse a request only based on the platform,
+   *         browserName, version and applicationName it asks for.
+   */
+  boolean allocatesByCapabilityOnly() {
+    return index.isExact();
+  }
+
   public Iterator<RemoteProxy> iterator() {
     return proxies.iterator();
   }
@@ -18,6 +18,7 @@ limitations under the License.
 package org.openqa.grid.internal;
 
 import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import net.jcip.annotations.ThreadSafe;
 
@@ -26,15 +27,21 @@ import org.openqa.grid.internal.listeners.RegistrationListener;
 import org.openqa.grid.internal.listeners.SelfHealingProxy;
 import org.openqa.grid.internal.utils.CapabilityMatcher;
 import org.openqa.grid.internal.utils.GridHubConfiguration;
+import org.openqa.grid.internal.utils.LatencyStats;
 import org.openqa.grid.web.Hub;
 import org.openqa.grid.web.servlet.handler.RequestHandler;
 import org.openqa.selenium.remote.DesiredCapabilities;
 import org.openqa.selenium.remote.internal.HttpClientFactory;
 import org.openqa.selenium.server.log.LoggingManager;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
@@ -51,6 +58,10 @@ public class Registry {
   public static final String KEY = Registry.class.getName();
   private static final Logger log = Logger.getLogger(Registry.class.getName());
 
+  private static final int PROXY_SCHEDULER_THREADS = 8;
+  // the longest the matcher goes without looking at the whole queue, however busy the hub is.
+  private static final long FULL_PASS_INTERVAL_MS = 5000;
+
   // lock for anything modifying the tests session currently running on this
   // registry.
   private final ReentrantLock lock = new ReentrantLock();
@@ -63,6 +74,19 @@ public class Registry {
   private final Matcher matcherThread = new Matcher();
   private final List<RemoteProxy> registeringProxies = new CopyOnWriteArrayList<RemoteProxy>();
   private final CapabilityMatcher capabilityMatcher;
+  // health checks and clean up cycles of the proxies, shared by all of them.
+  private final ScheduledExecutorService proxyScheduler = Executors.newScheduledThreadPool(
+      PROXY_SCHEDULER_THREADS,
+      new ThreadFactoryBuilder().setNameFormat("Proxy scheduler %d").setDaemon(true).build());
+  // releases the timed out and orphaned sessions, a thread each: releasing one may wait for a node
+  // which doesn't answer, and mustn't hold the proxy scheduler meanwhile.
+  private final ExecutorService sessionReleaser = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setNameFormat("Session releaser %d").setDaemon(true).build());
+
+  // what happened since the matcher last went through the queue. Guarded by lock.
+  private final List<TestSlot> releasedSlots = new ArrayList<TestSlot>();
+  private final List<RequestHandler> newRequests = new ArrayList<RequestHandler>();
+  private boolean registryChanged = false;
 
   private volatile boolean stop = false;
   // The following three variables need to be volatile because we expose a public setters
@@ -192,15 +216,21 @@ public class Registry {
       return;
     }
 
-    String internalKey = testSlot.getInternalKey();
-    release(internalKey, reason);
-    testSlot.doFinishRelease();
+    try {
+      lock.lock();
+      // the matcher only looks at the slot once the lock is released, when it's really free.
+      String internalKey = testSlot.getInternalKey();
+      release(internalKey, reason);
+      testSlot.doFinishRelease();
+    } finally {
+      lock.unlock();
+    }
   }
 
 
   /**
-   * iterates the queue of incoming new session request and assign them to proxy after they've been
-   * sorted by priority, with priority defined by the prioritizer.
+   * iterates the queue of incoming new session request and assign them to proxy by priority, with
+   * priority defined by the prioritizer.
    */
   class Matcher extends Thread { // Thread safety reviewed
 
@@ -225,6 +255,8 @@ public class Registry {
     matcherThread.interrupt();
     newSessionQueue.stop();
     proxies.teardown();
+    proxyScheduler.shutdownNow();
+    sessionReleaser.shutdownNow();
     httpClientFactory.close();
 
   }
@@ -244,7 +276,8 @@ public class Registry {
 
       proxies.verifyAbilityToHandleDesiredCapabilities(handler.getRequest().getDesiredCapabilities());
       newSessionQueue.add(handler);
-      fireMatcherStateChanged();
+      newRequests.add(handler);
+      testSessionAvailable.signalAll();
     } finally {
       lock.unlock();
     }
@@ -253,20 +286,47 @@ public class Registry {
 
   /**
    * iterates the list of incoming session request to find a potential match in the list of proxies.
-   * If something changes in the registry, the matcher iteration is stopped to account for that
-   * change.
+   * When a slot is released, only the requests it can host are looked at, or the requests any free
+   * slot of its proxy can host when the proxy limits its sessions. When a request is added,
+   * only the requests with the same capabilities are. Everything else goes through the whole queue,
+   * and so does the matcher at least every 5 seconds, so that the requests a proxy refused for
+   * reasons of its own are tried again even when other events keep the matcher busy.
    */
 
   private void assignRequestToProxy() {
+    final Predicate<RequestHandler> consumer = new Predicate<RequestHandler>() {
+      public boolean apply(RequestHandler input) {
+        return takeRequestHandler(input);
+      }
+    };
+    long lastFullPass = System.nanoTime();
     while (!stop) {
       try {
-        testSessionAvailable.await(5, TimeUnit.SECONDS);
-
-        newSessionQueue.processQueue(new Predicate<RequestHandler>() {
-          public boolean apply(RequestHandler input) {
-            return takeRequestHandler(input);
+        testSessionAvailable.await(FULL_PASS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+        boolean exact = proxies.allocatesByCapabilityOnly();
+        long now = System.nanoTime();
+        boolean wholeQueue = registryChanged || (releasedSlots.isEmpty() && newRequests.isEmpty())
+            || now - lastFullPass >= TimeUnit.MILLISECONDS.toNanos(FULL_PASS_INTERVAL_MS);
+        if (wholeQueue) {
+          lastFullPass = now;
+        }
+        List<TestSlot> slots = new ArrayList<TestSlot>(releasedSlots);
+        List<RequestHandler> requests = new ArrayList<RequestHandler>(newRequests);
+        registryChanged = false;
+        releasedSlots.clear();
+        newRequests.clear();
+
+        if (wholeQueue) {
+          newSessionQueue.processQueue(consumer, prioritizer, null, exact);
+        } else {
+          for (TestSlot slot : slots) {
+            newSessionQueue.processQueue(consumer, prioritizer, hostableBy(slot), exact);
           }
-        }, prioritizer);
+          for (RequestHandler request : requests) {
+            newSessionQueue.processQueue(consumer, prioritizer, sameBucketAs(request), exact);
+          }
+        }
         // Just make sure we delete anything that is logged on this thread from memory
         LoggingManager.perSessionLogHandler().clearThreadTempLogs();
       } catch (InterruptedException e) {
@@ -278,6 +338,41 @@ public class Registry {
 
   }
 
+  private Predicate<Map<String, Object>> hostableBy(TestSlot slot) {
+    final List<TestSlot> freed = new ArrayList<TestSlot>();
+    RemoteProxy proxy = slot.getProxy();
+    if (proxy.getTestSlots().size() > proxy.getMaxNumberOfConcurrentTestSessions()) {
+      // the proxy was full, so the release also frees its other slots.
+      for (TestSlot other : proxy.getTestSlots()) {
+        if (other == slot || other.getSession() == null) {
+          freed.add(other);
+        }
+      }
+    } else {
+      freed.add(slot);
+    }
+    return new Predicate<Map<String, Object>>() {
+      public boolean apply(Map<String, Object> input) {
+        for (TestSlot free : freed) {
+          if (proxies.canHost(free, input)) {
+            return true;
+          }
+        }
+        return false;
+      }
+    };
+  }
+
+  private Predicate<Map<String, Object>> sameBucketAs(RequestHandler request) {
+    final CapabilityIndex.Key key =
+        CapabilityIndex.Key.forCapabilities(request.getRequest().getDesiredCapabilities());
+    return new Predicate<Map<String, Object>>() {
+      public boolean apply(Map<String, Object> input) {
+        return key.equals(CapabilityIndex.Key.forCapabilities(input));
+      }
+    };
+  }
+
   private boolean takeRequestHandler(RequestHandler handler) {
     final TestSession session = proxies.getNewSession(handler.getRequest().getDesiredCapabilities());
     final boolean sessionCreated = session != null;
@@ -300,7 +395,8 @@ public class Registry {
       lock.lock();
       boolean removed = activeTestSessions.remove(session, reason);
       if (removed) {
-        fireMatcherStateChanged();
+        releasedSlots.add(session.getSlot());
+        testSessionAvailable.signalAll();
       }
     } finally {
       lock.unlock();
@@ -387,7 +483,21 @@ public class Registry {
     proxies.setThrowOnCapabilityNotPresent(throwOnCapabilityNotPresent);
   }
 
+  /**
+   * Lets the matcher go through the whole queue again, for instance when a proxy which refused new
+   * sessions since its node was down can host them again.
+   */
+  public void fireProxyAvailable() {
+    try {
+      lock.lock();
+      fireMatcherStateChanged();
+    } finally {
+      lock.unlock();
+    }
+  }
+
   private void fireMatcherStateChanged() {
+    registryChanged = true;
     testSessionAvailable.signalAll();
   }
 
@@ -430,6 +540,20 @@ public class Registry {
     return newSessionQueue.getNewSessionRequestCount();
   }
 
+  /**
+   * @return how long the new session requests that got a slot waited in the queue, in ms.
+   */
+  public LatencyStats getNewSessionTimeInQueue() {
+    return newSessionQueue.getTimeInQueue();
+  }
+
+  /**
+   * @return how long the matcher took to go through the queue when it assigned requests, in ms.
+   */
+  public LatencyStats getNewSessionMatchLatency() {
+    return newSessionQueue.getMatchLatency();
+  }
+
   public void clearNewSessionRequests() {
     newSessionQueue.clearNewSessionRequests();
   }
@@ -458,10 +582,30 @@ public class Registry {
     return proxies.getProxyById(id);
   }
 
-  HttpClientFactory getHttpClientFactory() {
+  /**
+   * @return the factory of the HTTP clients talking to the nodes.
+   */
+  public HttpClientFactory getHttpClientFactory() {
     return httpClientFactory;
   }
 
+  /**
+   * @return the executor running the periodic tasks of the proxies, such as checking the node is
+   *         up or cleaning up the timed out sessions. Its few threads are shared by all the
+   *         proxies, a task shouldn't keep one for long.
+   */
+  public ScheduledExecutorService getProxyScheduler() {
+    return proxyScheduler;
+  }
+
+  /**
+   * @return the executor releasing the sessions the clean up cycles of the proxies found timed
+   *         out or orphaned.
+   */
+  ExecutorService getSessionReleaser() {
+    return sessionReleaser;
+  }
+
   private static class UncaughtExceptionHandler implements Thread.UncaughtExceptionHandler {
 
     public void uncaughtException(Thread t, Throwable e) {
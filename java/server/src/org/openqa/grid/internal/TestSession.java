@@ -18,7 +18,6 @@ limitations under the License.
 package org.openqa.grid.internal;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -28,6 +27,8 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.DateFormat;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -44,6 +45,7 @@ import org.apache.http.client.HttpClient;
 import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.message.BasicHttpEntityEnclosingRequest;
 import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.util.EntityUtils;
 import org.openqa.grid.common.exception.ClientGoneException;
 import org.openqa.grid.common.exception.GridException;
@@ -55,7 +57,6 @@ import org.openqa.grid.web.servlet.handler.SeleniumBasedRequest;
 import org.openqa.grid.web.servlet.handler.SeleniumBasedResponse;
 import org.openqa.grid.web.servlet.handler.WebDriverRequest;
 
-import com.google.common.io.ByteStreams;
 import com.google.common.io.Closeables;
 
 /**
@@ -72,6 +73,8 @@ public class TestSession {
   private final String internalKey;
   private final TestSlot slot;
   private volatile ExternalSessionKey externalKey = null;
+  // the active sessions of the registry, while this session is one of them.
+  private volatile ActiveTestSessions activeTestSessions;
   private volatile long sessionCreatedAt;
   private volatile long lastActivity;
   private final Map<String, Object> requestedCapabilities;
@@ -81,6 +84,12 @@ public class TestSession {
   private volatile boolean forwardingRequest;
   private final int MAX_NETWORK_LATENCY = 1000;
 
+  // buffers used to pipe the responses of the nodes to the clients, shared by all the sessions.
+  private static final int FORWARDING_BUFFER_SIZE = 32 * 1024;
+  private static final int MAX_POOLED_FORWARDING_BUFFERS = 256;
+  private static final BlockingQueue<byte[]> forwardingBuffers =
+      new ArrayBlockingQueue<byte[]>(MAX_POOLED_FORWARDING_BUFFERS);
+
   public String getInternalKey() {
     return internalKey;
   }
@@ -119,8 +128,17 @@ public class TestSession {
    * associate this session to the session provided by the remote.
    */
   public void setExternalKey(ExternalSessionKey externalKey) {
+    ExternalSessionKey previous = this.externalKey;
     this.externalKey = externalKey;
     sessionCreatedAt = lastActivity;
+    ActiveTestSessions sessions = activeTestSessions;
+    if (sessions != null) {
+      sessions.externalKeyChanged(this, previous);
+    }
+  }
+
+  void setActiveTestSessions(ActiveTestSessions activeTestSessions) {
+    this.activeTestSessions = activeTestSessions;
   }
 
   /**
@@ -187,14 +205,25 @@ public class TestSession {
 
 
   private HttpClient getClient() {
+    RemoteProxy proxy = slot.getProxy();
+    if (proxy instanceof BaseRemoteProxy) {
+      return ((BaseRemoteProxy) proxy).getGridHttpClient();
+    }
+    return proxy.getHttpClientFactory().createGridHttpClient();
+  }
+
+  /**
+   * The client of the node is shared by all its sessions, so the timeout is set on each request.
+   */
+  private void setSocketTimeout(HttpRequest request) {
     Registry reg = slot.getProxy().getRegistry();
     int browserTimeout = reg.getConfiguration().getBrowserTimeout();
     if (browserTimeout > 0){
       final int selenium_server_cleanup_cycle = browserTimeout / 10;
       browserTimeout += (selenium_server_cleanup_cycle + MAX_NETWORK_LATENCY);
       browserTimeout *=2; // Lets not let this happen too often
+      HttpConnectionParams.setSoTimeout(request.getParams(), browserTimeout);
     }
-    return slot.getProxy().getHttpClientFactory().getGridHttpClient(browserTimeout);
   }
 
   /**
@@ -244,16 +273,16 @@ public class TestSession {
 
           if (request.getRequestType() == RequestType.START_SESSION
               && request instanceof LegacySeleniumRequest) {
+            // the session id is in the body, the only response that needs to be read in memory.
             res = getResponseUtf8Content(in);
 
             updateHubNewSeleniumSession(res);
 
-            in = new ByteArrayInputStream(res.getBytes("UTF-8"));
+            writeRawBody(response, res.getBytes("UTF-8"));
+          } else {
+            writeStreamedBody(response, in, responseBody.getContentLength());
           }
 
-          final byte[] bytes = drainInputStream(in);
-          writeRawBody(response, bytes);
-
         } finally {
           EntityUtils.consume(responseBody);
         }
@@ -315,6 +344,7 @@ public class TestSession {
     URL remoteURL = slot.getRemoteURL();
     HttpHost host = new HttpHost(remoteURL.getHost(), remoteURL.getPort());
 
+    setSocketTimeout(proxyRequest);
     return client.execute(host, proxyRequest);
   }
 
@@ -389,14 +419,53 @@ public class TestSession {
     }
   }
 
-  private byte[] drainInputStream(InputStream in) throws IOException {
+  /**
+   * Pipes the node response to the client, without holding more than a buffer of it in memory.
+   * Screenshots and page sources can be several MB.
+   */
+  private void writeStreamedBody(HttpServletResponse response, InputStream in, long contentLength)
+      throws IOException {
+    // The Content-Length of the node is copied with the other headers. If there is none, the node
+    // sent it chunked, and the container will chunk it again.
+    if (contentLength >= 0 && !response.containsHeader("Content-Length")) {
+      response.setHeader("Content-Length", String.valueOf(contentLength));
+    }
+
+    byte[] buffer = takeForwardingBuffer();
+    OutputStream out = null;
     try {
-      return ByteStreams.toByteArray(in);
+      out = response.getOutputStream();
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        try {
+          out.write(buffer, 0, read);
+        } catch (IOException e) {
+          throw new ClientGoneException(e);
+        }
+      }
     } finally {
+      releaseForwardingBuffer(buffer);
       Closeables.closeQuietly(in);
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException e) {
+          log.log(Level.SEVERE, "Problem closing response's output stream.", e);
+        }
+      }
     }
   }
 
+  private static byte[] takeForwardingBuffer() {
+    byte[] buffer = forwardingBuffers.poll();
+    return buffer != null ? buffer : new byte[FORWARDING_BUFFER_SIZE];
+  }
+
+  private static void releaseForwardingBuffer(byte[] buffer) {
+    // if the pool is full, the buffer is simply left to the GC.
+    forwardingBuffers.offer(buffer);
+  }
+
   private String getResponseUtf8Content(InputStream in) {
     String res;
     StringBuilder sb = new StringBuilder();
@@ -427,12 +496,8 @@ public class TestSession {
 
       // HttpEntity#getContent() chews up the chunk-size octet (i.e., the InputStream does not
       // actually map 1:1 to the underlying response body). This breaks any client expecting the
-      // chunk size. We could
-      // try to recreate it, but since the chunks are already read in and decoded, you'd end up with
-      // a
-      // single chunk, which isn't all that useful. So, we return the response as a traditional
-      // response with a
-      // Content-Length header, obviating the need for the Transfer-Encoding header.
+      // chunk size. So we don't forward the Transfer-Encoding header, and let the container
+      // encode the body we stream to it.
       if (name.equalsIgnoreCase("Transfer-Encoding") && value.equalsIgnoreCase("chunked")) {
         continue;
       }
@@ -502,9 +567,12 @@ public class TestSession {
     boolean ok;
     try {
       HttpClient client = getClient();
+      setSocketTimeout(request);
       HttpResponse response = client.execute(host, request);
       int code = response.getStatusLine().getStatusCode();
       ok = (code >= 200) && (code <= 299);
+      // gives the connection back to the pool of the node.
+      EntityUtils.consume(response.getEntity());
     } catch (Throwable e) {
       ok = false;
       // corrupted or the something else already sent the DELETE.
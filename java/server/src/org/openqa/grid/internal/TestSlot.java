@@ -40,7 +40,7 @@ import java.util.logging.Logger;
  * executed.The other one will be discarded.
  * 
  * This class sees multiple threads but is currently sort-of protected by the lock in Registry.
- * Unfortunately the CleanUpThread also messes around in here, so it should be thread safe on its
+ * Unfortunately the CleanUpTask also messes around in here, so it should be thread safe on its
  * own.
  * 
  */
@@ -56,6 +56,7 @@ public class TestSlot {
   private final Lock lock = new ReentrantLock();
 
   private volatile TestSession currentSession;
+  private volatile CapabilityIndex capabilityIndex;
   volatile boolean beingReleased = false;
   private boolean showWarning = false;
 
@@ -106,6 +107,10 @@ public class TestSlot {
         if (matches(desiredCapabilities)) {
           TestSession session = new TestSession(this, desiredCapabilities, new DefaultTimeSource());
           currentSession = session;
+          CapabilityIndex index = capabilityIndex;
+          if (index != null) {
+            index.slotTaken(this);
+          }
           return session;
         } else {
           return null;
@@ -200,6 +205,22 @@ public class TestSlot {
   public void doFinishRelease() {
     currentSession = null;
     beingReleased = false;
+    CapabilityIndex index = capabilityIndex;
+    if (index != null) {
+      index.slotFreed(this);
+    }
+  }
+
+  CapabilityMatcher getCapabilityMatcher() {
+    return matcher;
+  }
+
+  /**
+   * @param capabilityIndex the index to keep informed of this slot being taken or freed, null once
+   *                        the slot isn't part of the grid any more.
+   */
+  void setCapabilityIndex(CapabilityIndex capabilityIndex) {
+    this.capabilityIndex = capabilityIndex;
   }
 
   String getInternalKey() {
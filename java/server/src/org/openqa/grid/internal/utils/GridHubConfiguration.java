@@ -63,6 +63,12 @@ public class GridHubConfiguration {
    */
   private int newSessionWaitTimeout;
 
+  /**
+   * how many new session requests are forwarded to the nodes at the same time. The requests
+   * waiting for a node don't count.
+   */
+  private int newSessionThreads;
+
   /**
    * list of extra serlvets this hub will display. Allows to present custom view of the hub for
    * monitoring and management purpose
@@ -190,6 +196,9 @@ public class GridHubConfiguration {
     if (helper.isParamPresent("-newSessionWaitTimeout")) {
       newSessionWaitTimeout = Integer.parseInt(helper.getParamValue("-newSessionWaitTimeout"));
     }
+    if (helper.isParamPresent("-newSessionThreads")) {
+      newSessionThreads = Integer.parseInt(helper.getParamValue("-newSessionThreads"));
+    }
     if (helper.isParamPresent("-throwOnCapabilityNotPresent")) {
       throwOnCapabilityNotPresent =
           Boolean.parseBoolean(helper.getParamValue("-throwOnCapabilityNotPresent"));
@@ -298,6 +307,9 @@ public class GridHubConfiguration {
       if (o.has("newSessionWaitTimeout") && !o.isNull("newSessionWaitTimeout")) {
         newSessionWaitTimeout = o.getInt("newSessionWaitTimeout");
       }
+      if (o.has("newSessionThreads") && !o.isNull("newSessionThreads")) {
+        newSessionThreads = o.getInt("newSessionThreads");
+      }
       if (o.has(RegistrationRequest.SERVLETS) && !o.isNull(RegistrationRequest.SERVLETS)) {
         JSONArray jsservlets = o.getJSONArray(RegistrationRequest.SERVLETS);
         for (int i = 0; i < jsservlets.length(); i++) {
@@ -366,6 +378,10 @@ public class GridHubConfiguration {
     return newSessionWaitTimeout;
   }
 
+  public int getNewSessionThreads() {
+    return newSessionThreads;
+  }
+
   public List<String> getServlets() {
     return servlets;
   }
@@ -432,6 +448,10 @@ public class GridHubConfiguration {
     this.newSessionWaitTimeout = newSessionWaitTimeout;
   }
 
+  public void setNewSessionThreads(int newSessionThreads) {
+    this.newSessionThreads = newSessionThreads;
+  }
+
   public void setServlets(List<String> servlets) {
     this.servlets = servlets;
   }
@@ -487,6 +507,7 @@ public class GridHubConfiguration {
     b.append("browserTimeout: ").append(getBrowserTimeout()).append("\n");
 
     b.append("newSessionWaitTimeout: ").append(newSessionWaitTimeout).append("\n");
+    b.append("newSessionThreads: ").append(newSessionThreads).append("\n");
     b.append("grid1Mapping: ").append(grid1Mapping).append("\n");
     b.append("throwOnCapabilityNotPresent: ").append(throwOnCapabilityNotPresent).append("\n");
 
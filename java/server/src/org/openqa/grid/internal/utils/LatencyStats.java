@@ -0,0 +1,109 @@
+/*
+Copyright 2011 Selenium committers
+Copyright 2011 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal.utils;
+
+import net.jcip.annotations.ThreadSafe;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the last samples of a duration, in ms, to report its percentiles. Only a fixed number of
+ * samples is kept, so the memory used doesn't depend on how long the hub has been running.
+ */
+@ThreadSafe
+public class LatencyStats {
+
+  private static final int DEFAULT_WINDOW = 1024;
+
+  private final long[] samples;
+  private int next = 0;
+  private long count = 0;
+  private long max = 0;
+
+  public LatencyStats() {
+    this(DEFAULT_WINDOW);
+  }
+
+  /**
+   * @param window the number of samples the percentiles are computed on.
+   */
+  public LatencyStats(int window) {
+    samples = new long[window];
+  }
+
+  public synchronized void add(long ms) {
+    samples[next] = ms;
+    next = (next + 1) % samples.length;
+    count++;
+    max = Math.max(max, ms);
+  }
+
+  /**
+   * @return the number of samples added since the creation.
+   */
+  public synchronized long getCount() {
+    return count;
+  }
+
+  /**
+   * @return the highest sample added since the creation.
+   */
+  public synchronized long getMax() {
+    return max;
+  }
+
+  /**
+   * @param percentile between 0 and 100
+   * @return the given percentile of the last samples, 0 if there isn't any sample yet.
+   */
+  public long getPercentile(double percentile) {
+    return getPercentile(snapshot(), percentile);
+  }
+
+  /**
+   * @return count, max and the 50th, 90th and 99th percentiles of the last samples.
+   */
+  public JSONObject toJSON() throws JSONException {
+    long[] sorted = snapshot();
+    JSONObject res = new JSONObject();
+    res.put("count", getCount());
+    res.put("max", getMax());
+    res.put("p50", getPercentile(sorted, 50));
+    res.put("p90", getPercentile(sorted, 90));
+    res.put("p99", getPercentile(sorted, 99));
+    return res;
+  }
+
+  private synchronized long[] snapshot() {
+    int size = (int) Math.min(count, samples.length);
+    long[] res = Arrays.copyOf(samples, size);
+    Arrays.sort(res);
+    return res;
+  }
+
+  private static long getPercentile(long[] sorted, double percentile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+  }
+}
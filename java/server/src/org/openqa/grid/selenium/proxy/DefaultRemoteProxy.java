@@ -22,6 +22,7 @@ import org.apache.http.HttpResponse;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.util.EntityUtils;
 import org.openqa.grid.common.RegistrationRequest;
 import org.openqa.grid.common.SeleniumProtocol;
@@ -36,6 +37,7 @@ import org.openqa.grid.internal.listeners.TestSessionListener;
 import org.openqa.grid.internal.listeners.TimeoutListener;
 import org.openqa.grid.internal.BaseRemoteProxy;
 import org.openqa.grid.internal.utils.HtmlRenderer;
+import org.openqa.grid.internal.utils.LatencyStats;
 import org.openqa.grid.selenium.utils.WebProxyHtmlRenderer;
 import org.openqa.selenium.firefox.FirefoxDriver;
 import org.openqa.selenium.remote.CapabilityType;
@@ -44,6 +46,9 @@ import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.servlet.http.HttpServletRequest;
@@ -127,14 +132,20 @@ public class DefaultRemoteProxy extends BaseRemoteProxy
 
   // TODO freynaud
   private List<RemoteException> errors = new CopyOnWriteArrayList<RemoteException>();
-  private Thread pollingThread = null;
+  private volatile ScheduledFuture<?> polling = null;
+  private final LatencyStats probeLatency = new LatencyStats();
 
 
   // TODO freynaud replace with getstatus.
   public boolean isAlive() {
     String url = getRemoteHost().toExternalForm() + "/wd/hub/status";
     BasicHttpRequest r = new BasicHttpRequest("GET", url);
-    HttpClient client = getHttpClientFactory().getHttpClient();
+    // a node which doesn't answer within a polling interval is taken as unreachable, the probe
+    // doesn't keep a thread of the shared scheduler longer than that.
+    int timeout = (int) Math.min(pollingInterval, Integer.MAX_VALUE);
+    HttpConnectionParams.setConnectionTimeout(r.getParams(), timeout);
+    HttpConnectionParams.setSoTimeout(r.getParams(), timeout);
+    HttpClient client = getGridHttpClient();
     HttpHost host = new HttpHost(getRemoteHost().getHost(), getRemoteHost().getPort());
     HttpResponse response;
     try {
@@ -151,45 +162,73 @@ public class DefaultRemoteProxy extends BaseRemoteProxy
   }
 
   public void startPolling() {
-    pollingThread = new Thread(new Runnable() { // Thread safety reviewed
+    if (pollingInterval <= 0) {
+      log.warning("Not polling " + getRemoteHost() + ", the polling interval isn't positive.");
+      return;
+    }
+    // the first probe is delayed at random, so that the nodes registered together aren't probed at
+    // the same time.
+    long firstProbe = pollingInterval + (long) (Math.random() * pollingInterval);
+    polling = getRegistry().getProxyScheduler().scheduleWithFixedDelay(new Runnable() {
           int nbFailedPoll = 0;
           long downSince = 0;
 
           public void run() {
-            while (poll) {
-              try {
-                Thread.sleep(pollingInterval);
-                if (!isAlive()) {
-                  if (!down) {
-                    nbFailedPoll++;
-                    if (nbFailedPoll >= 2) {
-                      downSince = System.currentTimeMillis();
-                      addNewEvent(new RemoteNotReachableException("Cannot reach the remote."));
-                    }
-                  } else {
-                    long downFor = System.currentTimeMillis() - downSince;
-                    if (downFor > unregisterDelay) {
-                      addNewEvent(new RemoteUnregisterException(
-                          "Unregistering the node.It's been down for " + downFor));
-                    }
-                  }
-                } else {
-                  down = false;
-                  nbFailedPoll = 0;
-                  downSince = 0;
+            if (!poll) {
+              return;
+            }
+            long start = System.currentTimeMillis();
+            boolean alive;
+            try {
+              alive = isAlive();
+            } catch (RuntimeException e) {
+              // thrown out of the task, it would cancel the next probes.
+              log.log(Level.WARNING, "Error probing " + getRemoteHost(), e);
+              alive = false;
+            }
+            probeLatency.add(System.currentTimeMillis() - start);
+
+            if (!alive) {
+              if (!down) {
+                nbFailedPoll++;
+                if (nbFailedPoll >= 2) {
+                  downSince = System.currentTimeMillis();
+                  addNewEvent(new RemoteNotReachableException("Cannot reach the remote."));
                 }
-              } catch (InterruptedException e) {
-                return;
+              } else {
+                long downFor = System.currentTimeMillis() - downSince;
+                if (downFor > unregisterDelay) {
+                  addNewEvent(new RemoteUnregisterException(
+                      "Unregistering the node.It's been down for " + downFor));
+                }
+              }
+            } else {
+              boolean wasDown = down;
+              down = false;
+              nbFailedPoll = 0;
+              downSince = 0;
+              if (wasDown) {
+                // the requests refused meanwhile are waiting for it.
+                getRegistry().fireProxyAvailable();
               }
             }
           }
-        }, "RemoteProxy failure poller thread");
-    pollingThread.start();
+        }, firstProbe, pollingInterval, TimeUnit.MILLISECONDS);
   }
 
   public void stopPolling() {
     poll = false;
-    pollingThread.interrupt();
+    ScheduledFuture<?> p = polling;
+    if (p != null) {
+      p.cancel(false);
+    }
+  }
+
+  /**
+   * @return how long the probes checking the node is up took, in ms.
+   */
+  public LatencyStats getProbeLatency() {
+    return probeLatency;
   }
 
   public void addNewEvent(RemoteException event) {
@@ -23,6 +23,7 @@ import org.openqa.grid.internal.RemoteProxy;
 import org.openqa.grid.internal.TestSession;
 import org.openqa.grid.internal.TestSlot;
 import org.openqa.grid.internal.utils.HtmlRenderer;
+import org.openqa.grid.internal.utils.LatencyStats;
 import org.openqa.grid.selenium.proxy.DefaultRemoteProxy;
 import org.openqa.grid.web.utils.BrowserNameUtils;
 import org.openqa.selenium.remote.CapabilityType;
@@ -50,6 +51,12 @@ public class WebProxyHtmlRenderer implements HtmlRenderer {
       builder.append("(cannot be reached at the moment)");
     }
     builder.append("<br />");
+    LatencyStats probes = ((DefaultRemoteProxy) proxy).getProbeLatency();
+    if (probes.getCount() > 0) {
+      builder.append("answers the health checks in ").append(probes.getPercentile(50))
+          .append(" ms ( 90% in ").append(probes.getPercentile(90)).append(" ms, max ")
+          .append(probes.getMax()).append(" ms )<br />");
+    }
     if (proxy.getTimeOut() > 0) {
       int inSec = proxy.getTimeOut() / 1000;
       builder.append("test session time out after ").append(inSec).append(" sec.<br />");
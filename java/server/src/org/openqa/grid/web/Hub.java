@@ -22,6 +22,9 @@ import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.FileHandler;
 import java.util.logging.Handler;
@@ -31,6 +34,7 @@ import java.util.logging.Logger;
 import javax.servlet.Servlet;
 
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import org.openqa.grid.internal.Registry;
 import org.openqa.grid.internal.utils.GridHubConfiguration;
@@ -46,7 +50,7 @@ import org.openqa.grid.web.servlet.ResourceServlet;
 import org.openqa.grid.web.servlet.TestSessionStatusServlet;
 import org.openqa.grid.web.utils.ExtraServletUtil;
 import org.seleniumhq.jetty7.server.Server;
-import org.seleniumhq.jetty7.server.bio.SocketConnector;
+import org.seleniumhq.jetty7.server.nio.SelectChannelConnector;
 import org.seleniumhq.jetty7.servlet.ServletContextHandler;
 import org.openqa.selenium.net.NetworkUtils;
 import org.openqa.selenium.server.RemoteControlConfiguration;
@@ -64,6 +68,13 @@ public class Hub {
   private final String host;
   private final Registry registry;
   private final Map<String, Class<? extends Servlet>> extraServlet = Maps.newHashMap();
+  // forwards the new session requests once they got a node. The requests waiting for a node don't
+  // use any thread.
+  private final ExecutorService newSessionExecutor;
+  // times out the waiting requests, even when all the forwarders wait for slow nodes.
+  private final ScheduledExecutorService newSessionTimer =
+      Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("New session timer").setDaemon(true).build());
 
   private Server server;
 
@@ -108,6 +119,9 @@ public class Hub {
     }
 
     registry = Registry.newInstance(this, config);
+    newSessionExecutor = Executors.newFixedThreadPool(config.getNewSessionThreads(),
+        new ThreadFactoryBuilder()
+            .setNameFormat("New session forwarder %d").setDaemon(true).build());
 
     if (config.getHost() != null) {
       host = config.getHost();
@@ -133,7 +147,8 @@ public class Hub {
   private void initServer() {
     try {
       server = new Server();
-      SocketConnector socketListener = new SocketConnector();
+      // non blocking, so that the suspended new session requests don't keep a thread.
+      SelectChannelConnector socketListener = new SelectChannelConnector();
       socketListener.setMaxIdleTime(60000);
       socketListener.setPort(port);
       server.addConnector(socketListener);
@@ -143,6 +158,8 @@ public class Hub {
       server.setHandler(root);
 
       root.setAttribute(Registry.KEY, registry);
+      root.setAttribute(DriverServlet.NEW_SESSION_EXECUTOR, newSessionExecutor);
+      root.setAttribute(DriverServlet.NEW_SESSION_TIMER, newSessionTimer);
 
       root.addServlet(DisplayHelpServlet.class.getName(), "/*");
 
@@ -192,6 +209,8 @@ public class Hub {
 
   public void stop() throws Exception {
     server.stop();
+    newSessionExecutor.shutdown();
+    newSessionTimer.shutdown();
   }
 
   public URL getUrl() {
@@ -27,12 +27,19 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.openqa.grid.internal.Registry;
 import org.openqa.grid.web.servlet.handler.RequestHandler;
+import org.openqa.grid.web.servlet.handler.RequestType;
 import org.openqa.grid.web.servlet.handler.SeleniumBasedRequest;
 import org.openqa.grid.web.servlet.handler.WebDriverRequest;
+import org.seleniumhq.jetty7.continuation.Continuation;
+import org.seleniumhq.jetty7.continuation.ContinuationSupport;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -41,12 +48,29 @@ import javax.servlet.http.HttpServletResponse;
 /**
  * entry point for all communication request sent by the clients to the remotes managed by the grid.
  *
- * Runs on the socketListener threads of the servlet container
+ * Runs on the socketListener threads of the servlet container. When the servlet context has an
+ * executor under {@link #NEW_SESSION_EXECUTOR}, a timer under {@link #NEW_SESSION_TIMER} and the
+ * container supports it, the new session requests are suspended while they wait for a node, and
+ * completed on that executor.
  */
 public class DriverServlet extends RegistryBasedServlet {
 
   private static final long serialVersionUID = -1693540182205547227L;
 
+  /**
+   * Servlet context attribute of the {@link ExecutorService} forwarding the new session requests
+   * processed asynchronously.
+   */
+  public static final String NEW_SESSION_EXECUTOR = DriverServlet.class.getName() + ".executor";
+
+  /**
+   * Servlet context attribute of the {@link ScheduledExecutorService} timing out the new session
+   * requests processed asynchronously.
+   */
+  public static final String NEW_SESSION_TIMER = DriverServlet.class.getName() + ".timer";
+
+  private static final Logger log = Logger.getLogger(DriverServlet.class.getName());
+
   @SuppressWarnings("UnusedDeclaration")
   public DriverServlet() {
     this(null);
@@ -81,56 +105,117 @@ public class DriverServlet extends RegistryBasedServlet {
     try {
       r = SeleniumBasedRequest.createFromRequest(request, getRegistry());
       req = new RequestHandler(r, response, getRegistry());
+      if (r.getRequestType() == RequestType.START_SESSION && processAsync(request, response, req)) {
+        return;
+      }
       req.process();
 
     } catch (Throwable e) {
-      if (r instanceof WebDriverRequest && !response.isCommitted()) {
-        // http://code.google.com/p/selenium/wiki/JsonWireProtocol#Error_Handling
-        response.reset();
-        response.setContentType("application/json");
-        response.setCharacterEncoding("UTF-8");
-        response.setStatus(500);
-
-        JSONObject resp = new JSONObject();
-        try {
-          final ExternalSessionKey serverSession = req.getServerSession();
-          resp.put("sessionId", serverSession != null ? serverSession.getKey() : null);
-          resp.put("status", ErrorCodes.UNHANDLED_ERROR);
-          JSONObject value = new JSONObject();
-          value.put("message", e.getMessage());
-          value.put("class", e.getClass().getCanonicalName());
-
-          JSONArray stacktrace = new JSONArray();
-          for (StackTraceElement ste : e.getStackTrace()) {
-            JSONObject st = new JSONObject();
-            st.put("fileName", ste.getFileName());
-            st.put("className", ste.getClassName());
-            st.put("methodName", ste.getMethodName());
-            st.put("lineNumber", ste.getLineNumber());
-            stacktrace.put(st);
-          }
-          value.put("stackTrace", stacktrace);
-          resp.put("value", value);
+      handleError(r, req, response, e);
+    }
 
-        } catch (JSONException e1) {
-          e1.printStackTrace();
-        }
-        String json = resp.toString();
+  }
 
-        byte[] bytes = json.getBytes("UTF-8");
-        InputStream in = new ByteArrayInputStream(bytes);
+  /**
+   * Suspends the new session request until the registry assigns it a node. The container thread
+   * is released right away.
+   *
+   * @return false if the request can't be suspended, and has to be processed synchronously.
+   */
+  private boolean processAsync(HttpServletRequest request, final HttpServletResponse response,
+                               RequestHandler req) {
+    ExecutorService executor = getContextAttribute(NEW_SESSION_EXECUTOR);
+    ScheduledExecutorService timer = getContextAttribute(NEW_SESSION_TIMER);
+    if (executor == null || executor.isShutdown() || timer == null || timer.isShutdown()) {
+      return false;
+    }
+    final Continuation continuation;
+    try {
+      continuation = ContinuationSupport.getContinuation(request);
+    } catch (IllegalStateException e) {
+      // not jetty, nor servlet 3.
+      return false;
+    }
+    // the handler times the request out itself, according to the registry config.
+    continuation.setTimeout(0);
+    continuation.suspend(response);
+    req.processAsync(executor, timer, new RequestHandler.AsyncCallback() {
+      public void onComplete(RequestHandler handler, Throwable error) {
         try {
-            response.setHeader("Content-Length", Integer.toString(bytes.length));
-            ByteStreams.copy(in, response.getOutputStream());
+          if (error != null) {
+            handleError(handler.getRequest(), handler, response, error);
+          }
+        } catch (Throwable t) {
+          log.log(Level.WARNING, "Error completing the new session request", t);
+          try {
+            if (!response.isCommitted()) {
+              response.sendError(500, t.getMessage());
+            }
+          } catch (IOException ignore) {
+          }
         } finally {
-          in.close();
-          response.flushBuffer();
+          continuation.complete();
         }
-      } else {
-        throw (new IOException(e));
       }
+    });
+    return true;
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T getContextAttribute(String name) {
+    if (getServletConfig() == null) {
+      return null;
     }
+    return (T) getServletContext().getAttribute(name);
+  }
 
+  private void handleError(SeleniumBasedRequest r, RequestHandler req,
+                           HttpServletResponse response, Throwable e) throws IOException {
+    if (r instanceof WebDriverRequest && !response.isCommitted()) {
+      // http://code.google.com/p/selenium/wiki/JsonWireProtocol#Error_Handling
+      response.reset();
+      response.setContentType("application/json");
+      response.setCharacterEncoding("UTF-8");
+      response.setStatus(500);
+
+      JSONObject resp = new JSONObject();
+      try {
+        final ExternalSessionKey serverSession = req.getServerSession();
+        resp.put("sessionId", serverSession != null ? serverSession.getKey() : null);
+        resp.put("status", ErrorCodes.UNHANDLED_ERROR);
+        JSONObject value = new JSONObject();
+        value.put("message", e.getMessage());
+        value.put("class", e.getClass().getCanonicalName());
+
+        JSONArray stacktrace = new JSONArray();
+        for (StackTraceElement ste : e.getStackTrace()) {
+          JSONObject st = new JSONObject();
+          st.put("fileName", ste.getFileName());
+          st.put("className", ste.getClassName());
+          st.put("methodName", ste.getMethodName());
+          st.put("lineNumber", ste.getLineNumber());
+          stacktrace.put(st);
+        }
+        value.put("stackTrace", stacktrace);
+        resp.put("value", value);
+
+      } catch (JSONException e1) {
+        e1.printStackTrace();
+      }
+      String json = resp.toString();
+
+      byte[] bytes = json.getBytes("UTF-8");
+      InputStream in = new ByteArrayInputStream(bytes);
+      try {
+          response.setHeader("Content-Length", Integer.toString(bytes.length));
+          ByteStreams.copy(in, response.getOutputStream());
+      } finally {
+        in.close();
+        response.flushBuffer();
+      }
+    } else {
+      throw (new IOException(e));
+    }
   }
 
 }
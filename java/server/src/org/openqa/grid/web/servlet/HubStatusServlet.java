@@ -21,6 +21,7 @@ package org.openqa.grid.web.servlet;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.net.URL;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -28,11 +29,15 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.http.HttpHost;
+import org.apache.http.pool.PoolStats;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.openqa.grid.common.exception.GridException;
 import org.openqa.grid.internal.Registry;
+import org.openqa.grid.internal.RemoteProxy;
+import org.openqa.selenium.remote.internal.HttpClientFactory;
 
 /**
  * API to query the hub config remotly.
@@ -53,9 +58,19 @@ import org.openqa.grid.internal.Registry;
  * 
  * {"configuration": []  }
  *
+ * The state of the new session request queue is returned along with all the params, or when
+ * "newSessionRequestQueue" is asked for : the number of waiting requests, how long the assigned
+ * requests waited ( timeInQueue ) and how long the matcher took to assign them ( matchLatency ),
+ * in ms.
+ *
+ * The same goes for "httpClientPool" : the connections from the hub to the nodes, leased,
+ * available and pending, for the whole grid and per node.
  */
 public class HubStatusServlet extends RegistryBasedServlet {
 
+  private static final String NEW_SESSION_REQUEST_QUEUE = "newSessionRequestQueue";
+  private static final String HTTP_CLIENT_POOL = "httpClientPool";
+
   public HubStatusServlet() {
     super(null);
   }
@@ -110,7 +125,8 @@ public class HubStatusServlet extends RegistryBasedServlet {
                               : null;
 
         Set<String> paramsToReturn;
-        if (requestJSON == null || keys.length() == 0) {
+        boolean allParams = requestJSON == null || keys.length() == 0;
+        if (allParams) {
           paramsToReturn = getRegistry().getConfiguration().getAllParams().keySet();
         } else {
           paramsToReturn = new HashSet<String>();
@@ -128,6 +144,12 @@ public class HubStatusServlet extends RegistryBasedServlet {
           }
 
         }
+        if (allParams || paramsToReturn.contains(NEW_SESSION_REQUEST_QUEUE)) {
+          res.put(NEW_SESSION_REQUEST_QUEUE, getNewSessionRequestQueue());
+        }
+        if (allParams || paramsToReturn.contains(HTTP_CLIENT_POOL)) {
+          res.put(HTTP_CLIENT_POOL, getHttpClientPool());
+        }
       }
     } catch (Exception e) {
       res.put("success", false);
@@ -136,4 +158,35 @@ public class HubStatusServlet extends RegistryBasedServlet {
     return res;
 
   }
+
+  private JSONObject getNewSessionRequestQueue() throws JSONException {
+    JSONObject res = new JSONObject();
+    res.put("size", getRegistry().getNewSessionRequestCount());
+    res.put("timeInQueue", getRegistry().getNewSessionTimeInQueue().toJSON());
+    res.put("matchLatency", getRegistry().getNewSessionMatchLatency().toJSON());
+    return res;
+  }
+
+  private JSONObject getHttpClientPool() throws JSONException {
+    HttpClientFactory factory = getRegistry().getHttpClientFactory();
+    JSONObject res = toJSON(factory.getGridPoolStats());
+    JSONObject nodes = new JSONObject();
+    for (RemoteProxy proxy : getRegistry().getAllProxies()) {
+      URL remoteHost = proxy.getRemoteHost();
+      int port = remoteHost.getPort() != -1 ? remoteHost.getPort() : remoteHost.getDefaultPort();
+      HttpHost host = new HttpHost(remoteHost.getHost(), port, remoteHost.getProtocol());
+      nodes.put(proxy.getId(), toJSON(factory.getGridPoolStats(host)));
+    }
+    res.put("nodes", nodes);
+    return res;
+  }
+
+  private JSONObject toJSON(PoolStats stats) throws JSONException {
+    JSONObject res = new JSONObject();
+    res.put("leased", stats.getLeased());
+    res.put("available", stats.getAvailable());
+    res.put("pending", stats.getPending());
+    res.put("max", stats.getMax());
+    return res;
+  }
 }
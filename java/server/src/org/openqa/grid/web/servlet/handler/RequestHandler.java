@@ -20,8 +20,13 @@ package org.openqa.grid.web.servlet.handler;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -43,7 +48,9 @@ import org.openqa.grid.internal.listeners.TestSessionListener;
  * Base stuff to handle the request coming from a remote. 
  *
  * Threading notes; RequestHandlers are instantiated per-request, run on the servlet container
- * thread. The instance is also accessed by the matcher thread.
+ * thread. The instance is also accessed by the matcher thread. New session requests processed with
+ * {@link #processAsync(ExecutorService, ScheduledExecutorService, AsyncCallback)} don't keep the
+ * container thread, they are forwarded on the executor once the matcher binds them.
  */
 @SuppressWarnings("JavaDoc")
 public class RequestHandler implements Comparable<RequestHandler> {
@@ -60,6 +67,25 @@ public class RequestHandler implements Comparable<RequestHandler> {
   private static final Logger log = Logger.getLogger(RequestHandler.class.getName());
   private final Thread waitingThread;
 
+  // only set for the requests processed asynchronously.
+  private volatile ExecutorService executor;
+  private volatile AsyncCallback callback;
+  private volatile ScheduledFuture<?> timeout;
+  private final AtomicBoolean completed = new AtomicBoolean(false);
+
+  /**
+   * Notified when a new session request processed asynchronously is done.
+   */
+  public interface AsyncCallback {
+
+    /**
+     * @param handler the handler that processed the request.
+     * @param error   null if the request was forwarded to the node and the response of the node
+     *                written, the reason why it couldn't be otherwise.
+     */
+    void onComplete(RequestHandler handler, Throwable error);
+  }
+
   
   
 
@@ -145,6 +171,77 @@ public class RequestHandler implements Comparable<RequestHandler> {
   }
 
 
+  /**
+   * Queues the new session request and returns without waiting for a node. When the matcher binds
+   * the request to a session, the request is forwarded on the executor. When the new session wait
+   * timeout is reached first, the request fails on the timer. The callback is then notified.
+   *
+   * @param executor the executor forwarding the request.
+   * @param timer    the timer of the new session wait timeout, which shouldn't wait for the
+   *                 requests being forwarded.
+   * @param callback notified once, when the request is done.
+   */
+  public void processAsync(ExecutorService executor, ScheduledExecutorService timer,
+                           AsyncCallback callback) {
+    if (request.getRequestType() != RequestType.START_SESSION) {
+      throw new IllegalStateException("Only the new session requests can be processed async.");
+    }
+    // has to be set before the request is visible to the matcher.
+    this.executor = executor;
+    this.callback = callback;
+    try {
+      registry.addNewSessionRequest(this);
+    } catch (Throwable t) {
+      fail(t);
+      return;
+    }
+    if (registry.getNewSessionWaitTimeout() != -1) {
+      timeout = timer.schedule(new Runnable() {
+        public void run() {
+          // if the request isn't in the queue anymore, a session was bound to it.
+          if (registry.removeNewSessionRequest(RequestHandler.this)) {
+            fail(new TimeoutException("Request timed out waiting for a node to become available."));
+          }
+        }
+      }, registry.getNewSessionWaitTimeout(), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void forwardAsync() {
+    ScheduledFuture<?> t = timeout;
+    if (t != null) {
+      t.cancel(false);
+    }
+    try {
+      beforeSessionEvent();
+      forwardNewSessionRequestAndUpdateRegistry(session);
+    } catch (Exception e) {
+      fail(e);
+      return;
+    }
+    complete(null);
+  }
+
+  private void fail(Throwable t) {
+    cleanup();
+    complete(new GridException("Error forwarding the new session " + t.getMessage(), t));
+  }
+
+  private void complete(Throwable error) {
+    if (completed.compareAndSet(false, true)) {
+      callback.onComplete(this, error);
+    }
+  }
+
+  private void runAsync(Runnable task) {
+    try {
+      executor.execute(task);
+    } catch (RejectedExecutionException e) {
+      // the hub is shutting down.
+      task.run();
+    }
+  }
+
   private void cleanup() {
     registry.removeNewSessionRequest(this);
     if (session != null) {
@@ -226,6 +323,14 @@ public class RequestHandler implements Comparable<RequestHandler> {
   public void bindSession(TestSession session) {
     this.session = session;
     sessionAssigned.countDown();
+    if (callback != null) {
+      // called by the matcher thread, which shouldn't wait for the node.
+      runAsync(new Runnable() {
+        public void run() {
+          forwardAsync();
+        }
+      });
+    }
   }
 
   public TestSession getSession() {
@@ -250,7 +355,15 @@ public class RequestHandler implements Comparable<RequestHandler> {
   }
 
   public void stop() {
-    waitingThread.interrupt();
+    if (callback != null) {
+      runAsync(new Runnable() {
+        public void run() {
+          fail(new GridException("The registry is stopping."));
+        }
+      });
+    } else {
+      waitingThread.interrupt();
+    }
   }
 
   @Override
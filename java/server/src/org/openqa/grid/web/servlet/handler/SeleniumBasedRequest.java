@@ -59,6 +59,11 @@ public abstract class SeleniumBasedRequest extends HttpServletRequestWrapper {
   private final String encoding = "UTF-8";
   private final Map<String, Object> desiredCapability;
   private final long timestamp = System.currentTimeMillis();
+  // the container forgets them once the servlet returns, before a suspended request is forwarded.
+  private final boolean pathsCaptured;
+  private final String servletPath;
+  private final String contextPath;
+  private final String pathInfo;
 
 
   public static SeleniumBasedRequest createFromRequest(HttpServletRequest request, Registry registry) {
@@ -87,6 +92,10 @@ public abstract class SeleniumBasedRequest extends HttpServletRequestWrapper {
   public SeleniumBasedRequest(HttpServletRequest request, Registry registry, RequestType type,
       Map<String, Object> desiredCapability) {
     super(request);
+    this.pathsCaptured = false;
+    this.servletPath = null;
+    this.contextPath = null;
+    this.pathInfo = null;
     this.registry = registry;
     this.type = type;
     this.desiredCapability = desiredCapability;
@@ -94,6 +103,10 @@ public abstract class SeleniumBasedRequest extends HttpServletRequestWrapper {
 
   public SeleniumBasedRequest(HttpServletRequest httpServletRequest, Registry registry) {
     super(httpServletRequest);
+    this.pathsCaptured = true;
+    this.servletPath = httpServletRequest.getServletPath();
+    this.contextPath = httpServletRequest.getContextPath();
+    this.pathInfo = httpServletRequest.getPathInfo();
     try {
       InputStream is = super.getInputStream();
       setBody(ByteStreams.toByteArray(is));
@@ -146,6 +159,21 @@ public abstract class SeleniumBasedRequest extends HttpServletRequestWrapper {
     return type;
   }
 
+  @Override
+  public String getServletPath() {
+    return pathsCaptured ? servletPath : super.getServletPath();
+  }
+
+  @Override
+  public String getContextPath() {
+    return pathsCaptured ? contextPath : super.getContextPath();
+  }
+
+  @Override
+  public String getPathInfo() {
+    return pathsCaptured ? pathInfo : super.getPathInfo();
+  }
+
   @Override
   public ServletInputStream getInputStream() throws IOException {
     return new ServletInputStreamImpl(new ByteArrayInputStream(body));
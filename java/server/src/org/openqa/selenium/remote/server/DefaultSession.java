@@ -17,6 +17,10 @@ limitations under the License.
 package org.openqa.selenium.remote.server;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Futures;
 
 import org.openqa.selenium.Capabilities;
 import org.openqa.selenium.JavascriptExecutor;
@@ -39,11 +43,15 @@ import org.openqa.selenium.remote.SessionId;
 import org.openqa.selenium.support.events.EventFiringWebDriver;
 
 import java.io.File;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * The default session implementation.
@@ -53,12 +61,21 @@ import java.util.concurrent.TimeUnit;
  * There are basically two different thread types rummaging around in this class: Container listener
  * threads which deliver requests, and the "executor" thread that processes each request. This means
  * there is a minefield of thread constraints/guards, some of which are described in docs for each
- * field.
+ * field. The executor thread is taken from a pool when the session is created and given back when
+ * it's closed.
  */
 
 public class DefaultSession implements Session {
 
+  private static final Logger log = Logger.getLogger(DefaultSession.class.getName());
+
   private static final String QUIET_EXCEPTIONS_KEY = "webdriver.remote.quietExceptions";
+  private static final String SCREENSHOT_IGNORED_EXCEPTIONS_KEY =
+      "webdriver.remote.screenshotIgnoredExceptions";
+  private static final String SCREENSHOT_INTERVAL_KEY = "webdriver.remote.screenshotInterval";
+  // How long a failed command waits for its screenshot before being answered without it. A
+  // capture usually takes a few hundred milliseconds.
+  private static final long SCREENSHOT_TIMEOUT_MILLIS = 2000;
   private final SessionId sessionId;
   private final WebDriver driver;
   /**
@@ -67,12 +84,18 @@ public class DefaultSession implements Session {
    * Happens-before the exexutor and is thereafter thread-confined to the executor thread.
    */
   private final KnownElements knownElements;
-  private final ThreadPoolExecutor executor;
+  private final SessionExecutor executor;
   private final Capabilities capabilities; // todo: Investigate memory model implications of map
   // elements inside capabilities.
-  private volatile String base64EncodedImage;
+  private volatile Future<String> base64EncodedImage;
+  // The last screenshot which wasn't taken in time. While it isn't, the capture is stuck and the
+  // failures are answered without waiting for theirs.
+  private volatile Future<String> lateScreenshot;
   private volatile long lastAccess;
-  private volatile Thread inUseWithThread = null;
+  // Guards closing the session against submitting its commands, so that none is submitted once
+  // the executor went back to the pool.
+  private final Object closeLock = new Object();
+  private boolean closed;
   private final BrowserCreator browserCreator;
   private TemporaryFilesystem tempFs;
 
@@ -104,16 +127,21 @@ public class DefaultSession implements Session {
     browserCreator = new BrowserCreator(factory, capabilities);
     final FutureTask<EventFiringWebDriver> webDriverFutureTask =
         new FutureTask<EventFiringWebDriver>(browserCreator);
-    executor = new ThreadPoolExecutor(1, 1,
-                                      600L, TimeUnit.SECONDS,
-                                      new LinkedBlockingQueue<Runnable>());
+    executor = SessionExecutor.take(sessionId);
 
     // Ensure that the browser is created on the single thread.
-    EventFiringWebDriver initialDriver = execute(webDriverFutureTask);
+    EventFiringWebDriver initialDriver;
+    try {
+      initialDriver = execute(webDriverFutureTask);
+    } catch (Exception e) {
+      executor.release();
+      throw e;
+    }
 
     if (!isQuietModeEnabled(browserCreator, capabilities)) {
       // Memo to self; this is not a constructor escape of "this" - probably ;)
-      initialDriver.register(new SnapshotScreenListener(this));
+      initialDriver.register(new SnapshotScreenListener(this,
+          getIgnoredExceptions(capabilities), getScreenshotInterval(capabilities)));
     }
 
     this.driver = initialDriver;
@@ -137,6 +165,31 @@ public class DefaultSession implements Session {
     return propertySaysQuiet && !isExplicitlyDisabledByCapability;
   }
 
+  private static Set<String> getIgnoredExceptions(Capabilities capabilities) {
+    Object names = getSetting(capabilities, SCREENSHOT_IGNORED_EXCEPTIONS_KEY);
+    if (names == null) {
+      return ImmutableSet.of();
+    }
+    if (names instanceof Iterable) {
+      names = Joiner.on(',').join((Iterable<?>) names);
+    }
+    return ImmutableSet.copyOf(
+        Splitter.on(',').trimResults().omitEmptyStrings().split(names.toString()));
+  }
+
+  private static long getScreenshotInterval(Capabilities capabilities) {
+    Object interval = getSetting(capabilities, SCREENSHOT_INTERVAL_KEY);
+    if (interval instanceof Number) {
+      return ((Number) interval).longValue();
+    }
+    return interval == null ? 0 : Long.parseLong(interval.toString().trim());
+  }
+
+  private static Object getSetting(Capabilities capabilities, String key) {
+    Object cap = capabilities == null ? null : capabilities.getCapability(key);
+    return cap != null ? cap : System.getProperty(key);
+  }
+
   /**
    * Touches the session.
    */
@@ -149,28 +202,24 @@ public class DefaultSession implements Session {
   }
 
   public void close() {
-    executor.shutdown();
+    synchronized (closeLock) {
+      closed = true;
+      executor.release();
+    }
     tempFs.deleteTemporaryFiles();
     tempFs.deleteBaseDir();
   }
 
 
   public <X> X execute(final FutureTask<X> future) throws Exception {
-/*    if (executor.isShutdown()){
-         throw new WebDriverException(sessionId + " is closed for further execution");
-    } */
-    executor.execute(new Runnable() {
-      public void run() {
-        inUseWithThread = Thread.currentThread();
-        inUseWithThread.setName("Session " + sessionId + " processing inside browser");
-        try {
-          future.run();
-        } finally {
-          inUseWithThread = null;
-          Thread.currentThread().setName("Session " + sessionId + " awaiting client");
-        }
+    synchronized (closeLock) {
+      if (closed) {
+        throw new RejectedExecutionException(sessionId + " is closed for further execution");
       }
-    });
+      // a screenshot not taken for this command would be reported with its failure.
+      base64EncodedImage = null;
+      executor.execute(future);
+    }
     return future.get();
   }
 
@@ -188,13 +237,37 @@ public class DefaultSession implements Session {
   }
 
   public void attachScreenshot(String base64EncodedImage) {
+    attachScreenshot(Futures.immediateFuture(base64EncodedImage));
+  }
+
+  public void attachScreenshot(Future<String> base64EncodedImage) {
     this.base64EncodedImage = base64EncodedImage;
   }
 
   public String getAndClearScreenshot() {
-    String temp = this.base64EncodedImage;
+    Future<String> temp = this.base64EncodedImage;
     base64EncodedImage = null;
-    return temp;
+    if (temp == null) {
+      return null;
+    }
+    Future<String> late = lateScreenshot;
+    if (!temp.isDone() && late != null && !late.isDone()) {
+      return null;
+    }
+    try {
+      return temp.get(SCREENSHOT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (TimeoutException e) {
+      log.fine("The screenshot wasn't taken in time, the failure is reported without it");
+      lateScreenshot = temp;
+      return null;
+    } catch (Exception e) {
+      // Alright. No screen shot. Propagate the original exception
+      log.log(Level.FINE, "Unable to take a screenshot", e);
+      return null;
+    }
   }
 
   private class BrowserCreator implements Callable<EventFiringWebDriver> {
@@ -268,11 +341,11 @@ public class DefaultSession implements Session {
   }
 
   public boolean isInUse() {
-    return inUseWithThread != null;
+    return executor.getRunningThread() != null;
   }
 
   public void interrupt() {
-    Thread threadToStop = inUseWithThread;
+    Thread threadToStop = executor.getRunningThread();
     if (threadToStop != null) {
       synchronized (threadToStop) {
         threadToStop.interrupt();
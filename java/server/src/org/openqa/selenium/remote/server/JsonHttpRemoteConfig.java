@@ -18,6 +18,7 @@ limitations under the License.
 package org.openqa.selenium.remote.server;
 
 import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.SessionId;
 import org.openqa.selenium.remote.SessionNotFoundException;
 import org.openqa.selenium.remote.server.handler.AcceptAlert;
 import org.openqa.selenium.remote.server.handler.AddConfig;
@@ -35,6 +36,7 @@ import org.openqa.selenium.remote.server.handler.DescribeElement;
 import org.openqa.selenium.remote.server.handler.DismissAlert;
 import org.openqa.selenium.remote.server.handler.ElementEquality;
 import org.openqa.selenium.remote.server.handler.ExecuteAsyncScript;
+import org.openqa.selenium.remote.server.handler.ExecuteBatch;
 import org.openqa.selenium.remote.server.handler.ExecuteScript;
 import org.openqa.selenium.remote.server.handler.FindActiveElement;
 import org.openqa.selenium.remote.server.handler.FindChildElement;
@@ -174,6 +176,14 @@ public class JsonHttpRemoteConfig {
     return deleteMapper.bind(path, implementationClass);
   }
 
+  /**
+   * @return the config of the command sent with the given method to the given path, or null if
+   *         there is none.
+   */
+  public ResultConfig getConfig(String method, String path) {
+    return getUrlMapper(method).getConfig(path);
+  }
+
   public void handleRequest(HttpRequest request, HttpResponse response)
       throws WebDriverException {
     try {
@@ -290,6 +300,13 @@ public class JsonHttpRemoteConfig {
         .on(ResultType.SUCCESS, jsonResponse);
     postMapper.bind("/session/:sessionId/execute_async", ExecuteAsyncScript.class)
         .on(ResultType.SUCCESS, jsonResponse);
+    postMapper.bind("/session/:sessionId/batch", ExecuteBatch.class,
+        new ResultConfig.HandlerFactory() {
+          public RestishHandler createHandler(SessionId sessionId) {
+            return new ExecuteBatch(JsonHttpRemoteConfig.this, sessionId);
+          }
+        })
+        .on(ResultType.SUCCESS, jsonResponse);
 
     getMapper.bind("/session/:sessionId/source", GetPageSource.class)
         .on(ResultType.SUCCESS, jsonResponse);
@@ -16,71 +16,341 @@ limitations under the License.
 
 package org.openqa.selenium.remote.server;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableMap;
 
+import org.openqa.selenium.By;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.StaleElementReferenceException;
 import org.openqa.selenium.WebElement;
+import org.openqa.selenium.interactions.internal.Coordinates;
 import org.openqa.selenium.internal.Locatable;
 import org.openqa.selenium.internal.WrapsElement;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * The elements a session has handed out to its client, by id.
+ * <p/>
+ * Only the most recently used elements are kept, so that a long session on a page which keeps
+ * re-rendering doesn't hold on to every element it ever found. The elements which turned out to be
+ * stale are dropped as soon as a command on them fails. Asking for an element which was dropped
+ * throws a {@link StaleElementReferenceException}, as the element would most likely be stale
+ * anyway.
+ * <p/>
+ * The lookups by id don't lock. Adding elements is serialized, so that an element found twice
+ * always gets the same id.
+ */
 public class KnownElements {
 
-  private final BiMap<String, WebElement> elements = HashBiMap.create();
-  private int nextId;
+  private static final String MAX_KNOWN_ELEMENTS_KEY = "webdriver.remote.maxKnownElements";
+  private static final int DEFAULT_MAX_KNOWN_ELEMENTS = 100000;
+
+  private final Cache<String, WebElement> elements;
+  // the ids of the elements, keyed by the element the driver returned, which compares the way the
+  // driver wants it to.
+  private final ConcurrentMap<WebElement, String> ids = new ConcurrentHashMap<WebElement, String>();
+  private final AtomicInteger nextId = new AtomicInteger();
+  private final AtomicLong staleEvictions = new AtomicLong();
+
+  public KnownElements() {
+    this(Integer.getInteger(MAX_KNOWN_ELEMENTS_KEY, DEFAULT_MAX_KNOWN_ELEMENTS));
+  }
+
+  /**
+   * @param maxSize the number of elements kept before the least recently used ones are dropped.
+   */
+  public KnownElements(int maxSize) {
+    elements = CacheBuilder.newBuilder()
+        .maximumSize(maxSize)
+        .recordStats()
+        .removalListener(new RemovalListener<String, WebElement>() {
+          public void onRemoval(RemovalNotification<String, WebElement> notification) {
+            WebElement element = notification.getValue();
+            if (element instanceof ProxiedElement) {
+              ids.remove(((ProxiedElement) element).getWrappedElement(), notification.getKey());
+            }
+          }
+        })
+        .build();
+  }
+
+  public synchronized String add(WebElement element) {
+    if (element instanceof KnownElement) {
+      KnownElement known = (KnownElement) element;
+      if (known.owner == this && elements.getIfPresent(known.id) != null) {
+        return known.id;
+      }
+      element = known.element;
+    }
 
-  public String add(WebElement element) {
-    if (elements.containsValue(element)) {
-      return elements.inverse().get(element);
+    String id = ids.get(element);
+    if (id != null && elements.getIfPresent(id) != null) {
+      return id;
     }
-    String id = getNextId();
-    elements.put(id, proxyElement(element, id));
+    id = getNextId();
+    ids.put(element, id);
+    elements.put(id, wrap(element, id));
     return id;
   }
 
+  /**
+   * @param elementId the id of an element.
+   * @return the element, or null if there never was such an element.
+   * @throws StaleElementReferenceException if the element was dropped.
+   */
   public WebElement get(String elementId) {
-    return elements.get(elementId);
+    WebElement element = elements.getIfPresent(elementId);
+    if (element == null && wasHandedOut(elementId)) {
+      throw new StaleElementReferenceException(
+          "Element " + elementId + " is no longer known, it was either stale or not used for too"
+          + " long");
+    }
+    return element;
+  }
+
+  /**
+   * @return the number of elements known, the number of elements dropped because there were too
+   *         many, and because they were stale, and the ratio of the lookups which found their
+   *         element.
+   */
+  public Map<String, Object> getStats() {
+    CacheStats stats = elements.stats();
+    return ImmutableMap.<String, Object>of(
+        "entries", elements.size(),
+        "evictions", stats.evictionCount(),
+        "staleEvictions", staleEvictions.get(),
+        "hitRatio", stats.hitRate());
   }
 
-  // WebDriver is single threaded. Expect only a single thread at a time to access this
   private String getNextId() {
-    return String.valueOf(nextId++);
+    return String.valueOf(nextId.getAndIncrement());
   }
 
-  private WebElement proxyElement(final WebElement element, final String id) {
-    InvocationHandler handler = new InvocationHandler() {
-      public Object invoke(Object object, Method method, Object[] objects) throws Throwable {
-        if ("getId".equals(method.getName())) {
-          return id;
-        } else if ("getWrappedElement".equals(method.getName())) {
-          return element;
-        } else {
-          try {
-          return method.invoke(element, objects);
-          } catch (InvocationTargetException e){
-            throw e.getTargetException();
-          }
-        }
-      }
-    };
+  private boolean wasHandedOut(String elementId) {
+    try {
+      int id = Integer.parseInt(elementId);
+      return id >= 0 && id < nextId.get();
+    } catch (NumberFormatException e) {
+      return false;
+    }
+  }
 
-    Class<?>[] proxyThese;
-    if (element instanceof Locatable) {
-      proxyThese = new Class[] {WebElement.class, ProxiedElement.class, Locatable.class};
-    } else {
-      proxyThese = new Class[] {WebElement.class, ProxiedElement.class};
+  private void evictStale(String id) {
+    if (elements.asMap().remove(id) != null) {
+      staleEvictions.incrementAndGet();
     }
+  }
 
-    return (WebElement) Proxy.newProxyInstance(element.getClass().getClassLoader(),
-        proxyThese,
-        handler);
+  private WebElement wrap(WebElement element, String id) {
+    if (element instanceof Locatable) {
+      return new LocatableKnownElement(this, element, id);
+    }
+    return new KnownElement(this, element, id);
   }
 
   public interface ProxiedElement extends WrapsElement {
     String getId();
   }
+
+  /**
+   * Delegates to the element the driver returned, and drops it from the known elements once it
+   * turns out to be stale.
+   */
+  private static class KnownElement implements WebElement, ProxiedElement {
+
+    private final KnownElements owner;
+    protected final WebElement element;
+    private final String id;
+
+    KnownElement(KnownElements owner, WebElement element, String id) {
+      this.owner = owner;
+      this.element = element;
+      this.id = id;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public WebElement getWrappedElement() {
+      return element;
+    }
+
+    protected StaleElementReferenceException stale(StaleElementReferenceException e) {
+      owner.evictStale(id);
+      return e;
+    }
+
+    public void click() {
+      try {
+        element.click();
+      } catch (StaleElementReferenceException e) {
+        throw stale(e);
+      }
+    }
+
+    public void submit() {
+      try {
+        element.submit();
+      } catch (StaleElementReferenceException e) {
+        throw stale(e);
+      }
+    }
+
+    public void sendKeys(CharSequence... keysToSend) {
+      try {
+        element.sendKeys(keysToSend);
+      } catch (StaleElementReferenceException e) {
+        throw stale(e);
+      }
+    }
+
+    public void clear() {
+      try {
+        element.clear();
+      } catch (StaleElementReferenceException e) {
+        throw stale(e);
+      }
+    }
+
+    public String getTagName() {
+      try {
+        return element.getTagName();
+      } catch (StaleElementReferenceException e) {
+        throw stale(e);
+      }
+    }
+
+    public String getAttribute(String name) {
+      try {
+        return element.getAttribute(name);
+      } catch (StaleElementReferenceException e) {
+        throw stale(e);
+      }
+    }
+
+    public boolean isSelected() {
+      try {
+        return element.isSelected();
+      } catch (StaleElementReferenceException e) {
+        throw stale(e);
+      }
+    }
+
+    public boolean isEnabled() {
+      try {
+        return element.isEnabled();
+      } catch (StaleElementReferenceException e) {
+        throw stale(e);
+      }
+    }
+
+    public String getText() {
+      try {
+        return element.getText();
+      } catch (StaleElementReferenceException e) {
+        throw stale(e);
+      }
+    }
+
+    public List<WebElement> findElements(By by) {
+      try {
+        return element.findElements(by);
+      } catch (StaleElementReferenceException e) {
+        throw stale(e);
+      }
+    }
+
+    public WebElement findElement(By by) {
+      try {
+        return element.findElement(by);
+      } catch (StaleElementReferenceException e) {
+        throw stale(e);
+      }
+    }
+
+    public boolean isDisplayed() {
+      try {
+        return element.isDisplayed();
+      } catch (StaleElementReferenceException e) {
+        throw stale(e);
+      }
+    }
+
+    public Point getLocation() {
+      try {
+        return element.getLocation();
+      } catch (StaleElementReferenceException e) {
+        throw stale(e);
+      }
+    }
+
+    public Dimension getSize() {
+      try {
+        return element.getSize();
+      } catch (StaleElementReferenceException e) {
+        throw stale(e);
+      }
+    }
+
+    public String getCssValue(String propertyName) {
+      try {
+        return element.getCssValue(propertyName);
+      } catch (StaleElementReferenceException e) {
+        throw stale(e);
+      }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (other instanceof KnownElement) {
+        other = ((KnownElement) other).element;
+      }
+      return element.equals(other);
+    }
+
+    @Override
+    public int hashCode() {
+      return element.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return element.toString();
+    }
+  }
+
+  private static class LocatableKnownElement extends KnownElement implements Locatable {
+
+    LocatableKnownElement(KnownElements owner, WebElement element, String id) {
+      super(owner, element, id);
+    }
+
+    public Point getLocationOnScreenOnceScrolledIntoView() {
+      try {
+        return ((Locatable) element).getLocationOnScreenOnceScrolledIntoView();
+      } catch (StaleElementReferenceException e) {
+        throw stale(e);
+      }
+    }
+
+    public Coordinates getCoordinates() {
+      try {
+        return ((Locatable) element).getCoordinates();
+      } catch (StaleElementReferenceException e) {
+        throw stale(e);
+      }
+    }
+  }
 }
@@ -21,6 +21,7 @@ import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.io.TemporaryFilesystem;
 import org.openqa.selenium.remote.SessionId;
 
+import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 
 public interface Session {
@@ -37,6 +38,12 @@ public interface Session {
 
   void attachScreenshot(String base64EncodedImage);
 
+  /**
+   * Attaches a screenshot which is still being taken.
+   * @param base64EncodedImage the screenshot, null if it couldn't be taken
+   */
+  void attachScreenshot(Future<String> base64EncodedImage);
+
   String getAndClearScreenshot();
 
   boolean isTimedOut(long timeout);
@@ -0,0 +1,113 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.remote.server;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.openqa.selenium.remote.SessionId;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The thread a session runs its commands on.
+ * <p/>
+ * Some drivers can only be used from the thread which created them, so a session keeps the same
+ * executor, and thread, from the creation of its browser until it's closed. The executor then goes
+ * back to a pool for the sessions to come, which saves starting a thread for each session. Its
+ * thread ends once no session has taken it for a minute, and being a daemon it doesn't keep the
+ * JVM running meanwhile.
+ */
+class SessionExecutor extends ThreadPoolExecutor {
+
+  private static final long IDLE_SECONDS = 60;
+  private static final Queue<SessionExecutor> idle = new ConcurrentLinkedQueue<SessionExecutor>();
+
+  private final AtomicBoolean released = new AtomicBoolean();
+  private volatile String threadName;
+  private volatile Thread running;
+
+  // thread-confined to the worker thread
+  private Thread namedThread;
+  private String namedAs;
+
+  private SessionExecutor() {
+    super(1, 1, IDLE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactoryBuilder().setNameFormat("Idle session executor").setDaemon(true).build());
+  }
+
+  /**
+   * @param sessionId The session which the executor runs the commands of until it's released
+   * @return An executor of the pool, or a new one if they are all taken.
+   */
+  static SessionExecutor take(SessionId sessionId) {
+    SessionExecutor executor = idle.poll();
+    if (executor == null) {
+      executor = new SessionExecutor();
+    }
+    executor.allowCoreThreadTimeOut(false);
+    executor.threadName = "Session " + sessionId;
+    executor.released.set(false);
+    return executor;
+  }
+
+  /**
+   * Gives the executor back to the pool once it has run the commands already submitted. Only the
+   * first call of a session does.
+   */
+  void release() {
+    if (!released.compareAndSet(false, true)) {
+      return;
+    }
+    execute(new Runnable() {
+      public void run() {
+        Thread.currentThread().setName("Idle session executor");
+        namedAs = null;
+        allowCoreThreadTimeOut(true);
+        idle.add(SessionExecutor.this);
+      }
+    });
+  }
+
+  /**
+   * @return The thread running a command, null if none is.
+   */
+  Thread getRunningThread() {
+    return running;
+  }
+
+  @Override
+  protected void beforeExecute(Thread thread, Runnable command) {
+    running = thread;
+    // named once for each session, for the thread dumps.
+    String name = threadName;
+    if (thread != namedThread || !name.equals(namedAs)) {
+      thread.setName(name);
+      namedThread = thread;
+      namedAs = name;
+    }
+  }
+
+  @Override
+  protected void afterExecute(Runnable command, Throwable failure) {
+    running = null;
+  }
+}
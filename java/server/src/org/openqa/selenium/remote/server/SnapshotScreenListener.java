@@ -16,6 +16,10 @@ limitations under the License.
 
 package org.openqa.selenium.remote.server;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import org.openqa.selenium.Platform;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.internal.Base64Encoder;
@@ -26,15 +30,52 @@ import java.awt.Robot;
 import java.awt.Toolkit;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.imageio.ImageIO;
 
+/**
+ * Attaches a screenshot of the whole screen to the session when the driver throws an exception.
+ * <p/>
+ * The screen is captured and encoded on a background thread, so the session goes on meanwhile.
+ * As the same screen is shown to all the sessions, the failures which happen before a capture
+ * starts share it. A session may ignore some exceptions, and take at most one screenshot in a
+ * given interval, so that polling for an element doesn't capture the screen at each attempt.
+ */
 public class SnapshotScreenListener extends AbstractWebDriverEventListener {
 
+  private static final ExecutorService capturer = Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder().setNameFormat("Screenshot capture").setDaemon(true).build());
+  private static final AtomicReference<Capture> nextCapture = new AtomicReference<Capture>();
+
   private final Session session;
+  private final Set<String> ignoredExceptions;
+  private final long minIntervalNanos;
+  private volatile long lastCaptureNanos;
+  private volatile boolean captured;
 
   public SnapshotScreenListener(Session session) {
+    this(session, ImmutableSet.<String>of(), 0);
+  }
+
+  /**
+   * @param session           The session the screenshots are attached to
+   * @param ignoredExceptions The names, simple or qualified, of the exceptions which don't need a
+   *                          screenshot, along with their subclasses
+   * @param minInterval       The minimum time between two screenshots of the session, in
+   *                          milliseconds
+   */
+  public SnapshotScreenListener(Session session, Set<String> ignoredExceptions, long minInterval) {
     this.session = session;
+    this.ignoredExceptions = ImmutableSet.copyOf(ignoredExceptions);
+    this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minInterval);
   }
 
   @Override
@@ -43,26 +84,73 @@ public class SnapshotScreenListener extends AbstractWebDriverEventListener {
       // Android Java APIs do not support java.awt
       return;
     }
-    String encoded;
-    try {
-      workAroundD3dBugInVista();
+    if (isIgnored(throwable)) {
+      return;
+    }
+    long now = System.nanoTime();
+    if (captured && now - lastCaptureNanos < minIntervalNanos) {
+      return;
+    }
+    captured = true;
+    lastCaptureNanos = now;
+    session.attachScreenshot(captureScreen());
+  }
 
-      Rectangle size = new Rectangle(Toolkit.getDefaultToolkit().getScreenSize());
-      BufferedImage image = new Robot().createScreenCapture(size);
+  private boolean isIgnored(Throwable throwable) {
+    for (Class<?> type = throwable.getClass(); type != null; type = type.getSuperclass()) {
+      if (ignoredExceptions.contains(type.getName())
+          || ignoredExceptions.contains(type.getSimpleName())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return The next capture of the screen, which starts after this call.
+   */
+  @VisibleForTesting
+  Future<String> captureScreen() {
+    while (true) {
+      Capture next = nextCapture.get();
+      if (next != null && !next.started) {
+        return next;
+      }
+      Capture capture = new Capture();
+      if (nextCapture.compareAndSet(next, capture)) {
+        capturer.execute(capture);
+        return capture;
+      }
+    }
+  }
 
-      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-      ImageIO.write(image, "png", outputStream);
+  private static class Capture extends FutureTask<String> {
+    private volatile boolean started;
 
-      encoded = new Base64Encoder().encode(outputStream.toByteArray());
+    Capture() {
+      super(new Callable<String>() {
+        public String call() throws Exception {
+          workAroundD3dBugInVista();
+
+          Rectangle size = new Rectangle(Toolkit.getDefaultToolkit().getScreenSize());
+          BufferedImage image = new Robot().createScreenCapture(size);
+
+          ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+          ImageIO.write(image, "png", outputStream);
+
+          return new Base64Encoder().encode(outputStream.toByteArray());
+        }
+      });
+    }
 
-      session.attachScreenshot(encoded);
-    } catch (Throwable e) {
-      System.out.println("e = " + e);
-      // Alright. No screen shot. Propogate the original exception
+    @Override
+    public void run() {
+      started = true;
+      super.run();
     }
   }
 
-  private void workAroundD3dBugInVista() {
+  private static void workAroundD3dBugInVista() {
     if (Platform.getCurrent().is(Platform.WINDOWS)) {
       System.setProperty("sun.java2d.d3d", "false");
     }
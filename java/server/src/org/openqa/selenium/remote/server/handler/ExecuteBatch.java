@@ -0,0 +1,234 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.remote.server.handler;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import org.openqa.selenium.remote.BeanToJsonConverter;
+import org.openqa.selenium.remote.ErrorCodes;
+import org.openqa.selenium.remote.JsonToBeanConverter;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.SessionId;
+import org.openqa.selenium.remote.server.HttpRequest;
+import org.openqa.selenium.remote.server.HttpResponse;
+import org.openqa.selenium.remote.server.HttpStatusCodes;
+import org.openqa.selenium.remote.server.JsonHttpRemoteConfig;
+import org.openqa.selenium.remote.server.JsonParametersAware;
+import org.openqa.selenium.remote.server.rest.RestishHandler;
+import org.openqa.selenium.remote.server.rest.ResultConfig;
+import org.openqa.selenium.remote.server.rest.ResultType;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs several commands of a session in one request, in order, stopping at the first one which
+ * fails. Each command is a map with the "method" and the "path" of the command, relative to the
+ * session, and its "parameters" if it has some. The value of the response is the list of the
+ * responses of the commands which were run.
+ * <p/>
+ * The commands are handled as if they had been sent one by one, so they may be any command of the
+ * session but those which end it.
+ */
+public class ExecuteBatch implements RestishHandler, JsonParametersAware {
+
+  private final Response response = new Response();
+  private final JsonHttpRemoteConfig config;
+  private final SessionId sessionId;
+  private volatile List<Map<String, Object>> commands = ImmutableList.of();
+
+  public ExecuteBatch(JsonHttpRemoteConfig config, SessionId sessionId) {
+    this.config = config;
+    this.sessionId = sessionId;
+  }
+
+  public Response getResponse() {
+    return response;
+  }
+
+  @SuppressWarnings("unchecked")
+  public void setJsonParameters(Map<String, Object> allParameters) throws Exception {
+    Object raw = allParameters.get("commands");
+    if (!(raw instanceof List)) {
+      throw new IllegalArgumentException("Expected a list of commands: " + raw);
+    }
+    commands = (List<Map<String, Object>>) raw;
+  }
+
+  public ResultType handle() throws Exception {
+    for (Map<String, Object> command : commands) {
+      checkCanBeBatched(command);
+    }
+
+    response.setSessionId(sessionId.toString());
+    List<Object> results = Lists.newArrayListWithCapacity(commands.size());
+    for (Map<String, Object> command : commands) {
+      Map<String, Object> result = execute(command);
+      results.add(result);
+      Object status = result.get("status");
+      if (!(status instanceof Number) || ((Number) status).intValue() != ErrorCodes.SUCCESS) {
+        break;
+      }
+    }
+    response.setValue(results);
+    return ResultType.SUCCESS;
+  }
+
+  private void checkCanBeBatched(Map<String, Object> command) {
+    Object method = command.get("method");
+    Object path = command.get("path");
+    if (!(method instanceof String) || !(path instanceof String)) {
+      throw new IllegalArgumentException("A command needs a method and a path: " + command);
+    }
+    if (((String) path).length() > 0 && !((String) path).startsWith("/")) {
+      throw new IllegalArgumentException("The path must be relative to the session: " + path);
+    }
+
+    // compared by handler rather than by path, since several paths lead to the same handler
+    ResultConfig target = config.getConfig((String) method, "/session/" + sessionId + path);
+    if (target == null) {
+      return;
+    }
+    Class<? extends RestishHandler> handler = target.getHandlerClass();
+    if (DeleteSession.class.isAssignableFrom(handler)) {
+      throw new UnsupportedOperationException("A batch can't end the session it runs in");
+    }
+    if (NewSession.class.isAssignableFrom(handler)) {
+      throw new UnsupportedOperationException("A batch can't start a session");
+    }
+    if (ExecuteBatch.class.isAssignableFrom(handler)) {
+      throw new UnsupportedOperationException("Batches can't be nested");
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<String, Object> execute(Map<String, Object> command) throws Exception {
+    String path = "/session/" + sessionId + command.get("path");
+    Object parameters = command.get("parameters");
+    String body = parameters == null ? "" : new BeanToJsonConverter().convert(parameters);
+
+    CommandRequest request = new CommandRequest((String) command.get("method"), path, body);
+    CommandResponse commandResponse = new CommandResponse();
+    config.handleRequest(request, commandResponse);
+
+    if (commandResponse.content.length > 0) {
+      return (Map<String, Object>) new JsonToBeanConverter().convert(
+          HashMap.class, new String(commandResponse.content, commandResponse.encoding));
+    }
+
+    // Commands without a value are answered with an empty body, or not found at all.
+    Map<String, Object> result = Maps.newHashMap();
+    result.put("sessionId", sessionId.toString());
+    result.put("status", commandResponse.status == HttpStatusCodes.NOT_FOUND
+        ? ErrorCodes.UNKNOWN_COMMAND : ErrorCodes.SUCCESS);
+    result.put("value", null);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("[batch of %d commands]", commands.size());
+  }
+
+  private static class CommandRequest implements HttpRequest {
+    private final String method;
+    private final String path;
+    private final String body;
+    private final Map<String, Object> attributes = Maps.newHashMap();
+
+    CommandRequest(String method, String path, String body) {
+      this.method = method;
+      this.path = path;
+      this.body = body;
+    }
+
+    public String getAppUri() {
+      return "";
+    }
+
+    public String getUri() {
+      return path;
+    }
+
+    public String getPath() {
+      return path;
+    }
+
+    public String getMethod() {
+      return method;
+    }
+
+    public String getHeader(String header) {
+      return "Accept".equalsIgnoreCase(header) ? "application/json" : null;
+    }
+
+    public Object getAttribute(String attributeName) {
+      return attributes.get(attributeName);
+    }
+
+    public void setAttribute(String attributeName, Object value) {
+      attributes.put(attributeName, value);
+    }
+
+    public Reader getReader() {
+      return new StringReader(body);
+    }
+
+    public void forward(HttpResponse response, String to) {
+      throw new UnsupportedOperationException("Can't forward a command of a batch to " + to);
+    }
+  }
+
+  private static class CommandResponse implements HttpResponse {
+    private int status = HttpStatusCodes.OK;
+    private byte[] content = new byte[0];
+    private Charset encoding = Charsets.UTF_8;
+
+    public void setStatus(int status) {
+      this.status = status;
+    }
+
+    public void setContentType(String mimeType) {
+    }
+
+    public void setContent(byte[] data) {
+      this.content = data;
+    }
+
+    public void setContent(String message) {
+      this.content = message.getBytes(encoding);
+    }
+
+    public void setEncoding(Charset charset) {
+      this.encoding = charset;
+    }
+
+    public void sendRedirect(String to) {
+      throw new UnsupportedOperationException("Can't redirect a command of a batch to " + to);
+    }
+
+    public void end() {
+    }
+  }
+}
@@ -19,6 +19,7 @@ package org.openqa.selenium.remote.server.handler;
 import org.openqa.selenium.remote.Response;
 import org.openqa.selenium.remote.SessionId;
 import org.openqa.selenium.remote.server.DriverSessions;
+import org.openqa.selenium.remote.server.Session;
 import org.openqa.selenium.remote.server.rest.RestishHandler;
 import org.openqa.selenium.remote.server.rest.ResultType;
 
@@ -52,8 +53,9 @@ public class GetAllSessions implements RestishHandler {
   private Function<SessionId, SessionInfo> toSessionInfo() {
     return new Function<SessionId, SessionInfo>() {
       public SessionInfo apply(SessionId id) {
-        Map<String, ?> capabilities = allSessions.get(id).getCapabilities().asMap();
-        return new SessionInfo(id, capabilities);
+        Session session = allSessions.get(id);
+        Map<String, ?> capabilities = session.getCapabilities().asMap();
+        return new SessionInfo(id, capabilities, session.getKnownElements().getStats());
       }
     };
   }
@@ -62,10 +64,12 @@ public class GetAllSessions implements RestishHandler {
 
     private final SessionId id;
     private final Map<String, ?> capabilities;
+    private final Map<String, ?> knownElements;
 
-    public SessionInfo(SessionId id, Map<String, ?> capabilities) {
+    public SessionInfo(SessionId id, Map<String, ?> capabilities, Map<String, ?> knownElements) {
       this.id = id;
       this.capabilities = capabilities;
+      this.knownElements = knownElements;
     }
 
     public String getId() {
@@ -75,5 +79,9 @@ public class GetAllSessions implements RestishHandler {
     public Map<String, ?> getCapabilities() {
       return capabilities;
     }
+
+    public Map<String, ?> getKnownElements() {
+      return knownElements;
+    }
   }
 }
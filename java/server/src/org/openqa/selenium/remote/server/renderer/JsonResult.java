@@ -24,6 +24,10 @@ import org.openqa.selenium.remote.server.HttpResponse;
 import org.openqa.selenium.remote.server.rest.RestishHandler;
 import org.openqa.selenium.remote.server.rest.Renderer;
 
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
 public class JsonResult implements Renderer {
 
   protected final String propertyName;
@@ -40,8 +44,11 @@ public class JsonResult implements Renderer {
       throws Exception {
     Object result = request.getAttribute(propertyName);
 
-    String json = new BeanToJsonConverter().convert(result);
-    byte[] data = Charsets.UTF_8.encode(json).array();
+    ByteArrayOutputStream json = new ByteArrayOutputStream();
+    Writer writer = new OutputStreamWriter(json, Charsets.UTF_8);
+    new BeanToJsonConverter().convert(result, writer);
+    writer.close();
+    byte[] data = json.toByteArray();
 
     response.setContentType("application/json");
     response.setEncoding(Charsets.UTF_8);
@@ -25,7 +25,6 @@ import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.remote.ErrorCodes;
 import org.openqa.selenium.remote.HttpCommandExecutor;
 import org.openqa.selenium.remote.JsonToBeanConverter;
-import org.openqa.selenium.remote.PropertyMunger;
 import org.openqa.selenium.remote.SessionId;
 import org.openqa.selenium.remote.SessionNotFoundException;
 import org.openqa.selenium.remote.SimplePropertyDescriptor;
@@ -40,7 +39,6 @@ import org.openqa.selenium.remote.server.handler.WebDriverHandler;
 import org.openqa.selenium.server.log.LoggingManager;
 import org.openqa.selenium.server.log.PerSessionLogHandler;
 
-import java.io.BufferedReader;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.lang.reflect.UndeclaredThrowableException;
@@ -60,6 +58,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public class ResultConfig {
 
   private final String[] sections;
+  private final Class<? extends RestishHandler> handlerClazz;
+  // the setters of the handler for the parameters of the url, by section. Null if none.
+  private final Method[] parameterSetters;
   private final HandlerFactory handlerFactory;
   private final DriverSessions sessions;
   private final Multimap<ResultType, Result> resultToRender = LinkedHashMultimap.create();
@@ -68,32 +69,46 @@ public class ResultConfig {
 
   public ResultConfig(String url, Class<? extends RestishHandler> handlerClazz, DriverSessions sessions,
       Logger log) {
+    this(url, handlerClazz, null, sessions, log);
+  }
+
+  /**
+   * @param handlerFactory creates the handlers, for those which need more than the session to be
+   *                       built. Null to call the constructor of the handler class.
+   */
+  public ResultConfig(String url, Class<? extends RestishHandler> handlerClazz,
+      HandlerFactory handlerFactory, DriverSessions sessions, Logger log) {
     this.url = url;
     this.log = log;
     if (url == null || handlerClazz == null) {
       throw new IllegalArgumentException("You must specify the handler and the url");
     }
 
-    sections = url.split("/");
+    this.handlerClazz = handlerClazz;
+    sections = split(url);
+    parameterSetters = getParameterSetters(handlerClazz, sections);
     this.sessions = sessions;
-    this.handlerFactory = getHandlerFactory(handlerClazz);
+    this.handlerFactory =
+        handlerFactory != null ? handlerFactory : getHandlerFactory(handlerClazz);
   }
 
+  public Class<? extends RestishHandler> getHandlerClass() {
+    return handlerClazz;
+  }
 
   public RestishHandler getHandler(String url, SessionId sessionId) throws Exception {
-    if (!isFor(url)) {
+    String[] allParts = split(url);
+    if (!isFor(allParts)) {
       return null;
     }
-    return populate(handlerFactory.createHandler(sessionId), url);
+    return populate(handlerFactory.createHandler(sessionId), allParts);
   }
 
   public boolean isFor(String urlToMatch) {
-    if (urlToMatch == null) {
-      return sections.length == 0;
-    }
-
-    String[] allParts = urlToMatch.split("/");
+    return isFor(split(urlToMatch));
+  }
 
+  private boolean isFor(String[] allParts) {
     if (sections.length != allParts.length) {
       return false;
     }
@@ -107,7 +122,17 @@ public class ResultConfig {
     return true;
   }
 
-  interface HandlerFactory {
+  /**
+   * @return the sections of the url, none for a null url.
+   */
+  static String[] split(String url) {
+    if (url == null) {
+      return new String[0];
+    }
+    return url.split("/");
+  }
+
+  public interface HandlerFactory {
     RestishHandler createHandler(SessionId sessionId) throws Exception;
   }
 
@@ -116,15 +141,16 @@ public class ResultConfig {
     if (pathString == null) {
       return handler;
     }
+    return populate(handler, split(pathString));
+  }
 
-    String[] strings = pathString.split("/");
-
+  private RestishHandler populate(RestishHandler handler, String[] strings) {
     for (int i = 0; i < sections.length; i++) {
-      if (!sections[i].startsWith(":")) {
+      if (parameterSetters[i] == null) {
         continue;
       }
       try {
-        PropertyMunger.set(sections[i].substring(1), handler, strings[i]);
+        parameterSetters[i].invoke(handler, strings[i]);
       } catch (Exception e) {
         throw new WebDriverException(e);
       }
@@ -133,6 +159,29 @@ public class ResultConfig {
     return handler;
   }
 
+  // the same setters as PropertyMunger.set would find, looked up once.
+  private static Method[] getParameterSetters(Class<? extends RestishHandler> handlerClazz,
+                                              String[] sections) {
+    Method[] setters = new Method[sections.length];
+    SimplePropertyDescriptor[] properties =
+        SimplePropertyDescriptor.getPropertyDescriptors(handlerClazz);
+    for (int i = 0; i < sections.length; i++) {
+      if (!sections[i].startsWith(":")) {
+        continue;
+      }
+      String name = sections[i].substring(1);
+      for (SimplePropertyDescriptor property : properties) {
+        Method writeMethod = property.getWriteMethod();
+        if (property.getName().equals(name) && writeMethod != null
+            && writeMethod.getParameterTypes().length == 1
+            && String.class.equals(writeMethod.getParameterTypes()[0])) {
+          setters[i] = writeMethod;
+        }
+      }
+    }
+    return setters;
+  }
+
   /**
    * Configures this instance to handle a particular type of result with the given renderer. This
    * result handler will be registered with an empty mime-type.  Accordingly, it will only be used
@@ -288,16 +337,9 @@ public class ResultConfig {
 
   @SuppressWarnings("unchecked")
   private void setJsonParameters(HttpRequest request, RestishHandler handler) throws Exception {
-    BufferedReader reader = new BufferedReader(request.getReader());
-    StringBuilder builder = new StringBuilder();
-    for (String line = reader.readLine(); line != null; line = reader.readLine())
-      builder.append(line);
-
-    String raw = builder.toString();
-    if (raw.length() > 0) {
-      Map<String, Object> parameters = (Map<String, Object>) new JsonToBeanConverter()
-          .convert(HashMap.class, builder.toString());
-
+    Map<String, Object> parameters = (Map<String, Object>) new JsonToBeanConverter()
+        .convert(HashMap.class, request.getReader());
+    if (parameters != null) {
       ((JsonParametersAware) handler).setJsonParameters(parameters);
     }
   }
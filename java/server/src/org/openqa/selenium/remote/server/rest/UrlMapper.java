@@ -19,6 +19,7 @@ package org.openqa.selenium.remote.server.rest;
 import org.openqa.selenium.remote.server.DriverSessions;
 
 import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 
 import java.util.Collection;
@@ -27,10 +28,19 @@ import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
 
+/**
+ * Finds the {@link ResultConfig} bound to a url.
+ * <p/>
+ * The urls are kept in a tree of their sections, so that finding the config of a url only walks
+ * as many nodes as the url has sections, whatever the number of configs. A url matches the first
+ * bound config whose sections are all equal to its own, or are parameters.
+ */
 public class UrlMapper {
 
   private final Multimap<ResultType, Result> globals = LinkedHashMultimap.create();
   private final Set<ResultConfig> configs = new LinkedHashSet<ResultConfig>();
+  private final Node root = new Node();
+  private long bound = 0;
   private final DriverSessions sessions;
   private final Logger log;
 
@@ -40,13 +50,24 @@ public class UrlMapper {
   }
 
   public ResultConfig bind(String url, Class<? extends RestishHandler> handlerClazz) {
+    return bind(url, handlerClazz, null);
+  }
+
+  /**
+   * @param handlerFactory creates the handlers, for those which need more than the session to be
+   *                       built. Null to call the constructor of the handler class.
+   */
+  public ResultConfig bind(String url, Class<? extends RestishHandler> handlerClazz,
+      ResultConfig.HandlerFactory handlerFactory) {
     ResultConfig existingConfig = getConfig(url);
     if (existingConfig != null) {
       configs.remove(existingConfig);
+      root.remove(existingConfig);
     }
 
-    ResultConfig config = new ResultConfig(url, handlerClazz, sessions, log);
+    ResultConfig config = new ResultConfig(url, handlerClazz, handlerFactory, sessions, log);
     configs.add(config);
+    root.add(ResultConfig.split(url), 0, config, bound++);
     Map<ResultType, Collection<Result>> map = globals.asMap();
     for (Map.Entry<ResultType, Collection<Result>> entry : map.entrySet()) {
       for (Result result : entry.getValue()) {
@@ -57,13 +78,8 @@ public class UrlMapper {
   }
 
   public ResultConfig getConfig(String url) {
-    for (ResultConfig config : configs) {
-      if (config.isFor(url)) {
-        return config;
-      }
-    }
-
-    return null;
+    Node match = root.find(ResultConfig.split(url), 0);
+    return match == null ? null : match.config;
   }
 
   public void addGlobalHandler(ResultType type, Result result) {
@@ -73,4 +89,70 @@ public class UrlMapper {
       config.on(type, result);
     }
   }
+
+  private static class Node {
+
+    private final Map<String, Node> sections = Maps.newHashMap();
+    // the child for a parameter, whatever its name.
+    private Node parameter;
+    // the config of the url ending here, and the order it was bound in.
+    private ResultConfig config;
+    private long order;
+
+    void add(String[] url, int index, ResultConfig config, long order) {
+      if (index == url.length) {
+        this.config = config;
+        this.order = order;
+        return;
+      }
+
+      String section = url[index];
+      Node child;
+      if (section.startsWith(":")) {
+        if (parameter == null) {
+          parameter = new Node();
+        }
+        child = parameter;
+      } else {
+        child = sections.get(section);
+        if (child == null) {
+          child = new Node();
+          sections.put(section, child);
+        }
+      }
+      child.add(url, index + 1, config, order);
+    }
+
+    void remove(ResultConfig config) {
+      if (this.config == config) {
+        this.config = null;
+      }
+      for (Node child : sections.values()) {
+        child.remove(config);
+      }
+      if (parameter != null) {
+        parameter.remove(config);
+      }
+    }
+
+    /**
+     * @return the node of the first bound config matching the url, or null.
+     */
+    Node find(String[] url, int index) {
+      if (index == url.length) {
+        return config == null ? null : this;
+      }
+
+      // a url may match both a section and a parameter: the config bound first wins.
+      Node child = sections.get(url[index]);
+      Node match = child == null ? null : child.find(url, index + 1);
+      if (parameter != null) {
+        Node parameterMatch = parameter.find(url, index + 1);
+        if (match == null || (parameterMatch != null && parameterMatch.order < match.order)) {
+          match = parameterMatch;
+        }
+      }
+      return match;
+    }
+  }
 }
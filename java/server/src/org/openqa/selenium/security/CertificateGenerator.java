@@ -97,6 +97,18 @@ public class CertificateGenerator {
   }
 
   public KeyAndCert generateCertificate(String hostname, String certificateRevocationList) {
+    return generateCertificate(hostname, certificateRevocationList, generateKeyPair());
+  }
+
+  public KeyPair generateKeyPair() {
+    return pairGenerator.generateKeyPair();
+  }
+
+  /**
+   * Issues a certificate for the host to an existing key pair, which takes a signature only.
+   */
+  public KeyAndCert generateCertificate(String hostname, String certificateRevocationList,
+      KeyPair keypair) {
     X500Principal x500issuer = caCert.getCertificate().getIssuerX500Principal();
     String subject = String.format(
         "CN=%s, OU=Test, O=CyberVillainsCA, L=Seattle, S=Washington, C=US", hostname);
@@ -105,8 +117,6 @@ public class CertificateGenerator {
     Date begin = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1));
     Date end = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(365));
 
-    KeyPair keypair = pairGenerator.generateKeyPair();
-
     try {
       SubjectPublicKeyInfo info = new SubjectPublicKeyInfo(
           (ASN1Sequence) new ASN1InputStream(
@@ -158,6 +168,10 @@ public class CertificateGenerator {
     }
   }
 
+  public X509Certificate getSigningCertificate() {
+    return caCert.getCertificate();
+  }
+
   private KeyAndCert readRootSigningCert() {
     InputStream is = null;
 
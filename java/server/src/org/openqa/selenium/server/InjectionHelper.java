@@ -18,6 +18,9 @@ limitations under the License.
 
 package org.openqa.selenium.server;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import org.openqa.jetty.http.HttpRequest;
 import org.openqa.jetty.http.HttpResponse;
 import org.openqa.jetty.util.IO;
@@ -42,6 +45,13 @@ public class InjectionHelper {
   private static boolean INJECT_SCRIPT_TAGS = true;
   private static boolean tryToInjectInHead = false;
   private static String injectionHtml = "/core/scripts/injection.html";
+  private static final byte[] HEAD_TAG = "<head>".getBytes();
+  // sessions come and go, only the injections of the recent ones are worth keeping.
+  private static final int MAX_CACHED_INJECTIONS = 50;
+  private static volatile String seleniumJs;
+  // what is written into the pages of a session, rendered once per session.
+  private static final Cache<String, byte[]> injectionsBySessionId =
+      CacheBuilder.newBuilder().maximumSize(MAX_CACHED_INJECTIONS).build();
   private static HashMap<String, HashMap<String, String>> jsStateInitializersBySessionId =
       new HashMap<String, HashMap<String, String>>();
   private static HashMap<String, String> sessionIdToUniqueId = new HashMap<String, String>();
@@ -51,10 +61,12 @@ public class InjectionHelper {
 
   public static void setBrowserSideLogEnabled(boolean browserSideLogEnabled) {
     InjectionHelper.browserSideLogEnabled = browserSideLogEnabled;
+    injectionsBySessionId.invalidateAll();
   }
 
   public static void setInjectScriptTags(boolean injectScriptTags) {
     InjectionHelper.INJECT_SCRIPT_TAGS = injectScriptTags;
+    injectionsBySessionId.invalidateAll();
   }
 
   public static void setTryToInjectInHead(boolean tryToInjectInHead) {
@@ -63,6 +75,7 @@ public class InjectionHelper {
 
   public static void setInjectionHtml(String injectionHtml) {
     InjectionHelper.injectionHtml = injectionHtml;
+    injectionsBySessionId.invalidateAll();
   }
 
   public static void saveJsStateInitializer(String sessionId, String uniqueId, String jsVarName,
@@ -113,8 +126,6 @@ public class InjectionHelper {
    * the server to see changes. Once the selenium js is firm, this should change.
    */
   public static void init() {
-    String key = "__SELENIUM_JS__";
-
     StringBuffer sb = new StringBuffer();
     if (!INJECT_SCRIPT_TAGS) { // DGF experiment with using script tags
       try {
@@ -146,7 +157,8 @@ public class InjectionHelper {
         log.log(Level.FINE, "Ignored exception", e);
       }
     }
-    contentTransformations.put(key, sb.toString());
+    seleniumJs = sb.toString();
+    injectionsBySessionId.invalidateAll();
   }
 
   private static void writeScriptTags(OutputStream os) throws IOException {
@@ -200,7 +212,7 @@ public class InjectionHelper {
 
   public static long injectJavaScript(HttpRequest request, HttpResponse response, InputStream in,
       OutputStream out, String debugURL) throws IOException {
-    if (!contentTransformations.containsKey("__SELENIUM_JS__")) {
+    if (seleniumJs == null) {
       init();
     }
 
@@ -211,7 +223,7 @@ public class InjectionHelper {
       return -1;
     }
     int lengthOfBOM = getBOMLength(buf);
-    String data = new String(buf, lengthOfBOM, len);
+    String data = new String(buf, lengthOfBOM, len - lengthOfBOM);
 
     boolean isKnownToBeHtml =
         HtmlIdentifier.shouldBeInjected(request.getPath(), response.getContentType(), data);
@@ -238,40 +250,101 @@ public class InjectionHelper {
       log.fine("injecting...");
       response.removeField("Content-Length"); // added js will make it wrong, lead to page getting
                                               // truncated
-      ByteArrayOutputStream baos = new ByteArrayOutputStream();
-      if (INJECT_SCRIPT_TAGS) {
-        writeScriptTags(baos);
-      }
-      InputStream jsIn = new ClassPathResource(InjectionHelper.injectionHtml).getInputStream();
-      contentTransformations.put("@SESSION_ID@", sessionId);
-
-      writeDataWithUserTransformations("", jsIn, baos);
-      jsIn.close();
-      baos.write(setSomeJsVars(sessionId));
-      for (String filename : userJsInjectionFiles) {
-        jsIn = new FileInputStream(filename);
-        IO.copy(jsIn, baos);
-      }
+      byte[] injection = getInjection(sessionId);
 
-      int headIndex;
+      int headEnd;
       if (tryToInjectInHead) {
-        headIndex = data.toLowerCase().indexOf("<head>");
+        headEnd = findEndOfHead(buf, lengthOfBOM, len);
       } else {
-        headIndex = -1;
+        headEnd = -1;
+      }
+      if (headEnd == -1) {
+        headEnd = lengthOfBOM;
       }
 
-      if (headIndex != -1) {
-        data = data.substring(0, headIndex + 6) + baos.toString() + data.substring(headIndex + 6);
+      if (contentTransformations.isEmpty()) {
+        out.write(buf, lengthOfBOM, headEnd - lengthOfBOM);
+        out.write(injection);
+        out.write(buf, headEnd, len - headEnd);
+        bytesCopied += ModifiedIO.copy(in, out);
       } else {
-        data = baos.toString() + data;
+        out.write(transform(new String(buf, lengthOfBOM, headEnd - lengthOfBOM)).getBytes());
+        out.write(injection);
+        bytesCopied +=
+            writeDataWithUserTransformations(new String(buf, headEnd, len - headEnd), in, out);
       }
-
-      bytesCopied += writeDataWithUserTransformations(data, in, out);
     }
 
     return bytesCopied;
   }
 
+  /**
+   * @return what is injected into the pages of the session, only rendered on the first page.
+   */
+  static byte[] getInjection(String sessionId) throws IOException {
+    if (sessionId == null) {
+      return renderInjection(null);
+    }
+    byte[] injection = injectionsBySessionId.getIfPresent(sessionId);
+    if (injection == null) {
+      injection = renderInjection(sessionId);
+      injectionsBySessionId.put(sessionId, injection);
+    }
+    return injection;
+  }
+
+  private static byte[] renderInjection(String sessionId) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    if (INJECT_SCRIPT_TAGS) {
+      writeScriptTags(baos);
+    }
+    InputStream jsIn = new ClassPathResource(InjectionHelper.injectionHtml).getInputStream();
+    String html = IO.toString(jsIn);
+    jsIn.close();
+    html = html.replace("__SELENIUM_JS__", seleniumJs);
+    if (sessionId == null) {
+      log.warning("no transformation seen for key @SESSION_ID@");
+    } else {
+      html = html.replace("@SESSION_ID@", sessionId);
+    }
+    baos.write(html.getBytes());
+    baos.write(setSomeJsVars(sessionId));
+    for (String filename : userJsInjectionFiles) {
+      jsIn = new FileInputStream(filename);
+      try {
+        IO.copy(jsIn, baos);
+      } finally {
+        jsIn.close();
+      }
+    }
+    if (contentTransformations.isEmpty()) {
+      return baos.toByteArray();
+    }
+    return transform(baos.toString()).getBytes();
+  }
+
+  /**
+   * @return the index following the first &lt;head&gt; tag found in the given bytes, ignoring
+   *         case, or -1 if there is none.
+   */
+  static int findEndOfHead(byte[] buf, int from, int to) {
+    int last = to - HEAD_TAG.length;
+    for (int i = from; i <= last; i++) {
+      int j = 0;
+      while (j < HEAD_TAG.length && toLowerCase(buf[i + j]) == HEAD_TAG[j]) {
+        j++;
+      }
+      if (j == HEAD_TAG.length) {
+        return i + j;
+      }
+    }
+    return -1;
+  }
+
+  private static byte toLowerCase(byte b) {
+    return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+  }
+
   private static int getBOMLength(byte[] buf) {
     if ((buf != null) && (buf.length >= 3) && (buf[0] == (byte) -17) && (buf[1] == (byte) -69) &&
         (buf[2] == (byte) -65)) {
@@ -337,23 +410,7 @@ public class InjectionHelper {
     long bytesWritten = 0;
     byte[] buf = new byte[8192];
     while (true) {
-      for (String beforeRegexp : contentTransformations.keySet()) {
-        String after = contentTransformations.get(beforeRegexp);
-        if (after == null) {
-          log.warning("no transformation seen for key " + beforeRegexp);
-        } else {
-          try {
-            data = data.replaceAll(beforeRegexp, after);
-          } catch (IllegalArgumentException e) {
-            // bad regexp or bad back ref in the 'after'.
-            // Do a straight substitution instead.
-            // (This logic needed for injection.html's __SELENIUM_JS__
-            // replacement to work.)
-            data = data.replace(beforeRegexp, after);
-          }
-        }
-      }
-      out.write(data.getBytes());
+      out.write(transform(data).getBytes());
       int len = in.read(buf);
       if (len == -1) {
         break;
@@ -365,6 +422,25 @@ public class InjectionHelper {
     return bytesWritten;
   }
 
+  private static String transform(String data) {
+    for (Map.Entry<String, String> entry : contentTransformations.entrySet()) {
+      String beforeRegexp = entry.getKey();
+      String after = entry.getValue();
+      if (after == null) {
+        log.warning("no transformation seen for key " + beforeRegexp);
+      } else {
+        try {
+          data = data.replaceAll(beforeRegexp, after);
+        } catch (IllegalArgumentException e) {
+          // bad regexp or bad back ref in the 'after'.
+          // Do a straight substitution instead.
+          data = data.replace(beforeRegexp, after);
+        }
+      }
+    }
+    return data;
+  }
+
   private static byte[] setSomeJsVars(String sessionId) {
     StringBuffer moreJs = new StringBuffer();
     if (InjectionHelper.browserSideLogEnabled) {
@@ -422,6 +498,7 @@ public class InjectionHelper {
 
   public static boolean addUserContentTransformation(String before, String after) {
     contentTransformations.put(before, after);
+    injectionsBySessionId.invalidateAll();
     return true;
   }
 
@@ -432,6 +509,7 @@ public class InjectionHelper {
       return false;
     }
     userJsInjectionFiles.add(fileName);
+    injectionsBySessionId.invalidateAll();
     return true;
   }
 
@@ -16,8 +16,6 @@
 
 package org.openqa.selenium.server;
 
-import cybervillains.ca.KeyStoreManager;
-
 import org.openqa.jetty.http.HttpConnection;
 import org.openqa.jetty.http.HttpFields;
 import org.openqa.jetty.http.HttpMessage;
@@ -30,8 +28,6 @@ import org.openqa.jetty.http.handler.AbstractHttpHandler;
 import org.openqa.jetty.util.IO;
 import org.openqa.jetty.util.StringMap;
 import org.openqa.jetty.util.URI;
-import org.openqa.selenium.browserlaunchers.LauncherUtils;
-import org.openqa.selenium.server.browserlaunchers.ResourceExtractor;
 import org.openqa.selenium.server.commands.AddCustomRequestHeaderCommand;
 import org.openqa.selenium.server.commands.CaptureNetworkTrafficCommand;
 
@@ -46,19 +42,27 @@ import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.Proxy;
 import java.net.Socket;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.UnknownHostException;
 import java.util.Enumeration;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.X509ExtendedKeyManager;
 
 /* ------------------------------------------------------------ */
 
@@ -79,7 +83,10 @@ public class ProxyHandler extends AbstractHttpHandler {
   protected Set<String> _proxyHostsBlackList;
   protected int _tunnelTimeoutMs = 250;
   private transient boolean _chained = false;
-  private final Map<String, SslRelay> _sslMap = new LinkedHashMap<String, SslRelay>();
+  // the relay of all the CONNECT tunnels and its certificates, guarded by the lock
+  private final Object sslRelayLock = new Object();
+  private SslRelay sslRelay;
+  private SslCertificateCache sslCertificates;
   @SuppressWarnings("unused")
   private String sslKeystorePath;
   private boolean trustAllSSLCertificates = false;
@@ -174,6 +181,8 @@ public class ProxyHandler extends AbstractHttpHandler {
   @Override
   public void start() throws Exception {
     _chained = System.getProperty("http.proxyHost") != null || forceProxyChain;
+    // the key of the SSL certificates is generated before the browser needs it.
+    getSslCertificates();
     super.start();
   }
 
@@ -510,14 +519,15 @@ public class ProxyHandler extends AbstractHttpHandler {
 
   public synchronized void generateSSLCertsForLoggingHosts(HttpServer server) {
     if (fakeCertsGenerated) return;
-    log.info("Creating 16 fake SSL servers for browser side logging");
-    for (int i = 1; i <= 16; i++) {
-      String uri = i + ".selenium.doesnotexist:443";
-      try {
-        getSslRelayOrCreateNew(new URI(uri), "localhost", 443, server);
-      } catch (Exception e) {
-        log.log(Level.SEVERE, "Could not pre-create logging SSL relay for " + uri, e);
+    log.info("Creating 16 fake SSL certificates for browser side logging");
+    try {
+      getSslRelayOrCreateNew(new URI("1.selenium.doesnotexist:443"), "localhost", 443, server);
+      SslCertificateCache certificates = getSslCertificates();
+      for (int i = 1; i <= 16; i++) {
+        certificates.getCertificate(i + ".selenium.doesnotexist");
       }
+    } catch (Exception e) {
+      log.log(Level.SEVERE, "Could not pre-create the logging SSL certificates", e);
     }
     fakeCertsGenerated = true;
   }
@@ -569,6 +579,10 @@ public class ProxyHandler extends AbstractHttpHandler {
             newHttpTunnel(response, InetAddress.getByName(null), port, timeoutMs);
 
         if (tunnel != null) {
+          // nothing goes through the tunnel before the browser is answered.
+          String host = new URL("https://" + uri.toString()).getHost();
+          listener.addTunnel(tunnel.getSocket().getLocalPort(), host, serverHost, serverPort);
+
           // TODO - need to setup semi-busy loop for IE.
           if (_tunnelTimeoutMs > 0) {
             tunnel.getSocket().setSoTimeout(_tunnelTimeoutMs);
@@ -591,63 +605,49 @@ public class ProxyHandler extends AbstractHttpHandler {
     }
   }
 
-  protected SslRelay getSslRelayOrCreateNew(URI uri, String serverHost, Integer serverPort, HttpServer server)
-      throws Exception {
-    SslRelay listener;
-    synchronized (_sslMap) {
-      listener = _sslMap.get(uri.toString());
-      if (listener == null) {
-        // we do this because the URI above doesn't actually have the host broken up (it returns
-        // null on getHost())
-        String host = new URL("https://" + uri.toString()).getHost();
-
-        listener = new SslRelay(serverHost, serverPort);
-
-        wireUpSslWithCyberVilliansCA(host, listener);
-
-        listener.setPassword("password");
-        listener.setKeyPassword("password");
-        server.addListener(listener);
-
-        synchronized (shutdownLock) {
-          try {
-            if (server.isStarted()) {
-              listener.start();
-            } else {
-              throw new RuntimeException(
-                  "Can't start SslRelay: server is not started (perhaps it was just shut down?)");
-            }
-          } catch (Exception e) {
-            e.printStackTrace();
-            throw e;
+  /**
+   * @return The relay which decrypts the traffic of all the CONNECT tunnels, started on demand.
+   */
+  protected SslRelay getSslRelayOrCreateNew(URI uri, String serverHost, Integer serverPort,
+      HttpServer server) throws Exception {
+    synchronized (sslRelayLock) {
+      if (sslRelay != null && sslRelay.isStarted()) {
+        return sslRelay;
+      }
+
+      SslRelay listener = new SslRelay(getSslCertificates());
+      server.addListener(listener);
+
+      synchronized (shutdownLock) {
+        try {
+          if (server.isStarted()) {
+            listener.start();
+          } else {
+            throw new RuntimeException(
+                "Can't start SslRelay: server is not started (perhaps it was just shut down?)");
           }
+        } catch (Exception e) {
+          server.removeListener(listener);
+          e.printStackTrace();
+          throw e;
         }
-        _sslMap.put(uri.toString(), listener);
       }
+      sslRelay = listener;
+      return listener;
     }
-    return listener;
   }
 
-  protected void wireUpSslWithCyberVilliansCA(String host, SslRelay listener) {
-    try {
-      File root = File.createTempFile("seleniumSslSupport", host);
-      root.delete();
-      root.mkdirs();
-
-      ResourceExtractor.extractResourcePath(getClass(), "/sslSupport", root);
-
-
-      KeyStoreManager mgr =
-          new KeyStoreManager(root, "http://127.0.0.1:" + port +
-              "/selenium-server/sslSupport/blank_crl.pem");
-      mgr.getCertificateByHostname(host);
-      mgr.getKeyStore().deleteEntry(KeyStoreManager._caPrivKeyAlias);
-      mgr.persist();
-
-      listener.setKeystore(new File(root, "cybervillainsCA.jks").getAbsolutePath());
-      listener.setNukeDirOrFile(root);
-    } catch (Exception e) {
-      throw new RuntimeException(e);
+  private SslCertificateCache getSslCertificates() {
+    synchronized (sslRelayLock) {
+      if (sslCertificates == null) {
+        // the revocation list is part of the certificates, so each port has its own, and each
+        // user as the private key is kept there.
+        File root = new File(System.getProperty("java.io.tmpdir"),
+            "seleniumSslSupport-" + System.getProperty("user.name") + "-" + port);
+        sslCertificates = new SslCertificateCache(root,
+            "http://127.0.0.1:" + port + "/selenium-server/sslSupport/blank_crl.pem");
+      }
+      return sslCertificates;
     }
   }
 
@@ -740,24 +740,54 @@ public class ProxyHandler extends AbstractHttpHandler {
 
   /* ------------------------------------------------------------ */
 
+  /**
+   * Decrypts the traffic of the CONNECT tunnels, and hands it to the proxy with the URI of the
+   * server it was meant for. The tunnels are told apart by the port they connect from, which gives
+   * the host whose certificate is presented to the browser.
+   */
   public static class SslRelay extends SslListener {
-    String serverHost;
-    Integer serverPort;
-    File nukeDirOrFile;
+    private final SslCertificateCache certificates;
+    private final Map<Integer, Tunnel> tunnels = new ConcurrentHashMap<Integer, Tunnel>();
+
+    SslRelay(SslCertificateCache certificates) {
+      this.certificates = certificates;
+    }
 
-    SslRelay(String host, Integer port) {
-        serverHost = host;
-        serverPort = port;
+    /**
+     * @param localPort  The port the tunnel connects to this relay from
+     * @param host       The host the browser asked to connect to
+     * @param serverHost The host the requests are sent to
+     * @param serverPort The port the requests are sent to
+     */
+    public void addTunnel(int localPort, String host, String serverHost, Integer serverPort) {
+      tunnels.put(localPort, new Tunnel(host, serverHost, serverPort));
     }
 
-    public void setNukeDirOrFile(File nukeDirOrFile) {
-      this.nukeDirOrFile = nukeDirOrFile;
+    @Override
+    protected SSLServerSocketFactory createFactory() throws Exception {
+      SSLContext context = getProvider() == null ? SSLContext.getInstance(getProtocol())
+          : SSLContext.getInstance(getProtocol(), getProvider());
+      context.init(new KeyManager[] {new HostKeyManager()}, null, new SecureRandom());
+      return context.getServerSocketFactory();
+    }
+
+    @Override
+    public void handleConnection(Socket socket) throws IOException {
+      try {
+        super.handleConnection(socket);
+      } finally {
+        tunnels.remove(socket.getPort());
+      }
     }
 
     @Override
     protected void customizeRequest(Socket socket, HttpRequest request) {
       super.customizeRequest(socket, request);
       URI uri = request.getURI();
+      Tunnel tunnel = tunnels.get(socket.getPort());
+      if (tunnel == null) {
+        return;
+      }
 
       // Convert the URI to a proxy URL
       //
@@ -765,20 +795,53 @@ public class ProxyHandler extends AbstractHttpHandler {
       // get "dirty" and be rewritten, potentially breaking the proxy slightly. Instead,
       // create a brand new URI that includes the protocol, the host, and the port, but leaves
       // intact the path + query string "as is" so that it does not get rewritten.
-      request
-          .setURI(new URI("https://" + serverHost + ":" + serverPort + uri.toString()));
+      request.setURI(
+          new URI("https://" + tunnel.serverHost + ":" + tunnel.serverPort + uri.toString()));
     }
 
-    @Override
-    public void stop() throws InterruptedException {
-      super.stop();
+    private static class Tunnel {
+      private final String host;
+      private final String serverHost;
+      private final Integer serverPort;
 
-      if (nukeDirOrFile != null) {
-        if (nukeDirOrFile.isDirectory()) {
-          LauncherUtils.recursivelyDeleteDir(nukeDirOrFile);
-        } else {
-          nukeDirOrFile.delete();
+      Tunnel(String host, String serverHost, Integer serverPort) {
+        this.host = host;
+        this.serverHost = serverHost;
+        this.serverPort = serverPort;
+      }
+    }
+
+    /**
+     * Presents to each tunnel the certificate of the host it was opened for. The certificates are
+     * aliased by their host name.
+     */
+    private class HostKeyManager extends X509ExtendedKeyManager {
+      public String chooseServerAlias(String keyType, Principal[] issuers, Socket socket) {
+        Tunnel tunnel = socket == null ? null : tunnels.get(socket.getPort());
+        if (tunnel == null || !"RSA".equals(keyType)) {
+          return null;
         }
+        return tunnel.host;
+      }
+
+      public X509Certificate[] getCertificateChain(String alias) {
+        return new X509Certificate[] {certificates.getCertificate(alias)};
+      }
+
+      public PrivateKey getPrivateKey(String alias) {
+        return certificates.getPrivateKey();
+      }
+
+      public String[] getServerAliases(String keyType, Principal[] issuers) {
+        return null;
+      }
+
+      public String[] getClientAliases(String keyType, Principal[] issuers) {
+        return null;
+      }
+
+      public String chooseClientAlias(String[] keyType, Principal[] issuers, Socket socket) {
+        return null;
       }
     }
   }
@@ -0,0 +1,295 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.server;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Closeables;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.openqa.selenium.Platform;
+import org.openqa.selenium.security.CertificateGenerator;
+import org.openqa.selenium.server.browserlaunchers.ResourceExtractor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The certificates the SSL relay of the proxy presents for the hosts the browser connects to,
+ * issued by the CyberVillains CA.
+ * <p/>
+ * All the certificates are issued to a single key pair, generated in the background when the cache
+ * is created, so that a new host costs a signature rather than a key generation. The most recently
+ * used certificates are kept, and written in the background to a key store which the next server
+ * on the same port starts with. As the key store holds the private key, it's only kept in a
+ * directory readable by its owner alone.
+ */
+class SslCertificateCache {
+
+  private static final Logger log = Logger.getLogger(SslCertificateCache.class.getName());
+
+  static final int MAX_CERTIFICATES = 1000;
+
+  private static final String KEY_STORE = "hostCertificates.jks";
+  private static final char[] PASSWORD = "password".toCharArray();
+  // a certificate which expires sooner is issued again rather than loaded.
+  private static final long MIN_VALIDITY_MS = TimeUnit.DAYS.toMillis(1);
+
+  private final File root;
+  private final String certificateRevocationList;
+  private final ThreadPoolExecutor background;
+  private final Future<CertificateGenerator> generator;
+  private final Future<KeyPair> keyPair;
+  private final AtomicBoolean writeScheduled = new AtomicBoolean();
+  // whether the key store can be kept in the root
+  private volatile boolean rootIsPrivate;
+
+  // guarded by itself
+  private final Map<String, X509Certificate> certificates =
+      new LinkedHashMap<String, X509Certificate>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, X509Certificate> eldest) {
+          return size() > MAX_CERTIFICATES;
+        }
+      };
+
+  /**
+   * @param root                      The directory the CA and the certificates are kept in
+   * @param certificateRevocationList The URL of the revocation list of the CA
+   */
+  SslCertificateCache(final File root, String certificateRevocationList) {
+    this.root = root;
+    this.certificateRevocationList = certificateRevocationList;
+
+    background = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactoryBuilder().setNameFormat("SSL certificates").setDaemon(true).build());
+    background.allowCoreThreadTimeOut(true);
+
+    generator = background.submit(new Callable<CertificateGenerator>() {
+      public CertificateGenerator call() throws Exception {
+        root.mkdirs();
+        rootIsPrivate = restrictToOwner(root);
+        if (!rootIsPrivate) {
+          log.warning("The SSL certificates won't be kept, " + root + " can't be made private");
+        }
+        ResourceExtractor.extractResourcePath(SslCertificateCache.class, "/sslSupport", root);
+        return new CertificateGenerator(root);
+      }
+    });
+    keyPair = background.submit(new Callable<KeyPair>() {
+      public KeyPair call() throws Exception {
+        KeyPair stored = load();
+        return stored != null ? stored : Futures.getUnchecked(generator).generateKeyPair();
+      }
+    });
+  }
+
+  /**
+   * @param host The host the browser connects to
+   * @return The certificate of the host, issued to the key of {@link #getPrivateKey()}.
+   */
+  X509Certificate getCertificate(String host) {
+    synchronized (certificates) {
+      X509Certificate certificate = certificates.get(host);
+      if (certificate != null) {
+        return certificate;
+      }
+    }
+
+    X509Certificate certificate = Futures.getUnchecked(generator)
+        .generateCertificate(host, certificateRevocationList, getKeyPair())
+        .getCertificate();
+    synchronized (certificates) {
+      X509Certificate issued = certificates.get(host);
+      if (issued != null) {
+        return issued;
+      }
+      certificates.put(host, certificate);
+    }
+    scheduleWrite();
+    return certificate;
+  }
+
+  /**
+   * @return The private key of all the certificates.
+   */
+  PrivateKey getPrivateKey() {
+    return getKeyPair().getPrivate();
+  }
+
+  /**
+   * @return The number of certificates kept.
+   */
+  int size() {
+    synchronized (certificates) {
+      return certificates.size();
+    }
+  }
+
+  private KeyPair getKeyPair() {
+    return Futures.getUnchecked(keyPair);
+  }
+
+  private void scheduleWrite() {
+    if (writeScheduled.compareAndSet(false, true)) {
+      background.execute(new Runnable() {
+        public void run() {
+          writeScheduled.set(false);
+          write();
+        }
+      });
+    }
+  }
+
+  /**
+   * Reads the certificates written by a previous server, if they are still valid, issued by the CA
+   * in use, and stored with their private key.
+   *
+   * @return The key pair of the certificates, null if there are none.
+   */
+  private KeyPair load() {
+    File file = new File(root, KEY_STORE);
+    if (!rootIsPrivate || !file.exists()) {
+      return null;
+    }
+
+    InputStream in = null;
+    try {
+      X509Certificate ca = Futures.getUnchecked(generator).getSigningCertificate();
+      KeyStore store = KeyStore.getInstance("JKS");
+      in = new FileInputStream(file);
+      store.load(in, PASSWORD);
+
+      KeyPair stored = null;
+      Date validUntil = new Date(System.currentTimeMillis() + MIN_VALIDITY_MS);
+      for (Enumeration<String> hosts = store.aliases(); hosts.hasMoreElements(); ) {
+        String host = hosts.nextElement();
+        Certificate entry = store.getCertificate(host);
+        if (!store.isKeyEntry(host) || !(entry instanceof X509Certificate)) {
+          continue;
+        }
+        X509Certificate certificate = (X509Certificate) entry;
+        try {
+          certificate.checkValidity(validUntil);
+          certificate.verify(ca.getPublicKey());
+        } catch (Exception e) {
+          continue;
+        }
+        if (stored == null) {
+          Key key = store.getKey(host, PASSWORD);
+          if (!isPair(certificate.getPublicKey(), key)) {
+            continue;
+          }
+          stored = new KeyPair(certificate.getPublicKey(), (PrivateKey) key);
+        }
+        if (certificate.getPublicKey().equals(stored.getPublic())) {
+          synchronized (certificates) {
+            certificates.put(host, certificate);
+          }
+        }
+      }
+      return stored;
+    } catch (Exception e) {
+      log.log(Level.WARNING, "Ignoring the SSL certificates stored in " + file, e);
+      return null;
+    } finally {
+      Closeables.closeQuietly(in);
+    }
+  }
+
+  private void write() {
+    if (!rootIsPrivate) {
+      return;
+    }
+    Map<String, X509Certificate> toWrite;
+    synchronized (certificates) {
+      toWrite = ImmutableMap.copyOf(certificates);
+    }
+
+    File file = new File(root, KEY_STORE);
+    File temp = new File(root, KEY_STORE + ".tmp");
+    OutputStream out = null;
+    try {
+      PrivateKey key = getPrivateKey();
+      KeyStore store = KeyStore.getInstance("JKS");
+      store.load(null, PASSWORD);
+      for (Map.Entry<String, X509Certificate> entry : toWrite.entrySet()) {
+        store.setKeyEntry(entry.getKey(), key, PASSWORD, new Certificate[] {entry.getValue()});
+      }
+      out = new FileOutputStream(temp);
+      restrictToOwner(temp);
+      store.store(out, PASSWORD);
+      out.close();
+      out = null;
+
+      if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+        log.warning("Unable to write the SSL certificates to " + file);
+      }
+    } catch (Exception e) {
+      log.log(Level.WARNING, "Unable to write the SSL certificates to " + file, e);
+    } finally {
+      Closeables.closeQuietly(out);
+    }
+  }
+
+  private static boolean isPair(PublicKey publicKey, Key privateKey) {
+    return publicKey instanceof RSAPublicKey && privateKey instanceof RSAPrivateKey
+        && ((RSAPublicKey) publicKey).getModulus().equals(
+            ((RSAPrivateKey) privateKey).getModulus());
+  }
+
+  /**
+   * Lets the owner of the file alone read it, and write to it.
+   *
+   * @return Whether the file is now private, which isn't the case when it belongs to another user.
+   */
+  private static boolean restrictToOwner(File file) {
+    if (Platform.getCurrent().is(Platform.WINDOWS)) {
+      // the permissions can't be set, but the temporary directory of a user is already private.
+      return true;
+    }
+    return file.setReadable(false, false) && file.setReadable(true, true)
+        && file.setWritable(false, false) && file.setWritable(true, true)
+        && (!file.isDirectory() || (file.setExecutable(false, false)
+                                    && file.setExecutable(true, true)));
+  }
+}
@@ -25,7 +25,11 @@ import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Formatter;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
@@ -41,31 +45,43 @@ import org.openqa.selenium.remote.SessionId;
 /**
  * RestishHandler which keeps in memory the log records per session so that users can retrieve logs per
  * session.
+ * <p/>
+ * Every log record of the server goes through this handler, from any number of threads, so
+ * publishing a record doesn't take any lock: the session of a thread is found through a thread
+ * local, and the records of a session are appended to a concurrent queue. Once a session has more
+ * than {@code capacity} records in memory, they are moved to a file, which is the only time the
+ * writers of a session wait for each other.
  */
 public class DefaultPerSessionLogHandler extends PerSessionLogHandler {
 
-  private final Map<SessionId, List<LogRecord>> perSessionRecords;
-  
-  private final Map<SessionId, Map<String, LogEntries>> perSessionDriverEntries;
+  private final ConcurrentMap<SessionId, SessionLog> perSessionRecords;
+
+  private final ConcurrentMap<SessionId, Map<String, LogEntries>> perSessionDriverEntries;
 
-  // Used to store log records that doesnt have associated session.
+  // The session each thread is attached to, and the log records of the thread which don't have
+  // an associated session yet.
   // These records get mapped to session id once the session gets created
   // Useful for commands like: getNewBrowseSession() which doesnt have session
   // associated till the session gets created.
-  private final Map<ThreadKey, List<LogRecord>> perThreadTempRecords;
+  private final ThreadLocal<ThreadBinding> threadBinding = new ThreadLocal<ThreadBinding>() {
+    @Override
+    protected ThreadBinding initialValue() {
+      return new ThreadBinding();
+    }
+  };
   private final Formatter formatter;
-  private Map<ThreadKey, SessionId> threadToSessionMap;
-  private Map<SessionId, ThreadKey> sessionToThreadMap;
-  private SessionLogsToFileRepository logFileRepository;
-  private int capacity;
-  private boolean storeLogsOnSessionQuit = false;
-  
-  private Level serverLogLevel = Level.INFO;
+  private final ConcurrentMap<SessionId, ThreadBinding> sessionToThreadMap;
+  private final SessionLogsToFileRepository logFileRepository;
+  private final int capacity;
+  private final boolean storeLogsOnSessionQuit;
+
+  private volatile Level serverLogLevel = Level.INFO;
 
   /**
    * New handler keeping track of log records per session.
    *
-   * @param capacity     The capacity
+   * @param capacity     The number of records of a session kept in memory, before they're moved
+   *                     to a file.
    * @param minimumLevel Only keep track of records whose level is equal or greater than
    *                     minimumLevel.
    * @param formatter    Formatter to use when retrieving log messages.
@@ -76,45 +92,38 @@ public class DefaultPerSessionLogHandler extends PerSessionLogHandler {
     this.capacity = capacity;
     this.formatter = formatter;
     this.storeLogsOnSessionQuit = captureLogsOnQuit;
-    this.perSessionRecords = Maps.<SessionId, List<LogRecord>>newHashMap();
-    this.perThreadTempRecords = Maps.<ThreadKey, List<LogRecord>>newHashMap();
-    this.threadToSessionMap = Maps.<ThreadKey, SessionId>newHashMap();
-    this.sessionToThreadMap = Maps.<SessionId, ThreadKey>newHashMap();
+    this.perSessionRecords = Maps.newConcurrentMap();
+    this.sessionToThreadMap = Maps.newConcurrentMap();
     this.logFileRepository = new SessionLogsToFileRepository();
-    this.perSessionDriverEntries = Maps.<SessionId, Map<String, LogEntries>>newHashMap();
+    this.perSessionDriverEntries = Maps.newConcurrentMap();
   }
 
   @Override
-  synchronized public void publish(LogRecord record) {
-    ThreadKey threadId = new ThreadKey();
-    SessionId sessionId = threadToSessionMap.get(threadId);
+  public void publish(LogRecord record) {
+    ThreadBinding binding = threadBinding.get();
+    SessionId sessionId = binding.sessionId;
 
     if (sessionId != null) {
-      List<LogRecord> records = perSessionRecords.get(sessionId);
-      if (records == null) {
-        records = new ArrayList<LogRecord>();
-      }
-      records.add(record);
-      perSessionRecords.put(sessionId, records);
-      
-      if (records.size() > capacity) {
-        perSessionRecords.put( sessionId, new ArrayList<LogRecord>());
-        // flush records to file;
-        try {
-          logFileRepository.flushRecordsToLogFile(sessionId, records);
-          // clear in memory session records
-          records.clear();
-        } catch (IOException ex) {
-          ex.printStackTrace();
+      addToSessionLog(sessionId, record);
+    } else {
+      binding.tempRecords.add(record);
+    }
+  }
+
+  private void addToSessionLog(SessionId sessionId, LogRecord record) {
+    while (true) {
+      SessionLog log = perSessionRecords.get(sessionId);
+      if (log == null) {
+        SessionLog newLog = new SessionLog(sessionId);
+        log = perSessionRecords.putIfAbsent(sessionId, newLog);
+        if (log == null) {
+          log = newLog;
         }
       }
-    } else {
-      List<LogRecord> records = perThreadTempRecords.get(threadId);
-      if (records == null) {
-        records = new ArrayList<LogRecord>();
-        perThreadTempRecords.put(threadId, records);
+      if (log.add(record)) {
+        return;
       }
-      records.add(record);
+      // the log was taken by a reader in the meantime, the record goes to the next one.
     }
   }
 
@@ -124,14 +133,20 @@ public class DefaultPerSessionLogHandler extends PerSessionLogHandler {
   }
 
   @Override
-  public synchronized void close() throws SecurityException {
+  public void close() throws SecurityException {
     perSessionRecords.clear();
-    perThreadTempRecords.clear();
+    threadBinding.remove();
   }
 
   private LogRecord[] records(SessionId sessionId) throws IOException {
-    List<LogRecord> logFileRecords = logFileRepository.getLogRecords(sessionId);
-    List<LogRecord> records = perSessionRecords.remove(sessionId);
+    return records(sessionId, Level.ALL);
+  }
+
+  private LogRecord[] records(SessionId sessionId, Level minimumLevel) throws IOException {
+    SessionLog log = perSessionRecords.remove(sessionId);
+    List<LogRecord> records = log == null ? null : log.take();
+    List<LogRecord> logFileRecords =
+        logFileRepository.getLogRecords(sessionId, minimumLevel, 0);
     if (records != null) {
       logFileRecords.addAll(records);
     }
@@ -150,39 +165,30 @@ public class DefaultPerSessionLogHandler extends PerSessionLogHandler {
   }
 
   @Override
-  public synchronized void attachToCurrentThread(SessionId sessionId) {
-    ThreadKey threadId = new ThreadKey();
-    if (threadToSessionMap.get(threadId) == null
-        || threadToSessionMap.get(threadId).equals(sessionId)) {
-      threadToSessionMap.put(threadId, sessionId);
-      sessionToThreadMap.put(sessionId, threadId);
+  public void attachToCurrentThread(SessionId sessionId) {
+    ThreadBinding binding = threadBinding.get();
+    if (binding.sessionId == null || binding.sessionId.equals(sessionId)) {
+      binding.sessionId = sessionId;
+      sessionToThreadMap.put(sessionId, binding);
     }
     transferThreadTempLogsToSessionLogs(sessionId);
   }
 
   @Override
   public void transferThreadTempLogsToSessionLogs(SessionId sessionId) {
-    ThreadKey threadId = new ThreadKey();
-    List<LogRecord> threadRecords = perThreadTempRecords.get(threadId);
-    List<LogRecord> sessionRecords = perSessionRecords.get(sessionId);
-
-    if (threadRecords != null) {
-      if (sessionRecords == null) {
-        sessionRecords = new ArrayList<LogRecord>();
-        perSessionRecords.put(sessionId, sessionRecords);
-      }
-      sessionRecords.addAll(threadRecords);
+    for (LogRecord record : threadBinding.get().tempRecords) {
+      addToSessionLog(sessionId, record);
     }
     clearThreadTempLogs();
   }
 
   @Override
-  public synchronized void detachFromCurrentThread() {
-    ThreadKey threadId = new ThreadKey();
-    SessionId sessionId = threadToSessionMap.get(threadId);
+  public void detachFromCurrentThread() {
+    ThreadBinding binding = threadBinding.get();
+    SessionId sessionId = binding.sessionId;
     if (sessionId != null) {
-      threadToSessionMap.remove(threadId);
-      sessionToThreadMap.remove(sessionId);
+      binding.sessionId = null;
+      sessionToThreadMap.remove(sessionId, binding);
       clearThreadTempLogs();
     }
   }
@@ -195,17 +201,18 @@ public class DefaultPerSessionLogHandler extends PerSessionLogHandler {
    * @param sessionId The session id to use.
    */
   @Override
-  public synchronized void removeSessionLogs(SessionId sessionId) {
+  public void removeSessionLogs(SessionId sessionId) {
     if (storeLogsOnSessionQuit) {
       return;
     }
-    ThreadKey threadId = sessionToThreadMap.get(sessionId);
-    SessionId sessionIdForThread = threadToSessionMap.get(threadId);
-    if (threadId != null && sessionIdForThread != null && sessionIdForThread.equals(sessionId)) {
-      threadToSessionMap.remove(threadId);
-      sessionToThreadMap.remove(sessionId);
+    ThreadBinding binding = sessionToThreadMap.remove(sessionId);
+    if (binding != null && sessionId.equals(binding.sessionId)) {
+      binding.sessionId = null;
+    }
+    SessionLog log = perSessionRecords.remove(sessionId);
+    if (log != null) {
+      log.take();
     }
-    perSessionRecords.remove(sessionId);
     logFileRepository.removeLogFile(sessionId);
   }
 
@@ -222,9 +229,8 @@ public class DefaultPerSessionLogHandler extends PerSessionLogHandler {
    * small task.
    */
   @Override
-  public synchronized void clearThreadTempLogs() {
-    ThreadKey threadId = new ThreadKey();
-    perThreadTempRecords.remove(threadId);
+  public void clearThreadTempLogs() {
+    threadBinding.get().tempRecords.clear();
   }
 
   /**
@@ -235,7 +241,7 @@ public class DefaultPerSessionLogHandler extends PerSessionLogHandler {
    * @throws IOException when the elves go bad
    */
   @Override
-  public synchronized String getLog(SessionId sessionId) throws IOException {
+  public String getLog(SessionId sessionId) throws IOException {
     // TODO(chandra): Provide option to clear logs after getLog()
     String logs = formattedRecords(sessionId);
     logs = "\n<RC_Logs RC_Session_ID=" + sessionId + ">\n" + logs
@@ -251,12 +257,14 @@ public class DefaultPerSessionLogHandler extends PerSessionLogHandler {
    * @throws IOException If there was a problem reading from file.
    */
   @Override
-  public synchronized LogEntries getSessionLog(SessionId sessionId) throws IOException {
+  public LogEntries getSessionLog(SessionId sessionId) throws IOException {
     List<LogEntry> entries = Lists.<LogEntry>newLinkedList();
-    LogRecord[] records = records(sessionId);
+    Level level = serverLogLevel;
+    LogRecord[] records = records(sessionId, level);
+    int minimumLevel = level.intValue();
     if (records != null) {
       for (LogRecord record : records) {
-        if (record.getLevel().intValue() >= serverLogLevel.intValue())
+        if (record.getLevel().intValue() >= minimumLevel)
           entries.add(new LogEntry(record.getLevel(), record.getMillis(), record.getMessage()));
       }
     }
@@ -272,7 +280,7 @@ public class DefaultPerSessionLogHandler extends PerSessionLogHandler {
    * @return The list of session IDs.
    */
   @Override
-  public synchronized List<SessionId> getLoggedSessions() {
+  public List<SessionId> getLoggedSessions() {
     // TODO: Find a solution that can handle large numbers of sessions, maybe by
     // reading them from disc.
     ImmutableList.Builder<SessionId> builder = new ImmutableList.Builder<SessionId>();
@@ -287,14 +295,13 @@ public class DefaultPerSessionLogHandler extends PerSessionLogHandler {
    * @return The logs for the session, ordered after log types in a session logs object. 
    */
   @Override
-  public synchronized SessionLogs getAllLogsForSession(SessionId sessionId) {
+  public SessionLogs getAllLogsForSession(SessionId sessionId) {
     SessionLogs sessionLogs = new SessionLogs();
-    if (perSessionDriverEntries.containsKey(sessionId)) {
-      Map<String, LogEntries> typeToEntriesMap = perSessionDriverEntries.get(sessionId);
-      for (String logType : typeToEntriesMap.keySet()) {
-        sessionLogs.addLog(logType, typeToEntriesMap.get(logType));
+    Map<String, LogEntries> typeToEntriesMap = perSessionDriverEntries.remove(sessionId);
+    if (typeToEntriesMap != null) {
+      for (Map.Entry<String, LogEntries> entry : typeToEntriesMap.entrySet()) {
+        sessionLogs.addLog(entry.getKey(), entry.getValue());
       }
-      perSessionDriverEntries.remove(sessionId);
     }
     return sessionLogs;
   }
@@ -307,12 +314,14 @@ public class DefaultPerSessionLogHandler extends PerSessionLogHandler {
    *  @throws IOException If there was a problem reading from file.
    */
   @Override
-  public synchronized void fetchAndStoreLogsFromDriver(SessionId sessionId, WebDriver driver) 
+  public void fetchAndStoreLogsFromDriver(SessionId sessionId, WebDriver driver) 
       throws IOException {
-    if (!perSessionDriverEntries.containsKey(sessionId)) {
-      perSessionDriverEntries.put(sessionId, Maps.<String, LogEntries>newHashMap());
+    Map<String, LogEntries> typeToEntriesMap = Maps.newConcurrentMap();
+    Map<String, LogEntries> existing =
+        perSessionDriverEntries.putIfAbsent(sessionId, typeToEntriesMap);
+    if (existing != null) {
+      typeToEntriesMap = existing;
     }
-    Map<String, LogEntries> typeToEntriesMap = perSessionDriverEntries.get(sessionId);
     if (storeLogsOnSessionQuit) {
       typeToEntriesMap.put(LogType.SERVER, getSessionLog(sessionId));
       Set<String> logTypeSet = driver.manage().logs().getAvailableLogTypes();
@@ -337,40 +346,70 @@ public class DefaultPerSessionLogHandler extends PerSessionLogHandler {
     }
   }
 
-  private static class ThreadKey {
+  private static class ThreadBinding {
+
+    private volatile SessionId sessionId;
+    // only ever used by the thread itself.
+    private final List<LogRecord> tempRecords = new ArrayList<LogRecord>();
+  }
 
-    private final String name;
-    private final Long id;
+  /**
+   * The records of a session which are still in memory. Records are appended without locking; the
+   * lock of the log is only taken to move them to a file, and by the reader taking the log.
+   */
+  private class SessionLog {
 
-    ThreadKey() {
-      this.name = Thread.currentThread().toString();
-      this.id = Thread.currentThread().getId();
+    private final SessionId sessionId;
+    private final Queue<LogRecord> records = new ConcurrentLinkedQueue<LogRecord>();
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile boolean taken = false;
+
+    SessionLog(SessionId sessionId) {
+      this.sessionId = sessionId;
     }
 
-    @Override
-    public boolean equals(Object o) {
-      if (this == o) {
-        return true;
+    /**
+     * @return false if the log was taken by a reader, in which case the record wasn't added.
+     */
+    boolean add(LogRecord record) {
+      records.add(record);
+      if (taken) {
+        // the reader may have missed it, unless it's gone already.
+        return !records.remove(record);
       }
-      if (o == null || getClass() != o.getClass()) {
-        return false;
+      if (size.incrementAndGet() > capacity) {
+        moveToFile();
       }
+      return true;
+    }
 
-      ThreadKey threadKey = (ThreadKey) o;
-
-      return !(id != null ? !id.equals(threadKey.id) : threadKey.id != null);
-
+    /**
+     * @return the records still in memory. The log can't be added to anymore.
+     */
+    synchronized List<LogRecord> take() {
+      taken = true;
+      return drain();
     }
 
-    @Override
-    public int hashCode() {
-      return id != null ? id.hashCode() : 0;
+    private synchronized void moveToFile() {
+      if (taken || size.get() <= capacity) {
+        return;
+      }
+      List<LogRecord> toMove = drain();
+      try {
+        logFileRepository.flushRecordsToLogFile(sessionId, toMove);
+      } catch (IOException ex) {
+        ex.printStackTrace();
+      }
     }
 
-    @Override
-    public String toString() {
-      return "id" + id + "," + name;
+    private List<LogRecord> drain() {
+      List<LogRecord> drained = new ArrayList<LogRecord>();
+      for (LogRecord record = records.poll(); record != null; record = records.poll()) {
+        drained.add(record);
+        size.decrementAndGet();
+      }
+      return drained;
     }
   }
-
 }
@@ -18,8 +18,21 @@ limitations under the License.
 
 package org.openqa.selenium.server.log;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+
 import org.openqa.selenium.remote.SessionId;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -27,105 +40,268 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
 import java.util.logging.LogRecord;
 
+/**
+ * The log records of a session, appended to a file. Each record is written as its length, its
+ * time, its level and then the rest of it, so that the records filtered out by a read are skipped
+ * without being decoded. The name of a logger is written once, before the first record logged by
+ * it, and the records then refer to it by its index; a negative length marks such a name.
+ */
 class LogFile {
-  private String logName;
-  private ObjectOutputStream logWriter;
-  private ObjectInputStream logReader;
 
-  public LogFile(String logName) {
-    this.logName = logName;
+  private static final int PAGE_SIZE = 64 * 1024;
+  // the time and the level.
+  private static final int HEADER_SIZE = 8 + 4;
+  private static final Set<Level> STANDARD_LEVELS = ImmutableSet.of(Level.OFF, Level.SEVERE,
+      Level.WARNING, Level.INFO, Level.CONFIG, Level.FINE, Level.FINER, Level.FINEST, Level.ALL);
+
+  private final File file;
+  private final Map<String, Integer> loggerNames = Maps.newHashMap();
+
+  public LogFile(File file) {
+    this.file = file;
   }
 
-  public void openLogWriter() throws IOException {
-    logWriter = new ObjectOutputStream(new FileOutputStream(logName));
+  public synchronized void append(List<LogRecord> records) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream record = new DataOutputStream(bytes);
+    DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file, true), PAGE_SIZE));
+    try {
+      for (LogRecord logRecord : records) {
+        int loggerIndex = loggerIndex(logRecord.getLoggerName(), out);
+        bytes.reset();
+        write(logRecord, loggerIndex, record);
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+      }
+    } finally {
+      out.close();
+    }
   }
 
-  public void closeLogWriter() throws IOException {
-    if (logWriter != null) {
-      logWriter.close();
+  /**
+   * @param minimumLevel the level under which records are skipped.
+   * @param since        the time before which records are skipped.
+   * @return the records of the file, oldest first.
+   */
+  public synchronized List<LogRecord> read(Level minimumLevel, long since) throws IOException {
+    List<LogRecord> records = new ArrayList<LogRecord>();
+    List<String> loggers = new ArrayList<String>();
+    if (!file.exists()) {
+      return records;
     }
+    DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(file), PAGE_SIZE));
+    try {
+      while (true) {
+        int length;
+        try {
+          length = in.readInt();
+        } catch (EOFException e) {
+          break;
+        }
+        if (length < 0) {
+          loggers.add(readString(-length, in));
+          continue;
+        }
+        long millis = in.readLong();
+        int level = in.readInt();
+        if (level < minimumLevel.intValue() || millis < since) {
+          ByteStreams.skipFully(in, length - HEADER_SIZE);
+        } else {
+          records.add(read(millis, level, loggers, in));
+        }
+      }
+    } catch (EOFException e) {
+      // the last record was cut short, the server must have stopped while writing it.
+    } finally {
+      Closeables.closeQuietly(in);
+    }
+    return records;
   }
 
-  public void openLogReader() throws IOException {
-    logReader = new ObjectInputStream(new FileInputStream(logName));
+  public synchronized void removeLogFile() {
+    file.delete();
   }
 
-  public void closeLogReader() throws IOException {
-    if (logReader != null) {
-      logReader.close();
+  private int loggerIndex(String loggerName, DataOutputStream out) throws IOException {
+    if (loggerName == null) {
+      return -1;
+    }
+    Integer index = loggerNames.get(loggerName);
+    if (index == null) {
+      byte[] bytes = loggerName.getBytes(Charsets.UTF_8);
+      out.writeInt(-bytes.length);
+      out.write(bytes);
+      index = loggerNames.size();
+      loggerNames.put(loggerName, index);
     }
+    return index;
   }
 
-  public ObjectOutputStream getLogWriter() {
-    return logWriter;
+  private static void write(LogRecord record, int loggerIndex, DataOutputStream out)
+      throws IOException {
+    Level level = record.getLevel();
+    out.writeLong(record.getMillis());
+    out.writeInt(level.intValue());
+    writeString(STANDARD_LEVELS.contains(level) ? null : level.getName(), out);
+    out.writeLong(record.getSequenceNumber());
+    out.writeInt(record.getThreadID());
+    out.writeInt(loggerIndex);
+    writeString(record.getMessage(), out);
+    writeString(record.getResourceBundleName(), out);
+    writeString(record.getSourceClassName(), out);
+    writeString(record.getSourceMethodName(), out);
+    Object[] parameters = record.getParameters();
+    if (parameters == null) {
+      out.writeInt(-1);
+    } else {
+      // like the serialized form of a record, only the parameters as strings are kept.
+      out.writeInt(parameters.length);
+      for (Object parameter : parameters) {
+        writeString(parameter == null ? null : parameter.toString(), out);
+      }
+    }
+    if (record.getThrown() == null) {
+      out.writeInt(-1);
+    } else {
+      ByteArrayOutputStream thrown = new ByteArrayOutputStream();
+      ObjectOutputStream objectOut = new ObjectOutputStream(thrown);
+      objectOut.writeObject(record.getThrown());
+      objectOut.close();
+      out.writeInt(thrown.size());
+      thrown.writeTo(out);
+    }
+  }
+
+  private static LogRecord read(long millis, int levelValue, List<String> loggers,
+      DataInputStream in) throws IOException {
+    Level level = toLevel(readString(in), levelValue);
+    LogRecord record = new LogRecord(level, null);
+    record.setMillis(millis);
+    record.setSequenceNumber(in.readLong());
+    record.setThreadID(in.readInt());
+    int loggerIndex = in.readInt();
+    record.setLoggerName(loggerIndex < 0 ? null : loggers.get(loggerIndex));
+    record.setMessage(readString(in));
+    record.setResourceBundleName(readString(in));
+    record.setSourceClassName(readString(in));
+    record.setSourceMethodName(readString(in));
+    int parameterCount = in.readInt();
+    if (parameterCount >= 0) {
+      Object[] parameters = new Object[parameterCount];
+      for (int i = 0; i < parameterCount; i++) {
+        parameters[i] = readString(in);
+      }
+      record.setParameters(parameters);
+    }
+    int thrownLength = in.readInt();
+    if (thrownLength >= 0) {
+      byte[] thrown = new byte[thrownLength];
+      in.readFully(thrown);
+      record.setThrown(readThrowable(thrown));
+    }
+    return record;
+  }
+
+  private static Level toLevel(String name, int value) {
+    if (name != null) {
+      try {
+        return Level.parse(name);
+      } catch (IllegalArgumentException e) {
+        // a level of a class we can't see, only its value is left.
+      }
+    }
+    return Level.parse(String.valueOf(value));
+  }
+
+  private static Throwable readThrowable(byte[] bytes) throws IOException {
+    try {
+      return (Throwable) new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
   }
 
-  public ObjectInputStream getLogReader() {
-    return logReader;
+  // writeUTF can't write more than 64k, which a message may well be.
+  private static void writeString(String value, DataOutputStream out) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(Charsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
   }
 
-  public void removeLogFile() throws IOException {
-    if (logName != null) {
-      closeLogReader();
-      closeLogWriter();
-      new File(logName).delete();
+  private static String readString(DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
     }
+    return readString(length, in);
+  }
+
+  private static String readString(int length, DataInputStream in) throws IOException {
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, Charsets.UTF_8);
   }
 }
 
 
 public class SessionLogsToFileRepository {
-  private Map<SessionId, LogFile> sessionToLogFileMap;
+  private final ConcurrentMap<SessionId, LogFile> sessionToLogFileMap;
 
   public SessionLogsToFileRepository() {
-    sessionToLogFileMap = new HashMap<SessionId, LogFile>();
+    sessionToLogFileMap = Maps.newConcurrentMap();
   }
 
   /**
-   * This creates log file object which represents logs in file form. This opens ObjectOutputStream
-   * which is used to write logRecords to log file and opens a ObjectInputStream which is used to
-   * read logRecords from the file.
+   * This creates the log file of the session, if it doesn't exist yet.
    * 
    * @param sessionId session-id for the log file entry needs to be created.
    * @throws IOException
    */
   public void createLogFileAndAddToMap(SessionId sessionId) throws IOException {
-    File rcLogFile;
-    // create logFile;
-    rcLogFile = File.createTempFile(sessionId.toString(), ".rclog");
+    getOrCreateLogFile(sessionId);
+  }
+
+  private LogFile getOrCreateLogFile(SessionId sessionId) throws IOException {
+    LogFile logFile = sessionToLogFileMap.get(sessionId);
+    if (logFile != null) {
+      return logFile;
+    }
+    File rcLogFile = File.createTempFile(sessionId.toString(), ".rclog");
     rcLogFile.deleteOnExit();
-    LogFile logFile = new LogFile(rcLogFile.getAbsolutePath());
-    sessionToLogFileMap.put(sessionId, logFile);
+    logFile = new LogFile(rcLogFile);
+    LogFile existing = sessionToLogFileMap.putIfAbsent(sessionId, logFile);
+    if (existing != null) {
+      rcLogFile.delete();
+      return existing;
+    }
+    return logFile;
   }
 
   /**
    * This creates a mapping between session and file representation of logs if doesnt exist already.
-   * Writes the log records to the log file. This does *NOT* flush the logs to file. This does *NOT*
-   * clear the records after writing to file.
+   * Appends the log records to the log file. This does *NOT* clear the records after writing to
+   * file.
    * 
    * @param sessionId session-id to which the log records belong
    * @param records logRecords that need to be stored
    * @throws IOException
    */
-  synchronized public void flushRecordsToLogFile(SessionId sessionId,
+  public void flushRecordsToLogFile(SessionId sessionId,
       List<LogRecord> records) throws IOException {
-    LogFile logFile = sessionToLogFileMap.get(sessionId);
-
-    if (logFile == null) {
-      createLogFileAndAddToMap(sessionId);
-      logFile = sessionToLogFileMap.get(sessionId);
-    }
-
-    logFile.openLogWriter();
-    for (LogRecord record : records) {
-      logFile.getLogWriter().writeObject(record);
-    }
-    logFile.closeLogWriter();
+    getOrCreateLogFile(sessionId).append(records);
   }
 
   /**
@@ -137,40 +313,32 @@ public class SessionLogsToFileRepository {
    * @throws IOException
    */
   public List<LogRecord> getLogRecords(SessionId sessionId) throws IOException {
+    return getLogRecords(sessionId, Level.ALL, 0);
+  }
+
+  /**
+   * Returns some of the log records stored in the corresponding log file. The other ones are
+   * skipped without being read entirely. This does *NOT* clear the log records in the file.
+   *
+   * @param sessionId    session-id for which the file logs needs to be returned.
+   * @param minimumLevel only the records with this level or above are returned.
+   * @param since        only the records logged at this time or after are returned.
+   * @return The log records, oldest first.
+   * @throws IOException
+   */
+  public List<LogRecord> getLogRecords(SessionId sessionId, Level minimumLevel, long since)
+      throws IOException {
     LogFile logFile = sessionToLogFileMap.get(sessionId);
     if (logFile == null) {
       return new ArrayList<LogRecord>();
     }
-    logFile.openLogReader();
-    ObjectInputStream logObjInStream = logFile.getLogReader();
-    List<LogRecord> logRecords = new ArrayList<LogRecord>();
-    try {
-      LogRecord tmpLogRecord;
-      while (null != (tmpLogRecord = (LogRecord) logObjInStream
-          .readObject())) {
-        logRecords.add(tmpLogRecord);
-      }
-    } catch (IOException ex) {
-      logFile.closeLogReader();
-      return logRecords;
-    } catch (ClassNotFoundException e) {
-      logFile.closeLogReader();
-      return logRecords;
-    }
-    logFile.closeLogReader();
-    return logRecords;
+    return logFile.read(minimumLevel, since);
   }
 
   public void removeLogFile(SessionId sessionId) {
-    LogFile logFile = sessionToLogFileMap.get(sessionId);
-    sessionToLogFileMap.remove(sessionId);
-    if (logFile == null) {
-      return;
-    }
-    try {
+    LogFile logFile = sessionToLogFileMap.remove(sessionId);
+    if (logFile != null) {
       logFile.removeLogFile();
-    } catch (IOException e) {
-      throw new RuntimeException(e);
     }
   }
 }
@@ -95,6 +95,43 @@ public class ActiveTestSessionsTest {
                  activeTestSessions.findSessionByExternalKey(testSession.getExternalKey()));
   }
 
+  @Test
+  public void testFindSessionGivenItsExternalKeyOnceAdded() throws Exception {
+    TestSession testSession = createTestSession();
+    testSession.setExternalKey(null);
+    activeTestSessions.add(testSession);
+    assertNull(activeTestSessions.findSessionByExternalKey(new ExternalSessionKey("w00t!")));
+
+    testSession.setExternalKey(new ExternalSessionKey("w00t!"));
+    assertEquals(testSession,
+                 activeTestSessions.findSessionByExternalKey(new ExternalSessionKey("w00t!")));
+  }
+
+  @Test
+  public void testFindSessionByItsNewExternalKeyOnly() throws Exception {
+    TestSession testSession = createTestSession();
+    activeTestSessions.add(testSession);
+
+    testSession.setExternalKey(new ExternalSessionKey("cheese"));
+    assertNull(activeTestSessions.findSessionByExternalKey(new ExternalSessionKey("w00t!")));
+    assertEquals(testSession,
+                 activeTestSessions.findSessionByExternalKey(new ExternalSessionKey("cheese")));
+  }
+
+  @Test
+  public void testRemovedSessionsAreNotFound() throws Exception {
+    TestSession testSession = createTestSession();
+    activeTestSessions.add(testSession);
+    activeTestSessions.remove(testSession, SessionTerminationReason.CLIENT_STOPPED_SESSION);
+
+    assertNull(activeTestSessions.findSessionByInternalKey(testSession.getInternalKey()));
+    assertNull(activeTestSessions.findSessionByExternalKey(testSession.getExternalKey()));
+
+    // no longer one of the active sessions, its new key isn't indexed.
+    testSession.setExternalKey(new ExternalSessionKey("cheese"));
+    assertNull(activeTestSessions.findSessionByExternalKey(new ExternalSessionKey("cheese")));
+  }
+
   private TestSession createTestSession() {
     final HashMap<String, Object> capabilities = new HashMap<String, Object>();
     final TestSessionTest.TestTimeSource timeSource = new TestSessionTest.TestTimeSource();
@@ -0,0 +1,196 @@
+/*
+Copyright 2011 Selenium committers
+Copyright 2011 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpEntityEnclosingRequest;
+import org.apache.http.util.EntityUtils;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.grid.internal.utils.GridHubConfiguration;
+import org.openqa.grid.web.Hub;
+import org.openqa.selenium.net.PortProber;
+import org.openqa.selenium.remote.CapabilityType;
+import org.openqa.selenium.remote.internal.HttpClientFactory;
+import org.seleniumhq.jetty7.server.Request;
+import org.seleniumhq.jetty7.server.Server;
+import org.seleniumhq.jetty7.server.handler.AbstractHandler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The new session requests waiting for a node don't keep a thread of the hub.
+ */
+public class AsyncNewSessionRequestTest {
+
+  // more than the default max number of threads of jetty.
+  private static final int REQUESTS = 300;
+
+  private Hub hub;
+  private Registry registry;
+  private HttpHost host;
+  private HttpClientFactory httpClientFactory;
+
+  @Before
+  public void setup() throws Exception {
+    GridHubConfiguration c = new GridHubConfiguration();
+    c.setPort(PortProber.findFreePort());
+    c.setHost("localhost");
+    c.setThrowOnCapabilityNotPresent(false);
+    c.setNewSessionWaitTimeout(15000);
+    hub = new Hub(c);
+    registry = hub.getRegistry();
+    host = new HttpHost(hub.getHost(), hub.getPort());
+    httpClientFactory = new HttpClientFactory();
+    hub.start();
+  }
+
+  @After
+  public void teardown() throws Exception {
+    hub.stop();
+    registry.stop();
+    httpClientFactory.close();
+  }
+
+  private Callable<HttpResponse> newSession(final String browser) {
+    return new Callable<HttpResponse>() {
+      public HttpResponse call() throws Exception {
+        HttpClient client = httpClientFactory.getHttpClient();
+        BasicHttpEntityEnclosingRequest r =
+            new BasicHttpEntityEnclosingRequest("POST", "/wd/hub/session");
+        JSONObject capabilities = new JSONObject();
+        capabilities.put(CapabilityType.BROWSER_NAME, browser);
+        JSONObject body = new JSONObject();
+        body.put("desiredCapabilities", capabilities);
+        r.setEntity(new StringEntity(body.toString()));
+        HttpResponse response = client.execute(host, r);
+        EntityUtils.consume(response.getEntity());
+        return response;
+      }
+    };
+  }
+
+  @Test(timeout = 60000)
+  public void moreWaitingRequestsThanContainerThreads() throws Exception {
+    ExecutorService clients = Executors.newFixedThreadPool(REQUESTS);
+    try {
+      List<Future<HttpResponse>> responses = new ArrayList<Future<HttpResponse>>();
+      for (int i = 0; i < REQUESTS; i++) {
+        responses.add(clients.submit(newSession("app1")));
+      }
+      while (registry.getNewSessionRequestCount() < REQUESTS) {
+        Thread.sleep(50);
+      }
+
+      registry.stop();
+      for (Future<HttpResponse> response : responses) {
+        assertEquals(500, response.get().getStatusLine().getStatusCode());
+      }
+    } finally {
+      clients.shutdownNow();
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void waitingRequestTimesOut() throws Exception {
+    registry.setNewSessionWaitTimeout(500);
+    long start = System.currentTimeMillis();
+    HttpResponse response = newSession("app1").call();
+    assertEquals(500, response.getStatusLine().getStatusCode());
+    assertTrue(System.currentTimeMillis() - start >= 500);
+    assertEquals(0, registry.getNewSessionRequestCount());
+  }
+
+  @Test(timeout = 30000)
+  public void waitingRequestIsForwardedOnceANodeIsFree() throws Exception {
+    ExecutorService clients = Executors.newSingleThreadExecutor();
+    try {
+      Future<HttpResponse> response = clients.submit(newSession("app1"));
+      while (registry.getNewSessionRequestCount() < 1) {
+        Thread.sleep(50);
+      }
+
+      // the node doesn't exist, forwarding the request fails and frees the slot.
+      registry.add(RemoteProxyFactory.getNewBasicRemoteProxy("app1", "http://localhost:"
+          + PortProber.findFreePort(), registry));
+      assertEquals(500, response.get().getStatusLine().getStatusCode());
+      assertEquals(0, registry.getNewSessionRequestCount());
+      while (!registry.getActiveSessions().isEmpty()) {
+        Thread.sleep(50);
+      }
+    } finally {
+      clients.shutdownNow();
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void waitingRequestIsForwardedAndAnswered() throws Exception {
+    final int nodePort = PortProber.findFreePort();
+    Server node = new Server(nodePort);
+    node.setHandler(new AbstractHandler() {
+      public void handle(String target, Request baseRequest, HttpServletRequest request,
+                         HttpServletResponse response) throws IOException {
+        if ("POST".equals(request.getMethod())) {
+          response.setStatus(303);
+          response.setHeader("Location",
+                             "http://localhost:" + nodePort + "/wd/hub/session/node-session");
+        } else {
+          response.setContentType("application/json");
+          response.getWriter().write("{\"sessionId\":\"node-session\",\"status\":0,\"value\":{}}");
+        }
+        baseRequest.setHandled(true);
+      }
+    });
+    node.start();
+
+    ExecutorService clients = Executors.newSingleThreadExecutor();
+    try {
+      Future<HttpResponse> response = clients.submit(newSession("app1"));
+      while (registry.getNewSessionRequestCount() < 1) {
+        Thread.sleep(50);
+      }
+
+      registry.add(RemoteProxyFactory.getNewBasicRemoteProxy("app1", "http://localhost:"
+          + nodePort, registry));
+      assertEquals(200, response.get().getStatusLine().getStatusCode());
+      assertEquals(0, registry.getNewSessionRequestCount());
+      assertNotNull(registry.getSession(ExternalSessionKey.fromString("node-session")));
+    } finally {
+      clients.shutdownNow();
+      node.stop();
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/*
+Copyright 2011 Selenium committers
+Copyright 2011 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.grid.internal.utils.GridHubConfiguration;
+import org.openqa.grid.web.Hub;
+import org.openqa.selenium.Platform;
+import org.openqa.selenium.remote.CapabilityType;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class CapabilityIndexTest {
+
+  private Registry registry;
+  private ProxySet proxies;
+
+  @Before
+  public void setup() {
+    registry = Registry.newInstance();
+    proxies = registry.getAllProxies();
+  }
+
+  @After
+  public void teardown() {
+    registry.stop();
+  }
+
+  private static Map<String, Object> capabilities(String browser, Object platform) {
+    Map<String, Object> res = new HashMap<String, Object>();
+    res.put(CapabilityType.BROWSER_NAME, browser);
+    if (platform != null) {
+      res.put(CapabilityType.PLATFORM, platform);
+    }
+    return res;
+  }
+
+  @Test
+  public void onlyMatchingProxiesAreCandidates() {
+    RemoteProxy firefox = RemoteProxyFactory.getNewBasicRemoteProxy(
+        capabilities("firefox", Platform.LINUX), "http://machine1:4444/", registry);
+    RemoteProxy ie = RemoteProxyFactory.getNewBasicRemoteProxy(
+        capabilities("internet explorer", Platform.VISTA), "http://machine2:4444/", registry);
+    proxies.add(firefox);
+    proxies.add(ie);
+
+    TestSession session = proxies.getNewSession(capabilities("internet explorer", null));
+    Assert.assertNotNull(session);
+    Assert.assertEquals(ie, session.getSlot().getProxy());
+
+    Assert.assertNull(proxies.getNewSession(capabilities("internet explorer", null)));
+    Assert.assertNull(proxies.getNewSession(capabilities("opera", null)));
+  }
+
+  @Test
+  public void platformFamilyStillMatches() {
+    RemoteProxy ie = RemoteProxyFactory.getNewBasicRemoteProxy(
+        capabilities("internet explorer", Platform.VISTA), "http://machine1:4444/", registry);
+    proxies.add(ie);
+
+    Assert.assertTrue(proxies.hasCapability(capabilities("internet explorer", "WINDOWS")));
+    Assert.assertFalse(proxies.hasCapability(capabilities("internet explorer", Platform.MAC)));
+    Assert.assertNotNull(proxies.getNewSession(capabilities("internet explorer", Platform.WINDOWS)));
+  }
+
+  @Test
+  public void releasedSlotIsOfferedAgain() {
+    RemoteProxy p1 = RemoteProxyFactory.getNewBasicRemoteProxy("app1", "http://machine1:4444/",
+                                                               registry);
+    proxies.add(p1);
+
+    TestSession session = proxies.getNewSession(capabilities("app1", null));
+    Assert.assertNotNull(session);
+    Assert.assertNull(proxies.getNewSession(capabilities("app1", null)));
+
+    session.getSlot().doFinishRelease();
+    Assert.assertNotNull(proxies.getNewSession(capabilities("app1", null)));
+  }
+
+  @Test
+  public void slotTakenOutsideOfTheSetIsNotOffered() {
+    RemoteProxy p1 = RemoteProxyFactory.getNewBasicRemoteProxy("app1", "http://machine1:4444/",
+                                                               registry);
+    proxies.add(p1);
+
+    p1.getTestSlots().get(0).getNewSession(new HashMap<String, Object>());
+    Assert.assertNull(proxies.getNewSession(capabilities("app1", null)));
+  }
+
+  @Test
+  public void removedProxyIsForgotten() {
+    RemoteProxy p1 = RemoteProxyFactory.getNewBasicRemoteProxy("app1", "http://machine1:4444/",
+                                                               registry);
+    proxies.add(p1);
+    Assert.assertTrue(proxies.hasCapability(capabilities("app1", null)));
+
+    proxies.remove(p1);
+    Assert.assertFalse(proxies.hasCapability(capabilities("app1", null)));
+    Assert.assertNull(proxies.getNewSession(capabilities("app1", null)));
+
+    // the slot isn't part of the grid anymore, releasing it shouldn't bring it back.
+    p1.getTestSlots().get(0).doFinishRelease();
+    Assert.assertNull(proxies.getNewSession(capabilities("app1", null)));
+  }
+
+  @Test
+  public void proxiesWithACustomMatcherAreAlwaysAsked() {
+    GridHubConfiguration hubConfig = new GridHubConfiguration();
+    hubConfig.setCapabilityMatcher(MyCapabilityMatcher.class.getCanonicalName());
+    Registry custom = Registry.newInstance((Hub) null, hubConfig);
+    try {
+      RemoteProxy p1 = RemoteProxyFactory.getNewBasicRemoteProxy("app1", "http://machine1:4444/",
+                                                                 custom);
+      custom.getAllProxies().add(p1);
+
+      // MyCapabilityMatcher never matches, whatever the index would have said.
+      Assert.assertFalse(custom.getAllProxies().hasCapability(capabilities("app1", null)));
+      Assert.assertNull(custom.getAllProxies().getNewSession(capabilities("app1", null)));
+    } finally {
+      custom.stop();
+    }
+  }
+}
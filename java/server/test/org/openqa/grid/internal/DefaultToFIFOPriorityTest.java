@@ -78,7 +78,8 @@ public class DefaultToFIFOPriorityTest {
     newSessionRequest.process();
     session = newSessionRequest.getSession();
 
-    // fill the queue with MAX requests.
+    // fill the queue with MAX requests, one after the other so that they are queued in order.
+    int queued = 0;
     for (MockedRequestHandler h : requests) {
       final MockedRequestHandler req = h;
       new Thread(new Runnable() {  // Thread safety reviewed
@@ -86,14 +87,15 @@ public class DefaultToFIFOPriorityTest {
           req.process();
         }
       }).start();
+      queued++;
+      while (registry.getNewSessionRequestCount() != queued) {
+        Thread.sleep(10);
+      }
     }
 
 
     // free the grid : the queue is consumed, and the test with the highest
     // priority should be processed.
-    while (requests.size() != MAX) {
-      Thread.sleep(250);
-    }
     registry.terminateSynchronousFOR_TEST_ONLY(session);
   }
 
@@ -108,6 +110,7 @@ public class DefaultToFIFOPriorityTest {
       } catch (Throwable e) {
         // ignore.
       }
+      cpt++;
       Thread.sleep(250);
     }
     assertNotNull(requests.get(0).getSession());
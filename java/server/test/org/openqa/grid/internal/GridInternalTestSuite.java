@@ -42,6 +42,9 @@ import org.openqa.grid.plugin.RemoteProxyInheritanceTest;
     ConcurrencyLockTest.class,
     AddingProxyAgainFreesResources.class,
     DefaultCapabilityMatcherTest.class,
+    CapabilityIndexTest.class,
+    NewSessionRequestQueueTest.class,
+    AsyncNewSessionRequestTest.class,
     SessionListenerTest.class,
     RegistrationListenerTest.class,
     StatusServletTests.class,
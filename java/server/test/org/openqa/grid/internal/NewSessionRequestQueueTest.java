@@ -0,0 +1,140 @@
+/*
+Copyright 2011 Selenium committers
+Copyright 2011 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.grid.internal;
+
+import static org.openqa.grid.common.RegistrationRequest.APP;
+
+import com.google.common.base.Predicate;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.grid.internal.listeners.Prioritizer;
+import org.openqa.grid.internal.mock.GridHelper;
+import org.openqa.grid.web.servlet.handler.RequestHandler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class NewSessionRequestQueueTest {
+
+  private static Prioritizer highestNumberHasPriority = new Prioritizer() {
+    public int compareTo(Map<String, Object> a, Map<String, Object> b) {
+      int priorityA = Integer.parseInt(a.get("_priority").toString());
+      int priorityB = Integer.parseInt(b.get("_priority").toString());
+      return priorityB - priorityA;
+    }
+  };
+
+  private Registry registry;
+  private NewSessionRequestQueue queue;
+  private List<RequestHandler> tried;
+
+  @Before
+  public void setup() {
+    registry = Registry.newInstance();
+    queue = new NewSessionRequestQueue();
+    tried = new ArrayList<RequestHandler>();
+  }
+
+  @After
+  public void teardown() {
+    registry.stop();
+  }
+
+  private RequestHandler request(String app, int priority) {
+    Map<String, Object> cap = new HashMap<String, Object>();
+    cap.put(APP, app);
+    cap.put("_priority", priority);
+    RequestHandler handler = GridHelper.createNewSessionHandler(registry, cap);
+    queue.add(handler);
+    return handler;
+  }
+
+  private Predicate<RequestHandler> accept(final String app) {
+    return new Predicate<RequestHandler>() {
+      public boolean apply(RequestHandler input) {
+        tried.add(input);
+        return app.equals(input.getRequest().getDesiredCapabilities().get(APP));
+      }
+    };
+  }
+
+  @Test
+  public void requestsAreTriedByPriorityAcrossBuckets() {
+    RequestHandler ff1 = request("FF", 1);
+    RequestHandler ie3 = request("IE", 3);
+    RequestHandler ff2 = request("FF", 2);
+
+    queue.processQueue(accept("FF"), highestNumberHasPriority);
+
+    // IE is refused, so is the rest of the IE bucket, FF requests are all assigned.
+    Assert.assertEquals(3, tried.size());
+    Assert.assertSame(ie3, tried.get(0));
+    Assert.assertSame(ff2, tried.get(1));
+    Assert.assertSame(ff1, tried.get(2));
+    Assert.assertEquals(1, queue.getNewSessionRequestCount());
+    Assert.assertEquals(2, queue.getTimeInQueue().getCount());
+  }
+
+  @Test
+  public void exactBucketIsGivenUpAfterTheFirstRefusal() {
+    request("IE", 1);
+    request("IE", 2);
+    request("IE", 3);
+
+    queue.processQueue(accept("FF"), highestNumberHasPriority, null, true);
+    Assert.assertEquals(1, tried.size());
+
+    tried.clear();
+    queue.processQueue(accept("FF"), highestNumberHasPriority, null, false);
+    Assert.assertEquals(3, tried.size());
+    Assert.assertEquals(3, queue.getNewSessionRequestCount());
+  }
+
+  @Test
+  public void filteredOutBucketsAreLeftAlone() {
+    request("IE", 1);
+    RequestHandler ff = request("FF", 1);
+
+    queue.processQueue(accept("FF"), null, new Predicate<Map<String, Object>>() {
+      public boolean apply(Map<String, Object> input) {
+        return "FF".equals(input.get(APP));
+      }
+    }, true);
+
+    Assert.assertEquals(1, tried.size());
+    Assert.assertSame(ff, tried.get(0));
+  }
+
+  @Test
+  public void waitingRequestsAreRemovedByIdentity() {
+    RequestHandler first = request("FF", 1);
+    RequestHandler second = request("FF", 1);
+
+    // both handlers have no session yet, and are equal as far as RequestHandler.equals goes.
+    Assert.assertTrue(queue.removeNewSessionRequest(second));
+    Assert.assertFalse(queue.removeNewSessionRequest(second));
+
+    queue.processQueue(accept("FF"), null);
+    Assert.assertSame(first, tried.get(0));
+  }
+}
@@ -34,6 +34,7 @@ import org.openqa.grid.common.exception.CapabilityNotPresentOnTheGridException;
 import org.openqa.grid.common.exception.GridException;
 import org.openqa.grid.internal.listeners.RegistrationListener;
 import org.openqa.grid.internal.mock.GridHelper;
+import org.openqa.grid.internal.mock.MockedRequestHandler;
 import org.openqa.grid.web.servlet.handler.RequestHandler;
 import org.openqa.selenium.remote.CapabilityType;
 
@@ -185,6 +186,43 @@ public class RegistryTest {
     }
   }
 
+  @Test(timeout = 4000)
+  public void releaseOnAFullProxyServesTheOtherCapabilities() throws InterruptedException {
+    Map<String, Object> config = new HashMap<String, Object>();
+    config.put(REMOTE_HOST, "http://machine1:4444");
+    config.put(MAX_SESSION, 1);
+    RegistrationRequest request = new RegistrationRequest();
+    request.addDesiredCapability(app1);
+    request.addDesiredCapability(app2);
+    request.setConfiguration(config);
+
+    Registry registry = Registry.newInstance();
+    try {
+      registry.add(new BaseRemoteProxy(request, registry));
+      MockedRequestHandler first = GridHelper.createNewSessionHandler(registry, app1);
+      first.process();
+
+      final MockedRequestHandler waiting = GridHelper.createNewSessionHandler(registry, app2);
+      final CountDownLatch served = new CountDownLatch(1);
+      new Thread(new Runnable() { // Thread safety reviewed
+        public void run() {
+          waiting.process();
+          served.countDown();
+        }
+      }).start();
+      while (registry.getNewSessionRequestCount() != 1) {
+        Thread.sleep(10);
+      }
+
+      // served on the release, not on the periodic wake up of the matcher.
+      registry.terminateSynchronousFOR_TEST_ONLY(first.getSession());
+      served.await();
+      Assert.assertNotNull(waiting.getSession());
+    } finally {
+      registry.stop();
+    }
+  }
+
   private Random randomGenerator = new Random();
 
   /**
@@ -25,6 +25,7 @@ import static org.openqa.grid.common.RegistrationRequest.TIME_OUT;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -156,6 +157,68 @@ public class SessionTimesOutTest {
     }
   }
 
+  class MyRemoteProxyTimeoutHung extends BaseRemoteProxy implements TimeoutListener {
+
+    private final CountDownLatch nodeAnswers;
+
+    public MyRemoteProxyTimeoutHung(RegistrationRequest request, Registry registry,
+        CountDownLatch nodeAnswers) {
+      super(request, registry);
+      this.nodeAnswers = nodeAnswers;
+    }
+
+    public void beforeRelease(TestSession session) {
+      try {
+        nodeAnswers.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  // releasing the sessions of nodes which don't answer doesn't hold the clean up of the others.
+  @Test(timeout = 5000)
+  public void testTimeoutOfHungNodesDoesNotHoldTheOthers() throws InterruptedException {
+    Registry registry = Registry.newInstance();
+    CountDownLatch nodesAnswer = new CountDownLatch(1);
+    Map<String, Object> hungApp = new HashMap<String, Object>();
+    hungApp.put(APP, "hung");
+
+    try {
+      for (int i = 0; i < 10; i++) {
+        RemoteProxy hung =
+            new MyRemoteProxyTimeoutHung(request("hung" + i, hungApp), registry, nodesAnswer);
+        hung.setupTimeoutListener();
+        registry.add(hung);
+        GridHelper.createNewSessionHandler(registry, hungApp).process();
+      }
+
+      RemoteProxy p1 = new MyRemoteProxyTimeout(request("answering", app1), registry);
+      p1.setupTimeoutListener();
+      registry.add(p1);
+      RequestHandler newSessionRequest = GridHelper.createNewSessionHandler(registry, app1);
+      newSessionRequest.process();
+      TestSession session = newSessionRequest.getSession();
+
+      // wait for a timeout, while the hung nodes are being released
+      Thread.sleep(1000);
+      Assert.assertNull(session.getSlot().getSession());
+    } finally {
+      nodesAnswer.countDown();
+      registry.stop();
+    }
+  }
+
+  private static RegistrationRequest request(String id, Map<String, Object> app) {
+    RegistrationRequest request = new RegistrationRequest();
+    request.addDesiredCapability(app);
+    Map<String, Object> config = new HashMap<String, Object>(req.getConfiguration());
+    config.put(ID, id);
+    config.put("host", id);
+    request.setConfiguration(config);
+    return request;
+  }
+
   class MyBuggyRemoteProxyTimeout extends BaseRemoteProxy implements TimeoutListener {
 
     public MyBuggyRemoteProxyTimeout(RegistrationRequest request, Registry registry) {
@@ -317,6 +317,57 @@ public class StatusServletTests {
 
   }
 
+  @Test
+  public void testHubGetNewSessionRequestQueue() throws IOException, JSONException {
+    HttpClient client = httpClientFactory.getHttpClient();
+
+    String url = hubApi.toExternalForm();
+    BasicHttpEntityEnclosingRequest r = new BasicHttpEntityEnclosingRequest("GET", url);
+
+    JSONObject j = new JSONObject();
+    JSONArray keys = new JSONArray();
+    keys.put("newSessionRequestQueue");
+    j.put("configuration", keys);
+    r.setEntity(new StringEntity(j.toString()));
+
+    HttpResponse response = client.execute(host, r);
+    assertEquals(200, response.getStatusLine().getStatusCode());
+    JSONObject o = extractObject(response);
+
+    assertTrue(o.getBoolean("success"));
+    JSONObject queue = o.getJSONObject("newSessionRequestQueue");
+    assertEquals(0, queue.getInt("size"));
+    // the session created in setup went through the queue.
+    assertEquals(1, queue.getJSONObject("timeInQueue").getInt("count"));
+    assertTrue(queue.getJSONObject("matchLatency").has("p99"));
+  }
+
+  @Test
+  public void testHubGetHttpClientPool() throws IOException, JSONException {
+    HttpClient client = httpClientFactory.getHttpClient();
+
+    String url = hubApi.toExternalForm();
+    BasicHttpEntityEnclosingRequest r = new BasicHttpEntityEnclosingRequest("GET", url);
+
+    JSONObject j = new JSONObject();
+    JSONArray keys = new JSONArray();
+    keys.put("httpClientPool");
+    j.put("configuration", keys);
+    r.setEntity(new StringEntity(j.toString()));
+
+    HttpResponse response = client.execute(host, r);
+    assertEquals(200, response.getStatusLine().getStatusCode());
+    JSONObject o = extractObject(response);
+
+    assertTrue(o.getBoolean("success"));
+    JSONObject pool = o.getJSONObject("httpClientPool");
+    assertEquals(0, pool.getInt("leased"));
+    assertEquals(0, pool.getInt("pending"));
+    JSONObject node = pool.getJSONObject("nodes").getJSONObject("http://machine1:4444");
+    assertEquals(0, node.getInt("leased"));
+    assertTrue(node.has("available"));
+  }
+
   @Test
   public void testSessionApiNeg() throws IOException, JSONException {
     String s = "non-existing session";
@@ -21,11 +21,18 @@ import org.junit.Test;
 import org.openqa.grid.common.RegistrationRequest;
 import org.openqa.grid.internal.BaseRemoteProxy;
 import org.openqa.grid.internal.Registry;
+import org.openqa.grid.internal.SessionTerminationReason;
 import org.openqa.grid.internal.TestSession;
+import org.openqa.grid.internal.mock.GridHelper;
+import org.openqa.grid.web.servlet.handler.RequestHandler;
+import org.openqa.selenium.net.PortProber;
+import org.openqa.selenium.remote.CapabilityType;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.openqa.grid.common.RegistrationRequest.ID;
@@ -73,4 +80,113 @@ public class DefaultRemoteProxyTest {
     p.forceSlotCleanerRun();
     assertTrue(p.getRegistry().getActiveSessions().isEmpty());
   }
+
+  @Test
+  public void nodeWhichCannotBeReachedIsMarkedDownByTheSharedScheduler()
+      throws InterruptedException {
+    Registry registry = Registry.newInstance();
+    try {
+      RegistrationRequest req = RegistrationRequest.build("-role", "webdriver");
+      req.getConfiguration().put(RegistrationRequest.REMOTE_HOST,
+                                 "http://localhost:" + PortProber.findFreePort());
+      req.getConfiguration().put(RegistrationRequest.NODE_POLLING, 50);
+      req.getConfiguration().put(RegistrationRequest.PROXY_CLASS,
+                                 DefaultRemoteProxy.class.getName());
+
+      DefaultRemoteProxy p = BaseRemoteProxy.getNewInstance(req, registry);
+      registry.add(p);
+
+      long deadline = System.currentTimeMillis() + 5000;
+      while (!p.isDown() && System.currentTimeMillis() < deadline) {
+        Thread.sleep(20);
+      }
+      assertTrue(p.isDown());
+      assertTrue(p.getProbeLatency().getCount() >= 2);
+    } finally {
+      registry.stop();
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void requestRefusedWhileItsNodeWasDownIsMatchedOnABusyHubOnceTheNodeIsBack()
+      throws InterruptedException {
+    final Registry registry = Registry.newInstance();
+    final AtomicBoolean loaded = new AtomicBoolean(true);
+    try {
+      final AtomicBoolean alive = new AtomicBoolean(false);
+      RegistrationRequest req = request("recovering");
+      req.getConfiguration().put(RegistrationRequest.NODE_POLLING, 50);
+      DefaultRemoteProxy recovering = new DefaultRemoteProxy(req, registry) {
+        @Override
+        public boolean isAlive() {
+          return alive.get();
+        }
+      };
+      registry.add(recovering);
+      long deadline = System.currentTimeMillis() + 5000;
+      while (!recovering.isDown() && System.currentTimeMillis() < deadline) {
+        Thread.sleep(20);
+      }
+      assertTrue(recovering.isDown());
+
+      // sessions started and ended all the time on another node, so that the matcher always has
+      // something else to look at.
+      registry.add(new BaseRemoteProxy(request("busy"), registry));
+      Thread load = new Thread(new Runnable() {
+        public void run() {
+          while (loaded.get()) {
+            RequestHandler busy = GridHelper.createNewSessionHandler(registry, app("busy"));
+            busy.process();
+            registry.terminate(busy.getSession(), SessionTerminationReason.CLIENT_STOPPED_SESSION);
+            try {
+              Thread.sleep(10);
+            } catch (InterruptedException e) {
+              return;
+            }
+          }
+        }
+      });
+      load.setDaemon(true);
+      load.start();
+
+      final RequestHandler waiting =
+          GridHelper.createNewSessionHandler(registry, app("recovering"));
+      Thread waitingThread = new Thread(new Runnable() {
+        public void run() {
+          waiting.process();
+        }
+      });
+      waitingThread.setDaemon(true);
+      waitingThread.start();
+      Thread.sleep(500);
+      assertTrue("Matched while its node was down", waitingThread.isAlive());
+
+      alive.set(true);
+      waitingThread.join(10000);
+      assertFalse("Not matched once its node was back", waitingThread.isAlive());
+      assertNotNull(waiting.getSession());
+      assertTrue(load.isAlive());
+    } finally {
+      loaded.set(false);
+      registry.stop();
+    }
+  }
+
+  private static Map<String, Object> app(String name) {
+    Map<String, Object> app = new HashMap<String, Object>();
+    app.put(CapabilityType.BROWSER_NAME, name);
+    return app;
+  }
+
+  private static RegistrationRequest request(String name) {
+    Map<String, Object> config = new HashMap<String, Object>();
+    config.put(ID, name);
+    config.put(RegistrationRequest.REMOTE_HOST, "http://" + name + ":4444");
+    config.put(RegistrationRequest.MAX_SESSION, 1);
+
+    RegistrationRequest req = new RegistrationRequest();
+    req.addDesiredCapability(app(name));
+    req.setConfiguration(config);
+    return req;
+  }
 }
@@ -17,6 +17,15 @@ limitations under the License.
 
 package org.openqa.selenium.remote.server;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+
 import org.jmock.Expectations;
 import org.jmock.lib.legacy.ClassImposteriser;
 import org.junit.Before;
@@ -25,6 +34,11 @@ import org.openqa.selenium.io.TemporaryFilesystem;
 import org.openqa.selenium.remote.DesiredCapabilities;
 import org.openqa.selenium.testing.MockTestBase;
 
+import java.awt.AWTException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
 public class DefaultSessionTest extends MockTestBase {
 
   @Before
@@ -47,4 +61,118 @@ public class DefaultSessionTest extends MockTestBase {
     session.close();
   }
 
+  @Test
+  public void shouldRunAllTheCommandsOfASessionOnTheSameThread() throws Exception {
+    final DriverFactory factory = new StubDriverFactory();
+    final TemporaryFilesystem tempFs = mock(TemporaryFilesystem.class);
+
+    checking(new Expectations() {{
+      allowing(tempFs);
+    }});
+
+    Session session =
+        DefaultSession.createSession(factory, tempFs, null, DesiredCapabilities.firefox());
+    try {
+      Thread first = session.execute(new FutureTask<Thread>(new CurrentThread()));
+      Thread second = session.execute(new FutureTask<Thread>(new CurrentThread()));
+
+      assertSame(first, second);
+      assertNotSame(Thread.currentThread(), first);
+    } finally {
+      session.close();
+    }
+  }
+
+  @Test(expected = RejectedExecutionException.class)
+  public void shouldRejectTheCommandsOfAClosedSession() throws Exception {
+    final DriverFactory factory = new StubDriverFactory();
+    final TemporaryFilesystem tempFs = mock(TemporaryFilesystem.class);
+
+    checking(new Expectations() {{
+      allowing(tempFs);
+    }});
+
+    Session session =
+        DefaultSession.createSession(factory, tempFs, null, DesiredCapabilities.firefox());
+    session.close();
+
+    session.execute(new FutureTask<Thread>(new CurrentThread()));
+  }
+
+  @Test
+  public void shouldReportTheScreenshotOfAFailureOnlyOnce() throws Exception {
+    final DriverFactory factory = new StubDriverFactory();
+    final TemporaryFilesystem tempFs = mock(TemporaryFilesystem.class);
+
+    checking(new Expectations() {{
+      allowing(tempFs);
+    }});
+
+    Session session =
+        DefaultSession.createSession(factory, tempFs, null, DesiredCapabilities.firefox());
+    try {
+      session.attachScreenshot(Futures.immediateFuture("screen"));
+
+      assertEquals("screen", session.getAndClearScreenshot());
+      assertNull(session.getAndClearScreenshot());
+    } finally {
+      session.close();
+    }
+  }
+
+  @Test
+  public void shouldNotWaitAgainForAScreenshotWhileTheCaptureIsStuck() throws Exception {
+    final DriverFactory factory = new StubDriverFactory();
+    final TemporaryFilesystem tempFs = mock(TemporaryFilesystem.class);
+
+    checking(new Expectations() {{
+      allowing(tempFs);
+    }});
+
+    Session session =
+        DefaultSession.createSession(factory, tempFs, null, DesiredCapabilities.firefox());
+    try {
+      SettableFuture<String> stuck = SettableFuture.create();
+      session.attachScreenshot(stuck);
+      assertNull(session.getAndClearScreenshot());
+
+      session.attachScreenshot(SettableFuture.<String>create());
+      long start = System.currentTimeMillis();
+      assertNull(session.getAndClearScreenshot());
+      assertTrue(System.currentTimeMillis() - start < 1000);
+
+      stuck.set("screen");
+      session.attachScreenshot(Futures.immediateFuture("next screen"));
+      assertEquals("next screen", session.getAndClearScreenshot());
+    } finally {
+      session.close();
+    }
+  }
+
+  @Test
+  public void shouldReportAFailureWithoutItsScreenshotIfItCouldNotBeTaken() throws Exception {
+    final DriverFactory factory = new StubDriverFactory();
+    final TemporaryFilesystem tempFs = mock(TemporaryFilesystem.class);
+
+    checking(new Expectations() {{
+      allowing(tempFs);
+    }});
+
+    Session session =
+        DefaultSession.createSession(factory, tempFs, null, DesiredCapabilities.firefox());
+    try {
+      session.attachScreenshot(
+          Futures.<String>immediateFailedFuture(new AWTException("No screen")));
+
+      assertNull(session.getAndClearScreenshot());
+    } finally {
+      session.close();
+    }
+  }
+
+  private static class CurrentThread implements Callable<Thread> {
+    public Thread call() {
+      return Thread.currentThread();
+    }
+  }
 }
@@ -21,6 +21,7 @@ import com.google.common.collect.Iterators;
 
 import org.jmock.Expectations;
 import org.jmock.Mockery;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Before;
@@ -173,6 +174,39 @@ public class DriverServletTest {
     assertTrue(value.getBoolean("version"));
   }
 
+  @Test
+  public void aBatchCantEndItsSessionThroughAnotherPath()
+      throws IOException, ServletException, JSONException {
+    SessionId sessionId = createSession();
+
+    FakeHttpServletResponse response = sendBatch(sessionId, "DELETE", "//");
+
+    mockery.assertIsSatisfied();
+    assertEquals(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, response.getStatus());
+    assertNotNull(testSessions.get(sessionId));
+  }
+
+  @Test
+  public void batchesCantBeNestedThroughAnotherPath()
+      throws IOException, ServletException, JSONException {
+    SessionId sessionId = createSession();
+
+    FakeHttpServletResponse response = sendBatch(sessionId, "POST", "/batch/");
+
+    mockery.assertIsSatisfied();
+    assertEquals(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, response.getStatus());
+  }
+
+  private FakeHttpServletResponse sendBatch(SessionId sessionId, String method, String path)
+      throws IOException, ServletException, JSONException {
+    return sendCommand("POST", String.format("/session/%s/batch", sessionId),
+        new JSONObject().put("commands", new JSONArray()
+            .put(new JSONObject()
+                .put("method", method)
+                .put("path", path)
+                .put("parameters", new JSONObject().put("commands", new JSONArray())))));
+  }
+
   private SessionId createSession() throws IOException, ServletException {
     FakeHttpServletResponse response = sendCommand("POST", "/session", null);
 
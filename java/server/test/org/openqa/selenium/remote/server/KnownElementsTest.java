@@ -0,0 +1,109 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.remote.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.StubElement;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.internal.Locatable;
+
+public class KnownElementsTest {
+
+  @Test
+  public void shouldGiveTheSameIdToTheSameElement() {
+    KnownElements known = new KnownElements();
+    WebElement element = new StubElement();
+
+    String id = known.add(element);
+
+    assertEquals(id, known.add(element));
+    assertEquals(id, known.add(known.get(id)));
+    assertFalse(id.equals(known.add(new StubElement())));
+  }
+
+  @Test
+  public void shouldWrapTheElement() {
+    KnownElements known = new KnownElements();
+    WebElement element = new StubElement();
+
+    WebElement wrapped = known.get(known.add(element));
+
+    assertNotSame(element, wrapped);
+    assertSame(element, ((KnownElements.ProxiedElement) wrapped).getWrappedElement());
+    assertEquals(wrapped, element);
+    assertFalse(wrapped instanceof Locatable);
+  }
+
+  @Test
+  public void shouldReturnNullForAnIdWhichWasNeverHandedOut() {
+    assertNull(new KnownElements().get("42"));
+  }
+
+  @Test
+  public void shouldOnlyKeepTheMostRecentlyUsedElements() {
+    KnownElements known = new KnownElements(2);
+    String first = known.add(new StubElement());
+    String second = known.add(new StubElement());
+    known.get(first);
+
+    String third = known.add(new StubElement());
+
+    assertTrue(known.get(first) != null);
+    assertTrue(known.get(third) != null);
+    try {
+      known.get(second);
+      fail("Expected the element to be dropped");
+    } catch (StaleElementReferenceException expected) {
+    }
+    assertEquals(2L, known.getStats().get("entries"));
+    assertEquals(1L, known.getStats().get("evictions"));
+  }
+
+  @Test
+  public void shouldDropAnElementOnceItIsStale() {
+    KnownElements known = new KnownElements();
+    String id = known.add(new StubElement() {
+      @Override
+      public void click() {
+        throw new StaleElementReferenceException("gone");
+      }
+    });
+
+    try {
+      known.get(id).click();
+      fail("Expected the element to be stale");
+    } catch (StaleElementReferenceException expected) {
+    }
+
+    try {
+      known.get(id);
+      fail("Expected the element to be dropped");
+    } catch (StaleElementReferenceException expected) {
+    }
+    assertEquals(0L, known.getStats().get("entries"));
+    assertEquals(1L, known.getStats().get("staleEvictions"));
+  }
+}
@@ -16,24 +16,42 @@ limitations under the License.
 
 package org.openqa.selenium.remote.server;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.io.ByteStreams;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.Platform;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebElement;
 import org.openqa.selenium.remote.CapabilityType;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.CommandBatch;
 import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.DriverCommand;
 import org.openqa.selenium.remote.ErrorCodes;
 import org.openqa.selenium.remote.HttpCommandExecutor;
 import org.openqa.selenium.remote.RemoteWebDriver;
+import org.openqa.selenium.remote.RemoteWebElement;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.SessionId;
+import org.openqa.selenium.remote.SessionNotFoundException;
 import org.openqa.selenium.testing.JUnit4TestBase;
 
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.List;
+import java.util.concurrent.Future;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class RemoteWebDriverTest extends JUnit4TestBase {
 
@@ -78,6 +96,177 @@ public class RemoteWebDriverTest extends JUnit4TestBase {
     }
   }
 
+  @Test
+  public void testCanExecuteSeveralCommandsInOneBatch() {
+    if (!(driver instanceof RemoteWebDriver)) {
+      System.out.println("Skipping test: driver is not a remote webdriver");
+      return;
+    }
+
+    driver.get(pages.xhtmlTestPage);
+    WebElement heading = driver.findElement(By.tagName("h1"));
+    WebElement link = driver.findElement(By.id("linkId"));
+
+    List<Object> values = ((RemoteWebDriver) driver).newBatch()
+        .getText(heading)
+        .getAttribute(link, "id")
+        .add(DriverCommand.GET_TITLE)
+        .add(DriverCommand.FIND_ELEMENT, ImmutableMap.of("using", "id", "value", "id1"))
+        .add(DriverCommand.CLICK_ELEMENT, ImmutableMap.of("id", ((RemoteWebElement) link).getId()))
+        .execute();
+
+    assertEquals(5, values.size());
+    assertEquals("XHTML Might Be The Future", values.get(0));
+    assertEquals("linkId", values.get(1));
+    assertEquals("XHTML Test Page", values.get(2));
+    assertTrue(values.get(3) instanceof RemoteWebElement);
+    assertEquals(null, values.get(4));
+    assertEquals("We Arrive Here", driver.getTitle());
+  }
+
+  @Test
+  public void testABatchStopsAtTheFirstCommandWhichFails() {
+    if (!(driver instanceof RemoteWebDriver)) {
+      System.out.println("Skipping test: driver is not a remote webdriver");
+      return;
+    }
+
+    driver.get(pages.xhtmlTestPage);
+    CommandBatch batch = ((RemoteWebDriver) driver).newBatch()
+        .add(DriverCommand.GET_TITLE)
+        .add(DriverCommand.FIND_ELEMENT, ImmutableMap.of("using", "id", "value", "notThere"))
+        .add(DriverCommand.GET, ImmutableMap.of("url", pages.simpleTestPage));
+
+    try {
+      batch.execute();
+      fail("Expected the batch to fail");
+    } catch (NoSuchElementException expected) {
+      // The element isn't there
+    }
+    assertEquals(0, batch.size());
+    assertEquals("XHTML Test Page", driver.getTitle());
+  }
+
+  @Test
+  public void testPipelinedCommandsAreSentInOrderBeforeTheNextCommand() {
+    HttpCommandExecutor executor = getHttpCommandExecutor();
+    if (executor == null) {
+      System.out.println("Skipping test: driver is not using a HttpCommandExecutor");
+      return;
+    }
+
+    driver.get(pages.formPage);
+    WebElement input = driver.findElement(By.id("working"));
+
+    executor.setPipelining(true);
+    try {
+      for (int i = 0; i < 10; i++) {
+        input.sendKeys(String.valueOf(i));
+      }
+      assertEquals("0123456789", input.getAttribute("value"));
+    } finally {
+      executor.setPipelining(false);
+    }
+  }
+
+  @Test
+  public void testAPipelinedCommandWhichFailedIsReportedByTheNextCommand() {
+    HttpCommandExecutor executor = getHttpCommandExecutor();
+    if (executor == null) {
+      System.out.println("Skipping test: driver is not using a HttpCommandExecutor");
+      return;
+    }
+
+    driver.get(pages.xhtmlTestPage);
+    WebElement link = driver.findElement(By.id("linkId"));
+    driver.get(pages.formPage);
+
+    executor.setPipelining(true);
+    try {
+      link.click();
+      try {
+        driver.getTitle();
+        fail("Expected the click to be reported as failed");
+      } catch (StaleElementReferenceException expected) {
+        // The link is on the previous page
+      }
+      assertEquals("We Leave From Here", driver.getTitle());
+    } finally {
+      executor.setPipelining(false);
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testAPipelinedCommandWithoutASessionIsReportedRatherThanLeftUnanswered()
+      throws Exception {
+    HttpCommandExecutor executor = getHttpCommandExecutor();
+    if (executor == null) {
+      System.out.println("Skipping test: driver is not using a HttpCommandExecutor");
+      return;
+    }
+
+    driver.get(pages.xhtmlTestPage);
+    SessionId sessionId = ((RemoteWebDriver) driver).getSessionId();
+
+    // queued while the first one is sent, so that they are sent together
+    executor.executeAsync(new Command(sessionId, DriverCommand.GET_PAGE_SOURCE));
+    List<Future<Response>> withoutSession = Lists.newArrayList();
+    for (int i = 0; i < 10; i++) {
+      withoutSession.add(executor.executeAsync(new Command(null, DriverCommand.GET_TITLE)));
+    }
+
+    try {
+      executor.flush();
+      fail("Expected the commands without a session to fail");
+    } catch (SessionNotFoundException expected) {
+      // They can't be sent
+    }
+    for (Future<Response> response : withoutSession) {
+      assertTrue(response.isDone());
+    }
+    assertEquals("XHTML Test Page", driver.getTitle());
+  }
+
+  @Test
+  public void testQuitEndsTheSessionEvenIfAPipelinedCommandFailed() throws Exception {
+    HttpCommandExecutor executor = getHttpCommandExecutor();
+    if (executor == null) {
+      System.out.println("Skipping test: driver is not using a HttpCommandExecutor");
+      return;
+    }
+
+    URL remoteServer = executor.getAddressOfRemoteServer();
+    String browserName = ((RemoteWebDriver) driver).getCapabilities().getBrowserName();
+    RemoteWebDriver quitting = new RemoteWebDriver(remoteServer,
+        new DesiredCapabilities(browserName, "", Platform.ANY));
+    SessionId sessionId = quitting.getSessionId();
+
+    quitting.get(pages.xhtmlTestPage);
+    WebElement link = quitting.findElement(By.id("linkId"));
+    quitting.get(pages.formPage);
+
+    ((HttpCommandExecutor) quitting.getCommandExecutor()).setPipelining(true);
+    link.click();
+    try {
+      quitting.quit();
+      fail("Expected the click to be reported as failed");
+    } catch (StaleElementReferenceException expected) {
+      // The link is on the previous page, and the session ends all the same
+    }
+
+    Response response = new HttpCommandExecutor(remoteServer)
+        .execute(new Command(sessionId, DriverCommand.GET_TITLE));
+    assertTrue("The session wasn't ended", response.getStatus() != ErrorCodes.SUCCESS);
+  }
+
+  private HttpCommandExecutor getHttpCommandExecutor() {
+    if (!(driver instanceof RemoteWebDriver)) {
+      return null;
+    }
+    CommandExecutor executor = ((RemoteWebDriver) driver).getCommandExecutor();
+    return executor instanceof HttpCommandExecutor ? (HttpCommandExecutor) executor : null;
+  }
+
   private static void assertHasKeys(JSONObject object, String... keys) {
     for (String key : keys) {
       assertTrue("Object does not contain expected key: " + key + " (" + object + ")",
@@ -36,11 +36,14 @@ import org.openqa.selenium.remote.server.xdrpc.HttpServletRequestProxyTest;
     DriverServletTest.class,
     DriverSessionTest.class,
     HttpServletRequestProxyTest.class,
+    KnownElementsTest.class,
     RemoteWebDriverScreenshotTest.class,
     RemoteWebDriverTest.class,
     ResultConfigTest.class,
     SessionCleanerTest.class,
+    SessionExecutorTest.class,
     SessionLogsTest.class,
+    SnapshotScreenListenerTest.class,
     UploadFileTest.class,
     UrlMapperTest.class
 })
@@ -0,0 +1,119 @@
+/*
+Copyright 2012 Selenium committers
+Copyright 2012 Software Freedom Conservancy
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.remote.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.io.TemporaryFilesystem;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.SessionId;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+public class SessionExecutorTest {
+
+  @Test
+  public void shouldGoBackToThePoolOnceWhenReleasedTwice() throws Exception {
+    SessionExecutor executor = SessionExecutor.take(new SessionId("released twice"));
+    Thread thread = runOn(executor);
+
+    executor.release();
+    executor.release();
+    while (executor.getCompletedTaskCount() < executor.getTaskCount()) {
+      Thread.sleep(10);
+    }
+
+    assertTrue(thread.isDaemon());
+    assertEquals(1, Collections.frequency(takeAllIdle(), thread));
+  }
+
+  @Test
+  public void shouldGoBackToThePoolWhenTheBrowserCantBeCreated() throws Exception {
+    FailingDriverFactory factory = new FailingDriverFactory();
+
+    try {
+      DefaultSession.createSession(factory, TemporaryFilesystem.getDefaultTmpFS(),
+          new SessionId("no browser"), DesiredCapabilities.firefox());
+      fail("The browser shouldn't have been created");
+    } catch (ExecutionException expected) {
+    }
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!takeAllIdle().contains(factory.thread)) {
+      assertTrue("The executor wasn't given back", System.currentTimeMillis() < deadline);
+      Thread.sleep(10);
+    }
+  }
+
+  /**
+   * Takes all the executors of the pool and gives them back.
+   *
+   * @return The threads of the executors taken, once for each time an executor was in the pool.
+   */
+  private static List<Thread> takeAllIdle() throws Exception {
+    List<SessionExecutor> taken = Lists.newArrayList();
+    List<Thread> threads = Lists.newArrayList();
+    try {
+      while (true) {
+        SessionExecutor executor = SessionExecutor.take(new SessionId("taking all"));
+        taken.add(executor);
+        if (executor.getTaskCount() == 0) {
+          // a new executor, the pool is empty.
+          return threads;
+        }
+        threads.add(runOn(executor));
+      }
+    } finally {
+      for (SessionExecutor executor : taken) {
+        executor.release();
+      }
+    }
+  }
+
+  private static Thread runOn(SessionExecutor executor) throws Exception {
+    FutureTask<Thread> currentThread = new FutureTask<Thread>(new Callable<Thread>() {
+      public Thread call() {
+        return Thread.currentThread();
+      }
+    });
+    executor.execute(currentThread);
+    return currentThread.get();
+  }
+
+  private static class FailingDriverFactory extends StubDriverFactory {
+    private volatile Thread thread;
+
+    @Override
+    public WebDriver newInstance(Capabilities capabilities) {
+      thread = Thread.currentThread();
+      throw new WebDriverException("No browser");
+    }
+  }
+}
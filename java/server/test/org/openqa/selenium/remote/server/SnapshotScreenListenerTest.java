@@ -0,0 +1,110 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.remote.server;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Futures;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.remote.SessionId;
+import org.openqa.selenium.remote.server.testing.TestSession;
+
+import java.util.Set;
+import java.util.concurrent.Future;
+
+public class SnapshotScreenListenerTest {
+
+  private final CountingSession session = new CountingSession();
+
+  @After
+  public void closeSession() {
+    session.close();
+  }
+
+  @Test
+  public void shouldAttachAScreenshotForEachFailure() {
+    SnapshotScreenListener listener = newListener(ImmutableSet.<String>of(), 0);
+
+    listener.onException(new NoSuchElementException("missing"), null);
+    listener.onException(new WebDriverException("broken"), null);
+
+    assertEquals(2, session.screenshots);
+  }
+
+  @Test
+  public void shouldNotAttachAScreenshotForIgnoredExceptions() {
+    SnapshotScreenListener listener = newListener(ImmutableSet.of(
+        "NoSuchElementException", StaleElementReferenceException.class.getName()), 0);
+
+    listener.onException(new NoSuchElementException("missing"), null);
+    listener.onException(new StaleElementReferenceException("stale"), null);
+    assertEquals(0, session.screenshots);
+
+    listener.onException(new WebDriverException("broken"), null);
+    assertEquals(1, session.screenshots);
+  }
+
+  @Test
+  public void shouldIgnoreTheSubclassesOfIgnoredExceptions() {
+    SnapshotScreenListener listener = newListener(ImmutableSet.of("NotFoundException"), 0);
+
+    listener.onException(new NoSuchElementException("missing"), null);
+
+    assertEquals(0, session.screenshots);
+  }
+
+  @Test
+  public void shouldTakeAtMostOneScreenshotPerInterval() throws InterruptedException {
+    SnapshotScreenListener listener = newListener(ImmutableSet.<String>of(), 200);
+
+    listener.onException(new NoSuchElementException("missing"), null);
+    listener.onException(new NoSuchElementException("missing"), null);
+    assertEquals(1, session.screenshots);
+
+    Thread.sleep(300);
+    listener.onException(new NoSuchElementException("missing"), null);
+    assertEquals(2, session.screenshots);
+  }
+
+  private SnapshotScreenListener newListener(Set<String> ignoredExceptions, long minInterval) {
+    return new SnapshotScreenListener(session, ignoredExceptions, minInterval) {
+      @Override
+      Future<String> captureScreen() {
+        return Futures.immediateFuture("screen");
+      }
+    };
+  }
+
+  private static class CountingSession extends TestSession {
+    private int screenshots;
+
+    CountingSession() {
+      super(new SessionId("session"), null, null);
+    }
+
+    @Override
+    public void attachScreenshot(Future<String> base64EncodedImage) {
+      screenshots++;
+    }
+  }
+}
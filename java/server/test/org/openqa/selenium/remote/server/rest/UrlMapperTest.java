@@ -117,6 +117,65 @@ public class UrlMapperTest {
     assertEquals(renderer, config.getRenderer(ResultType.SUCCESS, mockRequest));
   }
 
+  @Test
+  public void testShouldPassTheParametersOfTheUrlToTheHandler() throws Exception {
+    mapper.bind("/session/:sessionId/element/:id/attribute/:name", ParameterHandler.class);
+
+    String url = "/session/1234/element/5/attribute/href";
+    ParameterHandler handler =
+        (ParameterHandler) mapper.getConfig(url).getHandler(url, new SessionId("1234"));
+
+    assertEquals("5", handler.getId());
+    assertEquals("href", handler.getName());
+  }
+
+  @Test
+  public void testShouldPreferTheFirstBoundConfigMatchingTheUrl() {
+    ResultConfig active = mapper.bind("/session/:sessionId/element/active", SessionHandler.class);
+    ResultConfig parameter = mapper.bind("/session/:sessionId/element/:id", StubHandler.class);
+    ResultConfig other = mapper.bind("/session/:sessionId/other/active", SessionHandler.class);
+
+    assertEquals(active, mapper.getConfig("/session/1234/element/active"));
+    assertEquals(parameter, mapper.getConfig("/session/1234/element/5"));
+    assertEquals(other, mapper.getConfig("/session/1234/other/active"));
+    assertEquals(null, mapper.getConfig("/session/1234/other/5"));
+    assertEquals(null, mapper.getConfig("/session/1234"));
+  }
+
+  @Test
+  public void testShouldReplaceTheConfigOfTheSameUrl() {
+    mapper.bind("/session/:sessionId", StubHandler.class);
+    ResultConfig replacement = mapper.bind("/session/:id", SessionHandler.class);
+
+    assertEquals(replacement, mapper.getConfig("/session/1234"));
+  }
+
+  public static class ParameterHandler implements RestishHandler {
+
+    private String id;
+    private String name;
+
+    public String getId() {
+      return id;
+    }
+
+    public void setId(String id) {
+      this.id = id;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public ResultType handle() {
+      return ResultType.SUCCESS;
+    }
+  }
+
   public static class SessionHandler implements RestishHandler {
 
     private final DriverSessions sessions;
@@ -24,6 +24,7 @@ import org.openqa.selenium.remote.server.KnownElements;
 import org.openqa.selenium.remote.server.Session;
 
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -87,6 +88,9 @@ public class TestSession implements Session {
   public void attachScreenshot(String base64EncodedImage) {
   }
 
+  public void attachScreenshot(Future<String> base64EncodedImage) {
+  }
+
   public String getAndClearScreenshot() {
     return null;
   }
@@ -0,0 +1,83 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+ */
+
+package org.openqa.selenium.server;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class InjectionHelperUnitTest {
+
+  @Before
+  public void loadTheSeleniumJs() {
+    InjectionHelper.init();
+  }
+
+  @Test
+  public void testShouldFindTheEndOfTheHeadTag() {
+    byte[] page = "<html><head><title>x</title></head></html>".getBytes();
+    assertEquals(12, InjectionHelper.findEndOfHead(page, 0, page.length));
+  }
+
+  @Test
+  public void testShouldIgnoreTheCaseOfTheHeadTag() {
+    byte[] page = "<HTML><HeAd></HeAd></HTML>".getBytes();
+    assertEquals(12, InjectionHelper.findEndOfHead(page, 0, page.length));
+  }
+
+  @Test
+  public void testShouldOnlyLookBetweenTheGivenIndexes() {
+    byte[] page = "<html><head></head></html>".getBytes();
+    assertEquals(-1, InjectionHelper.findEndOfHead(page, 7, page.length));
+    assertEquals(-1, InjectionHelper.findEndOfHead(page, 0, 11));
+    assertEquals(12, InjectionHelper.findEndOfHead(page, 6, 12));
+  }
+
+  @Test
+  public void testShouldNotFindAHeadTagWhenThereIsNone() {
+    byte[] page = "<html><body><header></header></body></html>".getBytes();
+    assertEquals(-1, InjectionHelper.findEndOfHead(page, 0, page.length));
+  }
+
+  @Test
+  public void testShouldReuseTheInjectionOfASession() throws Exception {
+    byte[] injection = InjectionHelper.getInjection("reused");
+    assertTrue(new String(injection).contains("injectedSessionId = \"reused\""));
+    assertSame(injection, InjectionHelper.getInjection("reused"));
+  }
+
+  @Test
+  public void testShouldRenderTheInjectionAgainWhenTheSettingsChange() throws Exception {
+    byte[] injection = InjectionHelper.getInjection("rerendered");
+    assertTrue(new String(injection).contains("debugMode = true"));
+
+    InjectionHelper.setBrowserSideLogEnabled(false);
+    try {
+      byte[] rerendered = InjectionHelper.getInjection("rerendered");
+      assertNotSame(injection, rerendered);
+      assertFalse(new String(rerendered).contains("debugMode = true"));
+      assertSame(rerendered, InjectionHelper.getInjection("rerendered"));
+    } finally {
+      InjectionHelper.setBrowserSideLogEnabled(true);
+    }
+  }
+}
@@ -20,15 +20,27 @@ package org.openqa.selenium.server;
 import org.junit.Test;
 import org.openqa.jetty.http.HttpRequest;
 import org.openqa.jetty.http.HttpResponse;
+import org.openqa.jetty.http.HttpServer;
+import org.openqa.jetty.http.SocketListener;
 import org.openqa.jetty.util.URI;
+import org.openqa.selenium.net.PortProber;
 
 import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.net.Socket;
+import java.security.cert.X509Certificate;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
 
 import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.classextension.EasyMock.createMock;
 import static org.easymock.classextension.EasyMock.replay;
 import static org.easymock.classextension.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -139,4 +151,72 @@ public class ProxyHandlerUnitTest {
     assertNull(httpResponse.getAttribute("NotFound"));
     verify(proxyHandlerMock);
   }
+
+  @Test
+  public void connectTunnelsShareOneRelayWhichPresentsTheCertificateOfTheirHost()
+      throws Exception {
+    int serverPort = PortProber.findFreePort();
+    HttpServer server = new HttpServer();
+    SocketListener listener = new SocketListener();
+    listener.setPort(serverPort);
+    server.addListener(listener);
+    server.getContext("/").addHandler(
+        new ProxyHandler(true, "", "", false, false, serverPort, new Object()));
+    server.start();
+    try {
+      assertEquals("CN=first.example.com",
+          getPeerName(openTunnel(serverPort, "first.example.com")));
+      assertEquals("CN=second.example.com",
+          getPeerName(openTunnel(serverPort, "second.example.com")));
+      assertEquals("CN=first.example.com",
+          getPeerName(openTunnel(serverPort, "first.example.com")));
+
+      assertEquals(2, server.getListeners().length);
+    } finally {
+      server.stop();
+    }
+  }
+
+  private SSLSocket openTunnel(int serverPort, String host) throws Exception {
+    Socket socket = new Socket("localhost", serverPort);
+    OutputStream out = socket.getOutputStream();
+    out.write(("CONNECT " + host + ":443 HTTP/1.1\r\nHost: " + host + ":443\r\n\r\n")
+        .getBytes("US-ASCII"));
+    out.flush();
+
+    InputStream in = socket.getInputStream();
+    StringBuilder head = new StringBuilder();
+    while (!head.toString().endsWith("\r\n\r\n")) {
+      int read = in.read();
+      assertTrue("The tunnel was closed: " + head, read != -1);
+      head.append((char) read);
+    }
+    assertTrue(head.toString(), head.toString().startsWith("HTTP/1.1 200"));
+
+    SSLContext context = SSLContext.getInstance("TLS");
+    context.init(null, new TrustManager[] {new TrustEverything()}, null);
+    return (SSLSocket) context.getSocketFactory().createSocket(socket, host, 443, true);
+  }
+
+  private String getPeerName(SSLSocket socket) throws Exception {
+    try {
+      socket.startHandshake();
+      X509Certificate certificate = (X509Certificate) socket.getSession().getPeerCertificates()[0];
+      return certificate.getSubjectX500Principal().getName().split(",")[0];
+    } finally {
+      socket.close();
+    }
+  }
+
+  private static class TrustEverything implements X509TrustManager {
+    public void checkClientTrusted(X509Certificate[] chain, String authType) {
+    }
+
+    public void checkServerTrusted(X509Certificate[] chain, String authType) {
+    }
+
+    public X509Certificate[] getAcceptedIssuers() {
+      return new X509Certificate[0];
+    }
+  }
 }
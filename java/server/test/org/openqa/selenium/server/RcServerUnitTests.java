@@ -27,6 +27,7 @@ import org.openqa.selenium.server.browserlaunchers.MakeProxyPacUnitTest;
 import org.openqa.selenium.server.htmlrunner.HTMLSuiteResultUnitTest;
 import org.openqa.selenium.server.log.DefaultPerSessionLogHandlerUnitTest;
 import org.openqa.selenium.server.log.LoggingManagerUnitTest;
+import org.openqa.selenium.server.log.SessionLogsToFileRepositoryUnitTest;
 import org.openqa.selenium.server.log.ShortTermMemoryHandlerUnitTest;
 import org.openqa.selenium.server.mock.MockPIFrameUnitTest;
 
@@ -47,6 +48,7 @@ import org.openqa.selenium.server.mock.MockPIFrameUnitTest;
     FrameGroupCommandQueueUnitTest.class,
     FsResourceLocatorUnitTest.class,
     HTMLSuiteResultUnitTest.class,
+    InjectionHelperUnitTest.class,
     LoggingManagerUnitTest.class,
     MakeProxyPacUnitTest.class,
     MockPIFrameUnitTest.class,
@@ -54,8 +56,10 @@ import org.openqa.selenium.server.mock.MockPIFrameUnitTest;
     RemoteControlConfigurationUnitTest.class,
     SeleniumDriverResourceHandlerUnitTest.class,
     SeleniumServerUnitTest.class,
+    SessionLogsToFileRepositoryUnitTest.class,
     ShortTermMemoryHandlerUnitTest.class,
     SingleEntryAsyncQueueUnitTest.class,
+    SslCertificateCacheTest.class,
     StaticContentHandlerUnitTest.class
 })
 public class RcServerUnitTests {}
@@ -0,0 +1,139 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package org.openqa.selenium.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.io.Files;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openqa.selenium.browserlaunchers.LauncherUtils;
+import org.openqa.selenium.security.CertificateGenerator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+
+public class SslCertificateCacheTest {
+
+  private static final String CRL =
+      "http://127.0.0.1:4444/selenium-server/sslSupport/blank_crl.pem";
+
+  private final File root = Files.createTempDir();
+
+  @After
+  public void deleteRoot() {
+    LauncherUtils.recursivelyDeleteDir(root);
+  }
+
+  @Test
+  public void issuesACertificateForEachHost() throws Exception {
+    SslCertificateCache cache = new SslCertificateCache(root, CRL);
+
+    X509Certificate first = cache.getCertificate("first.example.com");
+    X509Certificate second = cache.getCertificate("second.example.com");
+
+    assertTrue(first.getSubjectX500Principal().getName().contains("CN=first.example.com"));
+    assertTrue(second.getSubjectX500Principal().getName().contains("CN=second.example.com"));
+    assertSame(first, cache.getCertificate("first.example.com"));
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void issuesAllTheCertificatesToTheSameKey() throws Exception {
+    SslCertificateCache cache = new SslCertificateCache(root, CRL);
+
+    X509Certificate first = cache.getCertificate("first.example.com");
+    X509Certificate second = cache.getCertificate("second.example.com");
+
+    assertEquals(first.getPublicKey(), second.getPublicKey());
+    assertEquals(first.getPublicKey().getAlgorithm(), cache.getPrivateKey().getAlgorithm());
+  }
+
+  @Test
+  public void keepsTheMostRecentlyUsedCertificates() throws Exception {
+    SslCertificateCache cache = new SslCertificateCache(root, CRL);
+
+    X509Certificate first = cache.getCertificate("host0.example.com");
+    for (int i = 1; i <= SslCertificateCache.MAX_CERTIFICATES; i++) {
+      assertSame(first, cache.getCertificate("host0.example.com"));
+      cache.getCertificate("host" + i + ".example.com");
+    }
+    cache.getCertificate("host" + (SslCertificateCache.MAX_CERTIFICATES + 1) + ".example.com");
+
+    assertEquals(SslCertificateCache.MAX_CERTIFICATES, cache.size());
+    assertSame(first, cache.getCertificate("host0.example.com"));
+    assertEquals(SslCertificateCache.MAX_CERTIFICATES, cache.size());
+  }
+
+  @Test
+  public void startsWithTheCertificatesOfThePreviousCache() throws Exception {
+    SslCertificateCache previous = new SslCertificateCache(root, CRL);
+    X509Certificate issued = previous.getCertificate("first.example.com");
+
+    File written = new File(root, "hostCertificates.jks");
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!written.exists() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+
+    SslCertificateCache cache = new SslCertificateCache(root, CRL);
+    X509Certificate loaded = cache.getCertificate("first.example.com");
+
+    assertNotSame(issued, loaded);
+    assertEquals(issued, loaded);
+    assertEquals(issued.getPublicKey(), cache.getCertificate("second.example.com").getPublicKey());
+  }
+
+  @Test
+  public void ignoresAStoredCertificateWhoseKeyIsAnotherOne() throws Exception {
+    // the CA is extracted along with the key pair.
+    new SslCertificateCache(root, CRL).getPrivateKey();
+
+    CertificateGenerator generator = new CertificateGenerator(root);
+    X509Certificate stored = generator.generateCertificate("first.example.com", CRL)
+        .getCertificate();
+    char[] password = "password".toCharArray();
+    KeyStore store = KeyStore.getInstance("JKS");
+    store.load(null, password);
+    store.setKeyEntry("first.example.com", generator.generateKeyPair().getPrivate(), password,
+        new Certificate[] {stored});
+    OutputStream out = new FileOutputStream(new File(root, "hostCertificates.jks"));
+    try {
+      store.store(out, password);
+    } finally {
+      out.close();
+    }
+
+    SslCertificateCache cache = new SslCertificateCache(root, CRL);
+    X509Certificate issued = cache.getCertificate("first.example.com");
+
+    assertFalse(stored.equals(issued));
+    assertEquals(((RSAPublicKey) issued.getPublicKey()).getModulus(),
+        ((RSAPrivateKey) cache.getPrivateKey()).getModulus());
+  }
+}
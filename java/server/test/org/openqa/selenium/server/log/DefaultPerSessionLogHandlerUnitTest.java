@@ -28,6 +28,13 @@ import org.openqa.selenium.logging.SessionLogs;
 import org.openqa.selenium.remote.SessionId;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Formatter;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
@@ -168,6 +175,55 @@ public class DefaultPerSessionLogHandlerUnitTest {
     assertNoMessageLoggedForSessionId(handler, sessionId);
   }
 
+  @Test
+  public void testShouldKeepTheRecordsOfSessionsLoggedToConcurrently() throws Exception {
+    final PerSessionLogHandler handler = new DefaultPerSessionLogHandler(
+        10000, Level.INFO, new FormatterStub(), false);
+    final int threads = 8;
+    final int recordsPerThread = 1000;
+    final CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<?>> done = new ArrayList<Future<?>>();
+    for (int i = 0; i < threads; i++) {
+      // two threads per session.
+      final SessionId sessionId = new SessionId("session-" + (i / 2));
+      done.add(executor.submit(new Callable<Void>() {
+        public Void call() throws Exception {
+          handler.attachToCurrentThread(sessionId);
+          start.await();
+          for (int j = 0; j < recordsPerThread; j++) {
+            handler.publish(new LogRecord(Level.INFO, "record " + j));
+          }
+          handler.detachFromCurrentThread();
+          return null;
+        }
+      }));
+    }
+    start.countDown();
+    for (Future<?> future : done) {
+      future.get();
+    }
+    executor.shutdown();
+
+    for (int i = 0; i < threads / 2; i++) {
+      LogEntries entries = handler.getSessionLog(new SessionId("session-" + i));
+      assertEquals(2 * recordsPerThread, entries.getAll().size());
+    }
+  }
+
+  @Test
+  public void testShouldDetachTheThreadOfARemovedSession() throws IOException {
+    PerSessionLogHandler handler = createPerSessionLogHandler();
+    SessionId sessionId = new SessionId("session-1");
+    handler.attachToCurrentThread(sessionId);
+    handler.publish(new LogRecord(Level.INFO, "First Log Record"));
+    handler.removeSessionLogs(sessionId);
+
+    handler.publish(new LogRecord(Level.INFO, "Second Log Record"));
+
+    assertNoMessageLoggedForSessionId(handler, sessionId);
+  }
+
   private void assertMessagesLoggedForSessionId(PerSessionLogHandler handler,
                                                 SessionId sessionId, String... expectedMessages)
       throws IOException {
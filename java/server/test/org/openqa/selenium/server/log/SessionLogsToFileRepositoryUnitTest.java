@@ -0,0 +1,114 @@
+/*
+Copyright 2013 Selenium committers
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+     http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package org.openqa.selenium.server.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Lists;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openqa.selenium.remote.SessionId;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * {@link org.openqa.selenium.server.log.SessionLogsToFileRepository} unit test class.
+ */
+public class SessionLogsToFileRepositoryUnitTest {
+
+  private final SessionLogsToFileRepository repository = new SessionLogsToFileRepository();
+  private final SessionId sessionId = new SessionId("session-1");
+
+  @After
+  public void removeLogFile() {
+    repository.removeLogFile(sessionId);
+  }
+
+  @Test
+  public void testRecordsAreReadBackAsTheyWereWritten() throws IOException {
+    LogRecord record = new LogRecord(Level.WARNING, "cheese {0} and {1}");
+    record.setMillis(1234L);
+    record.setLoggerName("the.logger");
+    record.setThreadID(42);
+    record.setSourceClassName("Cheese");
+    record.setSourceMethodName("eat");
+    record.setParameters(new Object[] {"cheddar", 7});
+    record.setThrown(new IllegalStateException("mouldy"));
+
+    repository.flushRecordsToLogFile(sessionId, Lists.newArrayList(record));
+    List<LogRecord> records = repository.getLogRecords(sessionId);
+
+    assertEquals(1, records.size());
+    LogRecord read = records.get(0);
+    assertEquals(Level.WARNING, read.getLevel());
+    assertEquals("cheese {0} and {1}", read.getMessage());
+    assertEquals(1234L, read.getMillis());
+    assertEquals(record.getSequenceNumber(), read.getSequenceNumber());
+    assertEquals("the.logger", read.getLoggerName());
+    assertEquals(42, read.getThreadID());
+    assertEquals("Cheese", read.getSourceClassName());
+    assertEquals("eat", read.getSourceMethodName());
+    assertEquals("cheddar", read.getParameters()[0]);
+    assertEquals("7", read.getParameters()[1]);
+    assertTrue(read.getThrown() instanceof IllegalStateException);
+    assertEquals("mouldy", read.getThrown().getMessage());
+    assertNull(read.getResourceBundleName());
+  }
+
+  @Test
+  public void testRecordsOfEveryFlushAreKept() throws IOException {
+    repository.flushRecordsToLogFile(sessionId, Lists.newArrayList(
+        new LogRecord(Level.INFO, "first"), new LogRecord(Level.INFO, "second")));
+    repository.flushRecordsToLogFile(sessionId, Lists.newArrayList(
+        new LogRecord(Level.INFO, "third")));
+
+    List<LogRecord> records = repository.getLogRecords(sessionId);
+
+    assertEquals(3, records.size());
+    assertEquals("first", records.get(0).getMessage());
+    assertEquals("second", records.get(1).getMessage());
+    assertEquals("third", records.get(2).getMessage());
+  }
+
+  @Test
+  public void testRecordsCanBeFilteredByLevelAndTime() throws IOException {
+    LogRecord oldWarning = new LogRecord(Level.WARNING, "old warning");
+    oldWarning.setMillis(100L);
+    LogRecord fine = new LogRecord(Level.FINE, "fine");
+    fine.setMillis(200L);
+    LogRecord warning = new LogRecord(Level.WARNING, "warning");
+    warning.setMillis(300L);
+    repository.flushRecordsToLogFile(sessionId, Lists.newArrayList(oldWarning, fine, warning));
+
+    List<LogRecord> records = repository.getLogRecords(sessionId, Level.INFO, 150L);
+
+    assertEquals(1, records.size());
+    assertEquals("warning", records.get(0).getMessage());
+  }
+
+  @Test
+  public void testNoRecordsAreReturnedForAnUnknownSession() throws IOException {
+    assertEquals(0, repository.getLogRecords(new SessionId("unknown")).size());
+  }
+}